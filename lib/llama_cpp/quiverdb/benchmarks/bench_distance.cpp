@@ -46,8 +46,53 @@ static void BM_Cosine(benchmark::State& state) {
   state.SetBytesProcessed(state.iterations() * dim * sizeof(float) * 2);
 }
 
+// One query against 4 rows per call, as used by HNSW neighbor expansion
+static void BM_L2_x4(benchmark::State& state) {
+  const size_t dim = state.range(0);
+  std::vector<float> q(dim), rows(4 * dim);
+  std::mt19937 gen(42);
+  std::uniform_real_distribution<float> dis(0.0f, 1.0f);
+  for (auto& x : q) x = dis(gen);
+  for (auto& x : rows) x = dis(gen);
+  float out[4];
+
+  for (auto _ : state) {
+    quiverdb::l2_sq_x4(q.data(), rows.data(), rows.data() + dim, rows.data() + 2 * dim,
+                       rows.data() + 3 * dim, dim, out);
+    benchmark::DoNotOptimize(out);
+  }
+  state.SetItemsProcessed(state.iterations() * dim * 4);
+  state.SetBytesProcessed(state.iterations() * dim * sizeof(float) * 5);
+}
+
+// L2 through each kernel family the CPU supports, to compare instruction sets on one machine
+static void BM_L2_Kernels(benchmark::State& state, const char* name) {
+  const quiverdb::DistanceKernels* kernels = quiverdb::distance_kernels(name);
+  if (!kernels) {
+    state.SkipWithError("kernel family not available on this CPU");
+    return;
+  }
+  const size_t dim = state.range(0);
+  std::vector<float> a(dim), b(dim);
+  std::mt19937 gen(42);
+  std::uniform_real_distribution<float> dis(0.0f, 1.0f);
+  for (size_t i = 0; i < dim; ++i) { a[i] = dis(gen); b[i] = dis(gen); }
+
+  for (auto _ : state) {
+    benchmark::DoNotOptimize(kernels->l2_sq(a.data(), b.data(), dim));
+  }
+  state.SetItemsProcessed(state.iterations() * dim);
+  state.SetLabel(quiverdb::active_kernel_name() == std::string_view(name) ? "active" : "");
+}
+
 BENCHMARK(BM_L2)->Arg(128)->Arg(256)->Arg(384)->Arg(512)->Arg(768)->Arg(1536);
 BENCHMARK(BM_DotProduct)->Arg(128)->Arg(256)->Arg(384)->Arg(512)->Arg(768)->Arg(1536);
 BENCHMARK(BM_Cosine)->Arg(128)->Arg(256)->Arg(384)->Arg(512)->Arg(768)->Arg(1536);
+BENCHMARK(BM_L2_x4)->Arg(128)->Arg(256)->Arg(384)->Arg(512)->Arg(768)->Arg(1536);
+BENCHMARK_CAPTURE(BM_L2_Kernels, scalar, "scalar")->Arg(128)->Arg(768);
+BENCHMARK_CAPTURE(BM_L2_Kernels, sse4, "sse4")->Arg(128)->Arg(768);
+BENCHMARK_CAPTURE(BM_L2_Kernels, avx2, "avx2")->Arg(128)->Arg(768);
+BENCHMARK_CAPTURE(BM_L2_Kernels, avx512, "avx512")->Arg(128)->Arg(768);
+BENCHMARK_CAPTURE(BM_L2_Kernels, neon, "neon")->Arg(128)->Arg(768);
 
 BENCHMARK_MAIN();
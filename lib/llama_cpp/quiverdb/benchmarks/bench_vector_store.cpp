@@ -216,4 +216,151 @@ BENCHMARK(BM_VectorStore_Search_VaryingDim)
     ->Arg(768)
     ->Arg(1536);
 
+// ============================================================================
+// VectorStore Search Benchmarks - Large Stores (top-k selection cost)
+// ============================================================================
+
+static void BM_VectorStore_Search_LargeN(benchmark::State &state) {
+  const size_t dim = 64;
+  const size_t num_vectors = state.range(0);
+  const size_t k = 10;
+
+  quiverdb::VectorStore store(dim, quiverdb::DistanceMetric::L2);
+  store.reserve(num_vectors);
+
+  std::mt19937 gen(42);
+  std::uniform_real_distribution<float> dis(0.0f, 1.0f);
+
+  // Add vectors
+  std::vector<float> vec(dim);
+  for (size_t i = 0; i < num_vectors; ++i) {
+    for (size_t j = 0; j < dim; ++j) {
+      vec[j] = dis(gen);
+    }
+    store.add(i, vec.data());
+  }
+
+  // Prepare query
+  std::vector<float> query(dim);
+  for (size_t j = 0; j < dim; ++j) {
+    query[j] = dis(gen);
+  }
+
+  for (auto _ : state) {
+    auto results = store.search(query.data(), k);
+    benchmark::DoNotOptimize(results);
+  }
+
+  state.SetItemsProcessed(state.iterations() * num_vectors);
+  state.SetLabel(std::to_string(num_vectors) + " vectors, 64d, k=10");
+}
+
+BENCHMARK(BM_VectorStore_Search_LargeN)
+    ->Arg(100000)
+    ->Arg(1000000)
+    ->Unit(benchmark::kMillisecond);
+
+// ============================================================================
+// VectorStore Search Benchmarks - Search Threads
+// ============================================================================
+
+static void BM_VectorStore_Search_Threads(benchmark::State &state) {
+  const size_t dim = 128;
+  const size_t num_vectors = 200000;
+  const size_t k = 10;
+  const size_t threads = state.range(0);
+
+  quiverdb::VectorStore store(dim, quiverdb::DistanceMetric::L2);
+  store.reserve(num_vectors);
+  store.set_search_threads(threads);
+
+  std::mt19937 gen(42);
+  std::uniform_real_distribution<float> dis(0.0f, 1.0f);
+
+  // Add vectors
+  std::vector<float> vec(dim);
+  for (size_t i = 0; i < num_vectors; ++i) {
+    for (size_t j = 0; j < dim; ++j) {
+      vec[j] = dis(gen);
+    }
+    store.add(i, vec.data());
+  }
+
+  // Prepare query
+  std::vector<float> query(dim);
+  for (size_t j = 0; j < dim; ++j) {
+    query[j] = dis(gen);
+  }
+
+  for (auto _ : state) {
+    auto results = store.search(query.data(), k);
+    benchmark::DoNotOptimize(results);
+  }
+
+  state.SetItemsProcessed(state.iterations() * num_vectors);
+  state.SetLabel("200000 vectors, 128d, " + std::to_string(threads) + " threads");
+}
+
+BENCHMARK(BM_VectorStore_Search_Threads)
+    ->Arg(1)
+    ->Arg(2)
+    ->Arg(4)
+    ->Arg(8)
+    ->Unit(benchmark::kMillisecond)
+    ->UseRealTime();
+
+// ============================================================================
+// VectorStore Search Benchmarks - Batch Search
+// ============================================================================
+
+// Arg 0: queries per call; 0 issues them one search() at a time for comparison
+static void BM_VectorStore_SearchBatch(benchmark::State &state) {
+  const size_t dim = 128;
+  const size_t num_vectors = 100000;
+  const size_t num_queries = 64;
+  const size_t k = 10;
+  const bool batched = state.range(0) != 0;
+
+  quiverdb::VectorStore store(dim, quiverdb::DistanceMetric::L2);
+  store.reserve(num_vectors);
+
+  std::mt19937 gen(42);
+  std::uniform_real_distribution<float> dis(0.0f, 1.0f);
+
+  // Add vectors
+  std::vector<float> vec(dim);
+  for (size_t i = 0; i < num_vectors; ++i) {
+    for (size_t j = 0; j < dim; ++j) {
+      vec[j] = dis(gen);
+    }
+    store.add(i, vec.data());
+  }
+
+  // Prepare queries
+  std::vector<float> queries(num_queries * dim);
+  for (auto &x : queries) {
+    x = dis(gen);
+  }
+
+  for (auto _ : state) {
+    if (batched) {
+      auto results = store.search_batch(queries.data(), num_queries, k);
+      benchmark::DoNotOptimize(results);
+    } else {
+      for (size_t q = 0; q < num_queries; ++q) {
+        auto results = store.search(queries.data() + q * dim, k);
+        benchmark::DoNotOptimize(results);
+      }
+    }
+  }
+
+  state.SetItemsProcessed(state.iterations() * num_queries);
+  state.SetLabel(std::string(batched ? "search_batch" : "search loop") + ", 64 queries, 100000 vectors, 128d");
+}
+
+BENCHMARK(BM_VectorStore_SearchBatch)
+    ->Arg(0)
+    ->Arg(1)
+    ->Unit(benchmark::kMillisecond);
+
 BENCHMARK_MAIN();
@@ -52,11 +52,9 @@ set(QUIVERDB_BUILD_BENCHMARKS OFF CACHE BOOL "Disable benchmarks for Android")
 set(QUIVERDB_BUILD_PYTHON OFF CACHE BOOL "Disable Python for Android")
 set(QUIVERDB_BUILD_EXAMPLES OFF CACHE BOOL "Disable examples for Android")
 
-# Enable NEON for arm64-v8a
+# Enable NEON for arm64-v8a; x86_64 picks its distance kernels at runtime
 if(ANDROID_ABI STREQUAL "arm64-v8a")
     add_compile_definitions(QUIVER_ARM_NEON=1)
-elseif(ANDROID_ABI STREQUAL "x86_64")
-    add_compile_definitions(QUIVER_AVX2=1)
 endif()
 
 message(STATUS "QuiverDB Android toolchain loaded")
@@ -5,6 +5,7 @@
 #include "core/hnsw_index.h"
 #include "core/vector_store.h"
 #include "core/mmap_vector_store.h"
+#include "core/segmented_vector_store.h"
 #include "core/version.h"
 
 namespace py = pybind11;
@@ -26,15 +27,23 @@ PYBIND11_MODULE(quiverdb_py, m) {
         .value("DOT", HNSWDistanceMetric::DOT)
         .export_values(); // Exports enum values to the module scope
 
+    // Bind ElementType enum (precision vectors are stored in)
+    py::enum_<ElementType>(m, "ElementType")
+        .value("F32", ElementType::F32)
+        .value("F16", ElementType::F16)
+        .value("BF16", ElementType::BF16)
+        .export_values();
+
     // Bind HNSWIndex class
     py::class_<HNSWIndex>(m, "HNSWIndex")
-        .def(py::init<size_t, HNSWDistanceMetric, size_t, size_t, size_t, uint32_t>(),
+        .def(py::init<size_t, HNSWDistanceMetric, size_t, size_t, size_t, uint32_t, ElementType>(),
              py::arg("dimension"),
              py::arg("metric") = HNSWDistanceMetric::L2,
              py::arg("max_elements") = 100000,
              py::arg("M") = 16,
              py::arg("ef_construction") = 200,
-             py::arg("random_seed") = 42)
+             py::arg("random_seed") = 42,
+             py::arg("element_type") = ElementType::F32)
         .def("add", [](HNSWIndex& self, uint64_t id, py::array_t<float, py::array::c_style | py::array::forcecast> vector_array) {
                 py::buffer_info buf = vector_array.request();
                 if (buf.ndim != 1) {
@@ -99,6 +108,7 @@ PYBIND11_MODULE(quiverdb_py, m) {
             "Searches for k nearest neighbors. Returns a tuple (ids, distances).")
         .def("size", &HNSWIndex::size, "Returns the number of vectors in the index")
         .def("dimension", &HNSWIndex::dimension, "Returns the dimension of stored vectors")
+        .def("element_type", &HNSWIndex::element_type, "Returns the precision vectors are stored in")
         .def("capacity", &HNSWIndex::capacity, "Returns the maximum capacity of the index")
         .def("contains", &HNSWIndex::contains, py::arg("id"), "Checks if a vector with given ID exists")
         .def("set_ef_search", &HNSWIndex::set_ef_search, py::arg("ef"), "Sets the ef parameter for search")
@@ -124,9 +134,10 @@ PYBIND11_MODULE(quiverdb_py, m) {
 
     // Bind VectorStore class (brute-force, thread-safe)
     py::class_<VectorStore>(m, "VectorStore")
-        .def(py::init<size_t, DistanceMetric>(),
+        .def(py::init<size_t, DistanceMetric, ElementType>(),
              py::arg("dimension"),
              py::arg("metric") = DistanceMetric::L2,
+             py::arg("element_type") = ElementType::F32,
              "Creates a new in-memory vector store")
         .def("add", [](VectorStore& self, uint64_t id, py::array_t<float, py::array::c_style | py::array::forcecast> vector_array) {
                 py::buffer_info buf = vector_array.request();
@@ -190,6 +201,38 @@ PYBIND11_MODULE(quiverdb_py, m) {
             },
             py::arg("query_vector"), py::arg("k"),
             "Searches for k nearest neighbors. Returns (ids, distances).")
+        .def("search_binary", [](const VectorStore& self, py::array_t<float, py::array::c_style | py::array::forcecast> query_array, size_t k, size_t rerank_factor) {
+                py::buffer_info buf = query_array.request();
+                if (buf.ndim != 1) {
+                    throw std::runtime_error("Query vector must be a 1-dimensional array");
+                }
+                if (static_cast<size_t>(buf.size) != self.dimension()) {
+                    throw std::runtime_error("Query dimension mismatch");
+                }
+
+                std::vector<SearchResult> results;
+                {
+                    py::gil_scoped_release release;
+                    results = self.search_binary(static_cast<const float*>(buf.ptr), k, rerank_factor);
+                }
+
+                py::array_t<uint64_t> ids(static_cast<py::ssize_t>(results.size()));
+                py::array_t<float> dists(static_cast<py::ssize_t>(results.size()));
+                auto ids_ptr = ids.mutable_unchecked<1>();
+                auto dists_ptr = dists.mutable_unchecked<1>();
+
+                for (size_t i = 0; i < results.size(); ++i) {
+                    ids_ptr(i) = results[i].id;
+                    dists_ptr(i) = results[i].distance;
+                }
+
+                return py::make_tuple(ids, dists);
+            },
+            py::arg("query_vector"), py::arg("k"), py::arg("rerank_factor") = 4,
+            "Shortlists k * rerank_factor vectors by binary code Hamming distance and reranks them exactly. Returns (ids, distances).")
+        .def("has_binary_index", &VectorStore::has_binary_index, "Whether sign codes for search_binary are available")
+        .def("set_binary_index", &VectorStore::set_binary_index, py::arg("enabled"),
+             "Keeps one sign bit per dimension for every vector, enabling search_binary")
         .def("remove", &VectorStore::remove, py::arg("id"), "Removes a vector by ID")
         .def("update", [](VectorStore& self, uint64_t id, py::array_t<float, py::array::c_style | py::array::forcecast> vector_array) {
                 py::buffer_info buf = vector_array.request();
@@ -206,15 +249,30 @@ PYBIND11_MODULE(quiverdb_py, m) {
             "Updates an existing vector")
         .def("size", &VectorStore::size, "Returns the number of vectors")
         .def("dimension", &VectorStore::dimension, "Returns the dimension")
+        .def("element_type", &VectorStore::element_type, "Returns the precision vectors are stored in")
         .def("contains", &VectorStore::contains, py::arg("id"), "Checks if ID exists")
         .def("clear", &VectorStore::clear, "Removes all vectors")
-        .def("reserve", &VectorStore::reserve, py::arg("capacity"), "Pre-allocates space");
+        .def("reserve", &VectorStore::reserve, py::arg("capacity"), "Pre-allocates space")
+        .def("is_mapped", &VectorStore::is_mapped, "Whether vectors are still read from the file mapped by load(map=True)")
+        .def("save", [](const VectorStore& self, const std::string& filename) {
+                py::gil_scoped_release release;
+                self.save(filename);
+            },
+            py::arg("filename"), "Saves the store in the MMapVectorStore file format")
+        .def_static("load", [](const std::string& filename, bool map) {
+                py::gil_scoped_release release;
+                return VectorStore::load(filename, map);
+            },
+            py::arg("filename"), py::arg("map") = false,
+            "Loads a saved store; map=True reads vectors in place from a read-only mapping until the first write",
+            py::return_value_policy::take_ownership);
 
     // Bind MMapVectorStoreBuilder class
     py::class_<MMapVectorStoreBuilder>(m, "MMapVectorStoreBuilder")
-        .def(py::init<size_t, DistanceMetric>(),
+        .def(py::init<size_t, DistanceMetric, ElementType>(),
              py::arg("dimension"),
              py::arg("metric") = DistanceMetric::L2,
+             py::arg("element_type") = ElementType::F32,
              "Creates a new builder for memory-mapped vector store")
         .def("add", [](MMapVectorStoreBuilder& self, uint64_t id, py::array_t<float, py::array::c_style | py::array::forcecast> vector_array) {
                 py::buffer_info buf = vector_array.request();
@@ -236,18 +294,74 @@ PYBIND11_MODULE(quiverdb_py, m) {
             "Saves to a memory-mappable file")
         .def("size", &MMapVectorStoreBuilder::size, "Returns the number of vectors")
         .def("dimension", &MMapVectorStoreBuilder::dimension, "Returns the dimension")
+        .def("element_type", &MMapVectorStoreBuilder::element_type, "Returns the precision vectors are stored in")
+        .def("set_binary_index", &MMapVectorStoreBuilder::set_binary_index, py::arg("enabled"),
+             "Also writes one sign bit per dimension for every vector, enabling search_binary")
         .def("reserve", &MMapVectorStoreBuilder::reserve, py::arg("capacity"), "Pre-allocates space");
 
+    // Bind MMapVectorStoreWriter class (streams vectors to the file as they are added)
+    py::class_<MMapVectorStoreWriter>(m, "MMapVectorStoreWriter")
+        .def(py::init<const std::string&, size_t, DistanceMetric, ElementType>(),
+             py::arg("filename"),
+             py::arg("dimension"),
+             py::arg("metric") = DistanceMetric::L2,
+             py::arg("element_type") = ElementType::F32,
+             "Starts writing a memory-mappable file; vectors are not kept in memory")
+        .def("add", [](MMapVectorStoreWriter& self, uint64_t id, py::array_t<float, py::array::c_style | py::array::forcecast> vector_array) {
+                py::buffer_info buf = vector_array.request();
+                if (buf.ndim != 1) {
+                    throw std::runtime_error("Vector must be a 1-dimensional array");
+                }
+                if (static_cast<size_t>(buf.size) != self.dimension()) {
+                    throw std::runtime_error("Vector dimension mismatch");
+                }
+                self.add(id, static_cast<const float*>(buf.ptr));
+            },
+            py::arg("id"), py::arg("vector"),
+            "Appends a vector to the file")
+        .def("add_batch", [](MMapVectorStoreWriter& self,
+                             py::array_t<uint64_t, py::array::c_style | py::array::forcecast> ids_array,
+                             py::array_t<float, py::array::c_style | py::array::forcecast> vectors_array) {
+                py::buffer_info ids = ids_array.request();
+                py::buffer_info vecs = vectors_array.request();
+                if (ids.ndim != 1 || vecs.ndim != 2) {
+                    throw std::runtime_error("IDs must be 1-dimensional and vectors 2-dimensional");
+                }
+                if (vecs.shape[0] != ids.shape[0] || static_cast<size_t>(vecs.shape[1]) != self.dimension()) {
+                    throw std::runtime_error("Vectors must have shape (len(ids), dimension)");
+                }
+                py::gil_scoped_release release;
+                self.add_batch(static_cast<const uint64_t*>(ids.ptr), static_cast<const float*>(vecs.ptr),
+                               static_cast<size_t>(ids.shape[0]));
+            },
+            py::arg("ids"), py::arg("vectors"),
+            "Appends a (n, dimension) array of vectors to the file")
+        .def("finish", &MMapVectorStoreWriter::finish, py::call_guard<py::gil_scoped_release>(),
+             "Writes the remaining sections and moves the file into place")
+        .def("size", &MMapVectorStoreWriter::size, "Returns the number of vectors")
+        .def("dimension", &MMapVectorStoreWriter::dimension, "Returns the dimension")
+        .def("element_type", &MMapVectorStoreWriter::element_type, "Returns the precision vectors are stored in")
+        .def("finished", &MMapVectorStoreWriter::finished, "Whether finish() has completed the file")
+        .def("set_binary_index", &MMapVectorStoreWriter::set_binary_index, py::arg("enabled"),
+             "Also writes one sign bit per dimension for every vector, enabling search_binary")
+        .def("reserve", &MMapVectorStoreWriter::reserve, py::arg("capacity"), "Pre-sizes the id table");
+
     // Bind MMapVectorStore class (read-only, memory-mapped)
     py::class_<MMapVectorStore>(m, "MMapVectorStore")
         .def(py::init<const std::string&>(),
              py::arg("filename"),
              "Opens a memory-mapped vector store file")
         .def("get", [](const MMapVectorStore& self, uint64_t id) -> py::object {
-                const float* ptr = self.get(id);
-                if (ptr == nullptr) {
+                if (!self.contains(id)) {
                     return py::none();
                 }
+                if (self.normalized() || self.element_type() != ElementType::F32) {
+                    // Cosine rows are mapped unit length and half rows need widening;
+                    // rebuild the vector as added
+                    std::vector<float> vec = self.get_copy(id);
+                    return py::array_t<float>(vec.size(), vec.data());
+                }
+                const float* ptr = self.get(id);
                 // Return a view into the mapped memory (zero-copy!)
                 return py::array_t<float>(
                     {self.dimension()},
@@ -257,7 +371,7 @@ PYBIND11_MODULE(quiverdb_py, m) {
                 );
             },
             py::arg("id"),
-            "Gets a vector by ID (zero-copy from mmap), returns None if not found")
+            "Gets a vector by ID (zero-copy from mmap except for cosine and half precision files), returns None if not found")
         .def("search", [](const MMapVectorStore& self, py::array_t<float, py::array::c_style | py::array::forcecast> query_array, size_t k) {
                 py::buffer_info buf = query_array.request();
                 if (buf.ndim != 1) {
@@ -287,7 +401,142 @@ PYBIND11_MODULE(quiverdb_py, m) {
             },
             py::arg("query_vector"), py::arg("k"),
             "Searches for k nearest neighbors. Returns (ids, distances).")
+        .def("search_binary", [](const MMapVectorStore& self, py::array_t<float, py::array::c_style | py::array::forcecast> query_array, size_t k, size_t rerank_factor) {
+                py::buffer_info buf = query_array.request();
+                if (buf.ndim != 1) {
+                    throw std::runtime_error("Query vector must be a 1-dimensional array");
+                }
+                if (static_cast<size_t>(buf.size) != self.dimension()) {
+                    throw std::runtime_error("Query dimension mismatch");
+                }
+
+                std::vector<SearchResult> results;
+                {
+                    py::gil_scoped_release release;
+                    results = self.search_binary(static_cast<const float*>(buf.ptr), k, rerank_factor);
+                }
+
+                py::array_t<uint64_t> ids(static_cast<py::ssize_t>(results.size()));
+                py::array_t<float> dists(static_cast<py::ssize_t>(results.size()));
+                auto ids_ptr = ids.mutable_unchecked<1>();
+                auto dists_ptr = dists.mutable_unchecked<1>();
+
+                for (size_t i = 0; i < results.size(); ++i) {
+                    ids_ptr(i) = results[i].id;
+                    dists_ptr(i) = results[i].distance;
+                }
+
+                return py::make_tuple(ids, dists);
+            },
+            py::arg("query_vector"), py::arg("k"), py::arg("rerank_factor") = 4,
+            "Shortlists k * rerank_factor vectors by binary code Hamming distance and reranks them exactly. Returns (ids, distances).")
+        .def("has_binary_index", &MMapVectorStore::has_binary_index, "Whether sign codes for search_binary are available")
         .def("size", &MMapVectorStore::size, "Returns the number of vectors")
         .def("dimension", &MMapVectorStore::dimension, "Returns the dimension")
-        .def("contains", &MMapVectorStore::contains, py::arg("id"), "Checks if ID exists");
+        .def("element_type", &MMapVectorStore::element_type, "Returns the precision vectors are stored in")
+        .def("contains", &MMapVectorStore::contains, py::arg("id"), "Checks if ID exists")
+        .def("warmup", &MMapVectorStore::warmup, py::arg("fraction") = 1.0, py::call_guard<py::gil_scoped_release>(),
+            "Faults in the id sections and the first fraction of the vectors, blocking until they are resident")
+        .def("advise_sequential", &MMapVectorStore::advise_sequential,
+            "Readahead tuned for full scans (the default after opening)")
+        .def("advise_random", &MMapVectorStore::advise_random,
+            "Readahead off, for workloads dominated by get() or HNSW builds");
+
+    // Bind SegmentedVectorStore class (appendable, mmap segments plus a logged tail)
+    py::class_<SegmentedVectorStore>(m, "SegmentedVectorStore")
+        .def(py::init([](const std::string& directory, size_t dimension, DistanceMetric metric,
+                         ElementType element_type, size_t seal_rows, size_t merge_rows,
+                         bool background_compaction, bool sync_wal) {
+                SegmentedVectorStoreOptions options;
+                options.seal_rows = seal_rows;
+                options.merge_rows = merge_rows;
+                options.background_compaction = background_compaction;
+                options.sync_wal = sync_wal;
+                return std::make_unique<SegmentedVectorStore>(directory, dimension, metric, element_type, options);
+            }),
+            py::arg("directory"), py::arg("dimension"),
+            py::arg("metric") = DistanceMetric::L2,
+            py::arg("element_type") = ElementType::F32,
+            py::arg("seal_rows") = SegmentedVectorStoreOptions{}.seal_rows,
+            py::arg("merge_rows") = SegmentedVectorStoreOptions{}.merge_rows,
+            py::arg("background_compaction") = true,
+            py::arg("sync_wal") = false,
+            "Opens or creates a segmented vector store in directory")
+        .def("add", [](SegmentedVectorStore& self, uint64_t id, py::array_t<float, py::array::c_style | py::array::forcecast> vector_array) {
+                py::buffer_info buf = vector_array.request();
+                if (buf.ndim != 1) {
+                    throw std::runtime_error("Vector must be a 1-dimensional array");
+                }
+                if (static_cast<size_t>(buf.size) != self.dimension()) {
+                    throw std::runtime_error("Vector dimension mismatch");
+                }
+                py::gil_scoped_release release;
+                self.add(id, static_cast<const float*>(buf.ptr));
+            },
+            py::arg("id"), py::arg("vector"),
+            "Adds a vector to the tail, sealing it into a segment when full")
+        .def("update", [](SegmentedVectorStore& self, uint64_t id, py::array_t<float, py::array::c_style | py::array::forcecast> vector_array) {
+                py::buffer_info buf = vector_array.request();
+                if (buf.ndim != 1) {
+                    throw std::runtime_error("Vector must be a 1-dimensional array");
+                }
+                if (static_cast<size_t>(buf.size) != self.dimension()) {
+                    throw std::runtime_error("Vector dimension mismatch");
+                }
+                py::gil_scoped_release release;
+                return self.update(id, static_cast<const float*>(buf.ptr));
+            },
+            py::arg("id"), py::arg("vector"),
+            "Replaces a vector, returns False if the ID does not exist")
+        .def("remove", &SegmentedVectorStore::remove, py::arg("id"),
+             "Removes a vector (tombstoned if it is in a segment)")
+        .def("get", [](const SegmentedVectorStore& self, uint64_t id) -> py::object {
+                std::vector<float> vec = self.get_copy(id);
+                if (vec.empty()) {
+                    return py::none();
+                }
+                return py::array_t<float>(vec.size(), vec.data());
+            },
+            py::arg("id"),
+            "Gets a copy of a vector by ID, returns None if not found")
+        .def("search", [](const SegmentedVectorStore& self, py::array_t<float, py::array::c_style | py::array::forcecast> query_array, size_t k) {
+                py::buffer_info buf = query_array.request();
+                if (buf.ndim != 1) {
+                    throw std::runtime_error("Query vector must be a 1-dimensional array");
+                }
+                if (static_cast<size_t>(buf.size) != self.dimension()) {
+                    throw std::runtime_error("Query dimension mismatch");
+                }
+
+                std::vector<SearchResult> results;
+                {
+                    py::gil_scoped_release release;
+                    results = self.search(static_cast<const float*>(buf.ptr), k);
+                }
+
+                py::array_t<uint64_t> ids(static_cast<py::ssize_t>(results.size()));
+                py::array_t<float> dists(static_cast<py::ssize_t>(results.size()));
+                auto ids_ptr = ids.mutable_unchecked<1>();
+                auto dists_ptr = dists.mutable_unchecked<1>();
+
+                for (size_t i = 0; i < results.size(); ++i) {
+                    ids_ptr(i) = results[i].id;
+                    dists_ptr(i) = results[i].distance;
+                }
+
+                return py::make_tuple(ids, dists);
+            },
+            py::arg("query_vector"), py::arg("k"),
+            "Searches the tail and every segment for k nearest neighbors. Returns (ids, distances).")
+        .def("seal", &SegmentedVectorStore::seal, py::call_guard<py::gil_scoped_release>(),
+             "Writes the tail out as a new segment")
+        .def("compact", &SegmentedVectorStore::compact, py::call_guard<py::gil_scoped_release>(),
+             "Merges small or mostly deleted segments, returns whether anything was rewritten")
+        .def("sync", &SegmentedVectorStore::sync, "Flushes the write-ahead log to disk")
+        .def("size", &SegmentedVectorStore::size, "Returns the number of live vectors")
+        .def("dimension", &SegmentedVectorStore::dimension, "Returns the dimension")
+        .def("element_type", &SegmentedVectorStore::element_type, "Returns the precision vectors are stored in")
+        .def("segment_count", &SegmentedVectorStore::segment_count, "Returns the number of sealed segments")
+        .def("tail_size", &SegmentedVectorStore::tail_size, "Returns the number of vectors not yet sealed")
+        .def("contains", &SegmentedVectorStore::contains, py::arg("id"), "Checks if ID exists");
 }
\ No newline at end of file
@@ -0,0 +1,66 @@
+// QuiverDB - Copyright (c) 2025 Anton Tsvetkov - MIT License
+#pragma once
+#include "distance.h"
+#include <algorithm>
+#include <bit>
+#include <cstddef>
+#include <cstdint>
+#include <string_view>
+
+namespace quiverdb {
+
+// Binary quantization: one sign bit per dimension (set when the element is > 0), packed
+// little-endian into 64-bit words. Hamming distance between the codes tracks angular distance
+// closely enough to shortlist candidates that are then reranked with the full vectors, while
+// scanning dim / 8 bytes per row instead of dim * 4.
+inline size_t binary_words(size_t dim) noexcept { return (dim + 63) / 64; }
+
+inline void binarize(const float* v, uint64_t* out, size_t dim) noexcept {
+  size_t words = binary_words(dim);
+  for (size_t w = 0; w < words; ++w) {
+    uint64_t bits = 0;
+    size_t end = std::min(dim, (w + 1) * 64);
+    for (size_t j = w * 64; j < end; ++j) bits |= static_cast<uint64_t>(v[j] > 0.0f) << (j - w * 64);
+    out[w] = bits;
+  }
+}
+
+namespace detail {
+
+inline void hamming_distances_generic(const uint64_t* q, const uint64_t* rows, size_t words, size_t count,
+                                      uint32_t* out) noexcept {
+  for (size_t r = 0; r < count; ++r, rows += words) {
+    uint32_t d = 0;
+    for (size_t w = 0; w < words; ++w) d += static_cast<uint32_t>(std::popcount(q[w] ^ rows[w]));
+    out[r] = d;
+  }
+}
+
+#ifdef QUIVER_X86_DISPATCH
+// Same loop with the POPCNT instruction; the generic build has to emulate it with bit tricks
+QUIVER_TARGET("popcnt")
+inline void hamming_distances_popcnt(const uint64_t* q, const uint64_t* rows, size_t words, size_t count,
+                                     uint32_t* out) noexcept {
+  for (size_t r = 0; r < count; ++r, rows += words) {
+    uint32_t d = 0;
+    for (size_t w = 0; w < words; ++w) d += static_cast<uint32_t>(__builtin_popcountll(q[w] ^ rows[w]));
+    out[r] = d;
+  }
+}
+#endif
+
+} // namespace detail
+
+// Hamming distances from code q to count codes stored back to back (words each)
+inline void hamming_distances(const uint64_t* q, const uint64_t* rows, size_t words, size_t count,
+                              uint32_t* out) noexcept {
+#ifdef QUIVER_X86_DISPATCH
+  // Every x86 family above scalar implies POPCNT; QUIVERDB_KERNEL=scalar keeps the generic loop
+  static const bool use_popcnt =
+      std::string_view(active_kernel_name()) != "scalar" && __builtin_cpu_supports("popcnt");
+  if (use_popcnt) { detail::hamming_distances_popcnt(q, rows, words, count, out); return; }
+#endif
+  detail::hamming_distances_generic(q, rows, words, count, out);
+}
+
+} // namespace quiverdb
@@ -4,14 +4,34 @@
 #include <cassert>
 #include <cmath>
 #include <cstddef>
+#include <cstdlib>
+#include <string_view>
 
 #if defined(__ARM_NEON) || defined(__aarch64__)
 #include <arm_neon.h>
+#ifndef QUIVER_ARM_NEON
 #define QUIVER_ARM_NEON
+#endif
+#elif (defined(__x86_64__) || defined(__i386__)) && (defined(__GNUC__) || defined(__clang__))
+// Every x86 kernel family carries its own target attribute and the best one the CPU supports
+// is chosen at first use, so one binary built without -m flags runs at full width everywhere
+#include <immintrin.h>
+#define QUIVER_X86_DISPATCH
+#define QUIVER_TARGET(isa) __attribute__((target(isa)))
 #elif defined(__AVX2__)
 #include <immintrin.h>
+#ifndef QUIVER_AVX2
 #define QUIVER_AVX2
 #endif
+#endif
+
+#ifndef QUIVER_TARGET
+#define QUIVER_TARGET(isa)
+#endif
+
+#if defined(_MSC_VER) && (defined(_M_X64) || defined(_M_IX86))
+#include <xmmintrin.h>
+#endif
 
 #if defined(_MSC_VER)
 #define RESTRICT __restrict
@@ -21,6 +41,139 @@
 
 namespace quiverdb {
 
+// Hint the CPU to start pulling a vector into cache before it is needed
+inline void prefetch(const void* p) noexcept {
+#if defined(__GNUC__) || defined(__clang__)
+  __builtin_prefetch(p, 0, 3);
+#elif defined(_MSC_VER) && (defined(_M_X64) || defined(_M_IX86))
+  _mm_prefetch(static_cast<const char*>(p), _MM_HINT_T0);
+#else
+  (void)p;
+#endif
+}
+
+// One implementation of every distance kernel for a single instruction set. The x4 kernels
+// score one query against four vectors and write the results to out[0..3].
+struct DistanceKernels {
+  const char* name;
+  float (*l2_sq)(const float*, const float*, size_t) noexcept;
+  float (*dot_product)(const float*, const float*, size_t) noexcept;
+  float (*cosine_distance)(const float*, const float*, size_t) noexcept;
+  void (*l2_sq_x4)(const float*, const float*, const float*, const float*, const float*, size_t, float*) noexcept;
+  void (*dot_product_x4)(const float*, const float*, const float*, const float*, const float*, size_t, float*) noexcept;
+  void (*cosine_distance_x4)(const float*, const float*, const float*, const float*, const float*, size_t, float*) noexcept;
+};
+
+namespace detail {
+
+// Scalar loops shared by every family: the whole vector for the scalar kernels and the
+// leftover elements past the last full register for the SIMD ones
+
+inline float l2_sq_tail(const float* RESTRICT a, const float* RESTRICT b, size_t i, size_t n, float sum) noexcept {
+  for (; i < n; ++i) {
+    float d = a[i] - b[i];
+    sum += d * d;
+  }
+  return sum;
+}
+
+inline float dot_product_tail(const float* RESTRICT a, const float* RESTRICT b, size_t i, size_t n, float sum) noexcept {
+  for (; i < n; ++i)
+    sum += a[i] * b[i];
+  return sum;
+}
+
+inline float cosine_from_sums(float dot, float na, float nb) noexcept {
+  float denom = na * nb;
+  if (denom < 1e-12f) return 1.0f;
+  float sim = dot / sqrtf(denom);
+  return 1.0f - std::clamp(sim, -1.0f, 1.0f);
+}
+
+inline float cosine_distance_tail(const float* RESTRICT a, const float* RESTRICT b, size_t i, size_t n,
+                                  float dot, float na, float nb) noexcept {
+  for (; i < n; ++i) {
+    dot += a[i] * b[i];
+    na += a[i] * a[i];
+    nb += b[i] * b[i];
+  }
+  return cosine_from_sums(dot, na, nb);
+}
+
+inline void l2_sq_x4_tail(const float* RESTRICT q, const float* const v[4], size_t i, size_t n,
+                          float s[4], float* RESTRICT out) noexcept {
+  for (; i < n; ++i) {
+    float d0 = q[i] - v[0][i], d1 = q[i] - v[1][i], d2 = q[i] - v[2][i], d3 = q[i] - v[3][i];
+    s[0] += d0 * d0; s[1] += d1 * d1; s[2] += d2 * d2; s[3] += d3 * d3;
+  }
+  out[0] = s[0]; out[1] = s[1]; out[2] = s[2]; out[3] = s[3];
+}
+
+inline void dot_product_x4_tail(const float* RESTRICT q, const float* const v[4], size_t i, size_t n,
+                                float s[4], float* RESTRICT out) noexcept {
+  for (; i < n; ++i) {
+    s[0] += q[i] * v[0][i]; s[1] += q[i] * v[1][i]; s[2] += q[i] * v[2][i]; s[3] += q[i] * v[3][i];
+  }
+  out[0] = s[0]; out[1] = s[1]; out[2] = s[2]; out[3] = s[3];
+}
+
+inline void cosine_distance_x4_tail(const float* RESTRICT q, const float* const v[4], size_t i, size_t n,
+                                    float dot[4], float nb[4], float na, float* RESTRICT out) noexcept {
+  for (; i < n; ++i) {
+    na += q[i] * q[i];
+    for (int j = 0; j < 4; ++j) {
+      dot[j] += q[i] * v[j][i];
+      nb[j] += v[j][i] * v[j][i];
+    }
+  }
+  for (int j = 0; j < 4; ++j) out[j] = cosine_from_sums(dot[j], na, nb[j]);
+}
+
+// ---------------------------------------------------------------------------------------
+// Scalar
+// ---------------------------------------------------------------------------------------
+
+inline float l2_sq_scalar(const float* a, const float* b, size_t n) noexcept {
+  return l2_sq_tail(a, b, 0, n, 0.0f);
+}
+
+inline float dot_product_scalar(const float* a, const float* b, size_t n) noexcept {
+  return dot_product_tail(a, b, 0, n, 0.0f);
+}
+
+inline float cosine_distance_scalar(const float* a, const float* b, size_t n) noexcept {
+  return cosine_distance_tail(a, b, 0, n, 0.0f, 0.0f, 0.0f);
+}
+
+inline void l2_sq_x4_scalar(const float* q, const float* v0, const float* v1, const float* v2,
+                            const float* v3, size_t n, float* out) noexcept {
+  const float* v[4] = {v0, v1, v2, v3};
+  float s[4] = {0.0f, 0.0f, 0.0f, 0.0f};
+  l2_sq_x4_tail(q, v, 0, n, s, out);
+}
+
+inline void dot_product_x4_scalar(const float* q, const float* v0, const float* v1, const float* v2,
+                                  const float* v3, size_t n, float* out) noexcept {
+  const float* v[4] = {v0, v1, v2, v3};
+  float s[4] = {0.0f, 0.0f, 0.0f, 0.0f};
+  dot_product_x4_tail(q, v, 0, n, s, out);
+}
+
+inline void cosine_distance_x4_scalar(const float* q, const float* v0, const float* v1, const float* v2,
+                                      const float* v3, size_t n, float* out) noexcept {
+  const float* v[4] = {v0, v1, v2, v3};
+  float dot[4] = {0.0f, 0.0f, 0.0f, 0.0f}, nb[4] = {0.0f, 0.0f, 0.0f, 0.0f};
+  cosine_distance_x4_tail(q, v, 0, n, dot, nb, 0.0f, out);
+}
+
+inline constexpr DistanceKernels SCALAR_KERNELS{
+    "scalar", l2_sq_scalar, dot_product_scalar, cosine_distance_scalar,
+    l2_sq_x4_scalar, dot_product_x4_scalar, cosine_distance_x4_scalar};
+
+// ---------------------------------------------------------------------------------------
+// NEON (baseline on every ARM target QuiverDB builds for)
+// ---------------------------------------------------------------------------------------
+
 #ifdef QUIVER_ARM_NEON
 [[nodiscard]] inline float hsum(float32x4_t v) noexcept {
 #if defined(__aarch64__)
@@ -30,104 +183,491 @@ namespace quiverdb {
   return vget_lane_f32(vpadd_f32(r, r), 0);
 #endif
 }
-#endif
 
-#ifdef QUIVER_AVX2
-[[nodiscard]] inline float hsum(__m256 v) noexcept {
-  __m128 lo = _mm256_castps256_ps128(v);
-  __m128 hi = _mm256_extractf128_ps(v, 1);
-  lo = _mm_add_ps(lo, hi);
-  __m128 shuf = _mm_movehdup_ps(lo);
-  lo = _mm_add_ps(lo, shuf);
-  return _mm_cvtss_f32(_mm_add_ss(lo, _mm_movehl_ps(shuf, lo)));
+inline float l2_sq_neon(const float* a, const float* b, size_t n) noexcept {
+  float32x4_t acc = vdupq_n_f32(0.0f);
+  size_t i = 0;
+  for (; i + 4 <= n; i += 4) {
+    float32x4_t d = vsubq_f32(vld1q_f32(a + i), vld1q_f32(b + i));
+    acc = vmlaq_f32(acc, d, d);
+  }
+  return l2_sq_tail(a, b, i, n, hsum(acc));
 }
-#endif
 
-[[nodiscard]] inline float l2_sq(const float* RESTRICT a, const float* RESTRICT b, size_t n) noexcept {
-  assert(a && b);
-  float sum = 0.0f;
+inline float dot_product_neon(const float* a, const float* b, size_t n) noexcept {
+  float32x4_t acc = vdupq_n_f32(0.0f);
   size_t i = 0;
+  for (; i + 4 <= n; i += 4)
+    acc = vmlaq_f32(acc, vld1q_f32(a + i), vld1q_f32(b + i));
+  return dot_product_tail(a, b, i, n, hsum(acc));
+}
 
-#ifdef QUIVER_ARM_NEON
-  float32x4_t acc = vdupq_n_f32(0.0f);
+inline float cosine_distance_neon(const float* a, const float* b, size_t n) noexcept {
+  float32x4_t vdot = vdupq_n_f32(0.0f), vna = vdupq_n_f32(0.0f), vnb = vdupq_n_f32(0.0f);
+  size_t i = 0;
   for (; i + 4 <= n; i += 4) {
-    float32x4_t d = vsubq_f32(vld1q_f32(a + i), vld1q_f32(b + i));
-    acc = vmlaq_f32(acc, d, d);
+    float32x4_t va = vld1q_f32(a + i), vb = vld1q_f32(b + i);
+    vdot = vmlaq_f32(vdot, va, vb);
+    vna = vmlaq_f32(vna, va, va);
+    vnb = vmlaq_f32(vnb, vb, vb);
   }
-  sum = hsum(acc);
-#elif defined(QUIVER_AVX2)
-  __m256 acc = _mm256_setzero_ps();
-  for (; i + 8 <= n; i += 8) {
-    __m256 d = _mm256_sub_ps(_mm256_loadu_ps(a + i), _mm256_loadu_ps(b + i));
-    acc = _mm256_fmadd_ps(d, d, acc);
+  return cosine_distance_tail(a, b, i, n, hsum(vdot), hsum(vna), hsum(vnb));
+}
+
+inline void l2_sq_x4_neon(const float* q, const float* v0, const float* v1, const float* v2,
+                          const float* v3, size_t n, float* out) noexcept {
+  float32x4_t a0 = vdupq_n_f32(0.0f), a1 = vdupq_n_f32(0.0f), a2 = vdupq_n_f32(0.0f), a3 = vdupq_n_f32(0.0f);
+  size_t i = 0;
+  for (; i + 4 <= n; i += 4) {
+    float32x4_t x = vld1q_f32(q + i);
+    float32x4_t d0 = vsubq_f32(x, vld1q_f32(v0 + i)), d1 = vsubq_f32(x, vld1q_f32(v1 + i));
+    float32x4_t d2 = vsubq_f32(x, vld1q_f32(v2 + i)), d3 = vsubq_f32(x, vld1q_f32(v3 + i));
+    a0 = vmlaq_f32(a0, d0, d0); a1 = vmlaq_f32(a1, d1, d1);
+    a2 = vmlaq_f32(a2, d2, d2); a3 = vmlaq_f32(a3, d3, d3);
   }
-  sum = hsum(acc);
-#endif
+  const float* v[4] = {v0, v1, v2, v3};
+  float s[4] = {hsum(a0), hsum(a1), hsum(a2), hsum(a3)};
+  l2_sq_x4_tail(q, v, i, n, s, out);
+}
 
-  for (; i < n; ++i) {
-    float d = a[i] - b[i];
-    sum += d * d;
+inline void dot_product_x4_neon(const float* q, const float* v0, const float* v1, const float* v2,
+                                const float* v3, size_t n, float* out) noexcept {
+  float32x4_t a0 = vdupq_n_f32(0.0f), a1 = vdupq_n_f32(0.0f), a2 = vdupq_n_f32(0.0f), a3 = vdupq_n_f32(0.0f);
+  size_t i = 0;
+  for (; i + 4 <= n; i += 4) {
+    float32x4_t x = vld1q_f32(q + i);
+    a0 = vmlaq_f32(a0, x, vld1q_f32(v0 + i)); a1 = vmlaq_f32(a1, x, vld1q_f32(v1 + i));
+    a2 = vmlaq_f32(a2, x, vld1q_f32(v2 + i)); a3 = vmlaq_f32(a3, x, vld1q_f32(v3 + i));
   }
-  return sum;
+  const float* v[4] = {v0, v1, v2, v3};
+  float s[4] = {hsum(a0), hsum(a1), hsum(a2), hsum(a3)};
+  dot_product_x4_tail(q, v, i, n, s, out);
 }
 
-[[nodiscard]] inline float dot_product(const float* RESTRICT a, const float* RESTRICT b, size_t n) noexcept {
-  assert(a && b);
-  float sum = 0.0f;
+inline void cosine_distance_x4_neon(const float* q, const float* v0, const float* v1, const float* v2,
+                                    const float* v3, size_t n, float* out) noexcept {
+  float32x4_t vna = vdupq_n_f32(0.0f);
+  float32x4_t d0 = vdupq_n_f32(0.0f), d1 = vdupq_n_f32(0.0f), d2 = vdupq_n_f32(0.0f), d3 = vdupq_n_f32(0.0f);
+  float32x4_t n0 = vdupq_n_f32(0.0f), n1 = vdupq_n_f32(0.0f), n2 = vdupq_n_f32(0.0f), n3 = vdupq_n_f32(0.0f);
   size_t i = 0;
+  for (; i + 4 <= n; i += 4) {
+    float32x4_t x = vld1q_f32(q + i);
+    float32x4_t b0 = vld1q_f32(v0 + i), b1 = vld1q_f32(v1 + i), b2 = vld1q_f32(v2 + i), b3 = vld1q_f32(v3 + i);
+    vna = vmlaq_f32(vna, x, x);
+    d0 = vmlaq_f32(d0, x, b0); d1 = vmlaq_f32(d1, x, b1); d2 = vmlaq_f32(d2, x, b2); d3 = vmlaq_f32(d3, x, b3);
+    n0 = vmlaq_f32(n0, b0, b0); n1 = vmlaq_f32(n1, b1, b1); n2 = vmlaq_f32(n2, b2, b2); n3 = vmlaq_f32(n3, b3, b3);
+  }
+  const float* v[4] = {v0, v1, v2, v3};
+  float dot[4] = {hsum(d0), hsum(d1), hsum(d2), hsum(d3)};
+  float nb[4] = {hsum(n0), hsum(n1), hsum(n2), hsum(n3)};
+  cosine_distance_x4_tail(q, v, i, n, dot, nb, hsum(vna), out);
+}
 
-#ifdef QUIVER_ARM_NEON
-  float32x4_t acc = vdupq_n_f32(0.0f);
-  for (; i + 4 <= n; i += 4)
-    acc = vmlaq_f32(acc, vld1q_f32(a + i), vld1q_f32(b + i));
-  sum = hsum(acc);
-#elif defined(QUIVER_AVX2)
-  __m256 acc = _mm256_setzero_ps();
-  for (; i + 8 <= n; i += 8)
-    acc = _mm256_fmadd_ps(_mm256_loadu_ps(a + i), _mm256_loadu_ps(b + i), acc);
-  sum = hsum(acc);
+inline constexpr DistanceKernels NEON_KERNELS{
+    "neon", l2_sq_neon, dot_product_neon, cosine_distance_neon,
+    l2_sq_x4_neon, dot_product_x4_neon, cosine_distance_x4_neon};
 #endif
 
-  for (; i < n; ++i)
-    sum += a[i] * b[i];
-  return sum;
+// ---------------------------------------------------------------------------------------
+// SSE4.1 (4 lanes, no FMA)
+// ---------------------------------------------------------------------------------------
+
+#ifdef QUIVER_X86_DISPATCH
+QUIVER_TARGET("sse4.1") inline float hsum(__m128 v) noexcept {
+  __m128 shuf = _mm_movehdup_ps(v);
+  __m128 sums = _mm_add_ps(v, shuf);
+  return _mm_cvtss_f32(_mm_add_ss(sums, _mm_movehl_ps(shuf, sums)));
 }
 
-[[nodiscard]] inline float cosine_distance(const float* RESTRICT a, const float* RESTRICT b, size_t n) noexcept {
-  assert(a && b);
-  float dot = 0.0f, na = 0.0f, nb = 0.0f;
+QUIVER_TARGET("sse4.1") inline float l2_sq_sse4(const float* a, const float* b, size_t n) noexcept {
+  __m128 acc = _mm_setzero_ps();
   size_t i = 0;
+  for (; i + 4 <= n; i += 4) {
+    __m128 d = _mm_sub_ps(_mm_loadu_ps(a + i), _mm_loadu_ps(b + i));
+    acc = _mm_add_ps(acc, _mm_mul_ps(d, d));
+  }
+  return l2_sq_tail(a, b, i, n, hsum(acc));
+}
 
-#ifdef QUIVER_ARM_NEON
-  float32x4_t vdot = vdupq_n_f32(0.0f), vna = vdupq_n_f32(0.0f), vnb = vdupq_n_f32(0.0f);
+QUIVER_TARGET("sse4.1") inline float dot_product_sse4(const float* a, const float* b, size_t n) noexcept {
+  __m128 acc = _mm_setzero_ps();
+  size_t i = 0;
+  for (; i + 4 <= n; i += 4)
+    acc = _mm_add_ps(acc, _mm_mul_ps(_mm_loadu_ps(a + i), _mm_loadu_ps(b + i)));
+  return dot_product_tail(a, b, i, n, hsum(acc));
+}
+
+QUIVER_TARGET("sse4.1") inline float cosine_distance_sse4(const float* a, const float* b, size_t n) noexcept {
+  __m128 vdot = _mm_setzero_ps(), vna = _mm_setzero_ps(), vnb = _mm_setzero_ps();
+  size_t i = 0;
   for (; i + 4 <= n; i += 4) {
-    float32x4_t va = vld1q_f32(a + i), vb = vld1q_f32(b + i);
-    vdot = vmlaq_f32(vdot, va, vb);
-    vna = vmlaq_f32(vna, va, va);
-    vnb = vmlaq_f32(vnb, vb, vb);
+    __m128 va = _mm_loadu_ps(a + i), vb = _mm_loadu_ps(b + i);
+    vdot = _mm_add_ps(vdot, _mm_mul_ps(va, vb));
+    vna = _mm_add_ps(vna, _mm_mul_ps(va, va));
+    vnb = _mm_add_ps(vnb, _mm_mul_ps(vb, vb));
   }
-  dot = hsum(vdot); na = hsum(vna); nb = hsum(vnb);
-#elif defined(QUIVER_AVX2)
+  return cosine_distance_tail(a, b, i, n, hsum(vdot), hsum(vna), hsum(vnb));
+}
+
+QUIVER_TARGET("sse4.1") inline void l2_sq_x4_sse4(const float* q, const float* v0, const float* v1,
+                                                  const float* v2, const float* v3, size_t n, float* out) noexcept {
+  __m128 a0 = _mm_setzero_ps(), a1 = _mm_setzero_ps(), a2 = _mm_setzero_ps(), a3 = _mm_setzero_ps();
+  size_t i = 0;
+  for (; i + 4 <= n; i += 4) {
+    __m128 x = _mm_loadu_ps(q + i);
+    __m128 d0 = _mm_sub_ps(x, _mm_loadu_ps(v0 + i)), d1 = _mm_sub_ps(x, _mm_loadu_ps(v1 + i));
+    __m128 d2 = _mm_sub_ps(x, _mm_loadu_ps(v2 + i)), d3 = _mm_sub_ps(x, _mm_loadu_ps(v3 + i));
+    a0 = _mm_add_ps(a0, _mm_mul_ps(d0, d0)); a1 = _mm_add_ps(a1, _mm_mul_ps(d1, d1));
+    a2 = _mm_add_ps(a2, _mm_mul_ps(d2, d2)); a3 = _mm_add_ps(a3, _mm_mul_ps(d3, d3));
+  }
+  const float* v[4] = {v0, v1, v2, v3};
+  float s[4] = {hsum(a0), hsum(a1), hsum(a2), hsum(a3)};
+  l2_sq_x4_tail(q, v, i, n, s, out);
+}
+
+QUIVER_TARGET("sse4.1") inline void dot_product_x4_sse4(const float* q, const float* v0, const float* v1,
+                                                        const float* v2, const float* v3, size_t n, float* out) noexcept {
+  __m128 a0 = _mm_setzero_ps(), a1 = _mm_setzero_ps(), a2 = _mm_setzero_ps(), a3 = _mm_setzero_ps();
+  size_t i = 0;
+  for (; i + 4 <= n; i += 4) {
+    __m128 x = _mm_loadu_ps(q + i);
+    a0 = _mm_add_ps(a0, _mm_mul_ps(x, _mm_loadu_ps(v0 + i))); a1 = _mm_add_ps(a1, _mm_mul_ps(x, _mm_loadu_ps(v1 + i)));
+    a2 = _mm_add_ps(a2, _mm_mul_ps(x, _mm_loadu_ps(v2 + i))); a3 = _mm_add_ps(a3, _mm_mul_ps(x, _mm_loadu_ps(v3 + i)));
+  }
+  const float* v[4] = {v0, v1, v2, v3};
+  float s[4] = {hsum(a0), hsum(a1), hsum(a2), hsum(a3)};
+  dot_product_x4_tail(q, v, i, n, s, out);
+}
+
+QUIVER_TARGET("sse4.1") inline void cosine_distance_x4_sse4(const float* q, const float* v0, const float* v1,
+                                                            const float* v2, const float* v3, size_t n, float* out) noexcept {
+  __m128 vna = _mm_setzero_ps();
+  __m128 d0 = _mm_setzero_ps(), d1 = _mm_setzero_ps(), d2 = _mm_setzero_ps(), d3 = _mm_setzero_ps();
+  __m128 n0 = _mm_setzero_ps(), n1 = _mm_setzero_ps(), n2 = _mm_setzero_ps(), n3 = _mm_setzero_ps();
+  size_t i = 0;
+  for (; i + 4 <= n; i += 4) {
+    __m128 x = _mm_loadu_ps(q + i);
+    __m128 b0 = _mm_loadu_ps(v0 + i), b1 = _mm_loadu_ps(v1 + i), b2 = _mm_loadu_ps(v2 + i), b3 = _mm_loadu_ps(v3 + i);
+    vna = _mm_add_ps(vna, _mm_mul_ps(x, x));
+    d0 = _mm_add_ps(d0, _mm_mul_ps(x, b0)); d1 = _mm_add_ps(d1, _mm_mul_ps(x, b1));
+    d2 = _mm_add_ps(d2, _mm_mul_ps(x, b2)); d3 = _mm_add_ps(d3, _mm_mul_ps(x, b3));
+    n0 = _mm_add_ps(n0, _mm_mul_ps(b0, b0)); n1 = _mm_add_ps(n1, _mm_mul_ps(b1, b1));
+    n2 = _mm_add_ps(n2, _mm_mul_ps(b2, b2)); n3 = _mm_add_ps(n3, _mm_mul_ps(b3, b3));
+  }
+  const float* v[4] = {v0, v1, v2, v3};
+  float dot[4] = {hsum(d0), hsum(d1), hsum(d2), hsum(d3)};
+  float nb[4] = {hsum(n0), hsum(n1), hsum(n2), hsum(n3)};
+  cosine_distance_x4_tail(q, v, i, n, dot, nb, hsum(vna), out);
+}
+
+inline constexpr DistanceKernels SSE4_KERNELS{
+    "sse4", l2_sq_sse4, dot_product_sse4, cosine_distance_sse4,
+    l2_sq_x4_sse4, dot_product_x4_sse4, cosine_distance_x4_sse4};
+#endif
+
+// ---------------------------------------------------------------------------------------
+// AVX2 + FMA (runtime-selected with GCC/Clang, compile-time with MSVC /arch:AVX2)
+// ---------------------------------------------------------------------------------------
+
+#if defined(QUIVER_X86_DISPATCH) || defined(QUIVER_AVX2)
+QUIVER_TARGET("avx2,fma") inline float hsum(__m256 v) noexcept {
+  __m128 lo = _mm256_castps256_ps128(v);
+  __m128 hi = _mm256_extractf128_ps(v, 1);
+  lo = _mm_add_ps(lo, hi);
+  __m128 shuf = _mm_movehdup_ps(lo);
+  lo = _mm_add_ps(lo, shuf);
+  return _mm_cvtss_f32(_mm_add_ss(lo, _mm_movehl_ps(shuf, lo)));
+}
+
+QUIVER_TARGET("avx2,fma") inline float l2_sq_avx2(const float* a, const float* b, size_t n) noexcept {
+  __m256 acc = _mm256_setzero_ps();
+  size_t i = 0;
+  for (; i + 8 <= n; i += 8) {
+    __m256 d = _mm256_sub_ps(_mm256_loadu_ps(a + i), _mm256_loadu_ps(b + i));
+    acc = _mm256_fmadd_ps(d, d, acc);
+  }
+  return l2_sq_tail(a, b, i, n, hsum(acc));
+}
+
+QUIVER_TARGET("avx2,fma") inline float dot_product_avx2(const float* a, const float* b, size_t n) noexcept {
+  __m256 acc = _mm256_setzero_ps();
+  size_t i = 0;
+  for (; i + 8 <= n; i += 8)
+    acc = _mm256_fmadd_ps(_mm256_loadu_ps(a + i), _mm256_loadu_ps(b + i), acc);
+  return dot_product_tail(a, b, i, n, hsum(acc));
+}
+
+QUIVER_TARGET("avx2,fma") inline float cosine_distance_avx2(const float* a, const float* b, size_t n) noexcept {
   __m256 vdot = _mm256_setzero_ps(), vna = _mm256_setzero_ps(), vnb = _mm256_setzero_ps();
+  size_t i = 0;
   for (; i + 8 <= n; i += 8) {
     __m256 va = _mm256_loadu_ps(a + i), vb = _mm256_loadu_ps(b + i);
     vdot = _mm256_fmadd_ps(va, vb, vdot);
     vna = _mm256_fmadd_ps(va, va, vna);
     vnb = _mm256_fmadd_ps(vb, vb, vnb);
   }
-  dot = hsum(vdot); na = hsum(vna); nb = hsum(vnb);
+  return cosine_distance_tail(a, b, i, n, hsum(vdot), hsum(vna), hsum(vnb));
+}
+
+QUIVER_TARGET("avx2,fma") inline void l2_sq_x4_avx2(const float* q, const float* v0, const float* v1,
+                                                    const float* v2, const float* v3, size_t n, float* out) noexcept {
+  __m256 a0 = _mm256_setzero_ps(), a1 = _mm256_setzero_ps(), a2 = _mm256_setzero_ps(), a3 = _mm256_setzero_ps();
+  size_t i = 0;
+  for (; i + 8 <= n; i += 8) {
+    __m256 x = _mm256_loadu_ps(q + i);
+    __m256 d0 = _mm256_sub_ps(x, _mm256_loadu_ps(v0 + i)), d1 = _mm256_sub_ps(x, _mm256_loadu_ps(v1 + i));
+    __m256 d2 = _mm256_sub_ps(x, _mm256_loadu_ps(v2 + i)), d3 = _mm256_sub_ps(x, _mm256_loadu_ps(v3 + i));
+    a0 = _mm256_fmadd_ps(d0, d0, a0); a1 = _mm256_fmadd_ps(d1, d1, a1);
+    a2 = _mm256_fmadd_ps(d2, d2, a2); a3 = _mm256_fmadd_ps(d3, d3, a3);
+  }
+  const float* v[4] = {v0, v1, v2, v3};
+  float s[4] = {hsum(a0), hsum(a1), hsum(a2), hsum(a3)};
+  l2_sq_x4_tail(q, v, i, n, s, out);
+}
+
+QUIVER_TARGET("avx2,fma") inline void dot_product_x4_avx2(const float* q, const float* v0, const float* v1,
+                                                          const float* v2, const float* v3, size_t n, float* out) noexcept {
+  __m256 a0 = _mm256_setzero_ps(), a1 = _mm256_setzero_ps(), a2 = _mm256_setzero_ps(), a3 = _mm256_setzero_ps();
+  size_t i = 0;
+  for (; i + 8 <= n; i += 8) {
+    __m256 x = _mm256_loadu_ps(q + i);
+    a0 = _mm256_fmadd_ps(x, _mm256_loadu_ps(v0 + i), a0); a1 = _mm256_fmadd_ps(x, _mm256_loadu_ps(v1 + i), a1);
+    a2 = _mm256_fmadd_ps(x, _mm256_loadu_ps(v2 + i), a2); a3 = _mm256_fmadd_ps(x, _mm256_loadu_ps(v3 + i), a3);
+  }
+  const float* v[4] = {v0, v1, v2, v3};
+  float s[4] = {hsum(a0), hsum(a1), hsum(a2), hsum(a3)};
+  dot_product_x4_tail(q, v, i, n, s, out);
+}
+
+QUIVER_TARGET("avx2,fma") inline void cosine_distance_x4_avx2(const float* q, const float* v0, const float* v1,
+                                                              const float* v2, const float* v3, size_t n, float* out) noexcept {
+  __m256 vna = _mm256_setzero_ps();
+  __m256 d0 = _mm256_setzero_ps(), d1 = _mm256_setzero_ps(), d2 = _mm256_setzero_ps(), d3 = _mm256_setzero_ps();
+  __m256 n0 = _mm256_setzero_ps(), n1 = _mm256_setzero_ps(), n2 = _mm256_setzero_ps(), n3 = _mm256_setzero_ps();
+  size_t i = 0;
+  for (; i + 8 <= n; i += 8) {
+    __m256 x = _mm256_loadu_ps(q + i);
+    __m256 b0 = _mm256_loadu_ps(v0 + i), b1 = _mm256_loadu_ps(v1 + i);
+    __m256 b2 = _mm256_loadu_ps(v2 + i), b3 = _mm256_loadu_ps(v3 + i);
+    vna = _mm256_fmadd_ps(x, x, vna);
+    d0 = _mm256_fmadd_ps(x, b0, d0); d1 = _mm256_fmadd_ps(x, b1, d1);
+    d2 = _mm256_fmadd_ps(x, b2, d2); d3 = _mm256_fmadd_ps(x, b3, d3);
+    n0 = _mm256_fmadd_ps(b0, b0, n0); n1 = _mm256_fmadd_ps(b1, b1, n1);
+    n2 = _mm256_fmadd_ps(b2, b2, n2); n3 = _mm256_fmadd_ps(b3, b3, n3);
+  }
+  const float* v[4] = {v0, v1, v2, v3};
+  float dot[4] = {hsum(d0), hsum(d1), hsum(d2), hsum(d3)};
+  float nb[4] = {hsum(n0), hsum(n1), hsum(n2), hsum(n3)};
+  cosine_distance_x4_tail(q, v, i, n, dot, nb, hsum(vna), out);
+}
+
+inline constexpr DistanceKernels AVX2_KERNELS{
+    "avx2", l2_sq_avx2, dot_product_avx2, cosine_distance_avx2,
+    l2_sq_x4_avx2, dot_product_x4_avx2, cosine_distance_x4_avx2};
 #endif
 
-  for (; i < n; ++i) {
-    dot += a[i] * b[i];
-    na += a[i] * a[i];
-    nb += b[i] * b[i];
+// ---------------------------------------------------------------------------------------
+// AVX-512F (16 lanes; the last partial chunk is a masked load instead of a scalar loop)
+// ---------------------------------------------------------------------------------------
+
+#ifdef QUIVER_X86_DISPATCH
+#if defined(__GNUC__) && !defined(__clang__)
+// GCC 12's AVX-512 headers seed some intrinsics with self-initialized temporaries and
+// trip -Wuninitialized once they are inlined here (GCC PR 105593)
+#pragma GCC diagnostic push
+#pragma GCC diagnostic ignored "-Wuninitialized"
+#pragma GCC diagnostic ignored "-Wmaybe-uninitialized"
+#endif
+QUIVER_TARGET("avx512f") inline float hsum(__m512 v) noexcept { return _mm512_reduce_add_ps(v); }
+
+QUIVER_TARGET("avx512f") inline __mmask16 tail_mask(size_t remaining) noexcept {
+  return static_cast<__mmask16>((1u << remaining) - 1);
+}
+
+QUIVER_TARGET("avx512f") inline float l2_sq_avx512(const float* a, const float* b, size_t n) noexcept {
+  __m512 acc = _mm512_setzero_ps();
+  for (size_t i = 0; i < n; i += 16) {
+    __mmask16 m = i + 16 <= n ? static_cast<__mmask16>(0xFFFF) : tail_mask(n - i);
+    __m512 d = _mm512_sub_ps(_mm512_maskz_loadu_ps(m, a + i), _mm512_maskz_loadu_ps(m, b + i));
+    acc = _mm512_fmadd_ps(d, d, acc);
   }
+  return hsum(acc);
+}
 
-  float denom = na * nb;
-  if (denom < 1e-12f) return 1.0f;
-  float sim = dot / sqrtf(denom);
-  return 1.0f - std::clamp(sim, -1.0f, 1.0f);
+QUIVER_TARGET("avx512f") inline float dot_product_avx512(const float* a, const float* b, size_t n) noexcept {
+  __m512 acc = _mm512_setzero_ps();
+  for (size_t i = 0; i < n; i += 16) {
+    __mmask16 m = i + 16 <= n ? static_cast<__mmask16>(0xFFFF) : tail_mask(n - i);
+    acc = _mm512_fmadd_ps(_mm512_maskz_loadu_ps(m, a + i), _mm512_maskz_loadu_ps(m, b + i), acc);
+  }
+  return hsum(acc);
+}
+
+QUIVER_TARGET("avx512f") inline float cosine_distance_avx512(const float* a, const float* b, size_t n) noexcept {
+  __m512 vdot = _mm512_setzero_ps(), vna = _mm512_setzero_ps(), vnb = _mm512_setzero_ps();
+  for (size_t i = 0; i < n; i += 16) {
+    __mmask16 m = i + 16 <= n ? static_cast<__mmask16>(0xFFFF) : tail_mask(n - i);
+    __m512 va = _mm512_maskz_loadu_ps(m, a + i), vb = _mm512_maskz_loadu_ps(m, b + i);
+    vdot = _mm512_fmadd_ps(va, vb, vdot);
+    vna = _mm512_fmadd_ps(va, va, vna);
+    vnb = _mm512_fmadd_ps(vb, vb, vnb);
+  }
+  return cosine_from_sums(hsum(vdot), hsum(vna), hsum(vnb));
+}
+
+QUIVER_TARGET("avx512f") inline void l2_sq_x4_avx512(const float* q, const float* v0, const float* v1,
+                                                     const float* v2, const float* v3, size_t n, float* out) noexcept {
+  __m512 a0 = _mm512_setzero_ps(), a1 = _mm512_setzero_ps(), a2 = _mm512_setzero_ps(), a3 = _mm512_setzero_ps();
+  for (size_t i = 0; i < n; i += 16) {
+    __mmask16 m = i + 16 <= n ? static_cast<__mmask16>(0xFFFF) : tail_mask(n - i);
+    __m512 x = _mm512_maskz_loadu_ps(m, q + i);
+    __m512 d0 = _mm512_sub_ps(x, _mm512_maskz_loadu_ps(m, v0 + i)), d1 = _mm512_sub_ps(x, _mm512_maskz_loadu_ps(m, v1 + i));
+    __m512 d2 = _mm512_sub_ps(x, _mm512_maskz_loadu_ps(m, v2 + i)), d3 = _mm512_sub_ps(x, _mm512_maskz_loadu_ps(m, v3 + i));
+    a0 = _mm512_fmadd_ps(d0, d0, a0); a1 = _mm512_fmadd_ps(d1, d1, a1);
+    a2 = _mm512_fmadd_ps(d2, d2, a2); a3 = _mm512_fmadd_ps(d3, d3, a3);
+  }
+  out[0] = hsum(a0); out[1] = hsum(a1);
+  out[2] = hsum(a2); out[3] = hsum(a3);
+}
+
+QUIVER_TARGET("avx512f") inline void dot_product_x4_avx512(const float* q, const float* v0, const float* v1,
+                                                           const float* v2, const float* v3, size_t n, float* out) noexcept {
+  __m512 a0 = _mm512_setzero_ps(), a1 = _mm512_setzero_ps(), a2 = _mm512_setzero_ps(), a3 = _mm512_setzero_ps();
+  for (size_t i = 0; i < n; i += 16) {
+    __mmask16 m = i + 16 <= n ? static_cast<__mmask16>(0xFFFF) : tail_mask(n - i);
+    __m512 x = _mm512_maskz_loadu_ps(m, q + i);
+    a0 = _mm512_fmadd_ps(x, _mm512_maskz_loadu_ps(m, v0 + i), a0); a1 = _mm512_fmadd_ps(x, _mm512_maskz_loadu_ps(m, v1 + i), a1);
+    a2 = _mm512_fmadd_ps(x, _mm512_maskz_loadu_ps(m, v2 + i), a2); a3 = _mm512_fmadd_ps(x, _mm512_maskz_loadu_ps(m, v3 + i), a3);
+  }
+  out[0] = hsum(a0); out[1] = hsum(a1);
+  out[2] = hsum(a2); out[3] = hsum(a3);
+}
+
+QUIVER_TARGET("avx512f") inline void cosine_distance_x4_avx512(const float* q, const float* v0, const float* v1,
+                                                               const float* v2, const float* v3, size_t n, float* out) noexcept {
+  __m512 vna = _mm512_setzero_ps();
+  __m512 d0 = _mm512_setzero_ps(), d1 = _mm512_setzero_ps(), d2 = _mm512_setzero_ps(), d3 = _mm512_setzero_ps();
+  __m512 n0 = _mm512_setzero_ps(), n1 = _mm512_setzero_ps(), n2 = _mm512_setzero_ps(), n3 = _mm512_setzero_ps();
+  for (size_t i = 0; i < n; i += 16) {
+    __mmask16 m = i + 16 <= n ? static_cast<__mmask16>(0xFFFF) : tail_mask(n - i);
+    __m512 x = _mm512_maskz_loadu_ps(m, q + i);
+    __m512 b0 = _mm512_maskz_loadu_ps(m, v0 + i), b1 = _mm512_maskz_loadu_ps(m, v1 + i);
+    __m512 b2 = _mm512_maskz_loadu_ps(m, v2 + i), b3 = _mm512_maskz_loadu_ps(m, v3 + i);
+    vna = _mm512_fmadd_ps(x, x, vna);
+    d0 = _mm512_fmadd_ps(x, b0, d0); d1 = _mm512_fmadd_ps(x, b1, d1);
+    d2 = _mm512_fmadd_ps(x, b2, d2); d3 = _mm512_fmadd_ps(x, b3, d3);
+    n0 = _mm512_fmadd_ps(b0, b0, n0); n1 = _mm512_fmadd_ps(b1, b1, n1);
+    n2 = _mm512_fmadd_ps(b2, b2, n2); n3 = _mm512_fmadd_ps(b3, b3, n3);
+  }
+  float na = hsum(vna);
+  out[0] = cosine_from_sums(hsum(d0), na, hsum(n0));
+  out[1] = cosine_from_sums(hsum(d1), na, hsum(n1));
+  out[2] = cosine_from_sums(hsum(d2), na, hsum(n2));
+  out[3] = cosine_from_sums(hsum(d3), na, hsum(n3));
+}
+
+inline constexpr DistanceKernels AVX512_KERNELS{
+    "avx512", l2_sq_avx512, dot_product_avx512, cosine_distance_avx512,
+    l2_sq_x4_avx512, dot_product_x4_avx512, cosine_distance_x4_avx512};
+
+#if defined(__GNUC__) && !defined(__clang__)
+#pragma GCC diagnostic pop
+#endif
+#endif
+
+} // namespace detail
+
+// The kernel family called `name` ("scalar", "sse4", "avx2", "avx512", "neon"), or nullptr if
+// it is not compiled into this build or the CPU cannot run it
+inline const DistanceKernels* distance_kernels(std::string_view name) noexcept {
+  if (name == detail::SCALAR_KERNELS.name) return &detail::SCALAR_KERNELS;
+#ifdef QUIVER_ARM_NEON
+  if (name == detail::NEON_KERNELS.name) return &detail::NEON_KERNELS;
+#endif
+#ifdef QUIVER_X86_DISPATCH
+  __builtin_cpu_init();
+  if (name == detail::SSE4_KERNELS.name && __builtin_cpu_supports("sse4.1")) return &detail::SSE4_KERNELS;
+  if (name == detail::AVX2_KERNELS.name && __builtin_cpu_supports("avx2") && __builtin_cpu_supports("fma"))
+    return &detail::AVX2_KERNELS;
+  if (name == detail::AVX512_KERNELS.name && __builtin_cpu_supports("avx512f")) return &detail::AVX512_KERNELS;
+#elif defined(QUIVER_AVX2)
+  if (name == detail::AVX2_KERNELS.name) return &detail::AVX2_KERNELS;
+#endif
+  return nullptr;
+}
+
+// Kernels used by the distance functions below: the widest family the CPU supports, chosen
+// once on first use. The QUIVERDB_KERNEL environment variable can name a narrower family
+// (e.g. to compare paths on one machine); unknown or unsupported names are ignored.
+inline const DistanceKernels& active_kernels() noexcept {
+  static const DistanceKernels& kernels = []() -> const DistanceKernels& {
+#if defined(_MSC_VER)
+#pragma warning(suppress : 4996)
+#endif
+    if (const char* forced = std::getenv("QUIVERDB_KERNEL"))
+      if (const DistanceKernels* k = distance_kernels(forced)) return *k;
+    for (const char* name : {"avx512", "avx2", "sse4", "neon"})
+      if (const DistanceKernels* k = distance_kernels(name)) return *k;
+    return detail::SCALAR_KERNELS;
+  }();
+  return kernels;
+}
+
+inline const char* active_kernel_name() noexcept { return active_kernels().name; }
+
+[[nodiscard]] inline float l2_sq(const float* RESTRICT a, const float* RESTRICT b, size_t n) noexcept {
+  assert(a && b);
+  return active_kernels().l2_sq(a, b, n);
+}
+
+[[nodiscard]] inline float dot_product(const float* RESTRICT a, const float* RESTRICT b, size_t n) noexcept {
+  assert(a && b);
+  return active_kernels().dot_product(a, b, n);
+}
+
+[[nodiscard]] inline float cosine_distance(const float* RESTRICT a, const float* RESTRICT b, size_t n) noexcept {
+  assert(a && b);
+  return active_kernels().cosine_distance(a, b, n);
+}
+
+// Cosine distance of two unit-length vectors, given their dot product
+[[nodiscard]] inline float unit_cosine_distance(float dot) noexcept {
+  return 1.0f - std::clamp(dot, -1.0f, 1.0f);
+}
+
+// Writes v / |v| to out (which may be v itself) and returns |v|; a zero vector stays zero.
+// Cosine stores keep rows in this form, which turns every comparison into one dot product.
+inline float normalize(const float* v, float* out, size_t n) noexcept {
+  assert(v && out);
+  float norm = std::sqrt(active_kernels().dot_product(v, v, n));
+  float inv = norm > 0.0f ? 1.0f / norm : 0.0f;
+  for (size_t i = 0; i < n; ++i) out[i] = v[i] * inv;
+  return norm;
+}
+
+// Batched kernels: one query against four vectors. Each query chunk is loaded once and
+// reused for all four rows, and the four independent accumulators keep the FMA pipes busy
+// while the (often cold) rows stream in. Results are written to out[0..3].
+
+inline void l2_sq_x4(const float* RESTRICT q, const float* RESTRICT v0, const float* RESTRICT v1,
+                     const float* RESTRICT v2, const float* RESTRICT v3, size_t n,
+                     float* RESTRICT out) noexcept {
+  assert(q && v0 && v1 && v2 && v3 && out);
+  active_kernels().l2_sq_x4(q, v0, v1, v2, v3, n, out);
+}
+
+inline void dot_product_x4(const float* RESTRICT q, const float* RESTRICT v0, const float* RESTRICT v1,
+                           const float* RESTRICT v2, const float* RESTRICT v3, size_t n,
+                           float* RESTRICT out) noexcept {
+  assert(q && v0 && v1 && v2 && v3 && out);
+  active_kernels().dot_product_x4(q, v0, v1, v2, v3, n, out);
+}
+
+inline void cosine_distance_x4(const float* RESTRICT q, const float* RESTRICT v0, const float* RESTRICT v1,
+                               const float* RESTRICT v2, const float* RESTRICT v3, size_t n,
+                               float* RESTRICT out) noexcept {
+  assert(q && v0 && v1 && v2 && v3 && out);
+  active_kernels().cosine_distance_x4(q, v0, v1, v2, v3, n, out);
 }
 
 } // namespace quiverdb
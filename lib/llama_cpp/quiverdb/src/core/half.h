@@ -0,0 +1,341 @@
+// QuiverDB - Copyright (c) 2025 Anton Tsvetkov - MIT License
+#pragma once
+#include "distance.h"
+#include <cstddef>
+#include <cstdint>
+#include <cstring>
+#include <string_view>
+
+namespace quiverdb {
+
+// Precision a store keeps its rows in. Queries are always FP32; FP16 and BF16 rows are
+// widened inside the distance kernels, so they take half the memory and bandwidth of FP32.
+enum class ElementType { F32, F16, BF16 };
+
+inline size_t element_size(ElementType type) noexcept { return type == ElementType::F32 ? 4 : 2; }
+
+// IEEE 754 binary32 -> binary16, rounding to nearest even; out-of-range values become infinity
+inline uint16_t fp32_to_fp16(float f) noexcept {
+  uint32_t x;
+  std::memcpy(&x, &f, 4);
+  uint32_t sign = (x >> 16) & 0x8000u, abs = x & 0x7FFFFFFFu;
+  if (abs >= 0x7F800000u) return static_cast<uint16_t>(sign | 0x7C00u | (abs > 0x7F800000u ? 0x200u : 0u));
+  if (abs >= 0x477FF000u) return static_cast<uint16_t>(sign | 0x7C00u);  // Rounds past 65504
+  if (abs < 0x38800000u) {
+    // Subnormal or zero: adding 0.5 lines the 2^-24 steps up with the last mantissa bit and
+    // lets the FPU do the rounding
+    float a;
+    std::memcpy(&a, &abs, 4);
+    a += 0.5f;
+    uint32_t r;
+    std::memcpy(&r, &a, 4);
+    return static_cast<uint16_t>(sign | (r - 0x3F000000u));
+  }
+  abs += 0xC8000FFFu + ((abs >> 13) & 1u);  // Rebias the exponent (-112) and round to nearest even
+  return static_cast<uint16_t>(sign | (abs >> 13));
+}
+
+inline float fp16_to_fp32(uint16_t h) noexcept {
+  uint32_t sign = static_cast<uint32_t>(h & 0x8000u) << 16;
+  uint32_t exp = (h >> 10) & 0x1Fu, mant = h & 0x3FFu, x;
+  if (exp == 0x1F) x = sign | 0x7F800000u | (mant << 13);
+  else if (exp != 0) x = sign | ((exp + 112) << 23) | (mant << 13);
+  else {
+    float v = static_cast<float>(mant) * 5.9604644775390625e-8f;  // mant * 2^-24
+    std::memcpy(&x, &v, 4);
+    x |= sign;
+  }
+  float f;
+  std::memcpy(&f, &x, 4);
+  return f;
+}
+
+// bfloat16 is the upper half of a binary32: narrowing rounds to nearest even and keeps NaNs NaN
+inline uint16_t fp32_to_bf16(float f) noexcept {
+  uint32_t x;
+  std::memcpy(&x, &f, 4);
+  if ((x & 0x7FFFFFFFu) > 0x7F800000u) return static_cast<uint16_t>((x >> 16) | 0x40u);
+  x += 0x7FFFu + ((x >> 16) & 1u);
+  return static_cast<uint16_t>(x >> 16);
+}
+
+inline float bf16_to_fp32(uint16_t h) noexcept {
+  uint32_t x = static_cast<uint32_t>(h) << 16;
+  float f;
+  std::memcpy(&f, &x, 4);
+  return f;
+}
+
+// Converts n values between FP32 and a row of the given element type
+inline void encode_row(const float* in, void* out, size_t n, ElementType type) noexcept {
+  uint16_t* h = static_cast<uint16_t*>(out);
+  switch (type) {
+    case ElementType::F32: std::memcpy(out, in, n * sizeof(float)); break;
+    case ElementType::F16: for (size_t i = 0; i < n; ++i) h[i] = fp32_to_fp16(in[i]); break;
+    case ElementType::BF16: for (size_t i = 0; i < n; ++i) h[i] = fp32_to_bf16(in[i]); break;
+  }
+}
+
+inline void decode_row(const void* in, float* out, size_t n, ElementType type) noexcept {
+  const uint16_t* h = static_cast<const uint16_t*>(in);
+  switch (type) {
+    case ElementType::F32: std::memcpy(out, in, n * sizeof(float)); break;
+    case ElementType::F16: for (size_t i = 0; i < n; ++i) out[i] = fp16_to_fp32(h[i]); break;
+    case ElementType::BF16: for (size_t i = 0; i < n; ++i) out[i] = bf16_to_fp32(h[i]); break;
+  }
+}
+
+// FP32 query against a half-precision row, widening each chunk of the row in registers. Only
+// L2 and dot are needed: cosine stores keep unit-length rows, where cosine is a dot product.
+struct HalfKernels {
+  const char* name;
+  float (*l2_sq_f16)(const float*, const uint16_t*, size_t) noexcept;
+  float (*dot_product_f16)(const float*, const uint16_t*, size_t) noexcept;
+  float (*l2_sq_bf16)(const float*, const uint16_t*, size_t) noexcept;
+  float (*dot_product_bf16)(const float*, const uint16_t*, size_t) noexcept;
+};
+
+namespace detail {
+
+template <float (*Widen)(uint16_t)>
+inline float l2_sq_half_tail(const float* q, const uint16_t* v, size_t i, size_t n, float sum) noexcept {
+  for (; i < n; ++i) {
+    float d = q[i] - Widen(v[i]);
+    sum += d * d;
+  }
+  return sum;
+}
+
+template <float (*Widen)(uint16_t)>
+inline float dot_product_half_tail(const float* q, const uint16_t* v, size_t i, size_t n, float sum) noexcept {
+  for (; i < n; ++i) sum += q[i] * Widen(v[i]);
+  return sum;
+}
+
+inline float l2_sq_f16_scalar(const float* q, const uint16_t* v, size_t n) noexcept {
+  return l2_sq_half_tail<fp16_to_fp32>(q, v, 0, n, 0.0f);
+}
+inline float dot_product_f16_scalar(const float* q, const uint16_t* v, size_t n) noexcept {
+  return dot_product_half_tail<fp16_to_fp32>(q, v, 0, n, 0.0f);
+}
+inline float l2_sq_bf16_scalar(const float* q, const uint16_t* v, size_t n) noexcept {
+  return l2_sq_half_tail<bf16_to_fp32>(q, v, 0, n, 0.0f);
+}
+inline float dot_product_bf16_scalar(const float* q, const uint16_t* v, size_t n) noexcept {
+  return dot_product_half_tail<bf16_to_fp32>(q, v, 0, n, 0.0f);
+}
+
+inline constexpr HalfKernels SCALAR_HALF_KERNELS{
+    "scalar", l2_sq_f16_scalar, dot_product_f16_scalar, l2_sq_bf16_scalar, dot_product_bf16_scalar};
+
+// ---------------------------------------------------------------------------------------
+// NEON: bf16 widens with a 16-bit shift everywhere; f16 needs the AArch64 conversions
+// ---------------------------------------------------------------------------------------
+
+#ifdef QUIVER_ARM_NEON
+inline float32x4_t widen_bf16(const uint16_t* v) noexcept {
+  return vreinterpretq_f32_u32(vshll_n_u16(vld1_u16(v), 16));
+}
+
+#if defined(__aarch64__)
+inline float32x4_t widen_f16(const uint16_t* v) noexcept {
+  return vcvt_f32_f16(vreinterpret_f16_u16(vld1_u16(v)));
+}
+
+inline float l2_sq_f16_neon(const float* q, const uint16_t* v, size_t n) noexcept {
+  float32x4_t acc = vdupq_n_f32(0.0f);
+  size_t i = 0;
+  for (; i + 4 <= n; i += 4) {
+    float32x4_t d = vsubq_f32(vld1q_f32(q + i), widen_f16(v + i));
+    acc = vmlaq_f32(acc, d, d);
+  }
+  return l2_sq_half_tail<fp16_to_fp32>(q, v, i, n, hsum(acc));
+}
+
+inline float dot_product_f16_neon(const float* q, const uint16_t* v, size_t n) noexcept {
+  float32x4_t acc = vdupq_n_f32(0.0f);
+  size_t i = 0;
+  for (; i + 4 <= n; i += 4) acc = vmlaq_f32(acc, vld1q_f32(q + i), widen_f16(v + i));
+  return dot_product_half_tail<fp16_to_fp32>(q, v, i, n, hsum(acc));
+}
+#else
+inline float l2_sq_f16_neon(const float* q, const uint16_t* v, size_t n) noexcept { return l2_sq_f16_scalar(q, v, n); }
+inline float dot_product_f16_neon(const float* q, const uint16_t* v, size_t n) noexcept {
+  return dot_product_f16_scalar(q, v, n);
+}
+#endif
+
+inline float l2_sq_bf16_neon(const float* q, const uint16_t* v, size_t n) noexcept {
+  float32x4_t acc = vdupq_n_f32(0.0f);
+  size_t i = 0;
+  for (; i + 4 <= n; i += 4) {
+    float32x4_t d = vsubq_f32(vld1q_f32(q + i), widen_bf16(v + i));
+    acc = vmlaq_f32(acc, d, d);
+  }
+  return l2_sq_half_tail<bf16_to_fp32>(q, v, i, n, hsum(acc));
+}
+
+inline float dot_product_bf16_neon(const float* q, const uint16_t* v, size_t n) noexcept {
+  float32x4_t acc = vdupq_n_f32(0.0f);
+  size_t i = 0;
+  for (; i + 4 <= n; i += 4) acc = vmlaq_f32(acc, vld1q_f32(q + i), widen_bf16(v + i));
+  return dot_product_half_tail<bf16_to_fp32>(q, v, i, n, hsum(acc));
+}
+
+inline constexpr HalfKernels NEON_HALF_KERNELS{
+    "neon", l2_sq_f16_neon, dot_product_f16_neon, l2_sq_bf16_neon, dot_product_bf16_neon};
+#endif
+
+// ---------------------------------------------------------------------------------------
+// AVX2 + F16C
+// ---------------------------------------------------------------------------------------
+
+#if defined(QUIVER_X86_DISPATCH) || (defined(QUIVER_AVX2) && (defined(__F16C__) || defined(_MSC_VER)))
+#define QUIVER_HALF_AVX2
+QUIVER_TARGET("avx2,fma,f16c") inline __m256 widen_f16(const uint16_t* v) noexcept {
+  return _mm256_cvtph_ps(_mm_loadu_si128(reinterpret_cast<const __m128i*>(v)));
+}
+
+QUIVER_TARGET("avx2,fma,f16c") inline __m256 widen_bf16(const uint16_t* v) noexcept {
+  __m256i w = _mm256_cvtepu16_epi32(_mm_loadu_si128(reinterpret_cast<const __m128i*>(v)));
+  return _mm256_castsi256_ps(_mm256_slli_epi32(w, 16));
+}
+
+QUIVER_TARGET("avx2,fma,f16c") inline float l2_sq_f16_avx2(const float* q, const uint16_t* v, size_t n) noexcept {
+  __m256 acc = _mm256_setzero_ps();
+  size_t i = 0;
+  for (; i + 8 <= n; i += 8) {
+    __m256 d = _mm256_sub_ps(_mm256_loadu_ps(q + i), widen_f16(v + i));
+    acc = _mm256_fmadd_ps(d, d, acc);
+  }
+  return l2_sq_half_tail<fp16_to_fp32>(q, v, i, n, hsum(acc));
+}
+
+QUIVER_TARGET("avx2,fma,f16c") inline float dot_product_f16_avx2(const float* q, const uint16_t* v, size_t n) noexcept {
+  __m256 acc = _mm256_setzero_ps();
+  size_t i = 0;
+  for (; i + 8 <= n; i += 8) acc = _mm256_fmadd_ps(_mm256_loadu_ps(q + i), widen_f16(v + i), acc);
+  return dot_product_half_tail<fp16_to_fp32>(q, v, i, n, hsum(acc));
+}
+
+QUIVER_TARGET("avx2,fma,f16c") inline float l2_sq_bf16_avx2(const float* q, const uint16_t* v, size_t n) noexcept {
+  __m256 acc = _mm256_setzero_ps();
+  size_t i = 0;
+  for (; i + 8 <= n; i += 8) {
+    __m256 d = _mm256_sub_ps(_mm256_loadu_ps(q + i), widen_bf16(v + i));
+    acc = _mm256_fmadd_ps(d, d, acc);
+  }
+  return l2_sq_half_tail<bf16_to_fp32>(q, v, i, n, hsum(acc));
+}
+
+QUIVER_TARGET("avx2,fma,f16c") inline float dot_product_bf16_avx2(const float* q, const uint16_t* v, size_t n) noexcept {
+  __m256 acc = _mm256_setzero_ps();
+  size_t i = 0;
+  for (; i + 8 <= n; i += 8) acc = _mm256_fmadd_ps(_mm256_loadu_ps(q + i), widen_bf16(v + i), acc);
+  return dot_product_half_tail<bf16_to_fp32>(q, v, i, n, hsum(acc));
+}
+
+inline constexpr HalfKernels AVX2_HALF_KERNELS{
+    "avx2", l2_sq_f16_avx2, dot_product_f16_avx2, l2_sq_bf16_avx2, dot_product_bf16_avx2};
+#endif
+
+// ---------------------------------------------------------------------------------------
+// AVX-512F: full 16-lane blocks, the remainder through the scalar tail (masked 16-bit loads
+// would need AVX-512BW)
+// ---------------------------------------------------------------------------------------
+
+#ifdef QUIVER_X86_DISPATCH
+#if defined(__GNUC__) && !defined(__clang__)
+#pragma GCC diagnostic push
+#pragma GCC diagnostic ignored "-Wuninitialized"
+#pragma GCC diagnostic ignored "-Wmaybe-uninitialized"
+#endif
+QUIVER_TARGET("avx512f") inline __m512 widen_f16_x16(const uint16_t* v) noexcept {
+  return _mm512_cvtph_ps(_mm256_loadu_si256(reinterpret_cast<const __m256i*>(v)));
+}
+
+QUIVER_TARGET("avx512f") inline __m512 widen_bf16_x16(const uint16_t* v) noexcept {
+  __m512i w = _mm512_cvtepu16_epi32(_mm256_loadu_si256(reinterpret_cast<const __m256i*>(v)));
+  return _mm512_castsi512_ps(_mm512_slli_epi32(w, 16));
+}
+
+QUIVER_TARGET("avx512f") inline float l2_sq_f16_avx512(const float* q, const uint16_t* v, size_t n) noexcept {
+  __m512 acc = _mm512_setzero_ps();
+  size_t i = 0;
+  for (; i + 16 <= n; i += 16) {
+    __m512 d = _mm512_sub_ps(_mm512_loadu_ps(q + i), widen_f16_x16(v + i));
+    acc = _mm512_fmadd_ps(d, d, acc);
+  }
+  return l2_sq_half_tail<fp16_to_fp32>(q, v, i, n, hsum(acc));
+}
+
+QUIVER_TARGET("avx512f") inline float dot_product_f16_avx512(const float* q, const uint16_t* v, size_t n) noexcept {
+  __m512 acc = _mm512_setzero_ps();
+  size_t i = 0;
+  for (; i + 16 <= n; i += 16) acc = _mm512_fmadd_ps(_mm512_loadu_ps(q + i), widen_f16_x16(v + i), acc);
+  return dot_product_half_tail<fp16_to_fp32>(q, v, i, n, hsum(acc));
+}
+
+QUIVER_TARGET("avx512f") inline float l2_sq_bf16_avx512(const float* q, const uint16_t* v, size_t n) noexcept {
+  __m512 acc = _mm512_setzero_ps();
+  size_t i = 0;
+  for (; i + 16 <= n; i += 16) {
+    __m512 d = _mm512_sub_ps(_mm512_loadu_ps(q + i), widen_bf16_x16(v + i));
+    acc = _mm512_fmadd_ps(d, d, acc);
+  }
+  return l2_sq_half_tail<bf16_to_fp32>(q, v, i, n, hsum(acc));
+}
+
+QUIVER_TARGET("avx512f") inline float dot_product_bf16_avx512(const float* q, const uint16_t* v, size_t n) noexcept {
+  __m512 acc = _mm512_setzero_ps();
+  size_t i = 0;
+  for (; i + 16 <= n; i += 16) acc = _mm512_fmadd_ps(_mm512_loadu_ps(q + i), widen_bf16_x16(v + i), acc);
+  return dot_product_half_tail<bf16_to_fp32>(q, v, i, n, hsum(acc));
+}
+
+inline constexpr HalfKernels AVX512_HALF_KERNELS{
+    "avx512", l2_sq_f16_avx512, dot_product_f16_avx512, l2_sq_bf16_avx512, dot_product_bf16_avx512};
+#if defined(__GNUC__) && !defined(__clang__)
+#pragma GCC diagnostic pop
+#endif
+#endif
+
+} // namespace detail
+
+// Half-precision kernels matching the active FP32 family (so QUIVERDB_KERNEL steers both);
+// families without a half-precision variant (sse4, or avx2 on a CPU without F16C) use scalar
+inline const HalfKernels& active_half_kernels() noexcept {
+  static const HalfKernels& kernels = []() -> const HalfKernels& {
+    std::string_view name = active_kernel_name();
+#ifdef QUIVER_ARM_NEON
+    if (name == detail::NEON_HALF_KERNELS.name) return detail::NEON_HALF_KERNELS;
+#endif
+#ifdef QUIVER_X86_DISPATCH
+    if (name == detail::AVX512_HALF_KERNELS.name) return detail::AVX512_HALF_KERNELS;
+    if (name == detail::AVX2_HALF_KERNELS.name && __builtin_cpu_supports("f16c")) return detail::AVX2_HALF_KERNELS;
+#elif defined(QUIVER_HALF_AVX2)
+    if (name == detail::AVX2_HALF_KERNELS.name) return detail::AVX2_HALF_KERNELS;
+#endif
+    return detail::SCALAR_HALF_KERNELS;
+  }();
+  return kernels;
+}
+
+// Squared L2 / dot product of an FP32 query against a stored row of element type `type`
+inline float l2_sq_row(const float* q, const void* row, size_t n, ElementType type) noexcept {
+  switch (type) {
+    case ElementType::F16: return active_half_kernels().l2_sq_f16(q, static_cast<const uint16_t*>(row), n);
+    case ElementType::BF16: return active_half_kernels().l2_sq_bf16(q, static_cast<const uint16_t*>(row), n);
+    default: return l2_sq(q, static_cast<const float*>(row), n);
+  }
+}
+
+inline float dot_product_row(const float* q, const void* row, size_t n, ElementType type) noexcept {
+  switch (type) {
+    case ElementType::F16: return active_half_kernels().dot_product_f16(q, static_cast<const uint16_t*>(row), n);
+    case ElementType::BF16: return active_half_kernels().dot_product_bf16(q, static_cast<const uint16_t*>(row), n);
+    default: return dot_product(q, static_cast<const float*>(row), n);
+  }
+}
+
+} // namespace quiverdb
@@ -1,14 +1,20 @@
 // QuiverDB - Copyright (c) 2025 Anton Tsvetkov - MIT License
 #pragma once
 #include "distance.h"
+#include "half.h"
+#include "mmap_vector_store.h"
 #include <algorithm>
+#include <array>
 #include <atomic>
 #include <cmath>
 #include <cstddef>
 #include <cstdint>
+#include <cstring>
+#include <exception>
 #include <filesystem>
 #include <fstream>
 #include <limits>
+#include <memory>
 #include <mutex>
 #include <queue>
 #include <random>
@@ -16,6 +22,7 @@
 #include <sstream>
 #include <stdexcept>
 #include <string>
+#include <thread>
 #include <unordered_map>
 #include <unordered_set>
 #include <vector>
@@ -67,124 +74,152 @@ struct HNSWSearchResult {
 class HNSWIndex {
 public:
   static constexpr uint32_t MAGIC = 0x51565244;  // "QVRD" (QuiverDB) in little-endian
-  static constexpr uint32_t VERSION = 2;  // v2: added RNG state serialization
+  static constexpr uint32_t VERSION = 4;  // v4: element type, stored rows + norms (v3: flat links, v2: RNG)
   static constexpr int MAX_LEVEL = 32;  // Reasonable upper bound for HNSW levels
   static constexpr size_t INVALID_ID = static_cast<size_t>(-1);  // Sentinel for empty entry point
+  static constexpr size_t LOCK_STRIPES = 1024;  // Power of two; fixed regardless of capacity
 
+  // element_type: precision rows are kept in (queries and add() input stay FP32)
   explicit HNSWIndex(size_t dimension, HNSWDistanceMetric metric = HNSWDistanceMetric::L2,
-      size_t max_elements = 100000, size_t M = 16, size_t ef_construction = 200, uint32_t seed = 42)
-      : dim_(dimension), metric_(metric), max_elements_(max_elements), M_(M), M_max_(M),
-        M_max0_(M * 2), ef_construction_(std::max(ef_construction, M)), ef_search_(50),
-        mult_(M > 1 ? 1.0 / std::log(static_cast<double>(M)) : 1.0), level_gen_(seed) {
-    if (dimension == 0) throw std::invalid_argument("Dimension must be > 0");
-    if (max_elements == 0) throw std::invalid_argument("max_elements must be > 0");
-    if (M < 2) throw std::invalid_argument("M must be >= 2");
-    if (max_elements > SIZE_MAX / dim_) throw std::invalid_argument("max_elements * dimension overflow");
-    vectors_.resize(max_elements * dim_);
-    ext_ids_.resize(max_elements);
-    levels_.resize(max_elements, 0);
-    neighbors_.resize(max_elements);
-    locks_.reserve(max_elements);
-    for (size_t i = 0; i < max_elements; ++i) locks_.push_back(std::make_unique<std::shared_mutex>());
-  }
-
-  // Thread-safety: global_mtx_ serializes ALL add() calls. Per-node locks_ are for
-  // reader-writer sync between add() and concurrent search() calls only.
-  // This design prevents ABBA deadlocks since only one add() runs at a time.
+      size_t max_elements = 100000, size_t M = 16, size_t ef_construction = 200, uint32_t seed = 42,
+      ElementType element_type = ElementType::F32)
+      : HNSWIndex(dimension, metric, max_elements, M, ef_construction, seed, element_type, nullptr) {}
+
+  // Thread-safety: global_mtx_ serializes ALL add() calls. Node locks (striped: node_lock()
+  // maps a node onto one of LOCK_STRIPES mutexes) are for reader-writer sync between add()
+  // and concurrent search() calls only. Every path holds at most one node lock at a time, so
+  // two nodes sharing a stripe can never deadlock.
   void add(uint64_t id, const float* vec) {
     if (!vec) throw std::invalid_argument("Vector must not be null");
     std::unique_lock glock(global_mtx_);  // Exclusive: only one add() at a time
+    if (ext_rows_) throw std::runtime_error("Index references external vectors and is read-only");
     if (id_map_.count(id)) throw std::invalid_argument("ID " + std::to_string(id) + " exists");
     if (count_ >= max_elements_) throw std::runtime_error("Index full");
 
-    size_t iid = count_++;
+    uint32_t iid = static_cast<uint32_t>(count_++);
     id_map_[id] = iid;
     ext_ids_[iid] = id;
-    std::copy_n(vec, dim_, vectors_.begin() + iid * dim_);
+    store_vec(iid, vec);
 
     int level = get_level();
     levels_[iid] = level;
-    neighbors_[iid].resize(level + 1);
-    for (int l = 0; l <= level; ++l)
-      neighbors_[iid][l].reserve(l == 0 ? M_max0_ : M_max_);
+    alloc_upper_links(iid, level);
 
     if (ep_.load() == INVALID_ID) { ep_.store(iid); max_level_.store(level); return; }
+    connect(iid, level, ef_construction_, false);
+  }
 
-    size_t curr = ep_.load();
-    int cur_max_level = max_level_.load();
-    if (level < cur_max_level) {
-      float d = dist(vec, get_vec(curr));
-      for (int l = cur_max_level; l > level; --l) {
-        bool changed = true;
-        while (changed) {
-          changed = false;
-          std::shared_lock lk(*locks_[curr]);
-          for (size_t n : neighbors_[curr][l]) {
-            float nd = dist(vec, get_vec(n));
-            if (nd < d) { d = nd; curr = n; changed = true; }
-          }
-        }
-      }
+  // Half-precision input (FP16 or BF16 bits, whatever the index's own element type)
+  void add(uint64_t id, const uint16_t* vec, ElementType format) { add(id, widen_input(vec, format).data()); }
+
+  // Combines independently built shards into one index. Each shard's graph is copied with its
+  // internal ids offset, then every node from the second shard on is linked into the combined
+  // graph keeping its own neighbor list as candidates, so shard-local structure is reused and
+  // the first shard is never re-linked. Shards must share dimension, metric and M; duplicate
+  // ids across shards are rejected. max_elements == 0 sums the shard capacities. Because the
+  // seeds already cover each node's own shard, the cross-shard search runs with ef_merge,
+  // which defaults (0) to a quarter of ef_construction.
+  static std::unique_ptr<HNSWIndex> merge(const std::vector<const HNSWIndex*>& shards,
+                                          size_t max_elements = 0, size_t ef_merge = 0) {
+    if (shards.empty()) throw std::invalid_argument("No indexes to merge");
+    for (const HNSWIndex* s : shards) if (!s) throw std::invalid_argument("Index must not be null");
+    const HNSWIndex& first = *shards[0];
+    size_t total = 0, cap = 0;
+    for (const HNSWIndex* s : shards) {
+      if (s->dim_ != first.dim_) throw std::invalid_argument("Dimension mismatch between indexes");
+      if (s->metric_ != first.metric_) throw std::invalid_argument("Metric mismatch between indexes");
+      if (s->M_ != first.M_) throw std::invalid_argument("M mismatch between indexes");
+      if (s->type_ != first.type_) throw std::invalid_argument("Element type mismatch between indexes");
+      total += s->size();
+      cap += s->capacity();
     }
-
-    for (int l = std::min(level, cur_max_level); l >= 0; --l) {
-      auto top = search_layer(vec, curr, ef_construction_, l);
-      auto sel = select_neighbors(top, M_, l);
-      // Narrow scope: lock iid, assign, unlock BEFORE iterating neighbors (no ABBA possible)
-      { std::unique_lock lk(*locks_[iid]); neighbors_[iid][l] = std::move(sel); }
-
-      size_t max_conn = l == 0 ? M_max0_ : M_max_;
-      for (size_t nid : neighbors_[iid][l]) {
-        std::unique_lock lk(*locks_[nid]);  // Only one lock held at a time
-        auto& nc = neighbors_[nid][l];
-        if (nc.size() < max_conn) { nc.push_back(iid); }
-        else {
-          float d2new = dist(get_vec(nid), vec);
-          std::vector<std::pair<float, size_t>> cands;
-          cands.reserve(nc.size() + 1);
-          for (size_t c : nc) cands.emplace_back(dist(get_vec(nid), get_vec(c)), c);
-          cands.emplace_back(d2new, iid);
-          std::sort(cands.begin(), cands.end());
-          nc.clear();
-          for (size_t i = 0; i < max_conn && i < cands.size(); ++i) nc.push_back(cands[i].second);
+    if (max_elements == 0) max_elements = cap;
+    if (max_elements < total) throw std::invalid_argument("max_elements is smaller than the merged size");
+
+    auto idx = std::make_unique<HNSWIndex>(first.dim_, first.metric_, max_elements, first.M_, first.ef_construction_,
+                                           42, first.type_);
+    if (ef_merge == 0) ef_merge = std::max(idx->M_max0_, idx->ef_construction_ / 4);
+    idx->ef_search_.store(first.get_ef_search());
+    {
+      std::shared_lock lk(first.global_mtx_);
+      idx->mult_ = first.mult_;
+      idx->level_gen_ = first.level_gen_;
+    }
+    for (const HNSWIndex* s : shards) {
+      uint32_t base = static_cast<uint32_t>(idx->count_.load());
+      size_t n;
+      {
+        std::shared_lock lk(s->global_mtx_);
+        n = s->count_.load();
+        if (base + n > max_elements) throw std::invalid_argument("max_elements is smaller than the merged size");
+        for (uint32_t i = 0; i < n; ++i) {
+          uint32_t iid = base + i;
+          uint64_t id = s->ext_ids_[i];
+          if (!idx->id_map_.emplace(id, iid).second)
+            throw std::invalid_argument("ID " + std::to_string(id) + " exists in more than one index");
+          idx->ext_ids_[iid] = id;
+          std::memcpy(idx->mutable_row(iid), s->row(i), idx->row_bytes());
+          if (!idx->norms_.empty()) idx->norms_[iid] = s->get_norm(i);
+          int level = s->levels_[i];
+          idx->levels_[iid] = level;
+          idx->alloc_upper_links(iid, level);
+          for (int l = 0; l <= level; ++l) {
+            const uint32_t* src = s->links(i, l);
+            uint32_t* dst = idx->links(iid, l);
+            dst[0] = src[0];
+            for (uint32_t j = 1; j <= src[0]; ++j) dst[j] = src[j] + base;
+          }
         }
-      }
-      // Use closest candidate (min distance) for next layer entry point
-      if (!top.empty()) {
-        std::pair<float, size_t> best = top.top();
-        while (!top.empty()) {
-          if (top.top().first < best.first) best = top.top();
-          top.pop();
+        idx->count_.store(base + n);
+        if (n > 0 && idx->ep_.load() == INVALID_ID) {
+          // First non-empty shard: its graph is taken as-is, rooted at its own entry point
+          idx->ep_.store(base + s->ep_.load());
+          idx->max_level_.store(s->max_level_.load());
+          continue;
         }
-        curr = best.second;
       }
+      for (uint32_t i = 0; i < n; ++i) idx->connect(base + i, idx->levels_[base + i], ef_merge, true);
     }
-    if (level > cur_max_level) { ep_.store(iid); max_level_.store(level); }
+    return idx;
   }
 
   std::vector<HNSWSearchResult> search(const float* query, size_t k) const {
+    return search(query, k, ef_search_.load(std::memory_order_relaxed));
+  }
+
+  // Searches with a candidate list of ef for this call only; the index's ef_search is left as
+  // is, so concurrent searches can each use their own
+  std::vector<HNSWSearchResult> search(const float* query, size_t k, size_t ef) const {
     if (!query) throw std::invalid_argument("Query must not be null");
     if (k == 0) throw std::invalid_argument("k must be > 0");
+    if (ef == 0) throw std::invalid_argument("ef_search must be > 0");
+    std::vector<float> query_buf;
+    if (metric_ == HNSWDistanceMetric::COSINE) {
+      query_buf.resize(dim_);
+      normalize(query, query_buf.data(), dim_);
+      query = query_buf.data();
+    }
     std::shared_lock glock(global_mtx_);
     if (count_ == 0) return {};
 
-    size_t curr = ep_.load();
-    float d = dist(query, get_vec(curr));
+    uint32_t curr = static_cast<uint32_t>(ep_.load());
+    float d = dist(query, curr);
     for (int l = max_level_.load(); l > 0; --l) {
       bool changed = true;
       while (changed) {
         changed = false;
-        std::shared_lock lk(*locks_[curr]);
-        if (static_cast<int>(neighbors_[curr].size()) <= l) continue;
-        for (size_t n : neighbors_[curr][l]) {
-          float nd = dist(query, get_vec(n));
-          if (nd < d) { d = nd; curr = n; changed = true; }
+        std::shared_lock lk(node_lock(curr));
+        if (levels_[curr] < l) continue;
+        const uint32_t* ll = links(curr, l);
+        for (uint32_t j = 1; j <= ll[0]; ++j) {
+          float nd = dist(query, ll[j]);
+          if (nd < d) { d = nd; curr = ll[j]; changed = true; }
         }
       }
     }
 
-    auto top = search_layer(query, curr, std::max(ef_search_.load(std::memory_order_relaxed), k), 0);
-    std::vector<std::pair<float, size_t>> temp;
+    auto top = search_layer(query, curr, std::max(ef, k), 0);
+    std::vector<std::pair<float, uint32_t>> temp;
     while (!top.empty()) { temp.push_back(top.top()); top.pop(); }
     std::sort(temp.begin(), temp.end());
 
@@ -195,6 +230,83 @@ public:
     return res;
   }
 
+  std::vector<HNSWSearchResult> search(const uint16_t* query, ElementType format, size_t k) const {
+    return search(widen_input(query, format).data(), k);
+  }
+  std::vector<HNSWSearchResult> search(const uint16_t* query, ElementType format, size_t k, size_t ef) const {
+    return search(widen_input(query, format).data(), k, ef);
+  }
+
+  // Builds an index over every vector of an mmap'd store, linking on num_threads workers
+  // (0 = hardware concurrency). Levels are drawn up front in file order, so a single thread
+  // gives the same graph as add() in that order. With reference_vectors the index reads rows
+  // straight from the mapping instead of copying them: the store must outlive the index, and
+  // add() throws (save() writes the vectors, so a reloaded index owns them again). Cosine
+  // stores written before rows were kept normalized are always copied, and normalized then.
+  // The index keeps rows in the store's element type.
+  static std::unique_ptr<HNSWIndex> build_from(const MMapVectorStore& store, size_t M = 16,
+      size_t ef_construction = 200, size_t num_threads = 0, bool reference_vectors = false,
+      uint32_t seed = 42) {
+    HNSWDistanceMetric metric = HNSWDistanceMetric::L2;
+    switch (store.metric()) {
+      case DistanceMetric::L2: metric = HNSWDistanceMetric::L2; break;
+      case DistanceMetric::COSINE: metric = HNSWDistanceMetric::COSINE; break;
+      case DistanceMetric::DOT: metric = HNSWDistanceMetric::DOT; break;
+    }
+    size_t n = store.size();
+    bool raw_cosine = metric == HNSWDistanceMetric::COSINE && !store.normalized();
+    reference_vectors = reference_vectors && n > 0 && !raw_cosine;
+    std::unique_ptr<HNSWIndex> idx(new HNSWIndex(store.dimension(), metric, std::max<size_t>(n, 1), M,
+        ef_construction, seed, store.element_type(), reference_vectors ? store.rows() : nullptr));
+    if (reference_vectors) idx->ext_norms_ = store.norms();
+    const uint64_t* ids = store.ids();
+    idx->id_map_.reserve(n);
+    for (uint32_t i = 0; i < n; ++i) {
+      if (!idx->id_map_.emplace(ids[i], i).second)
+        throw std::invalid_argument("Duplicate ID: " + std::to_string(ids[i]));
+      idx->ext_ids_[i] = ids[i];
+      idx->levels_[i] = idx->get_level();
+      idx->alloc_upper_links(i, idx->levels_[i]);
+    }
+    if (n == 0) return idx;
+    if (raw_cosine) {
+      for (uint32_t i = 0; i < n; ++i) idx->store_vec(i, store.data() + static_cast<size_t>(i) * idx->dim_);
+    } else if (!reference_vectors) {
+      std::memcpy(idx->mutable_row(0), store.rows(), n * idx->row_bytes());
+      if (!idx->norms_.empty()) std::copy_n(store.norms(), n, idx->norms_.begin());
+    }
+    idx->count_.store(n);
+    idx->ep_.store(0);
+    idx->max_level_.store(idx->levels_[0]);
+
+    if (num_threads == 0) num_threads = std::max(1u, std::thread::hardware_concurrency());
+    num_threads = std::min(num_threads, n);
+    std::atomic<size_t> next{1};
+    std::mutex ep_mtx;  // Held for the whole insert of a node that raises the top level
+    std::mutex err_mtx;
+    std::exception_ptr err;
+    auto worker = [&] {
+      try {
+        for (size_t i; (i = next.fetch_add(1)) < n;) {
+          int level = idx->levels_[i];
+          std::unique_lock elk(ep_mtx);
+          if (level <= idx->max_level_.load()) elk.unlock();
+          idx->connect(static_cast<uint32_t>(i), level, idx->ef_construction_, false);
+        }
+      } catch (...) {
+        std::lock_guard lk(err_mtx);
+        if (!err) err = std::current_exception();
+        next.store(n);
+      }
+    };
+    std::vector<std::thread> pool;
+    for (size_t t = 1; t < num_threads; ++t) pool.emplace_back(worker);
+    worker();
+    for (auto& t : pool) t.join();
+    if (err) std::rethrow_exception(err);
+    return idx;
+  }
+
   void set_ef_search(size_t ef) {
     if (ef == 0) throw std::invalid_argument("ef_search must be > 0");
     ef_search_.store(ef, std::memory_order_relaxed);
@@ -203,14 +315,17 @@ public:
   size_t size() const { std::shared_lock lk(global_mtx_); return count_; }
   size_t dimension() const { return dim_; }
   size_t capacity() const { return max_elements_; }
+  ElementType element_type() const { return type_; }
   bool contains(uint64_t id) const { std::shared_lock lk(global_mtx_); return id_map_.count(id); }
 
   std::vector<float> get_vector(uint64_t id) const {
     std::shared_lock lk(global_mtx_);
     auto it = id_map_.find(id);
     if (it == id_map_.end()) throw std::runtime_error("ID not found: " + std::to_string(id));
-    const float* p = vectors_.data() + it->second * dim_;
-    return std::vector<float>(p, p + dim_);
+    std::vector<float> out(dim_);
+    decode_row(row(it->second), out.data(), dim_, type_);
+    if (metric_ == HNSWDistanceMetric::COSINE) for (float& x : out) x *= get_norm(it->second);
+    return out;
   }
 
   void save(const std::string& filename) const {
@@ -223,6 +338,7 @@ public:
       detail::write_bin(f, VERSION);
       detail::write_bin(f, dim_);
       detail::write_bin(f, static_cast<uint32_t>(metric_));
+      detail::write_bin(f, static_cast<uint32_t>(type_));
       detail::write_bin(f, max_elements_);
       detail::write_bin(f, M_);
       detail::write_bin(f, ef_construction_);
@@ -231,16 +347,24 @@ public:
       detail::write_bin(f, count_.load());
       detail::write_bin(f, ep_.load());
       detail::write_bin(f, max_level_.load());
-      detail::write_vec(f, vectors_);
+      // Rows in stored form (element count, then raw elements), also covering externally
+      // referenced rows; cosine indexes follow them with each row's norm
+      detail::write_bin(f, max_elements_ * dim_);
+      f.write(static_cast<const char*>(row(0)), max_elements_ * row_bytes());
+      if (metric_ == HNSWDistanceMetric::COSINE) {
+        detail::write_bin(f, max_elements_);
+        f.write(reinterpret_cast<const char*>(&norms_at(0)), max_elements_ * sizeof(float));
+      }
       detail::write_vec(f, ext_ids_);
       detail::write_vec(f, levels_);
       detail::write_bin(f, id_map_.size());
-      for (const auto& [k, v] : id_map_) { detail::write_bin(f, k); detail::write_bin(f, v); }
-      detail::write_bin(f, neighbors_.size());
-      for (size_t i = 0; i < neighbors_.size(); ++i) {
-        detail::write_bin(f, neighbors_[i].size());
-        for (size_t l = 0; l < neighbors_[i].size(); ++l) detail::write_vec(f, neighbors_[i][l]);
-      }
+      for (const auto& [k, v] : id_map_) { detail::write_bin(f, k); detail::write_bin(f, static_cast<size_t>(v)); }
+      // Link blocks are written verbatim for the populated prefix only
+      size_t cnt = count_.load();
+      detail::write_bin(f, cnt);
+      f.write(reinterpret_cast<const char*>(links0_.data()), cnt * link_size0_ * sizeof(uint32_t));
+      f.write(reinterpret_cast<const char*>(upper_offset_.data()), cnt * sizeof(uint32_t));
+      detail::write_vec(f, upper_links_);
       // Save RNG state for deterministic behavior after load
       std::stringstream rng_ss;
       rng_ss << level_gen_;
@@ -273,19 +397,22 @@ public:
     detail::read_bin(f, magic);
     if (magic != MAGIC) throw std::runtime_error("Invalid magic");
     detail::read_bin(f, ver);
-    if (ver != VERSION && ver != 1) throw std::runtime_error("Unsupported version");
+    if (ver < 1 || ver > VERSION) throw std::runtime_error("Unsupported version");
 
-    size_t dim, max_el, M, ef_con, ef_s; uint32_t met; double mult;
+    size_t dim, max_el, M, ef_con, ef_s; uint32_t met, type = 0; double mult;
     detail::read_bin(f, dim);
     detail::read_bin(f, met);
     if (met > 2) throw std::runtime_error("Corrupted file: invalid metric");
+    if (ver >= 4) detail::read_bin(f, type);
+    if (type > 2) throw std::runtime_error("Corrupted file: invalid element type");
     detail::read_bin(f, max_el);
     detail::read_bin(f, M);
     detail::read_bin(f, ef_con);
     detail::read_bin(f, ef_s);
     detail::read_bin(f, mult);
 
-    auto idx = std::make_unique<HNSWIndex>(dim, static_cast<HNSWDistanceMetric>(met), max_el, M, ef_con);
+    auto idx = std::make_unique<HNSWIndex>(dim, static_cast<HNSWDistanceMetric>(met), max_el, M, ef_con, 42,
+                                           static_cast<ElementType>(type));
     idx->ef_search_.store(ef_s);
     idx->mult_ = mult;
 
@@ -308,7 +435,8 @@ public:
     }
     idx->ep_.store(ep_val);
     idx->max_level_.store(max_level_val);
-    detail::read_vec(f, idx->vectors_);
+    if (ver >= 4) idx->read_rows(f);
+    else idx->read_legacy_rows(f);
     detail::read_vec(f, idx->ext_ids_);
     detail::read_vec(f, idx->levels_);
 
@@ -321,26 +449,17 @@ public:
       detail::read_bin(f, k);
       detail::read_bin(f, v);
       if (v >= cnt) throw std::runtime_error("Corrupted file: invalid internal index in id_map");
-      idx->id_map_[k] = v;
+      idx->id_map_[k] = static_cast<uint32_t>(v);
     }
 
-    size_t nsz;
-    detail::read_bin(f, nsz);
-    if (nsz > max_el) throw std::runtime_error("Corrupted file: neighbors size exceeds max_elements");
-    idx->neighbors_.resize(nsz);
-    for (size_t i = 0; i < nsz; ++i) {
-      size_t lsz;
-      detail::read_bin(f, lsz);
-      if (lsz > static_cast<size_t>(MAX_LEVEL) + 1) throw std::runtime_error("Corrupted file: too many levels");
-      idx->neighbors_[i].resize(lsz);
-      for (size_t l = 0; l < lsz; ++l) {
-        detail::read_vec(f, idx->neighbors_[i][l]);
-        // Validate neighbor indices are within bounds
-        for (size_t nid : idx->neighbors_[i][l]) {
-          if (nid >= cnt) throw std::runtime_error("Corrupted file: invalid neighbor index");
-        }
-      }
-    }
+    if (idx->ext_ids_.size() != max_el || idx->levels_.size() != max_el)
+      throw std::runtime_error("Corrupted file: array size mismatch");
+    for (size_t i = 0; i < cnt; ++i)
+      if (idx->levels_[i] < 0 || idx->levels_[i] > MAX_LEVEL)
+        throw std::runtime_error("Corrupted file: invalid node level");
+
+    if (ver >= 3) idx->read_links(f, cnt);
+    else idx->read_legacy_links(f, cnt);
 
     // Restore RNG state for deterministic behavior (v2+)
     if (ver >= 2) {
@@ -357,14 +476,212 @@ public:
     }
     // Note: v1 files don't have RNG state, level_gen_ keeps default initialization
 
-    idx->locks_.clear();
-    idx->locks_.reserve(max_el);
-    for (size_t i = 0; i < max_el; ++i) idx->locks_.push_back(std::make_unique<std::shared_mutex>());
     return idx;
   }
 
 private:
-  using MaxHeap = std::priority_queue<std::pair<float, size_t>>;
+  // external_rows: when set, rows are read from that buffer (max_elements rows of
+  // element_type, owned by the caller) and nothing is allocated for them; cosine indexes then
+  // also need ext_norms_ set
+  HNSWIndex(size_t dimension, HNSWDistanceMetric metric, size_t max_elements, size_t M,
+      size_t ef_construction, uint32_t seed, ElementType element_type, const void* external_rows)
+      : dim_(dimension), metric_(metric), max_elements_(max_elements), M_(M), M_max_(M),
+        M_max0_(M * 2), ef_construction_(std::max(ef_construction, M)), ef_search_(50),
+        mult_(M > 1 ? 1.0 / std::log(static_cast<double>(M)) : 1.0), level_gen_(seed),
+        type_(element_type), ext_rows_(external_rows) {
+    if (dimension == 0) throw std::invalid_argument("Dimension must be > 0");
+    if (max_elements == 0) throw std::invalid_argument("max_elements must be > 0");
+    if (M < 2) throw std::invalid_argument("M must be >= 2");
+    if (max_elements >= std::numeric_limits<uint32_t>::max())
+      throw std::invalid_argument("max_elements must fit in 32-bit internal ids");
+    if (max_elements > SIZE_MAX / dim_) throw std::invalid_argument("max_elements * dimension overflow");
+    if (max_elements > SIZE_MAX / sizeof(uint32_t) / (M_max0_ + 1))
+      throw std::invalid_argument("max_elements * M overflow");
+    if (!ext_rows_) {
+      if (type_ == ElementType::F32) vectors_.resize(max_elements * dim_);
+      else half_vectors_.resize(max_elements * dim_);
+      if (metric_ == HNSWDistanceMetric::COSINE) norms_.resize(max_elements, 0.0f);
+    }
+    ext_ids_.resize(max_elements);
+    levels_.resize(max_elements, 0);
+    link_size0_ = M_max0_ + 1;
+    link_size_ = M_max_ + 1;
+    links0_.resize(max_elements * link_size0_, 0);
+    upper_offset_.resize(max_elements, 0);
+  }
+
+  using MaxHeap = std::priority_queue<std::pair<float, uint32_t>>;
+
+  // Link block layout: [count, id_0, ..., id_{cap-1}]. Layer 0 blocks live in links0_ at a
+  // fixed stride; nodes above layer 0 own `level` consecutive blocks in upper_links_.
+  uint32_t* links(uint32_t iid, int level) {
+    return level == 0 ? links0_.data() + static_cast<size_t>(iid) * link_size0_
+                      : upper_links_.data() + (static_cast<size_t>(upper_offset_[iid]) + level - 1) * link_size_;
+  }
+  const uint32_t* links(uint32_t iid, int level) const {
+    return const_cast<HNSWIndex*>(this)->links(iid, level);
+  }
+
+  static void set_links(uint32_t* block, const std::vector<uint32_t>& ids) {
+    block[0] = static_cast<uint32_t>(ids.size());
+    std::copy(ids.begin(), ids.end(), block + 1);
+  }
+
+  void alloc_upper_links(uint32_t iid, int level) {
+    if (level == 0) return;
+    size_t blocks = upper_links_.size() / link_size_;
+    if (blocks + level > std::numeric_limits<uint32_t>::max())
+      throw std::runtime_error("Upper layer link storage exhausted");
+    upper_offset_[iid] = static_cast<uint32_t>(blocks);
+    upper_links_.resize((blocks + level) * link_size_, 0);
+  }
+
+  void read_rows(std::ifstream& f) {
+    size_t elems;
+    detail::read_bin(f, elems);
+    if (elems != max_elements_ * dim_) throw std::runtime_error("Corrupted file: array size mismatch");
+    if (elems > 0 && !f.read(static_cast<char*>(mutable_row(0)), max_elements_ * row_bytes()))
+      throw std::runtime_error("Unexpected end of file or read error");
+    if (metric_ == HNSWDistanceMetric::COSINE) {
+      detail::read_vec(f, norms_);
+      if (norms_.size() != max_elements_) throw std::runtime_error("Corrupted file: array size mismatch");
+    }
+  }
+
+  // v1-v3 files hold FP32 rows as added; cosine rows are normalized here
+  void read_legacy_rows(std::ifstream& f) {
+    detail::read_vec(f, vectors_);
+    if (vectors_.size() != max_elements_ * dim_) throw std::runtime_error("Corrupted file: array size mismatch");
+    if (metric_ == HNSWDistanceMetric::COSINE)
+      for (size_t i = 0; i < max_elements_; ++i) {
+        float* r = vectors_.data() + i * dim_;
+        norms_[i] = normalize(r, r, dim_);
+      }
+  }
+
+  void read_links(std::ifstream& f, size_t cnt) {
+    size_t stored;
+    detail::read_bin(f, stored);
+    if (stored != cnt) throw std::runtime_error("Corrupted file: link block count mismatch");
+    if (cnt > 0 && !f.read(reinterpret_cast<char*>(links0_.data()), cnt * link_size0_ * sizeof(uint32_t)))
+      throw std::runtime_error("Unexpected end of file or read error");
+    if (cnt > 0 && !f.read(reinterpret_cast<char*>(upper_offset_.data()), cnt * sizeof(uint32_t)))
+      throw std::runtime_error("Unexpected end of file or read error");
+    detail::read_vec(f, upper_links_);
+    if (upper_links_.size() % link_size_ != 0) throw std::runtime_error("Corrupted file: invalid link storage");
+    size_t blocks = upper_links_.size() / link_size_;
+    for (uint32_t i = 0; i < cnt; ++i) {
+      if (levels_[i] > 0 && static_cast<size_t>(upper_offset_[i]) + levels_[i] > blocks)
+        throw std::runtime_error("Corrupted file: invalid link offset");
+      for (int l = 0; l <= levels_[i]; ++l) validate_links(links(i, l), l == 0 ? M_max0_ : M_max_, cnt);
+    }
+  }
+
+  // v1/v2 files stored nested per-node, per-level vectors of size_t ids
+  void read_legacy_links(std::ifstream& f, size_t cnt) {
+    size_t nsz;
+    detail::read_bin(f, nsz);
+    if (nsz > max_elements_) throw std::runtime_error("Corrupted file: neighbors size exceeds max_elements");
+    std::vector<size_t> ids;
+    std::vector<uint32_t> narrowed;
+    for (size_t i = 0; i < nsz; ++i) {
+      size_t lsz;
+      detail::read_bin(f, lsz);
+      if (lsz > static_cast<size_t>(MAX_LEVEL) + 1) throw std::runtime_error("Corrupted file: too many levels");
+      if (i >= cnt ? lsz != 0 : lsz > static_cast<size_t>(levels_[i]) + 1)
+        throw std::runtime_error("Corrupted file: too many levels");
+      if (i < cnt) alloc_upper_links(static_cast<uint32_t>(i), levels_[i]);
+      for (size_t l = 0; l < lsz; ++l) {
+        detail::read_vec(f, ids);
+        // Validate neighbor indices are within bounds
+        for (size_t nid : ids) {
+          if (nid >= cnt) throw std::runtime_error("Corrupted file: invalid neighbor index");
+        }
+        if (ids.size() > (l == 0 ? M_max0_ : M_max_)) throw std::runtime_error("Corrupted file: too many neighbors");
+        narrowed.assign(ids.begin(), ids.end());
+        set_links(links(static_cast<uint32_t>(i), static_cast<int>(l)), narrowed);
+      }
+    }
+  }
+
+  static void validate_links(const uint32_t* block, size_t max_conn, size_t cnt) {
+    if (block[0] > max_conn) throw std::runtime_error("Corrupted file: too many neighbors");
+    for (uint32_t j = 1; j <= block[0]; ++j)
+      if (block[j] >= cnt) throw std::runtime_error("Corrupted file: invalid neighbor index");
+  }
+
+  // Links iid (stored, upper blocks allocated) into the graph below the current entry point.
+  // With `seeded`, the node's existing neighbors are kept as candidates next to the search
+  // results and the full layer capacity is selected (used by merge()).
+  void connect(uint32_t iid, int level, size_t ef, bool seeded) {
+    std::vector<float> vec_buf, nb_buf;
+    const float* vec = row_f32(iid, vec_buf);
+    // Level before entry point: a concurrent build_from() stores ep_ before max_level_, so the
+    // entry point read here always has at least cur_max_level layers
+    int cur_max_level = max_level_.load();
+    uint32_t curr = static_cast<uint32_t>(ep_.load());
+    if (level < cur_max_level) {
+      float d = dist(vec, curr);
+      for (int l = cur_max_level; l > level; --l) {
+        bool changed = true;
+        while (changed) {
+          changed = false;
+          std::shared_lock lk(node_lock(curr));
+          const uint32_t* ll = links(curr, l);
+          for (uint32_t j = 1; j <= ll[0]; ++j) {
+            float nd = dist(vec, ll[j]);
+            if (nd < d) { d = nd; curr = ll[j]; changed = true; }
+          }
+        }
+      }
+    }
+
+    for (int l = std::min(level, cur_max_level); l >= 0; --l) {
+      auto top = search_layer(vec, curr, ef, l);
+      size_t max_conn = l == 0 ? M_max0_ : M_max_;
+      if (seeded) {
+        MaxHeap merged;
+        std::unordered_set<uint32_t> seen{iid};
+        for (; !top.empty(); top.pop())
+          if (seen.insert(top.top().second).second) merged.push(top.top());
+        const uint32_t* own = links(iid, l);
+        for (uint32_t j = 1; j <= own[0]; ++j)
+          if (seen.insert(own[j]).second) merged.emplace(dist(vec, own[j]), own[j]);
+        top = std::move(merged);
+      }
+      auto sel = select_neighbors(top, seeded ? max_conn : M_, l);
+      // Narrow scope: lock iid, assign, unlock BEFORE iterating neighbors (no ABBA possible)
+      { std::unique_lock lk(node_lock(iid)); set_links(links(iid, l), sel); }
+
+      for (uint32_t nid : sel) {
+        std::unique_lock lk(node_lock(nid));  // Only one lock held at a time
+        uint32_t* nl = links(nid, l);
+        if (seeded && std::find(nl + 1, nl + 1 + nl[0], iid) != nl + 1 + nl[0]) continue;
+        if (nl[0] < max_conn) { nl[++nl[0]] = iid; }
+        else {
+          float d2new = dist(vec, nid);
+          const float* nvec = row_f32(nid, nb_buf);
+          std::vector<std::pair<float, uint32_t>> cands;
+          cands.reserve(nl[0] + 1);
+          for (uint32_t j = 1; j <= nl[0]; ++j) cands.emplace_back(dist(nvec, nl[j]), nl[j]);
+          cands.emplace_back(d2new, iid);
+          std::sort(cands.begin(), cands.end());
+          nl[0] = 0;
+          for (size_t i = 0; i < max_conn && i < cands.size(); ++i) nl[++nl[0]] = cands[i].second;
+        }
+      }
+      // Use closest candidate (min distance) for next layer entry point
+      if (!top.empty()) {
+        std::pair<float, uint32_t> best = top.top();
+        while (!top.empty()) {
+          if (top.top().first < best.first) best = top.top();
+          top.pop();
+        }
+        curr = best.second;
+      }
+    }
+    if (level > cur_max_level) { ep_.store(iid); max_level_.store(level); }
+  }
 
   int get_level() {
     std::uniform_real_distribution<double> d(0.0, 1.0);
@@ -373,24 +690,95 @@ private:
     return std::min(level, MAX_LEVEL);
   }
 
-  const float* get_vec(size_t iid) const { return vectors_.data() + iid * dim_; }
+  std::shared_mutex& node_lock(uint32_t iid) const { return locks_[iid & (LOCK_STRIPES - 1)]; }
+
+  size_t row_bytes() const { return dim_ * element_size(type_); }
+
+  const void* row(uint32_t iid) const {
+    size_t off = static_cast<size_t>(iid) * dim_;
+    if (ext_rows_) return static_cast<const uint8_t*>(ext_rows_) + off * element_size(type_);
+    if (type_ == ElementType::F32) return vectors_.data() + off;
+    return half_vectors_.data() + off;
+  }
+  void* mutable_row(uint32_t iid) { return const_cast<void*>(row(iid)); }
+
+  // Row iid as FP32: the row itself in F32 indexes, otherwise widened into buf
+  const float* row_f32(uint32_t iid, std::vector<float>& buf) const {
+    if (type_ == ElementType::F32) return static_cast<const float*>(row(iid));
+    buf.resize(dim_);
+    decode_row(row(iid), buf.data(), dim_, type_);
+    return buf.data();
+  }
+
+  std::vector<float> widen_input(const uint16_t* vec, ElementType format) const {
+    if (!vec) throw std::invalid_argument("Vector must not be null");
+    if (format == ElementType::F32) throw std::invalid_argument("Half-precision input must be F16 or BF16");
+    std::vector<float> out(dim_);
+    decode_row(vec, out.data(), dim_, format);
+    return out;
+  }
+
+  // Cosine indexes keep rows unit length (queries are normalized once in search()) and
+  // remember each row's norm so get_vector() can return the vector as added
+  const float& norms_at(uint32_t iid) const { return (ext_norms_ ? ext_norms_ : norms_.data())[iid]; }
+  float get_norm(uint32_t iid) const { return norms_at(iid); }
 
-  float dist(const float* a, const float* b) const {
+  void store_vec(uint32_t iid, const float* vec) {
+    if (metric_ != HNSWDistanceMetric::COSINE) { encode_row(vec, mutable_row(iid), dim_, type_); return; }
+    if (type_ == ElementType::F32) {
+      norms_[iid] = normalize(vec, static_cast<float*>(mutable_row(iid)), dim_);
+      return;
+    }
+    std::vector<float> unit(dim_);
+    norms_[iid] = normalize(vec, unit.data(), dim_);
+    encode_row(unit.data(), mutable_row(iid), dim_, type_);
+  }
+
+  // Store-metric distance from an FP32 vector to stored row iid
+  float dist(const float* q, uint32_t iid) const {
+    const void* r = row(iid);
     switch (metric_) {
-      case HNSWDistanceMetric::L2: return l2_sq(a, b, dim_);
-      case HNSWDistanceMetric::COSINE: return cosine_distance(a, b, dim_);
-      case HNSWDistanceMetric::DOT: return -dot_product(a, b, dim_);
+      case HNSWDistanceMetric::L2: return l2_sq_row(q, r, dim_, type_);
+      case HNSWDistanceMetric::COSINE: return unit_cosine_distance(dot_product_row(q, r, dim_, type_));
+      case HNSWDistanceMetric::DOT: return -dot_product_row(q, r, dim_, type_);
       default: return std::numeric_limits<float>::infinity();
     }
   }
 
-  MaxHeap search_layer(const float* q, size_t ep, size_t ef, int level) const {
-    std::unordered_set<size_t> vis;
+  // Distances from q to a batch of nodes: four rows per kernel call, remainder one at a time
+  void dist_batch(const float* q, const uint32_t* ids, size_t cnt, float* out) const {
+    size_t j = 0;
+    for (; type_ == ElementType::F32 && j + 4 <= cnt; j += 4) {
+      const float* v0 = static_cast<const float*>(row(ids[j]));
+      const float* v1 = static_cast<const float*>(row(ids[j + 1]));
+      const float* v2 = static_cast<const float*>(row(ids[j + 2]));
+      const float* v3 = static_cast<const float*>(row(ids[j + 3]));
+      switch (metric_) {
+        case HNSWDistanceMetric::L2: l2_sq_x4(q, v0, v1, v2, v3, dim_, out + j); break;
+        case HNSWDistanceMetric::COSINE:
+          dot_product_x4(q, v0, v1, v2, v3, dim_, out + j);
+          for (size_t t = j; t < j + 4; ++t) out[t] = unit_cosine_distance(out[t]);
+          break;
+        case HNSWDistanceMetric::DOT:
+          dot_product_x4(q, v0, v1, v2, v3, dim_, out + j);
+          for (size_t t = j; t < j + 4; ++t) out[t] = -out[t];
+          break;
+        default: std::fill_n(out + j, 4, std::numeric_limits<float>::infinity());
+      }
+    }
+    for (; j < cnt; ++j) out[j] = dist(q, ids[j]);
+  }
+
+  MaxHeap search_layer(const float* q, uint32_t ep, size_t ef, int level) const {
+    std::unordered_set<uint32_t> vis;
     vis.insert(ep);
-    std::priority_queue<std::pair<float, size_t>, std::vector<std::pair<float, size_t>>,
-                        std::greater<std::pair<float, size_t>>> cands;
+    std::priority_queue<std::pair<float, uint32_t>, std::vector<std::pair<float, uint32_t>>,
+                        std::greater<std::pair<float, uint32_t>>> cands;
     MaxHeap res;
-    float d = dist(q, get_vec(ep));
+    std::vector<uint32_t> batch;
+    std::vector<float> dists(M_max0_);
+    batch.reserve(M_max0_);
+    float d = dist(q, ep);
     cands.emplace(d, ep);
     res.emplace(d, ep);
     float lb = d;
@@ -399,12 +787,24 @@ private:
       auto [cd, cid] = cands.top();
       if (cd > lb && res.size() >= ef) break;
       cands.pop();
-      std::shared_lock lk(*locks_[cid]);
-      if (static_cast<int>(neighbors_[cid].size()) <= level) continue;
-      for (size_t n : neighbors_[cid][level]) {
-        if (vis.count(n)) continue;
-        vis.insert(n);
-        float nd = dist(q, get_vec(n));
+      // Gather unvisited neighbors and prefetch their vectors before evaluating any of them,
+      // so the memory fetches overlap instead of stalling one distance call at a time
+      batch.clear();
+      {
+        std::shared_lock lk(node_lock(cid));
+        if (levels_[cid] < level) continue;
+        const uint32_t* ll = links(cid, level);
+        for (uint32_t j = 1; j <= ll[0]; ++j) {
+          uint32_t n = ll[j];
+          if (!vis.insert(n).second) continue;
+          prefetch(row(n));
+          batch.push_back(n);
+        }
+      }
+      dist_batch(q, batch.data(), batch.size(), dists.data());
+      for (size_t j = 0; j < batch.size(); ++j) {
+        uint32_t n = batch[j];
+        float nd = dists[j];
         if (res.size() < ef || nd < lb) {
           cands.emplace(nd, n);
           res.emplace(nd, n);
@@ -416,29 +816,31 @@ private:
     return res;
   }
 
-  std::vector<size_t> select_neighbors(MaxHeap& cands, size_t M, int /*level*/) const {
+  std::vector<uint32_t> select_neighbors(MaxHeap& cands, size_t M, int /*level*/) const {
     if (cands.size() <= M) {
-      std::vector<size_t> r;
+      std::vector<uint32_t> r;
       r.reserve(cands.size());
       while (!cands.empty()) { r.push_back(cands.top().second); cands.pop(); }
       return r;
     }
-    std::vector<std::pair<float, size_t>> sorted;
+    std::vector<std::pair<float, uint32_t>> sorted;
     sorted.reserve(cands.size());
     while (!cands.empty()) { sorted.push_back(cands.top()); cands.pop(); }
     std::sort(sorted.begin(), sorted.end());
 
-    std::vector<size_t> r;
+    std::vector<uint32_t> r;
     r.reserve(M);
+    std::vector<float> buf;
     for (auto& [dq, cid] : sorted) {
       if (r.size() >= M) break;
       bool ok = true;
-      for (size_t s : r)
-        if (dist(get_vec(cid), get_vec(s)) < dq) { ok = false; break; }
+      const float* cvec = row_f32(cid, buf);
+      for (uint32_t s : r)
+        if (dist(cvec, s) < dq) { ok = false; break; }
       if (ok) r.push_back(cid);
     }
     if (r.size() < M) {
-      std::unordered_set<size_t> sel(r.begin(), r.end());
+      std::unordered_set<uint32_t> sel(r.begin(), r.end());
       for (auto& p : sorted) {
         if (r.size() >= M) break;
         if (!sel.count(p.second)) r.push_back(p.second);
@@ -453,16 +855,24 @@ private:
   std::atomic<size_t> ef_search_;  // Atomic for thread-safe reads during search
   double mult_;
   std::mt19937 level_gen_;
-  std::vector<float> vectors_;
+  ElementType type_;
+  const void* ext_rows_ = nullptr;      // Borrowed rows (build_from with reference_vectors)
+  const float* ext_norms_ = nullptr;    // Borrowed cosine norms alongside ext_rows_
+  std::vector<float> vectors_;          // Owned F32 rows
+  std::vector<uint16_t> half_vectors_;  // Owned F16 / BF16 rows
+  std::vector<float> norms_;            // Cosine only: |v| of each owned row
   std::vector<uint64_t> ext_ids_;
-  std::unordered_map<uint64_t, size_t> id_map_;
+  std::unordered_map<uint64_t, uint32_t> id_map_;
   std::vector<int> levels_;
-  std::vector<std::vector<std::vector<size_t>>> neighbors_;
+  size_t link_size0_ = 0, link_size_ = 0;  // Block strides in uint32_t units (count header + slots)
+  std::vector<uint32_t> links0_;           // Layer 0: max_elements fixed-stride blocks
+  std::vector<uint32_t> upper_offset_;     // First upper-layer block of each node (level >= 1)
+  std::vector<uint32_t> upper_links_;      // Layers >= 1: level blocks per node, packed
   std::atomic<size_t> ep_{INVALID_ID};
   std::atomic<int> max_level_{-1};
   std::atomic<size_t> count_{0};
   mutable std::shared_mutex global_mtx_;
-  mutable std::vector<std::unique_ptr<std::shared_mutex>> locks_;
+  mutable std::array<std::shared_mutex, LOCK_STRIPES> locks_;
 };
 
 } // namespace quiverdb
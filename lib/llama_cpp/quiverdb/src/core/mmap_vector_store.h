@@ -1,29 +1,17 @@
 // QuiverDB - Copyright (c) 2025 Anton Tsvetkov - MIT License
 #pragma once
-
-#if defined(_WIN32) || defined(_WIN64)
-#define QUIVERDB_WINDOWS 1
-#ifndef NOMINMAX
-#define NOMINMAX  // Prevent Windows.h from defining min/max macros
-#endif
-#include <windows.h>
-#else
-#define QUIVERDB_POSIX 1
-#include <fcntl.h>
-#include <sys/mman.h>
-#include <sys/stat.h>
-#include <unistd.h>
-#endif
-
 #include "distance.h"
+#include "store_file.h"
 #include "vector_store.h"
 #include <algorithm>
+#include <bit>
+#include <cmath>
 #include <cstddef>
 #include <cstdint>
-#include <cstdio>
-#include <cstring>
 #include <fstream>
 #include <limits>
+#include <memory>
+#include <mutex>
 #include <stdexcept>
 #include <string>
 #include <unordered_map>
@@ -32,241 +20,501 @@
 
 namespace quiverdb {
 
+// Read-only store over a mapped file in the store_file layout (see store_file.h). Rows are
+// searched in place, and ids are looked up in the file's id index, so opening does no work
+// proportional to the number of vectors. Files without the index (v1 files and v2 files from
+// before it) build an in-memory id map on open instead.
 class MMapVectorStore {
 public:
-  static constexpr uint32_t MAGIC = 0x42445651;
-  static constexpr uint32_t VERSION = 1;
-  static constexpr size_t HEADER_SIZE = 32;
-
-  explicit MMapVectorStore(const std::string& filename) {
-#ifdef QUIVERDB_WINDOWS
-    file_handle_ = CreateFileA(filename.c_str(), GENERIC_READ, FILE_SHARE_READ,
-                               nullptr, OPEN_EXISTING, FILE_ATTRIBUTE_NORMAL, nullptr);
-    if (file_handle_ == INVALID_HANDLE_VALUE) throw std::runtime_error("Cannot open: " + filename);
-    LARGE_INTEGER sz;
-    if (!GetFileSizeEx(file_handle_, &sz)) { CloseHandle(file_handle_); file_handle_ = INVALID_HANDLE_VALUE;
-      throw std::runtime_error("Cannot get file size"); }
-    file_size_ = static_cast<size_t>(sz.QuadPart);
-    if (file_size_ < HEADER_SIZE) { CloseHandle(file_handle_); file_handle_ = INVALID_HANDLE_VALUE;
-      throw std::runtime_error("File too small"); }
-    mapping_handle_ = CreateFileMappingA(file_handle_, nullptr, PAGE_READONLY, 0, 0, nullptr);
-    if (!mapping_handle_) { CloseHandle(file_handle_); file_handle_ = INVALID_HANDLE_VALUE;
-      throw std::runtime_error("Cannot create mapping"); }
-    mapped_ = MapViewOfFile(mapping_handle_, FILE_MAP_READ, 0, 0, 0);
-    if (!mapped_) { CloseHandle(mapping_handle_); CloseHandle(file_handle_);
-      mapping_handle_ = nullptr; file_handle_ = INVALID_HANDLE_VALUE;
-      throw std::runtime_error("Cannot map file"); }
-#else
-    fd_ = open(filename.c_str(), O_RDONLY);
-    if (fd_ < 0) throw std::runtime_error("Cannot open: " + filename);
-    struct stat sb;
-    if (fstat(fd_, &sb) < 0) { close(fd_); fd_ = -1; throw std::runtime_error("Cannot stat file"); }
-    file_size_ = static_cast<size_t>(sb.st_size);
-    if (file_size_ < HEADER_SIZE) { close(fd_); fd_ = -1; throw std::runtime_error("File too small"); }
-    mapped_ = mmap(nullptr, file_size_, PROT_READ, MAP_PRIVATE, fd_, 0);
-    if (mapped_ == MAP_FAILED) { close(fd_); fd_ = -1; mapped_ = nullptr;
-      throw std::runtime_error("Cannot mmap file"); }
-#endif
-    const uint8_t* p = static_cast<const uint8_t*>(mapped_);
-    uint32_t magic; std::memcpy(&magic, p, 4);
-    if (magic != MAGIC) { cleanup(); throw std::runtime_error("Invalid magic"); }
-    p += 4;
-    uint32_t ver; std::memcpy(&ver, p, 4);
-    if (ver != VERSION) { cleanup(); throw std::runtime_error("Unsupported version"); }
-    p += 4;
-    std::memcpy(&dim_, p, 8); p += 8;
-    std::memcpy(&num_vectors_, p, 8); p += 8;
-    uint32_t met; std::memcpy(&met, p, 4);
-    if (met > 2) { cleanup(); throw std::runtime_error("Invalid metric"); }
-    metric_ = static_cast<DistanceMetric>(met);
-
-    // Check for overflow in size calculations step by step
-    if (num_vectors_ > SIZE_MAX / sizeof(uint64_t)) {
-      cleanup(); throw std::runtime_error("File corrupted: size overflow");
-    }
-    if (dim_ == 0 && num_vectors_ > 0) {
-      cleanup(); throw std::runtime_error("File corrupted: zero dimension with vectors");
-    }
-    if (dim_ > SIZE_MAX / sizeof(float)) {
-      cleanup(); throw std::runtime_error("File corrupted: size overflow");
-    }
-    size_t vec_bytes_per = dim_ * sizeof(float);  // Safe due to check above
-    if (vec_bytes_per > 0 && num_vectors_ > SIZE_MAX / vec_bytes_per) {
-      cleanup(); throw std::runtime_error("File corrupted: size overflow");
-    }
-    size_t ids_size = num_vectors_ * sizeof(uint64_t);
-    size_t vecs_size = num_vectors_ * vec_bytes_per;
-    if (ids_size > SIZE_MAX - HEADER_SIZE || vecs_size > SIZE_MAX - HEADER_SIZE - ids_size) {
-      cleanup(); throw std::runtime_error("File corrupted: size overflow");
+  static constexpr uint32_t MAGIC = store_file::MAGIC;
+  static constexpr uint32_t VERSION = store_file::VERSION;
+  static constexpr size_t HEADER_SIZE = store_file::HEADER_SIZE;
+  static constexpr size_t HEADER_SIZE_V1 = store_file::HEADER_SIZE_V1;
+  static constexpr size_t SECTION_ALIGN = store_file::SECTION_ALIGN;
+  static constexpr uint32_t FLAG_NORMALIZED = store_file::FLAG_NORMALIZED;
+  static constexpr uint32_t FLAG_BINARY = store_file::FLAG_BINARY;
+  static constexpr uint32_t FLAG_ID_INDEX = store_file::FLAG_ID_INDEX;
+
+  explicit MMapVectorStore(const std::string& filename) : file_(filename, HEADER_SIZE_V1) {
+    const uint8_t* base = file_.data();
+    store_file::Header h = store_file::parse_header(base, file_.size());
+    dim_ = h.dim;
+    num_vectors_ = h.count;
+    metric_ = static_cast<DistanceMetric>(h.metric);
+    type_ = h.type;
+    normalized_ = h.normalized();
+    words_ = h.words();
+    ids_ptr_ = reinterpret_cast<const uint64_t*>(base + h.ids_off);
+    rows_ptr_ = base + h.vecs_off;
+    row_bytes_ = h.row_bytes();
+    norms_ptr_ = normalized_ ? reinterpret_cast<const float*>(base + h.norms_off) : nullptr;
+    bits_ptr_ = h.binary() ? reinterpret_cast<const uint64_t*>(base + h.bits_off) : nullptr;
+    advise_scan(MappedFile::Advice::Sequential);
+    if (h.id_index()) {
+      index_ptr_ = reinterpret_cast<const uint64_t*>(base + h.index_off);
+      index_slots_ = h.index_slots;
+      advise_section(index_ptr_, index_slots_ * sizeof(uint64_t), MappedFile::Advice::Random);
+      return;
     }
-    size_t expected = HEADER_SIZE + ids_size + vecs_size;
-    if (file_size_ < expected) { cleanup(); throw std::runtime_error("File truncated"); }
-
-    ids_ptr_ = reinterpret_cast<const uint64_t*>(static_cast<const uint8_t*>(mapped_) + HEADER_SIZE);
-    vectors_ptr_ = reinterpret_cast<const float*>(
-        static_cast<const uint8_t*>(mapped_) + HEADER_SIZE + num_vectors_ * sizeof(uint64_t));
-    try {
-      id_map_.reserve(num_vectors_);
-      for (size_t i = 0; i < num_vectors_; ++i) id_map_[ids_ptr_[i]] = i;
-    } catch (...) { cleanup(); throw; }
+    id_map_.reserve(num_vectors_);
+    for (size_t i = 0; i < num_vectors_; ++i) id_map_[ids_ptr_[i]] = i;
   }
 
-  ~MMapVectorStore() { cleanup(); }
   MMapVectorStore(const MMapVectorStore&) = delete;
   MMapVectorStore& operator=(const MMapVectorStore&) = delete;
 
   MMapVectorStore(MMapVectorStore&& o) noexcept :
-#ifdef QUIVERDB_WINDOWS
-    file_handle_(o.file_handle_), mapping_handle_(o.mapping_handle_),
-#else
-    fd_(o.fd_),
-#endif
-    mapped_(o.mapped_), file_size_(o.file_size_), dim_(o.dim_), num_vectors_(o.num_vectors_),
-    metric_(o.metric_), ids_ptr_(o.ids_ptr_), vectors_ptr_(o.vectors_ptr_), id_map_(std::move(o.id_map_)) {
-#ifdef QUIVERDB_WINDOWS
-    o.file_handle_ = INVALID_HANDLE_VALUE; o.mapping_handle_ = nullptr;
-#else
-    o.fd_ = -1;
-#endif
-    o.mapped_ = nullptr;
-  }
+    file_(std::move(o.file_)), dim_(o.dim_), num_vectors_(o.num_vectors_),
+    metric_(o.metric_), type_(o.type_), normalized_(o.normalized_), ids_ptr_(o.ids_ptr_), rows_ptr_(o.rows_ptr_),
+    row_bytes_(o.row_bytes_),
+    norms_ptr_(o.norms_ptr_), bits_ptr_(o.bits_ptr_), words_(o.words_), index_ptr_(o.index_ptr_),
+    index_slots_(o.index_slots_), id_map_(std::move(o.id_map_)),
+    pool_(std::move(o.pool_)) {}
 
   MMapVectorStore& operator=(MMapVectorStore&& o) noexcept {
     if (this != &o) {
-      cleanup();
-#ifdef QUIVERDB_WINDOWS
-      file_handle_ = o.file_handle_; mapping_handle_ = o.mapping_handle_;
-      o.file_handle_ = INVALID_HANDLE_VALUE; o.mapping_handle_ = nullptr;
-#else
-      fd_ = o.fd_; o.fd_ = -1;
-#endif
-      mapped_ = o.mapped_; file_size_ = o.file_size_; dim_ = o.dim_; num_vectors_ = o.num_vectors_;
-      metric_ = o.metric_; ids_ptr_ = o.ids_ptr_; vectors_ptr_ = o.vectors_ptr_;
-      id_map_ = std::move(o.id_map_); o.mapped_ = nullptr;
+      file_ = std::move(o.file_); dim_ = o.dim_; num_vectors_ = o.num_vectors_;
+      metric_ = o.metric_; type_ = o.type_; normalized_ = o.normalized_; ids_ptr_ = o.ids_ptr_;
+      rows_ptr_ = o.rows_ptr_; row_bytes_ = o.row_bytes_;
+      norms_ptr_ = o.norms_ptr_; bits_ptr_ = o.bits_ptr_; words_ = o.words_;
+      index_ptr_ = o.index_ptr_; index_slots_ = o.index_slots_;
+      id_map_ = std::move(o.id_map_); pool_ = std::move(o.pool_);
     }
     return *this;
   }
 
+  // Zero-copy view of the stored row: unit length in normalized() cosine files, where
+  // get_copy() returns the vector as added. FP16/BF16 files throw; use get_copy().
   const float* get(uint64_t id) const {
-    auto it = id_map_.find(id);
-    return it == id_map_.end() ? nullptr : vectors_ptr_ + it->second * dim_;
+    if (type_ != ElementType::F32) throw std::runtime_error("get() needs FP32 rows; use get_copy()");
+    size_t i = find(id);
+    return i == NOT_FOUND ? nullptr : static_cast<const float*>(row(i));
   }
 
-  bool contains(uint64_t id) const { return id_map_.count(id); }
+  std::vector<float> get_copy(uint64_t id) const {
+    size_t i = find(id);
+    if (i == NOT_FOUND) return {};
+    std::vector<float> out(dim_);
+    decode_row(row(i), out.data(), dim_, type_);
+    if (norms_ptr_) for (float& x : out) x *= norms_ptr_[i];
+    return out;
+  }
+
+  bool contains(uint64_t id) const { return find(id) != NOT_FOUND; }
 
   std::vector<SearchResult> search(const float* query, size_t k) const {
     if (!query) throw std::invalid_argument("Query must not be null");
     if (k == 0) throw std::invalid_argument("k must be > 0");
-    std::vector<SearchResult> res;
-    res.reserve(num_vectors_);
-    for (size_t i = 0; i < num_vectors_; ++i)
-      res.push_back({ids_ptr_[i], dist(query, vectors_ptr_ + i * dim_)});
-    size_t n = std::min(k, res.size());
-    std::partial_sort(res.begin(), res.begin() + n, res.end());
-    res.resize(n);
-    return res;
+    std::vector<float> query_buf;
+    query = prepare_queries(metric_, normalized_, query, 1, dim_, query_buf);
+    std::shared_ptr<ThreadPool> pool;
+    { std::lock_guard lk(pool_mtx_); pool = pool_; }  // Kept alive even if replaced mid-search
+    return scan_top_k(pool.get(), num_vectors_, k, [&](size_t begin, size_t end, TopK& top) {
+      for (size_t i = begin; i < end; ++i)
+        top.push(ids_ptr_[i], row_distance(metric_, normalized_, type_, query, row(i), dim_));
+    });
   }
 
+  // Exact top-k for nq queries stored back to back (nq * dimension floats); one sorted result
+  // list per query, as search() would return
+  std::vector<std::vector<SearchResult>> search_batch(const float* queries, size_t nq, size_t k) const {
+    if (!queries) throw std::invalid_argument("Queries must not be null");
+    if (k == 0) throw std::invalid_argument("k must be > 0");
+    std::shared_ptr<ThreadPool> pool;
+    { std::lock_guard lk(pool_mtx_); pool = pool_; }
+    return search_batch_rows(pool.get(), metric_, normalized_, type_, dim_, rows_ptr_, ids_ptr_, num_vectors_,
+                             queries, nq, k);
+  }
+
+  // Approximate top-k over the file's sign codes: shortlists k * rerank_factor rows by Hamming
+  // distance, then reranks them with the exact metric. Needs a file saved with a binary index.
+  std::vector<SearchResult> search_binary(const float* query, size_t k, size_t rerank_factor = 4) const {
+    if (!query) throw std::invalid_argument("Query must not be null");
+    if (k == 0) throw std::invalid_argument("k must be > 0");
+    if (!bits_ptr_) throw std::runtime_error("File has no binary index");
+    size_t candidates = binary_candidates(k, rerank_factor);
+    std::vector<float> query_buf;
+    query = prepare_queries(metric_, normalized_, query, 1, dim_, query_buf);
+    std::vector<uint64_t> qbits(words_);
+    binarize(query, qbits.data(), dim_);
+    std::shared_ptr<ThreadPool> pool;
+    { std::lock_guard lk(pool_mtx_); pool = pool_; }
+    return binary_search_rows(pool.get(), bits_ptr_, words_, ids_ptr_, num_vectors_, qbits.data(), k, candidates,
+        [&](size_t i) { return row_distance(metric_, normalized_, type_, query, row(i), dim_); });
+  }
+
+  bool has_binary_index() const { return bits_ptr_ != nullptr; }
+
   size_t size() const { return num_vectors_; }
   size_t dimension() const { return dim_; }
   DistanceMetric metric() const { return metric_; }
+  ElementType element_type() const { return type_; }
+
+  // Threads used by search(); 1 (the default) scans on the calling thread only
+  void set_search_threads(size_t threads) {
+    if (threads == 0) throw std::invalid_argument("Search threads must be > 0");
+    auto pool = threads > 1 ? std::make_shared<ThreadPool>(threads) : nullptr;
+    std::lock_guard lk(pool_mtx_);
+    pool_ = std::move(pool);
+  }
+  size_t search_threads() const { std::lock_guard lk(pool_mtx_); return pool_ ? pool_->size() : 1; }
+
+  // Faults in the id sections and the first fraction of the rows (and sign codes), so the page
+  // faults a cold file costs are paid here instead of by the first queries. Blocks until the
+  // pages are resident; run it on a background thread to overlap it with other startup work.
+  void warmup(double fraction = 1.0) const {
+    if (!(fraction >= 0.0 && fraction <= 1.0)) throw std::invalid_argument("Warmup fraction must be in [0, 1]");
+    size_t n = std::min(num_vectors_, static_cast<size_t>(std::ceil(fraction * static_cast<double>(num_vectors_))));
+    prefault_section(ids_ptr_, num_vectors_ * sizeof(uint64_t));
+    if (index_ptr_) prefault_section(index_ptr_, index_slots_ * sizeof(uint64_t));
+    if (norms_ptr_) prefault_section(norms_ptr_, num_vectors_ * sizeof(float));
+    if (bits_ptr_) prefault_section(bits_ptr_, n * words_ * sizeof(uint64_t));
+    prefault_section(rows_ptr_, n * row_bytes_);
+  }
+
+  // Readahead for the rows, ids and sign codes. Sequential, set on open, suits the full scans
+  // of search(); random suits workloads dominated by get() or HNSW builds over the rows.
+  void advise_sequential() const { advise_scan(MappedFile::Advice::Sequential); }
+  void advise_random() const { advise_scan(MappedFile::Advice::Random); }
+
+  // Raw views of the mapped sections in file order: row i of rows() belongs to ids()[i] and
+  // holds dimension() elements of element_type(); data() is the same rows for FP32 files only
+  const uint64_t* ids() const { return ids_ptr_; }
+  const void* rows() const { return rows_ptr_; }
+  const float* data() const { return type_ == ElementType::F32 ? reinterpret_cast<const float*>(rows_ptr_) : nullptr; }
+  // Cosine files from v2 on store unit-length rows plus the original norms (nullptr otherwise)
+  bool normalized() const { return normalized_; }
+  const float* norms() const { return norms_ptr_; }
+  // Whether ids are looked up in the file's id index rather than a map built on open
+  bool has_id_index() const { return index_ptr_ != nullptr; }
 
 private:
-  void cleanup() {
-#ifdef QUIVERDB_WINDOWS
-    if (mapped_) { UnmapViewOfFile(mapped_); mapped_ = nullptr; }
-    if (mapping_handle_) { CloseHandle(mapping_handle_); mapping_handle_ = nullptr; }
-    if (file_handle_ != INVALID_HANDLE_VALUE) { CloseHandle(file_handle_); file_handle_ = INVALID_HANDLE_VALUE; }
-#else
-    if (mapped_ && mapped_ != MAP_FAILED) { munmap(mapped_, file_size_); mapped_ = nullptr; }
-    if (fd_ >= 0) { close(fd_); fd_ = -1; }
-#endif
+  const void* row(size_t i) const { return rows_ptr_ + i * row_bytes_; }
+
+  static constexpr size_t NOT_FOUND = std::numeric_limits<size_t>::max();
+
+  size_t offset_of(const void* p) const { return static_cast<size_t>(static_cast<const uint8_t*>(p) - file_.data()); }
+  void advise_section(const void* p, size_t bytes, MappedFile::Advice advice) const {
+    file_.advise(offset_of(p), bytes, advice);
   }
+  void prefault_section(const void* p, size_t bytes) const { file_.prefault(offset_of(p), bytes); }
 
-  float dist(const float* a, const float* b) const {
-    switch (metric_) {
-      case DistanceMetric::L2: return l2_sq(a, b, dim_);
-      case DistanceMetric::COSINE: return cosine_distance(a, b, dim_);
-      case DistanceMetric::DOT: return -dot_product(a, b, dim_);
-      default: return std::numeric_limits<float>::infinity();
+  // Sections a search() scans front to back
+  void advise_scan(MappedFile::Advice advice) const {
+    advise_section(ids_ptr_, num_vectors_ * sizeof(uint64_t), advice);
+    advise_section(rows_ptr_, num_vectors_ * row_bytes_, advice);
+    if (norms_ptr_) advise_section(norms_ptr_, num_vectors_ * sizeof(float), advice);
+    if (bits_ptr_) advise_section(bits_ptr_, num_vectors_ * words_ * sizeof(uint64_t), advice);
+  }
+
+  // Row holding id, or NOT_FOUND. Slots are validated as they are read; the probe ends at the
+  // first empty slot, which parse_header() guarantees exists
+  size_t find(uint64_t id) const {
+    if (!index_ptr_) {
+      auto it = id_map_.find(id);
+      return it == id_map_.end() ? NOT_FOUND : it->second;
+    }
+    uint64_t mask = index_slots_ - 1;
+    for (uint64_t s = store_file::id_slot(id, index_slots_), n = 0; n < index_slots_; s = (s + 1) & mask, ++n) {
+      uint64_t slot = index_ptr_[s];
+      if (slot == 0) return NOT_FOUND;
+      if (slot > num_vectors_) throw std::runtime_error("File corrupted: bad id index");
+      if (ids_ptr_[slot - 1] == id) return slot - 1;
     }
+    return NOT_FOUND;
   }
 
-#ifdef QUIVERDB_WINDOWS
-  HANDLE file_handle_ = INVALID_HANDLE_VALUE;
-  HANDLE mapping_handle_ = nullptr;
-#else
-  int fd_ = -1;
-#endif
-  void* mapped_ = nullptr;
-  size_t file_size_ = 0, dim_ = 0, num_vectors_ = 0;
+  MappedFile file_;
+  size_t dim_ = 0, num_vectors_ = 0;
   DistanceMetric metric_ = DistanceMetric::L2;
+  ElementType type_ = ElementType::F32;
+  bool normalized_ = false;
   const uint64_t* ids_ptr_ = nullptr;
-  const float* vectors_ptr_ = nullptr;
-  std::unordered_map<uint64_t, size_t> id_map_;
+  const uint8_t* rows_ptr_ = nullptr;
+  size_t row_bytes_ = 0;
+  const float* norms_ptr_ = nullptr;
+  const uint64_t* bits_ptr_ = nullptr;  // Sign codes, words_ per row (FLAG_BINARY files)
+  size_t words_ = 0;
+  const uint64_t* index_ptr_ = nullptr;  // Id index slots (FLAG_ID_INDEX files)
+  size_t index_slots_ = 0;
+  std::unordered_map<uint64_t, size_t> id_map_;  // Files without an id index only
+  std::shared_ptr<ThreadPool> pool_;
+  mutable std::mutex pool_mtx_;
 };
 
 class MMapVectorStoreBuilder {
 public:
-  explicit MMapVectorStoreBuilder(size_t dimension, DistanceMetric metric = DistanceMetric::L2)
-      : dim_(dimension), metric_(metric) {
+  explicit MMapVectorStoreBuilder(size_t dimension, DistanceMetric metric = DistanceMetric::L2,
+                                  ElementType element_type = ElementType::F32)
+      : dim_(dimension), metric_(metric), type_(element_type) {
     if (dimension == 0) throw std::invalid_argument("Dimension must be > 0");
   }
 
   void add(uint64_t id, const float* vec) {
     if (!vec) throw std::invalid_argument("Vector must not be null");
     if (id_set_.count(id)) throw std::invalid_argument("Duplicate ID: " + std::to_string(id));
+    const float* src = vec;
+    if (metric_ == DistanceMetric::COSINE) {
+      unit_.resize(dim_);
+      norms_.push_back(normalize(vec, unit_.data(), dim_));
+      src = unit_.data();
+    }
+    size_t row_bytes = dim_ * element_size(type_);
+    rows_.resize(rows_.size() + row_bytes);
+    encode_row(src, rows_.data() + rows_.size() - row_bytes, dim_, type_);
     ids_.push_back(id);
-    vectors_.insert(vectors_.end(), vec, vec + dim_);
     id_set_.insert(id);
   }
 
-  void reserve(size_t cap) { ids_.reserve(cap); vectors_.reserve(cap * dim_); }
+  // Half-precision input (FP16 or BF16 bits, whatever the file's own element type)
+  void add(uint64_t id, const uint16_t* vec, ElementType format) {
+    if (!vec) throw std::invalid_argument("Vector must not be null");
+    if (format == ElementType::F32) throw std::invalid_argument("Half-precision input must be F16 or BF16");
+    std::vector<float> wide(dim_);
+    decode_row(vec, wide.data(), dim_, format);
+    add(id, wide.data());
+  }
+
+  // count vectors stored back to back; stops at the first duplicate id, keeping those before it
+  void add_batch(const uint64_t* ids, const float* vecs, size_t count) {
+    if (count > 0 && (!ids || !vecs)) throw std::invalid_argument("Batch must not be null");
+    for (size_t i = 0; i < count; ++i) add(ids[i], vecs + i * dim_);
+  }
+
+  void reserve(size_t cap) {
+    ids_.reserve(cap); rows_.reserve(cap * dim_ * element_size(type_));
+    if (metric_ == DistanceMetric::COSINE) norms_.reserve(cap);
+  }
+
+  // Also write one sign bit per dimension for every row, enabling search_binary() on the
+  // opened store at dim / 8 extra bytes per row
+  void set_binary_index(bool enabled) { binary_ = enabled; }
+  bool has_binary_index() const { return binary_; }
 
   void save(const std::string& filename) const {
-    std::string tmp = filename + ".tmp";
-    std::ofstream f(tmp, std::ios::binary);
-    if (!f) throw std::runtime_error("Cannot open: " + tmp);
-    uint32_t magic = MMapVectorStore::MAGIC, ver = MMapVectorStore::VERSION;
-    uint64_t dim = dim_, nv = ids_.size();
-    uint32_t met = static_cast<uint32_t>(metric_), reserved = 0;
-    f.write(reinterpret_cast<const char*>(&magic), 4);
-    f.write(reinterpret_cast<const char*>(&ver), 4);
-    f.write(reinterpret_cast<const char*>(&dim), 8);
-    f.write(reinterpret_cast<const char*>(&nv), 8);
-    f.write(reinterpret_cast<const char*>(&met), 4);
-    f.write(reinterpret_cast<const char*>(&reserved), 4);
-    f.write(reinterpret_cast<const char*>(ids_.data()), ids_.size() * sizeof(uint64_t));
-    f.write(reinterpret_cast<const char*>(vectors_.data()), vectors_.size() * sizeof(float));
-    f.flush();
-    if (!f) { std::remove(tmp.c_str()); throw std::runtime_error("Write failed"); }
-    // IMPORTANT: Close ofstream BEFORE reopening for fsync. On Windows, CreateFileA
-    // fails if the file is still open by ofstream (exclusive lock). This order is correct.
-    f.close();
-#ifdef QUIVERDB_WINDOWS
-    // Reopen and flush to disk for durability before atomic rename
-    HANDLE hFile = CreateFileA(tmp.c_str(), GENERIC_WRITE, FILE_SHARE_READ, NULL,
-                               OPEN_EXISTING, FILE_ATTRIBUTE_NORMAL, NULL);
-    if (hFile != INVALID_HANDLE_VALUE) { FlushFileBuffers(hFile); CloseHandle(hFile); }
-#else
-    // Reopen and fsync for durability before atomic rename
-    int fd = open(tmp.c_str(), O_WRONLY);
-    if (fd >= 0) { fsync(fd); close(fd); }
-#endif
-    if (std::rename(tmp.c_str(), filename.c_str()) != 0) {
-      std::remove(tmp.c_str()); throw std::runtime_error("Rename failed");
+    store_file::Header h;
+    h.dim = dim_;
+    h.count = ids_.size();
+    h.metric = static_cast<uint32_t>(metric_);
+    h.flags = (metric_ == DistanceMetric::COSINE ? store_file::FLAG_NORMALIZED : 0) |
+              (binary_ ? store_file::FLAG_BINARY : 0);
+    h.type = type_;
+    std::vector<uint64_t> bits;
+    if (binary_) {
+      size_t words = h.words(), row_bytes = h.row_bytes();
+      bits.resize(ids_.size() * words);
+      std::vector<float> row(dim_);
+      for (size_t i = 0; i < ids_.size(); ++i) {
+        decode_row(rows_.data() + i * row_bytes, row.data(), dim_, type_);
+        binarize(row.data(), bits.data() + i * words, dim_);
+      }
     }
+    store_file::write(filename, h, {ids_.data(), rows_.data(), norms_.data(), bits.data()});
   }
 
   size_t size() const { return ids_.size(); }
   size_t dimension() const { return dim_; }
+  ElementType element_type() const { return type_; }
 
 private:
   size_t dim_;
   DistanceMetric metric_;
+  ElementType type_;
   std::vector<uint64_t> ids_;
-  std::vector<float> vectors_;
+  std::vector<uint8_t> rows_;  // Encoded rows, unit length for COSINE with norms_ holding |v|
+  std::vector<float> norms_;
+  std::vector<float> unit_;    // Scratch for normalizing cosine rows
   std::unordered_set<uint64_t> id_set_;
+  bool binary_ = false;
+};
+
+// Builds a store file without holding the vectors in memory. Rows are encoded into a 1 MiB
+// buffer and appended to filename + ".tmp" behind a placeholder header, so memory grows only
+// by the id table (about 24 bytes per id, doubling as the file's id index) and, for cosine,
+// one norm per row. finish() appends the ids, norms and binary codes, writes the header and
+// renames the file into place; a writer destroyed before finish() removes its temp file.
+class MMapVectorStoreWriter {
+public:
+  static constexpr size_t BUFFER_BYTES = size_t{1} << 20;
+
+  MMapVectorStoreWriter(const std::string& filename, size_t dimension,
+                        DistanceMetric metric = DistanceMetric::L2, ElementType element_type = ElementType::F32)
+      : filename_(filename), tmp_(filename + ".tmp"), dim_(dimension), metric_(metric), type_(element_type),
+        slots_(16) {
+    if (dimension == 0) throw std::invalid_argument("Dimension must be > 0");
+    file_.open(tmp_, std::ios::binary | std::ios::trunc);
+    if (!file_) throw std::runtime_error("Cannot open: " + tmp_);
+    // Rows start right after the header, which finish() fills in
+    const char header[store_file::HEADER_SIZE] = {};
+    file_.write(header, sizeof(header));
+    pos_ = sizeof(header);
+  }
+
+  ~MMapVectorStoreWriter() {
+    if (finished_) return;
+    file_.close();
+    std::remove(tmp_.c_str());
+  }
+
+  MMapVectorStoreWriter(const MMapVectorStoreWriter&) = delete;
+  MMapVectorStoreWriter& operator=(const MMapVectorStoreWriter&) = delete;
+
+  void add(uint64_t id, const float* vec) {
+    if (!vec) throw std::invalid_argument("Vector must not be null");
+    if (finished_) throw std::runtime_error("Writer already finished");
+    if (!insert_id(id)) throw std::invalid_argument("Duplicate ID: " + std::to_string(id));
+    const float* src = vec;
+    if (metric_ == DistanceMetric::COSINE) {
+      unit_.resize(dim_);
+      norms_.push_back(normalize(vec, unit_.data(), dim_));
+      src = unit_.data();
+    }
+    size_t row_bytes = dim_ * element_size(type_);
+    buf_.resize(buf_.size() + row_bytes);
+    encode_row(src, buf_.data() + buf_.size() - row_bytes, dim_, type_);
+    if (buf_.size() >= BUFFER_BYTES) flush_rows();
+  }
+
+  // Half-precision input (FP16 or BF16 bits, whatever the file's own element type)
+  void add(uint64_t id, const uint16_t* vec, ElementType format) {
+    if (!vec) throw std::invalid_argument("Vector must not be null");
+    if (format == ElementType::F32) throw std::invalid_argument("Half-precision input must be F16 or BF16");
+    std::vector<float> wide(dim_);
+    decode_row(vec, wide.data(), dim_, format);
+    add(id, wide.data());
+  }
+
+  // count vectors stored back to back; stops at the first duplicate id, keeping those before it
+  void add_batch(const uint64_t* ids, const float* vecs, size_t count) {
+    if (count > 0 && (!ids || !vecs)) throw std::invalid_argument("Batch must not be null");
+    for (size_t i = 0; i < count; ++i) add(ids[i], vecs + i * dim_);
+  }
+
+  // Sizes the id table (and norms) for cap vectors up front
+  void reserve(size_t cap) {
+    ids_.reserve(cap);
+    if (metric_ == DistanceMetric::COSINE) norms_.reserve(cap);
+    size_t slots = std::bit_ceil(cap + cap / 2 + 1);
+    if (slots > slots_.size()) rehash(slots);
+  }
+
+  // Also write one sign bit per dimension for every row; the codes are computed by reading
+  // the rows back in finish(), so this can be set at any point before it
+  void set_binary_index(bool enabled) { binary_ = enabled; }
+  bool has_binary_index() const { return binary_; }
+
+  void finish() {
+    if (finished_) throw std::runtime_error("Writer already finished");
+    flush_rows();
+    size_t n = ids_.size();
+    store_file::Header h;
+    h.dim = dim_;
+    h.count = n;
+    h.metric = static_cast<uint32_t>(metric_);
+    h.flags = (metric_ == DistanceMetric::COSINE ? store_file::FLAG_NORMALIZED : 0) |
+              (binary_ ? store_file::FLAG_BINARY : 0) | store_file::FLAG_ID_INDEX;
+    h.type = type_;
+    h.vecs_off = store_file::HEADER_SIZE;
+    h.ids_off = append_section(ids_.data(), n * sizeof(uint64_t));
+    if (h.normalized()) h.norms_off = append_section(norms_.data(), n * sizeof(float));
+    if (binary_) h.bits_off = append_bits(h);
+    h.index_off = append_section(slots_.data(), slots_.size() * sizeof(uint64_t));
+    h.index_slots = slots_.size();
+    char header[store_file::HEADER_SIZE];
+    store_file::encode_header(h, header);
+    file_.seekp(0);
+    file_.write(header, sizeof(header));
+    file_.flush();
+    if (!file_) { file_.close(); std::remove(tmp_.c_str()); finished_ = true; throw std::runtime_error("Write failed"); }
+    file_.close();
+    finished_ = true;
+    store_file::replace_file(tmp_, filename_);
+  }
+
+  size_t size() const { return ids_.size(); }
+  size_t dimension() const { return dim_; }
+  ElementType element_type() const { return type_; }
+  bool finished() const { return finished_; }
+
+private:
+  // Open-addressing table of row + 1 per id, at most two thirds full; written as the id index
+  bool insert_id(uint64_t id) {
+    if ((ids_.size() + 1) * 3 > slots_.size() * 2) rehash(slots_.size() * 2);
+    uint64_t mask = slots_.size() - 1;
+    uint64_t s = store_file::id_slot(id, slots_.size());
+    for (; slots_[s]; s = (s + 1) & mask)
+      if (ids_[slots_[s] - 1] == id) return false;
+    slots_[s] = ids_.size() + 1;
+    ids_.push_back(id);
+    return true;
+  }
+
+  void rehash(size_t slots) {
+    slots_.assign(slots, 0);
+    uint64_t mask = slots - 1;
+    for (size_t i = 0; i < ids_.size(); ++i) {
+      uint64_t s = store_file::id_slot(ids_[i], slots);
+      while (slots_[s]) s = (s + 1) & mask;
+      slots_[s] = i + 1;
+    }
+  }
+
+  void flush_rows() {
+    file_.write(reinterpret_cast<const char*>(buf_.data()), static_cast<std::streamsize>(buf_.size()));
+    if (!file_) throw std::runtime_error("Write failed: " + tmp_);
+    pos_ += buf_.size();
+    buf_.clear();
+  }
+
+  // Pads to the next section boundary, writes bytes there and returns their offset
+  uint64_t append_section(const void* data, size_t bytes) {
+    const char padding[store_file::SECTION_ALIGN] = {};
+    uint64_t off = store_file::align_section(pos_);
+    file_.write(padding, static_cast<std::streamsize>(off - pos_));
+    file_.write(static_cast<const char*>(data), static_cast<std::streamsize>(bytes));
+    pos_ = off + bytes;
+    return off;
+  }
+
+  // Reads the rows back a buffer at a time and appends their sign codes
+  uint64_t append_bits(const store_file::Header& h) {
+    file_.flush();
+    std::ifstream in(tmp_, std::ios::binary);
+    if (!file_ || !in) throw std::runtime_error("Cannot read back: " + tmp_);
+    in.seekg(static_cast<std::streamoff>(h.vecs_off));
+    size_t row_bytes = h.row_bytes(), words = h.words();
+    size_t chunk = std::max<size_t>(1, BUFFER_BYTES / row_bytes);
+    std::vector<uint8_t> rows(chunk * row_bytes);
+    std::vector<uint64_t> bits(chunk * words);
+    std::vector<float> row(dim_);
+    uint64_t off = append_section(nullptr, 0);
+    for (size_t done = 0, m; done < h.count; done += m) {
+      m = std::min(chunk, h.count - done);
+      if (!in.read(reinterpret_cast<char*>(rows.data()), static_cast<std::streamsize>(m * row_bytes)))
+        throw std::runtime_error("Cannot read back: " + tmp_);
+      for (size_t i = 0; i < m; ++i) {
+        decode_row(rows.data() + i * row_bytes, row.data(), dim_, type_);
+        binarize(row.data(), bits.data() + i * words, dim_);
+      }
+      file_.write(reinterpret_cast<const char*>(bits.data()), static_cast<std::streamsize>(m * words * sizeof(uint64_t)));
+      pos_ += m * words * sizeof(uint64_t);
+    }
+    return off;
+  }
+
+  std::string filename_, tmp_;
+  size_t dim_;
+  DistanceMetric metric_;
+  ElementType type_;
+  std::ofstream file_;
+  uint64_t pos_ = 0;             // Bytes written to file_ so far
+  std::vector<uint8_t> buf_;     // Encoded rows not yet written
+  std::vector<uint64_t> ids_;
+  std::vector<uint64_t> slots_;  // Id table, see insert_id()
+  std::vector<float> norms_;
+  std::vector<float> unit_;      // Scratch for normalizing cosine rows
+  bool binary_ = false;
+  bool finished_ = false;
 };
 
 } // namespace quiverdb
@@ -0,0 +1,463 @@
+// QuiverDB - Copyright (c) 2025 Anton Tsvetkov - MIT License
+#pragma once
+#include "mmap_vector_store.h"
+#include "store_file.h"
+#include "vector_store.h"
+#include <algorithm>
+#include <condition_variable>
+#include <cstddef>
+#include <cstdint>
+#include <cstring>
+#include <filesystem>
+#include <fstream>
+#include <memory>
+#include <mutex>
+#include <shared_mutex>
+#include <stdexcept>
+#include <string>
+#include <thread>
+#include <unordered_set>
+#include <vector>
+
+namespace quiverdb {
+
+struct SegmentedVectorStoreOptions {
+  size_t seal_rows = 16384;           // Tail size at which add() seals it into a segment
+  size_t merge_rows = 262144;         // compact() merges segments with fewer live rows than this
+  bool background_compaction = true;  // Run compact() on a worker thread after every seal
+  bool sync_wal = false;              // fsync the log after every write, not only in sync() / seal()
+};
+
+// Appendable store kept in a directory: immutable MMapVectorStore segment files, plus an
+// in-memory VectorStore tail whose writes are first appended to a write-ahead log.
+//   - seal() writes the tail out as a new segment and starts an empty log
+//   - remove() of a sealed vector records a tombstone against its segment
+//   - search() merges the tail and every segment into one top-k
+//   - compact() rewrites small or mostly deleted segments into one, dropping tombstoned rows
+// The MANIFEST file names the live segments, their tombstones and the current log; it is
+// replaced atomically, so a crash leaves either the old or the new set of files in effect.
+// Reopening the directory maps the segments, replays the log into the tail and deletes files
+// the manifest no longer references. Ids are unique across the whole store.
+class SegmentedVectorStore {
+public:
+  static constexpr uint32_t MANIFEST_MAGIC = 0x4D535651;  // "QVSM"
+  static constexpr uint32_t MANIFEST_VERSION = 1;
+
+  // Opens the store in directory, creating it when there is no manifest yet. An existing
+  // store must have the given dimension, metric and element type.
+  SegmentedVectorStore(const std::string& directory, size_t dimension,
+                       DistanceMetric metric = DistanceMetric::L2, ElementType element_type = ElementType::F32,
+                       SegmentedVectorStoreOptions options = {})
+      : dir_(directory), dim_(dimension), metric_(metric), type_(element_type), opts_(options) {
+    if (dimension == 0) throw std::invalid_argument("Dimension must be > 0");
+    if (options.seal_rows == 0) throw std::invalid_argument("seal_rows must be > 0");
+    std::filesystem::create_directories(dir_);
+    if (std::filesystem::exists(dir_ / "MANIFEST")) {
+      read_manifest();
+    } else {
+      wal_number_ = next_file_++;
+      write_manifest(segments_, wal_number_, next_file_);
+    }
+    remove_unreferenced_files();
+    tail_ = std::make_unique<VectorStore>(dim_, metric_, type_);
+    replay_wal();
+    wal_.open(wal_path(wal_number_), std::ios::binary | std::ios::app);
+    if (!wal_) throw std::runtime_error("Cannot open: " + wal_path(wal_number_));
+    if (opts_.background_compaction) worker_ = std::thread([this] { run_worker(); });
+  }
+
+  // Stops background compaction; logged writes not yet sealed are replayed on the next open
+  ~SegmentedVectorStore() {
+    { std::lock_guard lk(worker_mtx_); stop_ = true; }
+    worker_cv_.notify_all();
+    if (worker_.joinable()) worker_.join();
+  }
+
+  SegmentedVectorStore(const SegmentedVectorStore&) = delete;
+  SegmentedVectorStore& operator=(const SegmentedVectorStore&) = delete;
+
+  void add(uint64_t id, const float* vector) {
+    if (!vector) throw std::invalid_argument("Vector must not be null");
+    std::unique_lock lock(mutex_);
+    if (contains_locked(id)) throw std::invalid_argument("ID " + std::to_string(id) + " exists");
+    log(OP_ADD, id, vector);
+    tail_->add(id, vector);
+    if (tail_->size() >= opts_.seal_rows) seal_locked();
+  }
+
+  bool remove(uint64_t id) {
+    std::unique_lock lock(mutex_);
+    if (!contains_locked(id)) return false;
+    log(OP_REMOVE, id, nullptr);
+    remove_locked(id);
+    return true;
+  }
+
+  // Replaces the vector stored under id: a remove and an add, logged as such
+  bool update(uint64_t id, const float* vector) {
+    if (!vector) throw std::invalid_argument("Vector must not be null");
+    std::unique_lock lock(mutex_);
+    if (!contains_locked(id)) return false;
+    log(OP_REMOVE, id, nullptr);
+    remove_locked(id);
+    log(OP_ADD, id, vector);
+    tail_->add(id, vector);
+    if (tail_->size() >= opts_.seal_rows) seal_locked();
+    return true;
+  }
+
+  bool contains(uint64_t id) const { std::shared_lock lock(mutex_); return contains_locked(id); }
+
+  // The vector as added, or empty when id is not stored
+  std::vector<float> get_copy(uint64_t id) const {
+    std::shared_lock lock(mutex_);
+    if (tail_->contains(id)) return tail_->get_copy(id);
+    for (const Segment& seg : segments_)
+      if (seg.live(id)) return seg.store->get_copy(id);
+    return {};
+  }
+
+  // Exact top-k over the tail and every segment. Segments are asked for k plus their
+  // tombstone count, so deleted rows can never crowd out live ones.
+  std::vector<SearchResult> search(const float* query, size_t k) const {
+    if (!query) throw std::invalid_argument("Query must not be null");
+    if (k == 0) throw std::invalid_argument("k must be > 0");
+    std::shared_lock lock(mutex_);
+    TopK top(k);
+    for (const SearchResult& r : tail_->search(query, k)) top.push(r.id, r.distance);
+    for (const Segment& seg : segments_) {
+      size_t want = std::min(seg.store->size(), k + seg.deleted.size());
+      if (want == 0) continue;
+      for (const SearchResult& r : seg.store->search(query, want))
+        if (!seg.deleted.count(r.id)) top.push(r.id, r.distance);
+    }
+    return top.take();
+  }
+
+  // Writes the tail out as a segment, moves the tombstones into the manifest and starts a new
+  // log. add() seals automatically at seal_rows.
+  void seal() { std::unique_lock lock(mutex_); seal_locked(); }
+
+  // Merges every segment with fewer than merge_rows live rows, plus any segment that is more
+  // than half tombstones, into one new segment without the deleted rows. The merged file is
+  // written without holding the store lock; returns whether anything was rewritten.
+  bool compact() {
+    std::lock_guard compacting(compact_mtx_);
+    std::vector<Segment> picked;
+    uint64_t number;
+    {
+      std::unique_lock lock(mutex_);
+      for (const Segment& seg : segments_)
+        if (seg.live_count() < opts_.merge_rows || seg.deleted.size() * 2 > seg.store->size())
+          picked.push_back(seg);
+      if (picked.empty() || (picked.size() == 1 && picked[0].deleted.empty())) return false;
+      number = next_file_++;
+    }
+
+    size_t row_bytes = dim_ * element_size(type_), live = 0;
+    for (const Segment& seg : picked) live += seg.live_count();
+    std::vector<uint64_t> ids;
+    std::vector<uint8_t> rows;
+    std::vector<float> norms;
+    ids.reserve(live);
+    rows.reserve(live * row_bytes);
+    if (is_cosine()) norms.reserve(live);
+    for (const Segment& seg : picked) {
+      const MMapVectorStore& store = *seg.store;
+      const uint8_t* src = static_cast<const uint8_t*>(store.rows());
+      for (size_t i = 0; i < store.size(); ++i) {
+        if (seg.deleted.count(store.ids()[i])) continue;
+        ids.push_back(store.ids()[i]);
+        rows.insert(rows.end(), src + i * row_bytes, src + (i + 1) * row_bytes);
+        if (is_cosine()) norms.push_back(store.norms()[i]);
+      }
+    }
+    std::shared_ptr<const MMapVectorStore> merged;
+    if (!ids.empty()) {
+      store_file::Header h;
+      h.dim = dim_;
+      h.count = ids.size();
+      h.metric = static_cast<uint32_t>(metric_);
+      h.flags = is_cosine() ? store_file::FLAG_NORMALIZED : 0;
+      h.type = type_;
+      store_file::write(segment_path(number), h, {ids.data(), rows.data(), norms.data(), nullptr});
+      merged = std::make_shared<MMapVectorStore>(segment_path(number));
+    }
+
+    {
+      std::unique_lock lock(mutex_);
+      std::vector<Segment> next;
+      Segment out{number, merged, {}};
+      for (const Segment& seg : segments_) {
+        auto it = std::find_if(picked.begin(), picked.end(), [&](const Segment& p) { return p.number == seg.number; });
+        if (it == picked.end()) { next.push_back(seg); continue; }
+        // Carry over rows deleted while the merged file was being written
+        for (uint64_t id : seg.deleted)
+          if (!it->deleted.count(id)) out.deleted.insert(id);
+      }
+      if (merged) next.push_back(std::move(out));
+      write_manifest(next, wal_number_, next_file_);
+      segments_ = std::move(next);
+    }
+    // POSIX keeps unlinked files readable through existing mappings; elsewhere a file still
+    // mapped by a search fails to delete and is cleaned up on the next open
+    std::error_code ec;
+    for (const Segment& seg : picked) std::filesystem::remove(segment_path(seg.number), ec);
+    return true;
+  }
+
+  // Flushes the log to disk, making every write so far durable
+  void sync() {
+    std::unique_lock lock(mutex_);
+    wal_.flush();
+    if (!wal_) throw std::runtime_error("WAL write failed");
+    store_file::sync_file(wal_path(wal_number_));
+  }
+
+  size_t size() const {
+    std::shared_lock lock(mutex_);
+    size_t n = tail_->size();
+    for (const Segment& seg : segments_) n += seg.live_count();
+    return n;
+  }
+  size_t dimension() const { return dim_; }
+  DistanceMetric metric() const { return metric_; }
+  ElementType element_type() const { return type_; }
+  size_t segment_count() const { std::shared_lock lock(mutex_); return segments_.size(); }
+  // Vectors held in memory and the log, not yet sealed into a segment
+  size_t tail_size() const { std::shared_lock lock(mutex_); return tail_->size(); }
+
+private:
+  static constexpr uint8_t OP_ADD = 1;
+  static constexpr uint8_t OP_REMOVE = 2;
+
+  struct Segment {
+    uint64_t number;
+    std::shared_ptr<const MMapVectorStore> store;
+    std::unordered_set<uint64_t> deleted;  // Tombstones: ids of this segment removed since
+
+    bool live(uint64_t id) const { return store->contains(id) && !deleted.count(id); }
+    size_t live_count() const { return store->size() - deleted.size(); }
+  };
+
+  bool is_cosine() const { return metric_ == DistanceMetric::COSINE; }
+
+  std::string segment_path(uint64_t n) const { return (dir_ / ("segment-" + std::to_string(n) + ".qvdb")).string(); }
+  std::string wal_path(uint64_t n) const { return (dir_ / ("wal-" + std::to_string(n) + ".log")).string(); }
+
+  bool contains_locked(uint64_t id) const {
+    if (tail_->contains(id)) return true;
+    for (const Segment& seg : segments_)
+      if (seg.live(id)) return true;
+    return false;
+  }
+
+  void remove_locked(uint64_t id) {
+    if (tail_->remove(id)) return;
+    for (Segment& seg : segments_) {
+      if (seg.live(id)) { seg.deleted.insert(id); return; }
+    }
+  }
+
+  // FNV-1a, guarding log records against torn writes
+  static uint32_t checksum(const char* data, size_t n) {
+    uint32_t h = 2166136261u;
+    for (size_t i = 0; i < n; ++i) { h ^= static_cast<uint8_t>(data[i]); h *= 16777619u; }
+    return h;
+  }
+
+  // Log record: u8 op, u64 id, dim floats for OP_ADD, u32 checksum of the preceding bytes
+  void log(uint8_t op, uint64_t id, const float* vector) {
+    std::vector<char> rec(1 + 8 + (op == OP_ADD ? dim_ * sizeof(float) : 0));
+    rec[0] = static_cast<char>(op);
+    std::memcpy(rec.data() + 1, &id, 8);
+    if (op == OP_ADD) std::memcpy(rec.data() + 9, vector, dim_ * sizeof(float));
+    uint32_t sum = checksum(rec.data(), rec.size());
+    wal_.write(rec.data(), static_cast<std::streamsize>(rec.size()));
+    wal_.write(reinterpret_cast<const char*>(&sum), sizeof(sum));
+    wal_.flush();
+    if (!wal_) throw std::runtime_error("WAL write failed");
+    if (opts_.sync_wal) store_file::sync_file(wal_path(wal_number_));
+    ++wal_records_;
+  }
+
+  // Applies every complete record of the current log and cuts off a torn last record
+  void replay_wal() {
+    std::string path = wal_path(wal_number_);
+    std::ifstream f(path, std::ios::binary);
+    if (!f) return;
+    std::vector<char> rec(1 + 8 + dim_ * sizeof(float));
+    uint64_t valid_end = 0;
+    for (;;) {
+      if (!f.read(rec.data(), 1)) break;
+      uint8_t op = static_cast<uint8_t>(rec[0]);
+      if (op != OP_ADD && op != OP_REMOVE) break;
+      size_t len = 1 + 8 + (op == OP_ADD ? dim_ * sizeof(float) : 0);
+      uint32_t sum;
+      if (!f.read(rec.data() + 1, static_cast<std::streamsize>(len - 1)) ||
+          !f.read(reinterpret_cast<char*>(&sum), sizeof(sum)) || sum != checksum(rec.data(), len))
+        break;
+      uint64_t id; std::memcpy(&id, rec.data() + 1, 8);
+      if (op == OP_REMOVE) {
+        remove_locked(id);
+      } else if (!contains_locked(id)) {
+        std::vector<float> vec(dim_);
+        std::memcpy(vec.data(), rec.data() + 9, dim_ * sizeof(float));
+        tail_->add(id, vec.data());
+      }
+      valid_end += len + sizeof(sum);
+      ++wal_records_;
+    }
+    f.close();
+    if (valid_end < std::filesystem::file_size(path)) std::filesystem::resize_file(path, valid_end);
+  }
+
+  void seal_locked() {
+    bool has_rows = tail_->size() > 0;
+    if (wal_records_ == 0) return;
+    std::vector<Segment> next = segments_;
+    uint64_t next_file = next_file_;
+    if (has_rows) {
+      uint64_t number = next_file++;
+      tail_->save(segment_path(number));
+      next.push_back({number, std::make_shared<MMapVectorStore>(segment_path(number)), {}});
+    }
+    uint64_t wal_number = next_file++;
+    std::ofstream wal(wal_path(wal_number), std::ios::binary | std::ios::trunc);
+    if (!wal) throw std::runtime_error("Cannot open: " + wal_path(wal_number));
+    // The manifest switch commits the new segment, the tombstones and the empty log together
+    write_manifest(next, wal_number, next_file);
+    wal_.close();
+    std::error_code ec;
+    std::filesystem::remove(wal_path(wal_number_), ec);
+    wal_ = std::move(wal);
+    wal_number_ = wal_number;
+    wal_records_ = 0;
+    next_file_ = next_file;
+    segments_ = std::move(next);
+    tail_ = std::make_unique<VectorStore>(dim_, metric_, type_);
+    if (has_rows && opts_.background_compaction) {
+      { std::lock_guard lk(worker_mtx_); compact_pending_ = true; }
+      worker_cv_.notify_one();
+    }
+  }
+
+  // Manifest (little-endian): u32 magic, u32 version, u64 dim, u32 metric, u32 element_type,
+  // u64 next_file, u64 wal_number, u64 segment count, then per segment u64 number,
+  // u64 tombstone count and the tombstoned ids; u32 checksum of everything before it
+  void write_manifest(const std::vector<Segment>& segments, uint64_t wal_number, uint64_t next_file) const {
+    std::string out;
+    auto put = [&out](const auto& v) { out.append(reinterpret_cast<const char*>(&v), sizeof(v)); };
+    put(MANIFEST_MAGIC);
+    put(MANIFEST_VERSION);
+    put(static_cast<uint64_t>(dim_));
+    put(static_cast<uint32_t>(metric_));
+    put(static_cast<uint32_t>(type_));
+    put(next_file);
+    put(wal_number);
+    put(static_cast<uint64_t>(segments.size()));
+    for (const Segment& seg : segments) {
+      put(seg.number);
+      put(static_cast<uint64_t>(seg.deleted.size()));
+      for (uint64_t id : seg.deleted) put(id);
+    }
+    put(checksum(out.data(), out.size()));
+    std::string path = (dir_ / "MANIFEST").string(), tmp = path + ".tmp";
+    {
+      std::ofstream f(tmp, std::ios::binary | std::ios::trunc);
+      if (!f) throw std::runtime_error("Cannot open: " + tmp);
+      f.write(out.data(), static_cast<std::streamsize>(out.size()));
+      f.flush();
+      if (!f) { f.close(); std::filesystem::remove(tmp); throw std::runtime_error("Write failed"); }
+    }
+    store_file::replace_file(tmp, path);
+  }
+
+  void read_manifest() {
+    std::string path = (dir_ / "MANIFEST").string();
+    std::ifstream f(path, std::ios::binary);
+    if (!f) throw std::runtime_error("Cannot open: " + path);
+    std::string in((std::istreambuf_iterator<char>(f)), std::istreambuf_iterator<char>());
+    size_t pos = 0;
+    auto get = [&](auto& v) {
+      if (in.size() - pos < sizeof(v)) throw std::runtime_error("Manifest truncated");
+      std::memcpy(&v, in.data() + pos, sizeof(v));
+      pos += sizeof(v);
+    };
+    if (in.size() < sizeof(uint32_t)) throw std::runtime_error("Manifest truncated");
+    uint32_t stored_sum;
+    std::memcpy(&stored_sum, in.data() + in.size() - sizeof(stored_sum), sizeof(stored_sum));
+    in.resize(in.size() - sizeof(stored_sum));
+    if (stored_sum != checksum(in.data(), in.size())) throw std::runtime_error("Manifest corrupted");
+    uint32_t magic, version, metric, type;
+    uint64_t dim, count;
+    get(magic); get(version);
+    if (magic != MANIFEST_MAGIC) throw std::runtime_error("Invalid manifest magic");
+    if (version != MANIFEST_VERSION) throw std::runtime_error("Unsupported manifest version");
+    get(dim); get(metric); get(type);
+    if (dim != dim_ || metric != static_cast<uint32_t>(metric_) || type != static_cast<uint32_t>(type_))
+      throw std::invalid_argument("Store in " + dir_.string() + " has a different dimension, metric or element type");
+    get(next_file_); get(wal_number_); get(count);
+    for (uint64_t s = 0; s < count; ++s) {
+      Segment seg{};
+      uint64_t deleted;
+      get(seg.number); get(deleted);
+      for (uint64_t d = 0; d < deleted; ++d) { uint64_t id; get(id); seg.deleted.insert(id); }
+      seg.store = std::make_shared<MMapVectorStore>(segment_path(seg.number));
+      if (seg.store->dimension() != dim_ || seg.store->element_type() != type_)
+        throw std::runtime_error("Segment " + segment_path(seg.number) + " does not match the manifest");
+      segments_.push_back(std::move(seg));
+    }
+  }
+
+  // Segments and logs left behind by an interrupted seal or compaction, and stray temp files
+  void remove_unreferenced_files() {
+    std::unordered_set<std::string> keep = {"MANIFEST", std::filesystem::path(wal_path(wal_number_)).filename().string()};
+    for (const Segment& seg : segments_) keep.insert(std::filesystem::path(segment_path(seg.number)).filename().string());
+    std::error_code ec;
+    for (const auto& entry : std::filesystem::directory_iterator(dir_)) {
+      std::string name = entry.path().filename().string();
+      bool ours = name.rfind("segment-", 0) == 0 || name.rfind("wal-", 0) == 0 || name == "MANIFEST.tmp";
+      if (ours && !keep.count(name)) std::filesystem::remove(entry.path(), ec);
+    }
+  }
+
+  void run_worker() {
+    std::unique_lock lk(worker_mtx_);
+    for (;;) {
+      worker_cv_.wait(lk, [this] { return stop_ || compact_pending_; });
+      if (stop_) return;
+      compact_pending_ = false;
+      lk.unlock();
+      try {
+        while (!stopping() && compact()) {}
+      } catch (...) {
+        // A failed merge leaves its input segments in place; the next seal retries
+      }
+      lk.lock();
+    }
+  }
+
+  bool stopping() { std::lock_guard lk(worker_mtx_); return stop_; }
+
+  std::filesystem::path dir_;
+  size_t dim_;
+  DistanceMetric metric_;
+  ElementType type_;
+  SegmentedVectorStoreOptions opts_;
+  std::vector<Segment> segments_;
+  std::unique_ptr<VectorStore> tail_;
+  uint64_t next_file_ = 1;  // Number for the next segment or log file
+  uint64_t wal_number_ = 0;
+  std::ofstream wal_;
+  size_t wal_records_ = 0;  // Records in the current log; seal() has nothing to do without any
+  mutable std::shared_mutex mutex_;  // Guards segments_, tail_ and the log
+  std::mutex compact_mtx_;           // One compaction at a time
+  std::thread worker_;
+  std::mutex worker_mtx_;
+  std::condition_variable worker_cv_;
+  bool compact_pending_ = false;
+  bool stop_ = false;
+};
+
+} // namespace quiverdb
@@ -0,0 +1,379 @@
+// QuiverDB - Copyright (c) 2025 Anton Tsvetkov - MIT License
+#pragma once
+
+#if defined(_WIN32) || defined(_WIN64)
+#define QUIVERDB_WINDOWS 1
+#ifndef NOMINMAX
+#define NOMINMAX  // Prevent Windows.h from defining min/max macros
+#endif
+#include <windows.h>
+#else
+#define QUIVERDB_POSIX 1
+#include <fcntl.h>
+#include <sys/mman.h>
+#include <sys/stat.h>
+#include <unistd.h>
+#endif
+
+#include "binary.h"
+#include "half.h"
+#include <algorithm>
+#include <bit>
+#include <cstddef>
+#include <cstdint>
+#include <cstdio>
+#include <cstring>
+#include <fstream>
+#include <stdexcept>
+#include <string>
+#include <utility>
+#include <vector>
+
+namespace quiverdb {
+
+// Read-only mapping of a whole file, unmapped and closed on destruction
+class MappedFile {
+public:
+  explicit MappedFile(const std::string& filename, size_t min_size = 0) {
+#ifdef QUIVERDB_WINDOWS
+    file_handle_ = CreateFileA(filename.c_str(), GENERIC_READ, FILE_SHARE_READ,
+                               nullptr, OPEN_EXISTING, FILE_ATTRIBUTE_NORMAL, nullptr);
+    if (file_handle_ == INVALID_HANDLE_VALUE) throw std::runtime_error("Cannot open: " + filename);
+    LARGE_INTEGER sz;
+    if (!GetFileSizeEx(file_handle_, &sz)) { cleanup(); throw std::runtime_error("Cannot get file size"); }
+    size_ = static_cast<size_t>(sz.QuadPart);
+    if (size_ == 0 || size_ < min_size) { cleanup(); throw std::runtime_error("File too small"); }
+    mapping_handle_ = CreateFileMappingA(file_handle_, nullptr, PAGE_READONLY, 0, 0, nullptr);
+    if (!mapping_handle_) { cleanup(); throw std::runtime_error("Cannot create mapping"); }
+    mapped_ = MapViewOfFile(mapping_handle_, FILE_MAP_READ, 0, 0, 0);
+    if (!mapped_) { cleanup(); throw std::runtime_error("Cannot map file"); }
+#else
+    fd_ = open(filename.c_str(), O_RDONLY);
+    if (fd_ < 0) throw std::runtime_error("Cannot open: " + filename);
+    struct stat sb;
+    if (fstat(fd_, &sb) < 0) { cleanup(); throw std::runtime_error("Cannot stat file"); }
+    size_ = static_cast<size_t>(sb.st_size);
+    if (size_ == 0 || size_ < min_size) { cleanup(); throw std::runtime_error("File too small"); }
+    mapped_ = mmap(nullptr, size_, PROT_READ, MAP_PRIVATE, fd_, 0);
+    if (mapped_ == MAP_FAILED) { mapped_ = nullptr; cleanup(); throw std::runtime_error("Cannot mmap file"); }
+#endif
+  }
+
+  ~MappedFile() { cleanup(); }
+  MappedFile(const MappedFile&) = delete;
+  MappedFile& operator=(const MappedFile&) = delete;
+
+  MappedFile(MappedFile&& o) noexcept { take(o); }
+  MappedFile& operator=(MappedFile&& o) noexcept {
+    if (this != &o) { cleanup(); take(o); }
+    return *this;
+  }
+
+  const uint8_t* data() const { return static_cast<const uint8_t*>(mapped_); }
+  size_t size() const { return size_; }
+
+  enum class Advice { Normal, Sequential, Random, WillNeed };
+
+  // Access-pattern hint for bytes [offset, offset + len), widened to whole pages. Sequential
+  // reads ahead aggressively and lets scanned pages go first under memory pressure, Random
+  // turns readahead off, WillNeed starts reading the range in without waiting for it. Hints
+  // only: they are ignored where madvise() is unavailable or refuses them.
+  void advise(size_t offset, size_t len, Advice advice) const noexcept {
+#ifdef QUIVERDB_POSIX
+    auto [begin, bytes] = page_range(offset, len);
+    if (bytes == 0) return;
+    int a = advice == Advice::Sequential ? MADV_SEQUENTIAL
+          : advice == Advice::Random ? MADV_RANDOM
+          : advice == Advice::WillNeed ? MADV_WILLNEED : MADV_NORMAL;
+    madvise(const_cast<uint8_t*>(data()) + begin, bytes, a);
+#else
+    (void)offset; (void)len; (void)advice;
+#endif
+  }
+
+  // Faults bytes [offset, offset + len) in: starts readahead for the whole range, then reads a
+  // byte from every page so it is resident by the time this returns
+  void prefault(size_t offset, size_t len) const noexcept {
+    advise(offset, len, Advice::WillNeed);
+    auto [begin, bytes] = page_range(offset, len);
+    const volatile uint8_t* p = data();
+    uint8_t sink = 0;
+    for (size_t off = begin; off < begin + bytes; off += page_size()) sink ^= p[off];
+    (void)sink;
+  }
+
+  static size_t page_size() noexcept {
+#ifdef QUIVERDB_POSIX
+    static const size_t page = static_cast<size_t>(sysconf(_SC_PAGESIZE));
+    return page;
+#else
+    return 4096;
+#endif
+  }
+
+private:
+  // [offset, offset + len) clamped to the file and widened to page boundaries: {start, bytes}
+  std::pair<size_t, size_t> page_range(size_t offset, size_t len) const noexcept {
+    if (!mapped_ || offset >= size_) return {0, 0};
+    size_t end = offset + std::min(len, size_ - offset);
+    size_t page = page_size();
+    size_t begin = offset / page * page;
+    return {begin, std::min(size_, (end + page - 1) / page * page) - begin};
+  }
+
+  void cleanup() {
+#ifdef QUIVERDB_WINDOWS
+    if (mapped_) { UnmapViewOfFile(mapped_); mapped_ = nullptr; }
+    if (mapping_handle_) { CloseHandle(mapping_handle_); mapping_handle_ = nullptr; }
+    if (file_handle_ != INVALID_HANDLE_VALUE) { CloseHandle(file_handle_); file_handle_ = INVALID_HANDLE_VALUE; }
+#else
+    if (mapped_) { munmap(mapped_, size_); mapped_ = nullptr; }
+    if (fd_ >= 0) { close(fd_); fd_ = -1; }
+#endif
+  }
+
+  void take(MappedFile& o) noexcept {
+#ifdef QUIVERDB_WINDOWS
+    file_handle_ = std::exchange(o.file_handle_, INVALID_HANDLE_VALUE);
+    mapping_handle_ = std::exchange(o.mapping_handle_, nullptr);
+#else
+    fd_ = std::exchange(o.fd_, -1);
+#endif
+    mapped_ = std::exchange(o.mapped_, nullptr);
+    size_ = std::exchange(o.size_, 0);
+  }
+
+#ifdef QUIVERDB_WINDOWS
+  HANDLE file_handle_ = INVALID_HANDLE_VALUE;
+  HANDLE mapping_handle_ = nullptr;
+#else
+  int fd_ = -1;
+#endif
+  void* mapped_ = nullptr;
+  size_t size_ = 0;
+};
+
+// Store file written by MMapVectorStoreBuilder and VectorStore::save, read by MMapVectorStore
+// and VectorStore::load. Layout (little-endian), v2 header, HEADER_SIZE bytes:
+//   u32 magic, u32 version, u64 dim, u64 num_vectors, u32 metric, u32 flags,
+//   u64 ids_offset, u64 vectors_offset, u64 norms_offset (0 when absent),
+//   u32 element_type (ElementType: rows in FP32, FP16 or BF16), u32 reserved,
+//   u64 bits_offset (0 when absent), u64 id_index_offset, u64 id_index_slots (0 when absent),
+//   zero padding.
+// Sections: ids (u64 per row), vectors (dim elements per row, 64-byte aligned), for
+// FLAG_NORMALIZED cosine files norms (one float per row) holding |v| of the unit-length rows,
+// for FLAG_BINARY files bits (binary_words(dim) u64 sign codes per row, 64-byte aligned), and
+// for FLAG_ID_INDEX files an open-addressing hash of the ids: id_index_slots (a power of two)
+// u64 slots, each 0 or row + 1, probed linearly from id_slot(id), so a reader can look ids up
+// in place instead of hashing every id on open.
+// Readers go by the offsets, so sections may come in any order: write() puts ids first,
+// MMapVectorStoreWriter streams the vectors first and appends the rest when it finishes.
+// v1 files (32-byte header, ids then raw vectors, no flags) are still read.
+namespace store_file {
+
+constexpr uint32_t MAGIC = 0x42445651;
+constexpr uint32_t VERSION = 2;
+constexpr size_t HEADER_SIZE = 128;
+constexpr size_t HEADER_SIZE_V1 = 32;
+constexpr size_t SECTION_ALIGN = 64;
+constexpr uint32_t FLAG_NORMALIZED = 1u << 0;
+constexpr uint32_t FLAG_BINARY = 1u << 1;
+constexpr uint32_t FLAG_ID_INDEX = 1u << 2;
+
+struct Header {
+  uint32_t version = VERSION;
+  uint64_t dim = 0, count = 0;
+  uint32_t metric = 0;  // DistanceMetric value
+  uint32_t flags = 0;
+  ElementType type = ElementType::F32;
+  uint64_t ids_off = 0, vecs_off = 0, norms_off = 0, bits_off = 0;
+  uint64_t index_off = 0, index_slots = 0;
+
+  size_t row_bytes() const { return dim * element_size(type); }
+  size_t words() const { return binary_words(dim); }
+  bool normalized() const { return flags & FLAG_NORMALIZED; }
+  bool binary() const { return flags & FLAG_BINARY; }
+  bool id_index() const { return flags & FLAG_ID_INDEX; }
+};
+
+// Home slot of id in an id index of slots entries (a power of two); splitmix64 finalizer,
+// so sequential ids spread across the table
+inline uint64_t id_slot(uint64_t id, uint64_t slots) noexcept {
+  id ^= id >> 30; id *= 0xbf58476d1ce4e5b9ULL;
+  id ^= id >> 27; id *= 0x94d049bb133111ebULL;
+  id ^= id >> 31;
+  return id & (slots - 1);
+}
+
+// Id index for count unique ids, at most two thirds full
+inline std::vector<uint64_t> build_id_index(const uint64_t* ids, size_t count) {
+  std::vector<uint64_t> slots(std::bit_ceil(count + count / 2 + 1));
+  uint64_t mask = slots.size() - 1;
+  for (size_t i = 0; i < count; ++i) {
+    uint64_t s = id_slot(ids[i], slots.size());
+    while (slots[s]) s = (s + 1) & mask;
+    slots[s] = i + 1;
+  }
+  return slots;
+}
+
+// Reads and validates the header of a file_size byte file; p holds its first
+// min(file_size, HEADER_SIZE) bytes. Every section is checked to lie inside the file.
+inline Header parse_header(const uint8_t* p, size_t file_size) {
+  if (file_size < HEADER_SIZE_V1) throw std::runtime_error("File too small");
+  Header h;
+  uint32_t magic; std::memcpy(&magic, p, 4);
+  if (magic != MAGIC) throw std::runtime_error("Invalid magic");
+  std::memcpy(&h.version, p + 4, 4);
+  if (h.version != 1 && h.version != VERSION) throw std::runtime_error("Unsupported version");
+  if (h.version == VERSION && file_size < HEADER_SIZE) throw std::runtime_error("File too small");
+  std::memcpy(&h.dim, p + 8, 8);
+  std::memcpy(&h.count, p + 16, 8);
+  std::memcpy(&h.metric, p + 24, 4);
+  if (h.metric > 2) throw std::runtime_error("Invalid metric");
+  h.ids_off = HEADER_SIZE_V1;
+  if (h.version == VERSION) {
+    std::memcpy(&h.flags, p + 28, 4);
+    std::memcpy(&h.ids_off, p + 32, 8);
+    std::memcpy(&h.vecs_off, p + 40, 8);
+    std::memcpy(&h.norms_off, p + 48, 8);
+    uint32_t type; std::memcpy(&type, p + 56, 4);
+    std::memcpy(&h.bits_off, p + 64, 8);
+    std::memcpy(&h.index_off, p + 72, 8);
+    std::memcpy(&h.index_slots, p + 80, 8);
+    if (h.flags & ~(FLAG_NORMALIZED | FLAG_BINARY | FLAG_ID_INDEX)) throw std::runtime_error("Unsupported flags");
+    if (type > 2) throw std::runtime_error("Invalid element type");
+    h.type = static_cast<ElementType>(type);
+  }
+
+  // Check for overflow in size calculations step by step
+  if (h.count > SIZE_MAX / sizeof(uint64_t)) throw std::runtime_error("File corrupted: size overflow");
+  if (h.dim == 0 && h.count > 0) throw std::runtime_error("File corrupted: zero dimension with vectors");
+  if (h.dim > SIZE_MAX / sizeof(float)) throw std::runtime_error("File corrupted: size overflow");
+  size_t row_bytes = h.row_bytes();  // Safe due to check above
+  if (row_bytes > 0 && h.count > SIZE_MAX / row_bytes) throw std::runtime_error("File corrupted: size overflow");
+  size_t ids_size = h.count * sizeof(uint64_t);
+  if (h.version == 1) {
+    if (ids_size > SIZE_MAX - HEADER_SIZE_V1) throw std::runtime_error("File corrupted: size overflow");
+    h.vecs_off = HEADER_SIZE_V1 + ids_size;
+  }
+  // Each section must lie inside the file and be aligned for its element type
+  auto section_ok = [file_size](uint64_t off, size_t bytes, size_t align) {
+    return off <= file_size && bytes <= file_size - off && off % align == 0;
+  };
+  if (!section_ok(h.ids_off, ids_size, alignof(uint64_t)) ||
+      !section_ok(h.vecs_off, h.count * row_bytes, element_size(h.type)))
+    throw std::runtime_error("File truncated");
+  if (h.normalized() && !section_ok(h.norms_off, h.count * sizeof(float), alignof(float)))
+    throw std::runtime_error("File truncated");
+  if (h.binary() && (h.count > SIZE_MAX / sizeof(uint64_t) / std::max<size_t>(h.words(), 1) ||
+                     !section_ok(h.bits_off, h.count * h.words() * sizeof(uint64_t), alignof(uint64_t))))
+    throw std::runtime_error("File truncated");
+  // The index needs a free slot to end every probe; slot contents are checked as they are read
+  if (h.id_index() && (!std::has_single_bit(h.index_slots) || h.index_slots <= h.count ||
+                       h.index_slots > SIZE_MAX / sizeof(uint64_t)))
+    throw std::runtime_error("File corrupted: bad id index");
+  if (h.id_index() && !section_ok(h.index_off, h.index_slots * sizeof(uint64_t), alignof(uint64_t)))
+    throw std::runtime_error("File truncated");
+  return h;
+}
+
+// Flushes a closed file to disk
+inline void sync_file(const std::string& filename) {
+#ifdef QUIVERDB_WINDOWS
+  HANDLE hFile = CreateFileA(filename.c_str(), GENERIC_WRITE, FILE_SHARE_READ, NULL,
+                             OPEN_EXISTING, FILE_ATTRIBUTE_NORMAL, NULL);
+  if (hFile != INVALID_HANDLE_VALUE) { FlushFileBuffers(hFile); CloseHandle(hFile); }
+#else
+  int fd = open(filename.c_str(), O_WRONLY);
+  if (fd >= 0) { fsync(fd); close(fd); }
+#endif
+}
+
+// Syncs the fully written, closed tmp file and renames it over filename, so readers see
+// either the old file or the complete new one
+inline void replace_file(const std::string& tmp, const std::string& filename) {
+  sync_file(tmp);
+  if (std::rename(tmp.c_str(), filename.c_str()) != 0) {
+    std::remove(tmp.c_str()); throw std::runtime_error("Rename failed");
+  }
+}
+
+// First SECTION_ALIGN boundary at or after off
+inline uint64_t align_section(uint64_t off) noexcept { return (off + SECTION_ALIGN - 1) / SECTION_ALIGN * SECTION_ALIGN; }
+
+// Serializes a v2 header into HEADER_SIZE bytes
+inline void encode_header(const Header& h, char* out) {
+  uint32_t magic = MAGIC, type = static_cast<uint32_t>(h.type);
+  std::memset(out, 0, HEADER_SIZE);
+  std::memcpy(out, &magic, 4);
+  std::memcpy(out + 4, &h.version, 4);
+  std::memcpy(out + 8, &h.dim, 8);
+  std::memcpy(out + 16, &h.count, 8);
+  std::memcpy(out + 24, &h.metric, 4);
+  std::memcpy(out + 28, &h.flags, 4);
+  std::memcpy(out + 32, &h.ids_off, 8);
+  std::memcpy(out + 40, &h.vecs_off, 8);
+  std::memcpy(out + 48, &h.norms_off, 8);
+  std::memcpy(out + 56, &type, 4);
+  std::memcpy(out + 64, &h.bits_off, 8);
+  std::memcpy(out + 72, &h.index_off, 8);
+  std::memcpy(out + 80, &h.index_slots, 8);
+}
+
+// Section contents for write(): count unique ids, count rows of h.row_bytes(), and when the
+// matching flag is set count norms and count * h.words() sign codes
+struct Sections {
+  const uint64_t* ids = nullptr;
+  const void* rows = nullptr;
+  const float* norms = nullptr;
+  const uint64_t* bits = nullptr;
+};
+
+// Writes a v2 file in one sequential pass. h supplies dim, count, metric, flags and element
+// type; the id index is always added and the offsets are laid out here. The file is written
+// to filename + ".tmp", synced and renamed over filename, so readers never see a partial file.
+inline void write(const std::string& filename, Header h, const Sections& s) {
+  std::string tmp = filename + ".tmp";
+  std::ofstream f(tmp, std::ios::binary);
+  if (!f) throw std::runtime_error("Cannot open: " + tmp);
+  h.version = VERSION;
+  h.ids_off = HEADER_SIZE;
+  uint64_t ids_end = h.ids_off + h.count * sizeof(uint64_t);
+  h.vecs_off = align_section(ids_end);
+  uint64_t vecs_end = h.vecs_off + h.count * h.row_bytes();
+  h.norms_off = h.normalized() ? align_section(vecs_end) : 0;
+  uint64_t norms_end = h.normalized() ? h.norms_off + h.count * sizeof(float) : vecs_end;
+  h.bits_off = h.binary() ? align_section(norms_end) : 0;
+  uint64_t bits_end = h.binary() ? h.bits_off + h.count * h.words() * sizeof(uint64_t) : norms_end;
+  std::vector<uint64_t> index = build_id_index(s.ids, h.count);
+  h.flags |= FLAG_ID_INDEX;
+  h.index_off = align_section(bits_end);
+  h.index_slots = index.size();
+  char header[HEADER_SIZE];
+  encode_header(h, header);
+  const char padding[SECTION_ALIGN] = {};
+  f.write(header, sizeof(header));
+  f.write(reinterpret_cast<const char*>(s.ids), static_cast<std::streamsize>(ids_end - h.ids_off));
+  f.write(padding, static_cast<std::streamsize>(h.vecs_off - ids_end));
+  f.write(static_cast<const char*>(s.rows), static_cast<std::streamsize>(vecs_end - h.vecs_off));
+  if (h.normalized()) {
+    f.write(padding, static_cast<std::streamsize>(h.norms_off - vecs_end));
+    f.write(reinterpret_cast<const char*>(s.norms), static_cast<std::streamsize>(h.count * sizeof(float)));
+  }
+  if (h.binary()) {
+    f.write(padding, static_cast<std::streamsize>(h.bits_off - norms_end));
+    f.write(reinterpret_cast<const char*>(s.bits), static_cast<std::streamsize>(bits_end - h.bits_off));
+  }
+  f.write(padding, static_cast<std::streamsize>(h.index_off - bits_end));
+  f.write(reinterpret_cast<const char*>(index.data()), static_cast<std::streamsize>(index.size() * sizeof(uint64_t)));
+  f.flush();
+  if (!f) { f.close(); std::remove(tmp.c_str()); throw std::runtime_error("Write failed"); }
+  // IMPORTANT: Close ofstream BEFORE reopening for fsync. On Windows, CreateFileA
+  // fails if the file is still open by ofstream (exclusive lock). This order is correct.
+  f.close();
+  replace_file(tmp, filename);
+}
+
+} // namespace store_file
+} // namespace quiverdb
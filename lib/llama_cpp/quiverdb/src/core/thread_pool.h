@@ -0,0 +1,103 @@
+// QuiverDB - Copyright (c) 2025 Anton Tsvetkov - MIT License
+#pragma once
+#include <condition_variable>
+#include <cstddef>
+#include <deque>
+#include <exception>
+#include <functional>
+#include <mutex>
+#include <stdexcept>
+#include <thread>
+#include <vector>
+
+namespace quiverdb {
+
+// Fixed-size pool used to split one operation (an exact scan, a query batch) across cores.
+// The calling thread takes part in parallel_for, so a pool of N threads runs N - 1 workers,
+// and while waiting it drains queued tasks instead of idling. Several threads may call
+// parallel_for concurrently; their tasks share the queue.
+class ThreadPool {
+public:
+  explicit ThreadPool(size_t threads) {
+    if (threads == 0) throw std::invalid_argument("Thread count must be > 0");
+    workers_.reserve(threads - 1);
+    for (size_t i = 1; i < threads; ++i) workers_.emplace_back([this] { run(); });
+  }
+
+  ~ThreadPool() {
+    { std::lock_guard lk(mtx_); stop_ = true; }
+    cv_.notify_all();
+    for (auto& w : workers_) w.join();
+  }
+
+  ThreadPool(const ThreadPool&) = delete;
+  ThreadPool& operator=(const ThreadPool&) = delete;
+
+  size_t size() const { return workers_.size() + 1; }
+
+  // Runs fn(0) .. fn(tasks - 1) and returns once all have finished. The first exception
+  // thrown by a task is rethrown here after the others complete.
+  template <typename F> void parallel_for(size_t tasks, F&& fn) {
+    if (tasks == 0) return;
+    Batch batch;
+    batch.pending = tasks;
+    auto run_one = [&fn, &batch](size_t i) {
+      try { fn(i); } catch (...) {
+        std::lock_guard lk(batch.mtx);
+        if (!batch.err) batch.err = std::current_exception();
+      }
+      std::lock_guard lk(batch.mtx);
+      if (--batch.pending == 0) batch.done.notify_all();
+    };
+    if (tasks > 1) {
+      {
+        std::lock_guard lk(mtx_);
+        for (size_t i = 1; i < tasks; ++i) queue_.emplace_back([&run_one, i] { run_one(i); });
+      }
+      cv_.notify_all();
+    }
+    run_one(0);
+    while (auto task = try_pop()) task();
+    std::unique_lock lk(batch.mtx);
+    batch.done.wait(lk, [&] { return batch.pending == 0; });
+    if (batch.err) std::rethrow_exception(batch.err);
+  }
+
+private:
+  struct Batch {
+    std::mutex mtx;
+    std::condition_variable done;
+    size_t pending = 0;
+    std::exception_ptr err;
+  };
+
+  std::function<void()> try_pop() {
+    std::lock_guard lk(mtx_);
+    if (queue_.empty()) return {};
+    auto task = std::move(queue_.front());
+    queue_.pop_front();
+    return task;
+  }
+
+  void run() {
+    for (;;) {
+      std::function<void()> task;
+      {
+        std::unique_lock lk(mtx_);
+        cv_.wait(lk, [this] { return stop_ || !queue_.empty(); });
+        if (queue_.empty()) return;  // Stopping with nothing left to run
+        task = std::move(queue_.front());
+        queue_.pop_front();
+      }
+      task();
+    }
+  }
+
+  std::vector<std::thread> workers_;
+  std::deque<std::function<void()>> queue_;
+  std::mutex mtx_;
+  std::condition_variable cv_;
+  bool stop_ = false;
+};
+
+} // namespace quiverdb
@@ -1,10 +1,17 @@
 // QuiverDB - Copyright (c) 2025 Anton Tsvetkov - MIT License
 #pragma once
+#include "binary.h"
 #include "distance.h"
+#include "half.h"
+#include "store_file.h"
+#include "thread_pool.h"
 #include <algorithm>
 #include <cstddef>
 #include <cstdint>
+#include <cstring>
+#include <fstream>
 #include <limits>
+#include <memory>
 #include <mutex>
 #include <shared_mutex>
 #include <stdexcept>
@@ -22,10 +29,191 @@ struct SearchResult {
   bool operator<(const SearchResult& o) const { return distance < o.distance; }
 };
 
+// Streaming top-k for exact scans: a max-heap holding the k best results seen so far, so a
+// query needs O(k) memory instead of one entry per stored vector.
+class TopK {
+public:
+  explicit TopK(size_t k) : k_(k) { heap_.reserve(k); }
+
+  void push(uint64_t id, float distance) {
+    if (heap_.size() < k_) {
+      heap_.push_back({id, distance});
+      std::push_heap(heap_.begin(), heap_.end());
+    } else if (k_ > 0 && distance < heap_.front().distance) {
+      std::pop_heap(heap_.begin(), heap_.end());
+      heap_.back() = {id, distance};
+      std::push_heap(heap_.begin(), heap_.end());
+    }
+  }
+
+  // Results sorted by ascending distance; leaves the collector empty
+  std::vector<SearchResult> take() {
+    std::sort_heap(heap_.begin(), heap_.end());
+    return std::move(heap_);
+  }
+
+private:
+  size_t k_;
+  std::vector<SearchResult> heap_;
+};
+
+// Exact top-k over rows [0, n), where scan(begin, end, top) pushes one row range into a TopK.
+// With a pool, stores large enough to amortize the hand-off are split into one slice per
+// thread and the per-slice winners are merged.
+template <typename Scan>
+std::vector<SearchResult> scan_top_k(ThreadPool* pool, size_t n, size_t k, Scan&& scan) {
+  constexpr size_t MIN_ROWS_PER_TASK = 4096;
+  size_t tasks = pool ? std::min(pool->size(), n / MIN_ROWS_PER_TASK) : 1;
+  if (tasks <= 1) {
+    TopK top(std::min(k, n));
+    scan(size_t{0}, n, top);
+    return top.take();
+  }
+  std::vector<std::vector<SearchResult>> parts(tasks);
+  pool->parallel_for(tasks, [&](size_t t) {
+    size_t begin = n * t / tasks, end = n * (t + 1) / tasks;
+    TopK top(std::min(k, end - begin));
+    scan(begin, end, top);
+    parts[t] = top.take();
+  });
+  TopK top(std::min(k, n));
+  for (const auto& part : parts)
+    for (const auto& r : part) top.push(r.id, r.distance);
+  return top.take();
+}
+
+// Binary-quantized top-k over rows [0, n): shortlists the `candidates` rows whose sign codes
+// (`words` per row in bits) are nearest to qbits in Hamming distance, then reranks only those
+// with dist(row) and keeps k. The shortlist scan is split across the pool like scan_top_k.
+template <typename Dist>
+std::vector<SearchResult> binary_search_rows(ThreadPool* pool, const uint64_t* bits, size_t words,
+    const uint64_t* ids, size_t n, const uint64_t* qbits, size_t k, size_t candidates, Dist&& dist) {
+  constexpr size_t BLOCK = 256;
+  auto shortlist = scan_top_k(pool, n, candidates, [&](size_t begin, size_t end, TopK& top) {
+    uint32_t d[BLOCK];
+    for (size_t b = begin; b < end; b += BLOCK) {
+      size_t cnt = std::min(BLOCK, end - b);
+      hamming_distances(qbits, bits + b * words, words, cnt, d);
+      for (size_t j = 0; j < cnt; ++j) top.push(b + j, static_cast<float>(d[j]));
+    }
+  });
+  TopK top(std::min(k, shortlist.size()));
+  for (const auto& c : shortlist) top.push(ids[c.id], dist(static_cast<size_t>(c.id)));
+  return top.take();
+}
+
+// Shortlist size for binary search: rerank_factor candidates per requested result
+inline size_t binary_candidates(size_t k, size_t rerank_factor) {
+  if (rerank_factor == 0) throw std::invalid_argument("Rerank factor must be > 0");
+  return k > std::numeric_limits<size_t>::max() / rerank_factor ? k : k * rerank_factor;
+}
+
+// Store-metric distance (DOT negated so that smaller is closer), one row or four at a time.
+// Cosine stores keep unit-length rows and normalize each query once (prepare_queries), so a
+// comparison is a single dot product; `normalized` is false only for cosine rows written raw
+// by older file formats, which still need the full cosine.
+inline float metric_distance(DistanceMetric metric, bool normalized, const float* a, const float* b, size_t dim) {
+  switch (metric) {
+    case DistanceMetric::L2: return l2_sq(a, b, dim);
+    case DistanceMetric::COSINE:
+      return normalized ? unit_cosine_distance(dot_product(a, b, dim)) : cosine_distance(a, b, dim);
+    case DistanceMetric::DOT: return -dot_product(a, b, dim);
+    default: return std::numeric_limits<float>::infinity();
+  }
+}
+
+inline void metric_distance_x4(DistanceMetric metric, bool normalized, const float* q, const float* rows,
+                               size_t dim, float* out) {
+  const float *v0 = rows, *v1 = rows + dim, *v2 = rows + 2 * dim, *v3 = rows + 3 * dim;
+  switch (metric) {
+    case DistanceMetric::L2: l2_sq_x4(q, v0, v1, v2, v3, dim, out); break;
+    case DistanceMetric::COSINE:
+      if (!normalized) { cosine_distance_x4(q, v0, v1, v2, v3, dim, out); break; }
+      dot_product_x4(q, v0, v1, v2, v3, dim, out);
+      for (size_t j = 0; j < 4; ++j) out[j] = unit_cosine_distance(out[j]);
+      break;
+    case DistanceMetric::DOT:
+      dot_product_x4(q, v0, v1, v2, v3, dim, out);
+      for (size_t j = 0; j < 4; ++j) out[j] = -out[j];
+      break;
+    default: std::fill_n(out, 4, std::numeric_limits<float>::infinity());
+  }
+}
+
+// Store-metric distance from an FP32 query to one stored row of any element type. FP16/BF16
+// cosine rows are always stored unit length.
+inline float row_distance(DistanceMetric metric, bool normalized, ElementType type, const float* q,
+                          const void* row, size_t dim) {
+  if (type == ElementType::F32) return metric_distance(metric, normalized, q, static_cast<const float*>(row), dim);
+  switch (metric) {
+    case DistanceMetric::L2: return l2_sq_row(q, row, dim, type);
+    case DistanceMetric::COSINE: return unit_cosine_distance(dot_product_row(q, row, dim, type));
+    case DistanceMetric::DOT: return -dot_product_row(q, row, dim, type);
+    default: return std::numeric_limits<float>::infinity();
+  }
+}
+
+// The count queries at q as the store compares them: normalized into buf when the store keeps
+// unit-length cosine rows, otherwise q itself
+inline const float* prepare_queries(DistanceMetric metric, bool normalized, const float* q, size_t count,
+                                    size_t dim, std::vector<float>& buf) {
+  if (metric != DistanceMetric::COSINE || !normalized) return q;
+  buf.resize(count * dim);
+  for (size_t i = 0; i < count; ++i) normalize(q + i * dim, buf.data() + i * dim, dim);
+  return buf.data();
+}
+
+// Exact top-k for nq queries over n contiguous rows, tiled so that each block of rows is
+// scored against a whole block of queries while it is cache-resident: the data streams once
+// per query block instead of once per query. With a pool, query blocks run in parallel.
+inline std::vector<std::vector<SearchResult>> search_batch_rows(ThreadPool* pool, DistanceMetric metric,
+    bool normalized, ElementType type, size_t dim, const void* data, const uint64_t* ids, size_t n,
+    const float* queries, size_t nq, size_t k) {
+  std::vector<std::vector<SearchResult>> out(nq);
+  if (n == 0 || nq == 0) return out;
+  std::vector<float> query_buf;
+  queries = prepare_queries(metric, normalized, queries, nq, dim, query_buf);
+  constexpr size_t MAX_QUERY_BLOCK = 16;
+  constexpr size_t ROW_BLOCK_BYTES = 32 * 1024;  // Roughly half a typical L1d/L2 slice
+  size_t row_bytes = dim * element_size(type);
+  size_t row_block = std::max<size_t>(4, ROW_BLOCK_BYTES / row_bytes / 4 * 4);
+  const auto* rows = static_cast<const uint8_t*>(data);
+  const float* f32_rows = type == ElementType::F32 ? static_cast<const float*>(data) : nullptr;
+  size_t threads = pool ? pool->size() : 1;
+  size_t query_block = std::clamp<size_t>((nq + threads - 1) / threads, 1, MAX_QUERY_BLOCK);
+  size_t blocks = (nq + query_block - 1) / query_block;
+
+  auto run_block = [&](size_t b) {
+    size_t q0 = b * query_block, q1 = std::min(nq, q0 + query_block);
+    std::vector<TopK> tops(q1 - q0, TopK(std::min(k, n)));
+    float d[4];
+    for (size_t r0 = 0; r0 < n; r0 += row_block) {
+      size_t r1 = std::min(n, r0 + row_block);
+      for (size_t q = q0; q < q1; ++q) {
+        const float* qv = queries + q * dim;
+        TopK& top = tops[q - q0];
+        size_t r = r0;
+        if (f32_rows) {
+          for (; r + 4 <= r1; r += 4) {
+            metric_distance_x4(metric, normalized, qv, f32_rows + r * dim, dim, d);
+            for (size_t j = 0; j < 4; ++j) top.push(ids[r + j], d[j]);
+          }
+        }
+        for (; r < r1; ++r) top.push(ids[r], row_distance(metric, normalized, type, qv, rows + r * row_bytes, dim));
+      }
+    }
+    for (size_t q = q0; q < q1; ++q) out[q] = tops[q - q0].take();
+  };
+  if (pool && blocks > 1) pool->parallel_for(blocks, run_block);
+  else for (size_t b = 0; b < blocks; ++b) run_block(b);
+  return out;
+}
+
 class VectorStore {
 public:
-  explicit VectorStore(size_t dimension, DistanceMetric metric = DistanceMetric::L2)
-      : dim_(dimension), metric_(metric) {
+  explicit VectorStore(size_t dimension, DistanceMetric metric = DistanceMetric::L2,
+                       ElementType element_type = ElementType::F32)
+      : dim_(dimension), metric_(metric), type_(element_type), words_(binary_words(dimension)) {
     if (dimension == 0) throw std::invalid_argument("Dimension must be > 0");
   }
 
@@ -33,32 +221,52 @@ public:
     if (!vector) throw std::invalid_argument("Vector must not be null");
     std::unique_lock lock(mutex_);
     if (id_to_index_.count(id)) throw std::invalid_argument("ID " + std::to_string(id) + " exists");
-    vectors_data_.insert(vectors_data_.end(), vector, vector + dim_);
+    detach();
+    size_t idx = ids_.size();
+    if (type_ == ElementType::F32) vectors_data_.resize(vectors_data_.size() + dim_);
+    else half_data_.resize(half_data_.size() + dim_);
+    if (is_cosine()) norms_.push_back(0.0f);
+    if (binary_) bits_.resize(bits_.size() + words_);
+    store_row(idx, vector);
     ids_.push_back(id);
-    id_to_index_[id] = ids_.size() - 1;
+    id_to_index_[id] = idx;
+  }
+
+  // Half-precision input (FP16 or BF16 bits, whatever the store's own element type)
+  void add(uint64_t id, const uint16_t* vector, ElementType format) {
+    add(id, widen_input(vector, format).data());
   }
 
   bool remove(uint64_t id) {
     std::unique_lock lock(mutex_);
     auto it = id_to_index_.find(id);
     if (it == id_to_index_.end()) return false;
+    detach();
     size_t idx = it->second, last = ids_.size() - 1;
     if (idx != last) {
-      std::copy_n(vectors_data_.data() + last * dim_, dim_, vectors_data_.data() + idx * dim_);
+      std::memcpy(mutable_row(idx), row(last), dim_ * element_size(type_));
       ids_[idx] = ids_[last];
       id_to_index_[ids_[idx]] = idx;
+      if (is_cosine()) norms_[idx] = norms_[last];
+      if (binary_) std::copy_n(bits_.begin() + last * words_, words_, bits_.begin() + idx * words_);
     }
-    vectors_data_.resize(vectors_data_.size() - dim_);
+    if (type_ == ElementType::F32) vectors_data_.resize(vectors_data_.size() - dim_);
+    else half_data_.resize(half_data_.size() - dim_);
+    if (is_cosine()) norms_.pop_back();
+    if (binary_) bits_.resize(bits_.size() - words_);
     ids_.pop_back();
     id_to_index_.erase(it);
     return true;
   }
 
-  // WARNING: Returned pointer invalidated by any write operation
+  // WARNING: Returned pointer invalidated by any write operation. Cosine stores keep rows
+  // normalized, so this is the unit-length row; get_copy() returns the vector as added.
+  // FP16/BF16 stores have no FP32 rows to point at and throw; use get_copy().
   const float* get(uint64_t id) const {
+    if (type_ != ElementType::F32) throw std::runtime_error("get() needs FP32 rows; use get_copy()");
     std::shared_lock lock(mutex_);
     auto it = id_to_index_.find(id);
-    return it == id_to_index_.end() ? nullptr : vectors_data_.data() + it->second * dim_;
+    return it == id_to_index_.end() ? nullptr : static_cast<const float*>(row(it->second));
   }
 
   // Thread-safe: returns a copy of the vector (safe for concurrent access)
@@ -66,31 +274,93 @@ public:
     std::shared_lock lock(mutex_);
     auto it = id_to_index_.find(id);
     if (it == id_to_index_.end()) return {};
-    const float* ptr = vectors_data_.data() + it->second * dim_;
-    return std::vector<float>(ptr, ptr + dim_);
+    std::vector<float> out(dim_);
+    decode_row(row(it->second), out.data(), dim_, type_);
+    if (is_cosine()) for (float& x : out) x *= norm_data()[it->second];
+    return out;
   }
 
   std::vector<SearchResult> search(const float* query, size_t k) const {
     if (!query) throw std::invalid_argument("Query must not be null");
     if (k == 0) throw std::invalid_argument("k must be > 0");
+    std::vector<float> query_buf;
+    query = prepare_queries(metric_, true, query, 1, dim_, query_buf);
     std::shared_lock lock(mutex_);
-    std::vector<SearchResult> results;
-    results.reserve(ids_.size());
-    for (size_t i = 0; i < ids_.size(); ++i)
-      results.push_back({ids_[i], compute_distance(query, vectors_data_.data() + i * dim_)});
-    size_t n = std::min(k, results.size());
-    std::partial_sort(results.begin(), results.begin() + n, results.end());
-    results.resize(n);
-    return results;
+    const uint64_t* ids = id_data();
+    return scan_top_k(pool_.get(), count(), k, [&](size_t begin, size_t end, TopK& top) {
+      for (size_t i = begin; i < end; ++i)
+        top.push(ids[i], compute_distance(query, row(i)));
+    });
   }
 
-  size_t size() const { std::shared_lock lock(mutex_); return ids_.size(); }
+  std::vector<SearchResult> search(const uint16_t* query, ElementType format, size_t k) const {
+    return search(widen_input(query, format).data(), k);
+  }
+
+  // Keeps a binary-quantized copy of every row (one sign bit per dimension) for
+  // search_binary(); enabling codes existing rows, disabling frees them
+  void set_binary_index(bool enabled) {
+    std::unique_lock lock(mutex_);
+    detach();
+    binary_ = enabled;
+    bits_.clear();
+    bits_.shrink_to_fit();
+    if (!enabled) return;
+    bits_.resize(ids_.size() * words_);
+    std::vector<float> buf(dim_);
+    for (size_t i = 0; i < ids_.size(); ++i) {
+      decode_row(row(i), buf.data(), dim_, type_);
+      binarize(buf.data(), bits_.data() + i * words_, dim_);
+    }
+  }
+  bool has_binary_index() const { std::shared_lock lock(mutex_); return binary_; }
+
+  // Approximate top-k: shortlists k * rerank_factor rows by Hamming distance between sign
+  // codes, then reranks them with the exact metric. Needs set_binary_index(true).
+  std::vector<SearchResult> search_binary(const float* query, size_t k, size_t rerank_factor = 4) const {
+    if (!query) throw std::invalid_argument("Query must not be null");
+    if (k == 0) throw std::invalid_argument("k must be > 0");
+    size_t candidates = binary_candidates(k, rerank_factor);
+    std::vector<float> query_buf;
+    query = prepare_queries(metric_, true, query, 1, dim_, query_buf);
+    std::vector<uint64_t> qbits(words_);
+    binarize(query, qbits.data(), dim_);
+    std::shared_lock lock(mutex_);
+    if (!binary_) throw std::runtime_error("Binary index not enabled");
+    return binary_search_rows(pool_.get(), bits_data(), words_, id_data(), count(), qbits.data(), k,
+                              candidates, [&](size_t i) { return compute_distance(query, row(i)); });
+  }
+
+  // Exact top-k for nq queries stored back to back (nq * dimension floats); one sorted result
+  // list per query, as search() would return
+  std::vector<std::vector<SearchResult>> search_batch(const float* queries, size_t nq, size_t k) const {
+    if (!queries) throw std::invalid_argument("Queries must not be null");
+    if (k == 0) throw std::invalid_argument("k must be > 0");
+    std::shared_lock lock(mutex_);
+    return search_batch_rows(pool_.get(), metric_, true, type_, dim_, row(0), id_data(), count(),
+                             queries, nq, k);
+  }
+
+  size_t size() const { std::shared_lock lock(mutex_); return count(); }
   size_t dimension() const { return dim_; }
   DistanceMetric metric() const { return metric_; }
+  ElementType element_type() const { return type_; }
+
+  // Threads used by search(); 1 (the default) scans on the calling thread only
+  void set_search_threads(size_t threads) {
+    if (threads == 0) throw std::invalid_argument("Search threads must be > 0");
+    std::unique_lock lock(mutex_);
+    pool_ = threads > 1 ? std::make_unique<ThreadPool>(threads) : nullptr;
+  }
+  size_t search_threads() const { std::shared_lock lock(mutex_); return pool_ ? pool_->size() : 1; }
 
   void clear() {
     std::unique_lock lock(mutex_);
+    file_.reset();
     vectors_data_.clear();
+    half_data_.clear();
+    norms_.clear();
+    bits_.clear();
     ids_.clear();
     id_to_index_.clear();
   }
@@ -102,7 +372,11 @@ public:
 
   void reserve(size_t capacity) {
     std::unique_lock lock(mutex_);
-    vectors_data_.reserve(capacity * dim_);
+    detach();
+    if (type_ == ElementType::F32) vectors_data_.reserve(capacity * dim_);
+    else half_data_.reserve(capacity * dim_);
+    if (is_cosine()) norms_.reserve(capacity);
+    if (binary_) bits_.reserve(capacity * words_);
     ids_.reserve(capacity);
     id_to_index_.reserve(capacity);
   }
@@ -112,25 +386,185 @@ public:
     std::unique_lock lock(mutex_);
     auto it = id_to_index_.find(id);
     if (it == id_to_index_.end()) return false;
-    std::copy_n(vector, dim_, vectors_data_.data() + it->second * dim_);
+    detach();
+    store_row(it->second, vector);
     return true;
   }
 
+  bool update(uint64_t id, const uint16_t* vector, ElementType format) {
+    return update(id, widen_input(vector, format).data());
+  }
+
+  // Writes the store in the MMapVectorStore file format (see store_file.h): the row, id, norm
+  // and sign-code arrays go out as they are held, in one sequential pass. The file can be
+  // reloaded with load() or opened read-only as an MMapVectorStore.
+  void save(const std::string& filename) const {
+    std::shared_lock lock(mutex_);
+    store_file::Header h;
+    h.dim = dim_;
+    h.count = count();
+    h.metric = static_cast<uint32_t>(metric_);
+    h.flags = (is_cosine() ? store_file::FLAG_NORMALIZED : 0) | (binary_ ? store_file::FLAG_BINARY : 0);
+    h.type = type_;
+    store_file::write(filename, h, {id_data(), row(0), norm_data(), bits_data()});
+  }
+
+  // Reads a file written by save() or MMapVectorStoreBuilder, one sequential read per section.
+  // With map = true the sections are used in place from a read-only mapping instead, so only
+  // the id map is built up front; the first write copies them into memory and drops the file.
+  // Cosine rows in v1 files were stored as added and are always read and normalized.
+  static std::unique_ptr<VectorStore> load(const std::string& filename, bool map = false) {
+    if (map) {
+      auto file = std::make_unique<MappedFile>(filename, store_file::HEADER_SIZE_V1);
+      store_file::Header h = store_file::parse_header(file->data(), file->size());
+      auto store = std::make_unique<VectorStore>(h.dim, static_cast<DistanceMetric>(h.metric), h.type);
+      const uint8_t* base = file->data();
+      if (store->is_cosine() && !h.normalized()) {
+        store->fill(h, [base](void* dst, uint64_t off, size_t bytes) { std::memcpy(dst, base + off, bytes); });
+        return store;
+      }
+      store->mapped_count_ = h.count;
+      store->mapped_ids_ = reinterpret_cast<const uint64_t*>(base + h.ids_off);
+      store->mapped_rows_ = base + h.vecs_off;
+      store->mapped_norms_ = h.normalized() ? reinterpret_cast<const float*>(base + h.norms_off) : nullptr;
+      store->mapped_bits_ = h.binary() ? reinterpret_cast<const uint64_t*>(base + h.bits_off) : nullptr;
+      store->binary_ = h.binary();
+      store->file_ = std::move(file);
+      store->index_ids();
+      return store;
+    }
+    std::ifstream f(filename, std::ios::binary);
+    if (!f) throw std::runtime_error("Cannot open: " + filename);
+    f.seekg(0, std::ios::end);
+    size_t file_size = static_cast<size_t>(f.tellg());
+    uint8_t header[store_file::HEADER_SIZE] = {};
+    f.seekg(0);
+    f.read(reinterpret_cast<char*>(header), static_cast<std::streamsize>(std::min(file_size, store_file::HEADER_SIZE)));
+    store_file::Header h = store_file::parse_header(header, file_size);
+    auto store = std::make_unique<VectorStore>(h.dim, static_cast<DistanceMetric>(h.metric), h.type);
+    store->fill(h, [&f](void* dst, uint64_t off, size_t bytes) {
+      f.seekg(static_cast<std::streamoff>(off));
+      f.read(static_cast<char*>(dst), static_cast<std::streamsize>(bytes));
+      if (!f) throw std::runtime_error("Read failed");
+    });
+    return store;
+  }
+
+  // True while rows are still served from the file mapped by load(path, true)
+  bool is_mapped() const { std::shared_lock lock(mutex_); return file_ != nullptr; }
+
 private:
-  float compute_distance(const float* a, const float* b) const {
-    switch (metric_) {
-      case DistanceMetric::L2: return l2_sq(a, b, dim_);
-      case DistanceMetric::COSINE: return cosine_distance(a, b, dim_);
-      case DistanceMetric::DOT: return -dot_product(a, b, dim_);
-      default: return std::numeric_limits<float>::infinity();
+  float compute_distance(const float* query, const void* stored) const {
+    return row_distance(metric_, true, type_, query, stored, dim_);
+  }
+
+  bool is_cosine() const { return metric_ == DistanceMetric::COSINE; }
+
+  const void* row(size_t i) const {
+    if (file_) return mapped_rows_ + i * dim_ * element_size(type_);
+    if (type_ == ElementType::F32) return vectors_data_.data() + i * dim_;
+    return half_data_.data() + i * dim_;
+  }
+  void* mutable_row(size_t i) { return const_cast<void*>(row(i)); }
+
+  // Sections of a mapped store live in file_ until detach(); these pick the live copy
+  size_t count() const { return file_ ? mapped_count_ : ids_.size(); }
+  const uint64_t* id_data() const { return file_ ? mapped_ids_ : ids_.data(); }
+  const float* norm_data() const { return file_ ? mapped_norms_ : norms_.data(); }
+  const uint64_t* bits_data() const { return file_ ? mapped_bits_ : bits_.data(); }
+
+  // Copies the mapped sections into owned storage ahead of a write, then releases the file
+  void detach() {
+    if (!file_) return;
+    size_t n = mapped_count_;
+    ids_.assign(mapped_ids_, mapped_ids_ + n);
+    if (type_ == ElementType::F32) {
+      const float* rows = reinterpret_cast<const float*>(mapped_rows_);
+      vectors_data_.assign(rows, rows + n * dim_);
+    } else {
+      const uint16_t* rows = reinterpret_cast<const uint16_t*>(mapped_rows_);
+      half_data_.assign(rows, rows + n * dim_);
+    }
+    if (is_cosine()) norms_.assign(mapped_norms_, mapped_norms_ + n);
+    if (binary_) bits_.assign(mapped_bits_, mapped_bits_ + n * words_);
+    file_.reset();
+  }
+
+  // Fills an empty store from the sections of a parsed file in file order; read(dst, offset,
+  // bytes) copies one section
+  template <typename Read> void fill(const store_file::Header& h, Read&& read) {
+    size_t n = h.count;
+    binary_ = h.binary();
+    if (n == 0) return;
+    ids_.resize(n);
+    read(ids_.data(), h.ids_off, n * sizeof(uint64_t));
+    if (type_ == ElementType::F32) vectors_data_.resize(n * dim_);
+    else half_data_.resize(n * dim_);
+    read(mutable_row(0), h.vecs_off, n * dim_ * element_size(type_));
+    if (binary_) bits_.resize(n * words_);
+    if (is_cosine()) {
+      norms_.resize(n);
+      if (h.normalized()) {
+        read(norms_.data(), h.norms_off, n * sizeof(float));
+      } else {
+        std::vector<float> buf(dim_);
+        for (size_t i = 0; i < n; ++i) {
+          decode_row(row(i), buf.data(), dim_, type_);
+          store_row(i, buf.data());
+        }
+      }
     }
+    if (binary_) read(bits_.data(), h.bits_off, bits_.size() * sizeof(uint64_t));
+    index_ids();
+  }
+
+  void index_ids() {
+    const uint64_t* ids = id_data();
+    id_to_index_.reserve(count());
+    for (size_t i = 0; i < count(); ++i) {
+      if (!id_to_index_.emplace(ids[i], i).second)
+        throw std::runtime_error("File corrupted: duplicate ID " + std::to_string(ids[i]));
+    }
+  }
+
+  // Writes vec into slot i in stored form: unit length for cosine (norm kept), then narrowed
+  // to the store's element type; also refreshes the row's sign code when binary_ is set
+  void store_row(size_t i, const float* vec) {
+    if (binary_) binarize(vec, bits_.data() + i * words_, dim_);
+    if (!is_cosine()) { encode_row(vec, mutable_row(i), dim_, type_); return; }
+    if (type_ == ElementType::F32) { norms_[i] = normalize(vec, vectors_data_.data() + i * dim_, dim_); return; }
+    std::vector<float> unit(dim_);
+    norms_[i] = normalize(vec, unit.data(), dim_);
+    encode_row(unit.data(), mutable_row(i), dim_, type_);
+  }
+
+  std::vector<float> widen_input(const uint16_t* vector, ElementType format) const {
+    if (!vector) throw std::invalid_argument("Vector must not be null");
+    if (format == ElementType::F32) throw std::invalid_argument("Half-precision input must be F16 or BF16");
+    std::vector<float> out(dim_);
+    decode_row(vector, out.data(), dim_, format);
+    return out;
   }
 
   size_t dim_;
   DistanceMetric metric_;
-  std::vector<float> vectors_data_;
+  ElementType type_;
+  std::vector<float> vectors_data_;  // F32 rows
+  std::vector<uint16_t> half_data_;  // F16 / BF16 rows
+  std::vector<float> norms_;  // Cosine only: |v| of each row as added, rows themselves unit length
+  size_t words_;              // 64-bit words per sign code
+  bool binary_ = false;
+  std::vector<uint64_t> bits_;  // Sign codes when binary_ is set, words_ per row
   std::vector<uint64_t> ids_;
   std::unordered_map<uint64_t, size_t> id_to_index_;
+  std::unique_ptr<ThreadPool> pool_;
+  // load(path, true): sections read in place from the mapping until the first write
+  std::unique_ptr<MappedFile> file_;
+  size_t mapped_count_ = 0;
+  const uint64_t* mapped_ids_ = nullptr;
+  const uint8_t* mapped_rows_ = nullptr;
+  const float* mapped_norms_ = nullptr;
+  const uint64_t* mapped_bits_ = nullptr;
   mutable std::shared_mutex mutex_;
 };
 
@@ -1,5 +1,6 @@
 // QuiverDB - Copyright (c) 2025 Anton Tsvetkov - MIT License
 #include "core/distance.h"
+#include "core/half.h"
 #include <catch2/catch_approx.hpp>
 #include <catch2/catch_test_macros.hpp>
 #include <cmath>
@@ -230,3 +231,128 @@ TEST_CASE("distance - special float values", "[distance]") {
     REQUIRE(std::isinf(result));
   }
 }
+
+TEST_CASE("batched x4 kernels match single-vector kernels", "[distance]") {
+  std::mt19937 gen(7);
+  std::uniform_real_distribution<float> dis(-1.0f, 1.0f);
+
+  for (size_t dim : {1, 3, 8, 13, 128, 773}) {
+    std::vector<float> q(dim);
+    std::vector<std::vector<float>> v(4, std::vector<float>(dim));
+    for (auto& x : q) x = dis(gen);
+    for (auto& row : v)
+      for (auto& x : row) x = dis(gen);
+
+    float out[4];
+    quiverdb::l2_sq_x4(q.data(), v[0].data(), v[1].data(), v[2].data(), v[3].data(), dim, out);
+    for (int j = 0; j < 4; ++j)
+      REQUIRE(out[j] == Approx(quiverdb::l2_sq(q.data(), v[j].data(), dim)).epsilon(1e-4));
+
+    quiverdb::dot_product_x4(q.data(), v[0].data(), v[1].data(), v[2].data(), v[3].data(), dim, out);
+    for (int j = 0; j < 4; ++j)
+      REQUIRE(out[j] == Approx(quiverdb::dot_product(q.data(), v[j].data(), dim)).epsilon(1e-4).margin(1e-5));
+
+    quiverdb::cosine_distance_x4(q.data(), v[0].data(), v[1].data(), v[2].data(), v[3].data(), dim, out);
+    for (int j = 0; j < 4; ++j)
+      REQUIRE(out[j] == Approx(quiverdb::cosine_distance(q.data(), v[j].data(), dim)).epsilon(1e-4).margin(1e-5));
+  }
+
+  SECTION("zero row yields cosine fallback") {
+    float q[] = {1.0f, 2.0f, 3.0f};
+    float a[] = {1.0f, 2.0f, 3.0f};
+    float z[] = {0.0f, 0.0f, 0.0f};
+    float out[4];
+    quiverdb::cosine_distance_x4(q, a, z, a, z, 3, out);
+    REQUIRE(out[0] == Approx(0.0f).margin(1e-6));
+    REQUIRE(out[1] == 1.0f);
+    REQUIRE(out[3] == 1.0f);
+  }
+}
+
+TEST_CASE("distance kernel families agree", "[distance]") {
+  REQUIRE(quiverdb::distance_kernels("scalar") != nullptr);
+  REQUIRE(quiverdb::distance_kernels("unknown") == nullptr);
+  const char* active = quiverdb::active_kernel_name();
+  REQUIRE(quiverdb::distance_kernels(active) == &quiverdb::active_kernels());
+
+  const auto& scalar = *quiverdb::distance_kernels("scalar");
+  std::mt19937 gen(17);
+  std::uniform_real_distribution<float> dis(-1.0f, 1.0f);
+
+  for (const char* name : {"sse4", "avx2", "avx512", "neon"}) {
+    const quiverdb::DistanceKernels* kernels = quiverdb::distance_kernels(name);
+    if (!kernels) continue;  // Not compiled in, or not supported by this CPU
+    INFO("kernels: " << name);
+    REQUIRE(std::string_view(kernels->name) == name);
+
+    for (size_t dim : {0, 1, 3, 4, 7, 8, 15, 16, 17, 31, 33, 64, 100, 773}) {
+      INFO("dim: " << dim);
+      std::vector<float> q(dim), v(4 * dim);
+      for (auto& x : q) x = dis(gen);
+      for (auto& x : v) x = dis(gen);
+      const float* r = v.data();
+
+      REQUIRE(kernels->l2_sq(q.data(), r, dim) == Approx(scalar.l2_sq(q.data(), r, dim)).margin(1e-4));
+      REQUIRE(kernels->dot_product(q.data(), r, dim) == Approx(scalar.dot_product(q.data(), r, dim)).margin(1e-4));
+      REQUIRE(kernels->cosine_distance(q.data(), r, dim) ==
+              Approx(scalar.cosine_distance(q.data(), r, dim)).margin(1e-5));
+
+      float got[4], want[4];
+      kernels->l2_sq_x4(q.data(), r, r + dim, r + 2 * dim, r + 3 * dim, dim, got);
+      scalar.l2_sq_x4(q.data(), r, r + dim, r + 2 * dim, r + 3 * dim, dim, want);
+      for (int j = 0; j < 4; ++j) REQUIRE(got[j] == Approx(want[j]).margin(1e-4));
+      kernels->dot_product_x4(q.data(), r, r + dim, r + 2 * dim, r + 3 * dim, dim, got);
+      scalar.dot_product_x4(q.data(), r, r + dim, r + 2 * dim, r + 3 * dim, dim, want);
+      for (int j = 0; j < 4; ++j) REQUIRE(got[j] == Approx(want[j]).margin(1e-4));
+      kernels->cosine_distance_x4(q.data(), r, r + dim, r + 2 * dim, r + 3 * dim, dim, got);
+      scalar.cosine_distance_x4(q.data(), r, r + dim, r + 2 * dim, r + 3 * dim, dim, want);
+      for (int j = 0; j < 4; ++j) REQUIRE(got[j] == Approx(want[j]).margin(1e-5));
+    }
+  }
+}
+
+TEST_CASE("half precision conversions", "[distance][half]") {
+  using namespace quiverdb;
+  REQUIRE(fp32_to_fp16(1.0f) == 0x3C00);
+  REQUIRE(fp32_to_fp16(-2.0f) == 0xC000);
+  REQUIRE(fp32_to_fp16(65504.0f) == 0x7BFF);
+  REQUIRE(fp32_to_fp16(65520.0f) == 0x7C00);  // Ties away from the largest finite value
+  REQUIRE(fp32_to_fp16(std::ldexp(1.0f, -24)) == 0x0001);
+  REQUIRE(fp32_to_fp16(std::ldexp(1.0f, -25)) == 0x0000);  // Tie to even
+  REQUIRE(fp32_to_fp16(std::ldexp(3.0f, -25)) == 0x0002);
+  REQUIRE(std::isnan(fp16_to_fp32(fp32_to_fp16(std::numeric_limits<float>::quiet_NaN()))));
+  REQUIRE(fp32_to_bf16(1.0f) == 0x3F80);
+  REQUIRE(std::isnan(bf16_to_fp32(fp32_to_bf16(std::numeric_limits<float>::quiet_NaN()))));
+
+  // Every non-NaN half value survives widening and narrowing unchanged
+  for (uint32_t h = 0; h <= 0xFFFF; ++h) {
+    auto bits = static_cast<uint16_t>(h);
+    if ((bits & 0x7C00) == 0x7C00 && (bits & 0x3FF)) continue;
+    REQUIRE(fp32_to_fp16(fp16_to_fp32(bits)) == bits);
+    if ((bits & 0x7F80) == 0x7F80 && (bits & 0x7F)) continue;
+    REQUIRE(fp32_to_bf16(bf16_to_fp32(bits)) == bits);
+  }
+}
+
+TEST_CASE("half precision kernels match widened rows", "[distance][half]") {
+  using quiverdb::ElementType;
+  std::mt19937 gen(23);
+  std::uniform_real_distribution<float> dis(-1.0f, 1.0f);
+  for (ElementType type : {ElementType::F16, ElementType::BF16}) {
+    for (size_t dim : {1, 7, 8, 15, 16, 17, 33, 100, 773}) {
+      INFO("type: " << static_cast<int>(type) << ", dim: " << dim);
+      std::vector<float> q(dim), v(dim), widened(dim);
+      std::vector<uint16_t> row(dim);
+      for (auto& x : q) x = dis(gen);
+      for (auto& x : v) x = dis(gen);
+      quiverdb::encode_row(v.data(), row.data(), dim, type);
+      quiverdb::decode_row(row.data(), widened.data(), dim, type);
+      for (size_t i = 0; i < dim; ++i) REQUIRE(widened[i] == Approx(v[i]).margin(type == ElementType::F16 ? 1e-3 : 1e-2));
+
+      REQUIRE(quiverdb::l2_sq_row(q.data(), row.data(), dim, type) ==
+              Approx(quiverdb::l2_sq(q.data(), widened.data(), dim)).margin(1e-4));
+      REQUIRE(quiverdb::dot_product_row(q.data(), row.data(), dim, type) ==
+              Approx(quiverdb::dot_product(q.data(), widened.data(), dim)).margin(1e-4));
+    }
+  }
+}
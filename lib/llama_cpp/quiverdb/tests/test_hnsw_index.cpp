@@ -8,6 +8,7 @@
 #include <filesystem>
 #include <fstream>
 #include <random>
+#include <sstream>
 #include <thread>
 #include <vector>
 
@@ -37,6 +38,11 @@ TEST_CASE("HNSWIndex - construction", "[hnsw]") {
     REQUIRE_NOTHROW(quiverdb::HNSWIndex(768, quiverdb::HNSWDistanceMetric::L2, 1000, 2));
   }
 
+  SECTION("max_elements beyond 32-bit internal ids throws") {
+    REQUIRE_THROWS_AS(quiverdb::HNSWIndex(1, quiverdb::HNSWDistanceMetric::L2, size_t{1} << 32),
+                      std::invalid_argument);
+  }
+
   SECTION("Check initial state") {
     quiverdb::HNSWIndex index(768);
     REQUIRE(index.size() == 0);
@@ -672,6 +678,28 @@ TEST_CASE("HNSWIndex - ef_search validation", "[hnsw]") {
     REQUIRE_NOTHROW(index.set_ef_search(10000));
     REQUIRE(index.get_ef_search() == 10000);
   }
+
+  SECTION("Per-search ef leaves ef_search unchanged") {
+    std::mt19937 gen(3);
+    std::uniform_real_distribution<float> dis(-1.0f, 1.0f);
+    std::vector<float> v(dim);
+    for (uint64_t id = 0; id < 100; ++id) {
+      for (auto& x : v) x = dis(gen);
+      index.add(id, v.data());
+    }
+    for (auto& x : v) x = dis(gen);
+    float q[dim];
+    std::copy(v.begin(), v.end(), q);
+
+    REQUIRE_THROWS_AS(index.search(q, 5, 0), std::invalid_argument);
+    index.set_ef_search(1);
+    auto wide = index.search(q, 5, 100);
+    REQUIRE(index.get_ef_search() == 1);
+    index.set_ef_search(100);
+    auto expected = index.search(q, 5);
+    REQUIRE(wide.size() == expected.size());
+    for (size_t i = 0; i < wide.size(); ++i) REQUIRE(wide[i].id == expected[i].id);
+  }
 }
 
 TEST_CASE("HNSWIndex - get_vector edge cases", "[hnsw]") {
@@ -781,6 +809,326 @@ TEST_CASE("HNSWIndex - corruption validation tests", "[hnsw][serialization]") {
 
 }
 
+TEST_CASE("HNSWIndex - loads legacy nested neighbor format", "[hnsw][serialization]") {
+  const std::string filename = "test_hnsw_legacy_v1.bin";
+  {
+    // v1 layout: header, vectors, ids, levels, id_map, then per-node/per-level size_t lists
+    std::ofstream ofs(filename, std::ios::binary);
+    auto put = [&](const auto& v) { ofs.write(reinterpret_cast<const char*>(&v), sizeof(v)); };
+    put(quiverdb::HNSWIndex::MAGIC);
+    put(uint32_t{1});
+    put(size_t{2});                      // dim
+    put(uint32_t{0});                    // L2
+    put(size_t{4});                      // max_elements
+    put(size_t{2});                      // M
+    put(size_t{10});                     // ef_construction
+    put(size_t{50});                     // ef_search
+    put(1.0 / std::log(2.0));            // mult
+    put(size_t{3});                      // count
+    put(size_t{0});                      // entry point
+    put(int{0});                         // max level
+    std::vector<float> vecs = {0, 0, 1, 0, 0, 1, 0, 0};
+    put(vecs.size());
+    ofs.write(reinterpret_cast<const char*>(vecs.data()), vecs.size() * sizeof(float));
+    std::vector<uint64_t> ids = {10, 20, 30, 0};
+    put(ids.size());
+    ofs.write(reinterpret_cast<const char*>(ids.data()), ids.size() * sizeof(uint64_t));
+    std::vector<int> levels = {0, 0, 0, 0};
+    put(levels.size());
+    ofs.write(reinterpret_cast<const char*>(levels.data()), levels.size() * sizeof(int));
+    put(size_t{3});
+    for (size_t i = 0; i < 3; ++i) { put(ids[i]); put(i); }
+    put(size_t{4});
+    std::vector<std::vector<size_t>> adj = {{1, 2}, {0, 2}, {0, 1}};
+    for (const auto& nbrs : adj) {
+      put(size_t{1});
+      put(nbrs.size());
+      ofs.write(reinterpret_cast<const char*>(nbrs.data()), nbrs.size() * sizeof(size_t));
+    }
+    put(size_t{0});                      // unused slot has no levels
+  }
+
+  auto loaded = quiverdb::HNSWIndex::load(filename);
+  REQUIRE(loaded->size() == 3);
+  float q[] = {0.9f, 0.1f};
+  auto results = loaded->search(q, 3);
+  REQUIRE(results.size() == 3);
+  REQUIRE(results[0].id == 20);
+
+  // Re-saving writes the flat link layout, which must round-trip
+  loaded->save(filename);
+  auto reloaded = quiverdb::HNSWIndex::load(filename);
+  auto again = reloaded->search(q, 3);
+  REQUIRE(again.size() == 3);
+  for (size_t i = 0; i < again.size(); ++i) REQUIRE(again[i].id == results[i].id);
+
+  float v[] = {1.0f, 1.0f};
+  reloaded->add(40, v);
+  REQUIRE(reloaded->search(v, 1)[0].id == 40);
+  std::filesystem::remove(filename);
+}
+
+TEST_CASE("HNSWIndex - loads legacy v2 format", "[hnsw][serialization]") {
+  const std::string filename = "test_hnsw_legacy_v2.bin";
+  std::mt19937 level_gen(42);
+  level_gen.discard(3);
+  {
+    // v2 layout: the v1 layout followed by the level generator state
+    std::ofstream ofs(filename, std::ios::binary);
+    auto put = [&](const auto& v) { ofs.write(reinterpret_cast<const char*>(&v), sizeof(v)); };
+    put(quiverdb::HNSWIndex::MAGIC);
+    put(uint32_t{2});
+    put(size_t{2});                      // dim
+    put(uint32_t{0});                    // L2
+    put(size_t{4});                      // max_elements
+    put(size_t{2});                      // M
+    put(size_t{10});                     // ef_construction
+    put(size_t{50});                     // ef_search
+    put(1.0 / std::log(2.0));            // mult
+    put(size_t{3});                      // count
+    put(size_t{0});                      // entry point
+    put(int{0});                         // max level
+    std::vector<float> vecs = {0, 0, 1, 0, 0, 1, 0, 0};
+    put(vecs.size());
+    ofs.write(reinterpret_cast<const char*>(vecs.data()), vecs.size() * sizeof(float));
+    std::vector<uint64_t> ids = {10, 20, 30, 0};
+    put(ids.size());
+    ofs.write(reinterpret_cast<const char*>(ids.data()), ids.size() * sizeof(uint64_t));
+    std::vector<int> levels = {0, 0, 0, 0};
+    put(levels.size());
+    ofs.write(reinterpret_cast<const char*>(levels.data()), levels.size() * sizeof(int));
+    put(size_t{3});
+    for (size_t i = 0; i < 3; ++i) { put(ids[i]); put(i); }
+    put(size_t{4});
+    std::vector<std::vector<size_t>> adj = {{1, 2}, {0, 2}, {0, 1}};
+    for (const auto& nbrs : adj) {
+      put(size_t{1});
+      put(nbrs.size());
+      ofs.write(reinterpret_cast<const char*>(nbrs.data()), nbrs.size() * sizeof(size_t));
+    }
+    put(size_t{0});                      // unused slot has no levels
+    std::stringstream rng_ss;
+    rng_ss << level_gen;
+    std::string rng_state = rng_ss.str();
+    put(rng_state.size());
+    ofs.write(rng_state.data(), rng_state.size());
+  }
+
+  auto loaded = quiverdb::HNSWIndex::load(filename);
+  REQUIRE(loaded->size() == 3);
+  REQUIRE(loaded->dimension() == 2);
+  float q[] = {0.9f, 0.1f};
+  auto results = loaded->search(q, 3);
+  REQUIRE(results.size() == 3);
+  REQUIRE(results[0].id == 20);
+  REQUIRE(loaded->get_vector(30) == std::vector<float>{0.0f, 1.0f});
+
+  // Re-saving upgrades to the current format, which must round-trip
+  loaded->save(filename);
+  auto reloaded = quiverdb::HNSWIndex::load(filename);
+  auto again = reloaded->search(q, 3);
+  REQUIRE(again.size() == 3);
+  for (size_t i = 0; i < again.size(); ++i) REQUIRE(again[i].id == results[i].id);
+
+  float v[] = {1.0f, 1.0f};
+  reloaded->add(40, v);
+  REQUIRE(reloaded->search(v, 1)[0].id == 40);
+  std::filesystem::remove(filename);
+}
+
+TEST_CASE("HNSWIndex - merge shards", "[hnsw]") {
+  constexpr size_t dim = 16;
+  constexpr size_t per_shard = 300;
+  std::mt19937 gen(7);
+  std::uniform_real_distribution<float> dis(-1.0f, 1.0f);
+
+  std::vector<std::vector<float>> all_vectors(per_shard * 3, std::vector<float>(dim));
+  std::vector<std::unique_ptr<quiverdb::HNSWIndex>> shards;
+  for (size_t s = 0; s < 3; ++s) {
+    shards.push_back(std::make_unique<quiverdb::HNSWIndex>(
+        dim, quiverdb::HNSWDistanceMetric::L2, per_shard, 16, 100, static_cast<uint32_t>(s + 1)));
+    for (size_t i = 0; i < per_shard; ++i) {
+      uint64_t id = s * per_shard + i;
+      for (auto& x : all_vectors[id]) x = dis(gen);
+      shards[s]->add(id, all_vectors[id].data());
+    }
+  }
+  std::vector<const quiverdb::HNSWIndex*> parts = {shards[0].get(), shards[1].get(), shards[2].get()};
+
+  SECTION("Merged index contains every vector") {
+    auto merged = quiverdb::HNSWIndex::merge(parts);
+    REQUIRE(merged->size() == per_shard * 3);
+    REQUIRE(merged->capacity() == per_shard * 3);
+    for (uint64_t id = 0; id < all_vectors.size(); ++id) {
+      REQUIRE(merged->contains(id));
+      REQUIRE(merged->get_vector(id) == all_vectors[id]);
+    }
+  }
+
+  SECTION("Searches reach vectors from every shard") {
+    auto merged = quiverdb::HNSWIndex::merge(parts);
+    merged->set_ef_search(100);
+    for (uint64_t id : {5ULL, 305ULL, 605ULL, 899ULL}) {
+      auto results = merged->search(all_vectors[id].data(), 1);
+      REQUIRE(results[0].id == id);
+    }
+
+    std::vector<float> query(dim);
+    for (auto& x : query) x = dis(gen);
+    std::vector<std::pair<float, uint64_t>> ground_truth;
+    for (uint64_t i = 0; i < all_vectors.size(); ++i)
+      ground_truth.emplace_back(quiverdb::l2_sq(query.data(), all_vectors[i].data(), dim), i);
+    std::sort(ground_truth.begin(), ground_truth.end());
+    std::unordered_set<uint64_t> gt_set;
+    for (size_t i = 0; i < 10; ++i) gt_set.insert(ground_truth[i].second);
+    int recall = 0;
+    for (const auto& r : merged->search(query.data(), 10)) recall += gt_set.count(r.id);
+    REQUIRE(recall >= 8);
+  }
+
+  SECTION("Merged index accepts new vectors and round-trips") {
+    auto merged = quiverdb::HNSWIndex::merge(parts, per_shard * 3 + 1);
+    std::vector<float> v(dim, 2.0f);
+    merged->add(10000, v.data());
+    REQUIRE(merged->search(v.data(), 1)[0].id == 10000);
+
+    const std::string filename = "test_hnsw_merged.bin";
+    merged->save(filename);
+    auto loaded = quiverdb::HNSWIndex::load(filename);
+    REQUIRE(loaded->size() == per_shard * 3 + 1);
+    REQUIRE(loaded->search(all_vectors[42].data(), 1)[0].id == 42);
+    std::filesystem::remove(filename);
+  }
+
+  SECTION("Invalid inputs throw") {
+    REQUIRE_THROWS_AS(quiverdb::HNSWIndex::merge({}), std::invalid_argument);
+    REQUIRE_THROWS_AS(quiverdb::HNSWIndex::merge({shards[0].get(), nullptr}), std::invalid_argument);
+    REQUIRE_THROWS_AS(quiverdb::HNSWIndex::merge({shards[0].get(), shards[0].get()}), std::invalid_argument);
+    REQUIRE_THROWS_AS(quiverdb::HNSWIndex::merge(parts, per_shard), std::invalid_argument);
+    quiverdb::HNSWIndex other_dim(dim + 1);
+    REQUIRE_THROWS_AS(quiverdb::HNSWIndex::merge({shards[0].get(), &other_dim}), std::invalid_argument);
+    quiverdb::HNSWIndex other_metric(dim, quiverdb::HNSWDistanceMetric::COSINE);
+    REQUIRE_THROWS_AS(quiverdb::HNSWIndex::merge({shards[0].get(), &other_metric}), std::invalid_argument);
+  }
+
+  SECTION("Empty shards are skipped") {
+    quiverdb::HNSWIndex empty(dim, quiverdb::HNSWDistanceMetric::L2, 10, 16, 100);
+    auto merged = quiverdb::HNSWIndex::merge({&empty, shards[1].get()});
+    REQUIRE(merged->size() == per_shard);
+    REQUIRE(merged->search(all_vectors[310].data(), 1)[0].id == 310);
+  }
+}
+
+TEST_CASE("HNSWIndex - build from mmap store", "[hnsw][mmap]") {
+  constexpr size_t dim = 16;
+  constexpr size_t num_vectors = 400;
+  const std::string store_file = "test_hnsw_build_from.qvec";
+  std::mt19937 gen(11);
+  std::uniform_real_distribution<float> dis(-1.0f, 1.0f);
+  std::vector<std::vector<float>> all_vectors(num_vectors, std::vector<float>(dim));
+  {
+    quiverdb::MMapVectorStoreBuilder builder(dim, quiverdb::DistanceMetric::L2);
+    for (uint64_t i = 0; i < num_vectors; ++i) {
+      for (auto& x : all_vectors[i]) x = dis(gen);
+      builder.add(i + 100, all_vectors[i].data());
+    }
+    builder.save(store_file);
+  }
+  quiverdb::MMapVectorStore store(store_file);
+
+  SECTION("Single-threaded build matches sequential adds") {
+    auto built = quiverdb::HNSWIndex::build_from(store, 16, 100, 1);
+    quiverdb::HNSWIndex manual(dim, quiverdb::HNSWDistanceMetric::L2, num_vectors, 16, 100);
+    for (uint64_t i = 0; i < num_vectors; ++i) manual.add(i + 100, all_vectors[i].data());
+    REQUIRE(built->size() == num_vectors);
+    for (size_t q = 0; q < 20; ++q) {
+      auto a = built->search(all_vectors[q * 7].data(), 5);
+      auto b = manual.search(all_vectors[q * 7].data(), 5);
+      REQUIRE(a.size() == b.size());
+      for (size_t i = 0; i < a.size(); ++i) REQUIRE(a[i].id == b[i].id);
+    }
+  }
+
+  SECTION("Multi-threaded build finds every vector") {
+    auto built = quiverdb::HNSWIndex::build_from(store, 16, 100, 4);
+    built->set_ef_search(100);
+    REQUIRE(built->size() == num_vectors);
+    size_t found = 0;
+    for (uint64_t i = 0; i < num_vectors; ++i)
+      found += built->search(all_vectors[i].data(), 1)[0].id == i + 100;
+    REQUIRE(found >= num_vectors * 99 / 100);
+  }
+
+  SECTION("Referenced vectors are read from the mapping") {
+    auto built = quiverdb::HNSWIndex::build_from(store, 16, 100, 2, true);
+    REQUIRE(built->get_vector(142) == all_vectors[42]);
+    REQUIRE(built->search(all_vectors[42].data(), 1)[0].id == 142);
+    REQUIRE_THROWS_AS(built->add(1, all_vectors[0].data()), std::runtime_error);
+
+    // Saving copies the referenced rows, so the reloaded index is independent of the store
+    const std::string index_file = "test_hnsw_build_from.bin";
+    built->save(index_file);
+    auto loaded = quiverdb::HNSWIndex::load(index_file);
+    REQUIRE(loaded->get_vector(142) == all_vectors[42]);
+    REQUIRE(loaded->search(all_vectors[42].data(), 1)[0].id == 142);
+    std::filesystem::remove(index_file);
+  }
+
+  std::filesystem::remove(store_file);
+}
+
+TEST_CASE("HNSWIndex - cosine keeps vectors as added", "[hnsw]") {
+  constexpr size_t dim = 8;
+  constexpr size_t num_vectors = 200;
+  std::mt19937 gen(5);
+  std::uniform_real_distribution<float> dis(-3.0f, 3.0f);
+  std::vector<std::vector<float>> all_vectors(num_vectors, std::vector<float>(dim));
+  for (auto& v : all_vectors) for (auto& x : v) x = dis(gen);
+  auto same = [](const std::vector<float>& a, const std::vector<float>& b) {
+    REQUIRE(a.size() == b.size());
+    for (size_t j = 0; j < a.size(); ++j) REQUIRE(a[j] == Approx(b[j]).margin(1e-5f));
+  };
+
+  quiverdb::HNSWIndex index(dim, quiverdb::HNSWDistanceMetric::COSINE, num_vectors);
+  for (uint64_t i = 0; i < num_vectors; ++i) index.add(i, all_vectors[i].data());
+
+  SECTION("Search and get_vector") {
+    std::vector<float> scaled = all_vectors[17];
+    for (float& x : scaled) x *= 4.0f;
+    auto results = index.search(scaled.data(), 1);
+    REQUIRE(results[0].id == 17);
+    REQUIRE(results[0].distance == Approx(0.0f).margin(1e-5f));
+    same(index.get_vector(17), all_vectors[17]);
+  }
+
+  SECTION("Save and load") {
+    const std::string filename = "test_hnsw_cosine.bin";
+    index.save(filename);
+    auto loaded = quiverdb::HNSWIndex::load(filename);
+    same(loaded->get_vector(17), all_vectors[17]);
+    REQUIRE(loaded->search(all_vectors[17].data(), 1)[0].id == 17);
+    std::filesystem::remove(filename);
+  }
+
+  SECTION("Build from a normalized mmap store") {
+    const std::string store_file = "test_hnsw_cosine.qvec";
+    {
+      quiverdb::MMapVectorStoreBuilder builder(dim, quiverdb::DistanceMetric::COSINE);
+      for (uint64_t i = 0; i < num_vectors; ++i) builder.add(i, all_vectors[i].data());
+      builder.save(store_file);
+    }
+    {
+      quiverdb::MMapVectorStore store(store_file);
+      for (bool reference : {false, true}) {
+        auto built = quiverdb::HNSWIndex::build_from(store, 16, 100, 1, reference);
+        same(built->get_vector(42), all_vectors[42]);
+        REQUIRE(built->search(all_vectors[42].data(), 1)[0].id == 42);
+      }
+    }
+    std::filesystem::remove(store_file);
+  }
+}
+
 TEST_CASE("HNSWIndex - multi-dimension test", "[hnsw][multi-dim]") {
   // Test with various dimensions to ensure compatibility with common embedding sizes
   std::vector<size_t> dimensions = {384, 768, 1024, 3072};
@@ -929,3 +1277,68 @@ TEST_CASE("HNSWIndex - contains edge cases", "[hnsw]") {
     REQUIRE_FALSE(index.contains(43));
   }
 }
+
+TEST_CASE("HNSWIndex - half precision rows", "[hnsw][half]") {
+  constexpr size_t dim = 16;
+  constexpr size_t num_vectors = 300;
+  std::mt19937 gen(36);
+  std::uniform_real_distribution<float> dis(-1.0f, 1.0f);
+  std::vector<std::vector<float>> all_vectors(num_vectors, std::vector<float>(dim));
+  for (auto& v : all_vectors) for (auto& x : v) x = dis(gen);
+
+  for (auto type : {quiverdb::ElementType::F16, quiverdb::ElementType::BF16}) {
+    const float tol = type == quiverdb::ElementType::F16 ? 1e-3f : 1e-2f;
+    auto close = [&](const std::vector<float>& a, const std::vector<float>& b) {
+      REQUIRE(a.size() == b.size());
+      for (size_t j = 0; j < a.size(); ++j) REQUIRE(a[j] == Approx(b[j]).margin(tol * 4));
+    };
+    for (auto metric : {quiverdb::HNSWDistanceMetric::L2, quiverdb::HNSWDistanceMetric::COSINE}) {
+      quiverdb::HNSWIndex index(dim, metric, num_vectors, 16, 100, 42, type);
+      REQUIRE(index.element_type() == type);
+      for (uint64_t i = 0; i < num_vectors; ++i) index.add(i, all_vectors[i].data());
+
+      SECTION("Search and get_vector") {
+        REQUIRE(index.search(all_vectors[42].data(), 1)[0].id == 42);
+        close(index.get_vector(42), all_vectors[42]);
+        std::vector<uint16_t> bits(dim);
+        for (size_t j = 0; j < dim; ++j) bits[j] = quiverdb::fp32_to_bf16(all_vectors[9][j]);
+        REQUIRE(index.search(bits.data(), quiverdb::ElementType::BF16, 1)[0].id == 9);
+      }
+
+      SECTION("Save and load keep the element type") {
+        const std::string filename = "test_hnsw_half.bin";
+        index.save(filename);
+        auto loaded = quiverdb::HNSWIndex::load(filename);
+        REQUIRE(loaded->element_type() == type);
+        close(loaded->get_vector(42), index.get_vector(42));
+        REQUIRE(loaded->search(all_vectors[42].data(), 1)[0].id == 42);
+        std::filesystem::remove(filename);
+      }
+
+      SECTION("Merge rejects mismatched element types") {
+        quiverdb::HNSWIndex other(dim, metric, 10);
+        std::vector<const quiverdb::HNSWIndex*> shards{&index, &other};
+        REQUIRE_THROWS_AS(quiverdb::HNSWIndex::merge(shards), std::invalid_argument);
+      }
+    }
+
+    SECTION("Build from a half precision mmap store") {
+      const std::string store_file = "test_hnsw_half.qvec";
+      {
+        quiverdb::MMapVectorStoreBuilder builder(dim, quiverdb::DistanceMetric::COSINE, type);
+        for (uint64_t i = 0; i < num_vectors; ++i) builder.add(i, all_vectors[i].data());
+        builder.save(store_file);
+      }
+      {
+        quiverdb::MMapVectorStore store(store_file);
+        for (bool reference : {false, true}) {
+          auto built = quiverdb::HNSWIndex::build_from(store, 16, 100, 1, reference);
+          REQUIRE(built->element_type() == type);
+          close(built->get_vector(42), all_vectors[42]);
+          REQUIRE(built->search(all_vectors[42].data(), 1)[0].id == 42);
+        }
+      }
+      std::filesystem::remove(store_file);
+    }
+  }
+}
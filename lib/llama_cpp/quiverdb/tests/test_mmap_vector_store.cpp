@@ -1,7 +1,10 @@
 #include "core/mmap_vector_store.h"
 #include <catch2/catch_approx.hpp>
 #include <catch2/catch_test_macros.hpp>
+#include <cmath>
+#include <cstdint>
 #include <filesystem>
+#include <fstream>
 #include <random>
 #include <vector>
 
@@ -384,11 +387,14 @@ TEST_CASE("MMapVectorStore - large scale", "[mmap][stress]") {
   SECTION("Vectors are preserved") {
     quiverdb::MMapVectorStore store(filename);
 
+    // Cosine rows are mapped unit length; get_copy() restores the vectors as added
+    REQUIRE(store.normalized());
     for (size_t i = 0; i < num_vectors; ++i) {
-      const float* retrieved = store.get(i);
-      REQUIRE(retrieved != nullptr);
+      REQUIRE(store.get(i) != nullptr);
+      std::vector<float> retrieved = store.get_copy(i);
+      REQUIRE(retrieved.size() == dim);
       for (size_t j = 0; j < dim; ++j) {
-        REQUIRE(retrieved[j] == all_vectors[i][j]);
+        REQUIRE(retrieved[j] == Approx(all_vectors[i][j]).margin(1e-5f));
       }
     }
   }
@@ -428,6 +434,94 @@ TEST_CASE("MMapVectorStore - cosine metric", "[mmap]") {
   std::filesystem::remove(filename);
 }
 
+TEST_CASE("MMapVectorStore - normalized cosine rows", "[mmap]") {
+  const std::string filename = "test_mmap_normalized.bin";
+  std::filesystem::remove(filename);
+  float vec1[] = {3.0f, 4.0f, 0.0f};
+  float vec2[] = {0.0f, 0.0f, 2.0f};
+
+  SECTION("Builder writes unit rows and their norms") {
+    quiverdb::MMapVectorStoreBuilder builder(3, quiverdb::DistanceMetric::COSINE);
+    builder.add(1, vec1);
+    builder.add(2, vec2);
+    builder.save(filename);
+    {
+      quiverdb::MMapVectorStore store(filename);
+      REQUIRE(store.normalized());
+      REQUIRE(store.norms()[0] == Approx(5.0f));
+      REQUIRE(store.get(1)[1] == Approx(0.8f));
+      std::vector<float> original = store.get_copy(1);
+      REQUIRE(original.size() == 3);
+      REQUIRE(original[0] == Approx(3.0f));
+      REQUIRE(original[1] == Approx(4.0f));
+      REQUIRE(reinterpret_cast<uintptr_t>(store.data()) % quiverdb::MMapVectorStore::SECTION_ALIGN == 0);
+      float query[] = {0.0f, 8.0f, 0.0f};
+      auto results = store.search(query, 2);
+      REQUIRE(results[0].id == 1);
+      REQUIRE(results[0].distance == Approx(0.2f));
+      REQUIRE(results[1].distance == Approx(1.0f));
+    }
+  }
+
+  SECTION("v1 files keep raw rows and the full cosine") {
+    {
+      std::ofstream ofs(filename, std::ios::binary);
+      uint32_t magic = quiverdb::MMapVectorStore::MAGIC, version = 1;
+      uint64_t dim = 3, num_vectors = 2, ids[] = {1, 2};
+      uint32_t metric = static_cast<uint32_t>(quiverdb::DistanceMetric::COSINE), reserved = 0;
+      ofs.write(reinterpret_cast<const char*>(&magic), sizeof(magic));
+      ofs.write(reinterpret_cast<const char*>(&version), sizeof(version));
+      ofs.write(reinterpret_cast<const char*>(&dim), sizeof(dim));
+      ofs.write(reinterpret_cast<const char*>(&num_vectors), sizeof(num_vectors));
+      ofs.write(reinterpret_cast<const char*>(&metric), sizeof(metric));
+      ofs.write(reinterpret_cast<const char*>(&reserved), sizeof(reserved));
+      ofs.write(reinterpret_cast<const char*>(ids), sizeof(ids));
+      ofs.write(reinterpret_cast<const char*>(vec1), sizeof(vec1));
+      ofs.write(reinterpret_cast<const char*>(vec2), sizeof(vec2));
+    }
+    {
+      quiverdb::MMapVectorStore store(filename);
+      REQUIRE_FALSE(store.normalized());
+      REQUIRE(store.norms() == nullptr);
+      REQUIRE(store.get(1)[0] == 3.0f);
+      std::vector<float> original = store.get_copy(1);
+      REQUIRE(original.size() == 3);
+      REQUIRE(original[0] == Approx(3.0f));
+      REQUIRE(original[1] == Approx(4.0f));
+      float query[] = {0.0f, 8.0f, 0.0f};
+      auto results = store.search(query, 2);
+      REQUIRE(results[0].id == 1);
+      REQUIRE(results[0].distance == Approx(0.2f));
+      auto batch = store.search_batch(query, 1, 2);
+      REQUIRE(batch[0][0].distance == Approx(0.2f));
+    }
+    for (bool map : {false, true}) {
+      // VectorStore keeps cosine rows unit length, so v1 rows are normalized on load
+      auto loaded = quiverdb::VectorStore::load(filename, map);
+      REQUIRE_FALSE(loaded->is_mapped());
+      REQUIRE(loaded->get(1)[0] == Approx(0.6f));
+      REQUIRE(loaded->get_copy(1)[1] == Approx(4.0f));
+      float query[] = {0.0f, 8.0f, 0.0f};
+      REQUIRE(loaded->search(query, 1)[0].distance == Approx(0.2f));
+    }
+  }
+
+  SECTION("Sections outside the file are rejected") {
+    quiverdb::MMapVectorStoreBuilder builder(3, quiverdb::DistanceMetric::COSINE);
+    builder.add(1, vec1);
+    builder.save(filename);
+    {
+      std::fstream fs(filename, std::ios::binary | std::ios::in | std::ios::out);
+      uint64_t norms_offset = 1ull << 40;
+      fs.seekp(48);
+      fs.write(reinterpret_cast<const char*>(&norms_offset), sizeof(norms_offset));
+    }
+    REQUIRE_THROWS_AS(quiverdb::MMapVectorStore(filename), std::runtime_error);
+  }
+
+  std::filesystem::remove(filename);
+}
+
 TEST_CASE("MMapVectorStore - dot product metric", "[mmap]") {
   const std::string filename = "test_mmap_dot.bin";
   std::filesystem::remove(filename);
@@ -456,3 +550,454 @@ TEST_CASE("MMapVectorStore - dot product metric", "[mmap]") {
 
   std::filesystem::remove(filename);
 }
+
+TEST_CASE("MMapVectorStore - parallel search", "[mmap][thread]") {
+  const std::string filename = "test_mmap_parallel.bin";
+  constexpr size_t dim = 16;
+  constexpr size_t num_vectors = 20000;
+  std::mt19937 gen(3);
+  std::uniform_real_distribution<float> dis(-1.0f, 1.0f);
+  {
+    quiverdb::MMapVectorStoreBuilder builder(dim, quiverdb::DistanceMetric::L2);
+    std::vector<float> vec(dim);
+    for (uint64_t i = 0; i < num_vectors; ++i) {
+      for (auto& x : vec) x = dis(gen);
+      builder.add(i, vec.data());
+    }
+    builder.save(filename);
+  }
+
+  {
+    quiverdb::MMapVectorStore store(filename);
+    REQUIRE(store.search_threads() == 1);
+    REQUIRE_THROWS_AS(store.set_search_threads(0), std::invalid_argument);
+
+    std::vector<float> query(dim);
+    for (auto& x : query) x = dis(gen);
+    auto sequential = store.search(query.data(), 25);
+
+    store.set_search_threads(4);
+    REQUIRE(store.search_threads() == 4);
+    auto parallel = store.search(query.data(), 25);
+    REQUIRE(parallel.size() == sequential.size());
+    for (size_t i = 0; i < parallel.size(); ++i) {
+      REQUIRE(parallel[i].id == sequential[i].id);
+      REQUIRE(parallel[i].distance == sequential[i].distance);
+    }
+
+    // k beyond the store size still returns every vector once, sorted
+    auto all = store.search(query.data(), num_vectors + 10);
+    REQUIRE(all.size() == num_vectors);
+    for (size_t i = 1; i < all.size(); ++i) REQUIRE(all[i - 1].distance <= all[i].distance);
+
+    store.set_search_threads(1);
+    REQUIRE(store.search_threads() == 1);
+  }  // Scope ensures store is destroyed and file unmapped before removal (Windows file locking)
+
+  std::filesystem::remove(filename);
+}
+
+TEST_CASE("MMapVectorStore - batch search", "[mmap][search]") {
+  const std::string filename = "test_mmap_batch.bin";
+  constexpr size_t dim = 24;
+  constexpr size_t num_vectors = 2503;
+  constexpr size_t num_queries = 19;
+  std::mt19937 gen(5);
+  std::uniform_real_distribution<float> dis(-1.0f, 1.0f);
+  {
+    quiverdb::MMapVectorStoreBuilder builder(dim, quiverdb::DistanceMetric::COSINE);
+    std::vector<float> vec(dim);
+    for (uint64_t i = 0; i < num_vectors; ++i) {
+      for (auto& x : vec) x = dis(gen);
+      builder.add(i, vec.data());
+    }
+    builder.save(filename);
+  }
+
+  {
+    quiverdb::MMapVectorStore store(filename);
+    std::vector<float> queries(num_queries * dim);
+    for (auto& x : queries) x = dis(gen);
+
+    for (size_t threads : {size_t{1}, size_t{4}}) {
+      store.set_search_threads(threads);
+      auto batch = store.search_batch(queries.data(), num_queries, 15);
+      REQUIRE(batch.size() == num_queries);
+      for (size_t q = 0; q < num_queries; ++q) {
+        auto single = store.search(queries.data() + q * dim, 15);
+        REQUIRE(batch[q].size() == single.size());
+        for (size_t i = 0; i < single.size(); ++i) {
+          REQUIRE(batch[q][i].id == single[i].id);
+          REQUIRE(batch[q][i].distance == Approx(single[i].distance).margin(1e-5));
+        }
+      }
+    }
+
+    REQUIRE_THROWS_AS(store.search_batch(nullptr, 1, 5), std::invalid_argument);
+    REQUIRE_THROWS_AS(store.search_batch(queries.data(), 1, 0), std::invalid_argument);
+  }  // Scope ensures store is destroyed and file unmapped before removal (Windows file locking)
+
+  std::filesystem::remove(filename);
+}
+
+TEST_CASE("MMapVectorStore - half precision rows", "[mmap][half]") {
+  const std::string filename = "test_mmap_half.qvec";
+  constexpr size_t dim = 21;
+  constexpr size_t num_vectors = 500;
+  std::mt19937 gen(36);
+  std::uniform_real_distribution<float> dis(-1.0f, 1.0f);
+  std::vector<std::vector<float>> all_vectors(num_vectors, std::vector<float>(dim));
+  for (auto& v : all_vectors) for (auto& x : v) x = dis(gen);
+
+  for (auto type : {quiverdb::ElementType::F16, quiverdb::ElementType::BF16}) {
+    const float tol = type == quiverdb::ElementType::F16 ? 1e-3f : 1e-2f;
+    for (auto metric : {quiverdb::DistanceMetric::L2, quiverdb::DistanceMetric::COSINE}) {
+      {
+        quiverdb::MMapVectorStoreBuilder builder(dim, metric, type);
+        REQUIRE(builder.element_type() == type);
+        for (uint64_t i = 0; i < num_vectors; ++i) builder.add(i, all_vectors[i].data());
+        builder.save(filename);
+      }
+      // Half-size rows plus ids, norms and the id index (at most 3 slots of 8 bytes per id)
+      REQUIRE(std::filesystem::file_size(filename) <
+              num_vectors * dim * sizeof(float) / 2 + num_vectors * (16 + 24) + 256);
+
+      {
+        quiverdb::MMapVectorStore store(filename);
+        REQUIRE(store.element_type() == type);
+        REQUIRE(store.data() == nullptr);
+        REQUIRE_THROWS_AS(store.get(0), std::runtime_error);
+        auto v = store.get_copy(11);
+        for (size_t j = 0; j < dim; ++j) REQUIRE(v[j] == Approx(all_vectors[11][j]).margin(tol));
+
+        auto results = store.search(all_vectors[11].data(), 3);
+        REQUIRE(results[0].id == 11);
+        REQUIRE(results[0].distance == Approx(0.0f).margin(tol));
+        store.set_search_threads(2);
+        auto batch = store.search_batch(all_vectors[11].data(), 1, 3);
+        for (size_t i = 0; i < results.size(); ++i) REQUIRE(batch[0][i].id == results[i].id);
+      }
+      std::filesystem::remove(filename);
+    }
+  }
+}
+
+TEST_CASE("MMapVectorStore - binary index section", "[mmap][binary]") {
+  const std::string filename = "test_mmap_binary.qvec";
+  constexpr size_t dim = 70;
+  constexpr size_t num_vectors = 1500;
+  std::mt19937 gen(37);
+  std::normal_distribution<float> dis(0.0f, 1.0f);
+  std::vector<std::vector<float>> all_vectors(num_vectors, std::vector<float>(dim));
+  for (auto& v : all_vectors) for (auto& x : v) x = dis(gen);
+
+  for (auto type : {quiverdb::ElementType::F32, quiverdb::ElementType::BF16}) {
+    for (auto metric : {quiverdb::DistanceMetric::L2, quiverdb::DistanceMetric::COSINE}) {
+      {
+        quiverdb::MMapVectorStoreBuilder builder(dim, metric, type);
+        builder.set_binary_index(true);
+        for (uint64_t i = 0; i < num_vectors; ++i) builder.add(i + 100, all_vectors[i].data());
+        builder.save(filename);
+      }
+      {
+        quiverdb::MMapVectorStore store(filename);
+        REQUIRE(store.has_binary_index());
+        for (size_t threads : {size_t{1}, size_t{2}}) {
+          store.set_search_threads(threads);
+          auto exact = store.search(all_vectors[42].data(), 8);
+          auto binary = store.search_binary(all_vectors[42].data(), 8, num_vectors);
+          REQUIRE(binary.size() == exact.size());
+          for (size_t i = 0; i < exact.size(); ++i) REQUIRE(binary[i].id == exact[i].id);
+          REQUIRE(store.search_binary(all_vectors[42].data(), 1)[0].id == 142);
+        }
+      }
+      std::filesystem::remove(filename);
+    }
+  }
+
+  SECTION("Files without the section throw") {
+    {
+      quiverdb::MMapVectorStoreBuilder builder(dim);
+      builder.add(1, all_vectors[0].data());
+      builder.save(filename);
+    }
+    {
+      quiverdb::MMapVectorStore store(filename);
+      REQUIRE_FALSE(store.has_binary_index());
+      REQUIRE_THROWS_AS(store.search_binary(all_vectors[0].data(), 1), std::runtime_error);
+    }
+    std::filesystem::remove(filename);
+  }
+
+  SECTION("Truncated section is rejected") {
+    {
+      quiverdb::MMapVectorStoreBuilder builder(dim);
+      builder.set_binary_index(true);
+      for (uint64_t i = 0; i < 10; ++i) builder.add(i, all_vectors[i].data());
+      builder.save(filename);
+    }
+    std::filesystem::resize_file(filename, std::filesystem::file_size(filename) - 8);
+    REQUIRE_THROWS_AS(quiverdb::MMapVectorStore(filename), std::runtime_error);
+    std::filesystem::remove(filename);
+  }
+}
+
+TEST_CASE("MMapVectorStore - files saved by VectorStore", "[mmap][persistence]") {
+  const std::string filename = "test_mmap_from_vector_store.bin";
+  constexpr size_t dim = 40;
+  std::mt19937 gen(39);
+  std::normal_distribution<float> dis(0.0f, 1.0f);
+  std::vector<std::vector<float>> all_vectors(100, std::vector<float>(dim));
+  for (auto& v : all_vectors) for (auto& x : v) x = dis(gen);
+
+  quiverdb::VectorStore store(dim, quiverdb::DistanceMetric::COSINE, quiverdb::ElementType::BF16);
+  store.set_binary_index(true);
+  for (uint64_t i = 0; i < all_vectors.size(); ++i) store.add(i + 10, all_vectors[i].data());
+  store.remove(10);  // Last row moves into slot 0
+  store.save(filename);
+  {
+    quiverdb::MMapVectorStore mapped(filename);
+    REQUIRE(mapped.size() == store.size());
+    REQUIRE(mapped.normalized());
+    REQUIRE(mapped.has_binary_index());
+    REQUIRE(mapped.element_type() == quiverdb::ElementType::BF16);
+    REQUIRE_FALSE(mapped.contains(10));
+    auto expected = store.search(all_vectors[42].data(), 4);
+    auto results = mapped.search(all_vectors[42].data(), 4);
+    for (size_t i = 0; i < expected.size(); ++i) {
+      REQUIRE(results[i].id == expected[i].id);
+      REQUIRE(results[i].distance == Approx(expected[i].distance));
+    }
+    REQUIRE(mapped.search_binary(all_vectors[99].data(), 1)[0].id == 109);
+  }
+  std::filesystem::remove(filename);
+}
+
+TEST_CASE("MMapVectorStore - persisted id index", "[mmap][id_index]") {
+  const std::string filename = "test_mmap_id_index.bin";
+  constexpr size_t dim = 8;
+  std::mt19937_64 gen(39);
+  std::vector<uint64_t> ids = {0, 1, 2, UINT64_MAX};
+  while (ids.size() < 1000) ids.push_back(gen());
+  std::vector<float> vec(dim);
+  auto row_of = [&](size_t i) {
+    for (size_t j = 0; j < dim; ++j) vec[j] = static_cast<float>(i * dim + j);
+    return vec.data();
+  };
+  // Rewrites one header field in place
+  auto patch = [&](std::streamoff offset, auto value) {
+    std::fstream f(filename, std::ios::in | std::ios::out | std::ios::binary);
+    f.seekp(offset);
+    f.write(reinterpret_cast<const char*>(&value), sizeof(value));
+  };
+  {
+    quiverdb::MMapVectorStoreBuilder builder(dim);
+    for (size_t i = 0; i < ids.size(); ++i) builder.add(ids[i], row_of(i));
+    builder.save(filename);
+  }
+
+  SECTION("Lookups probe the mapped index") {
+    quiverdb::MMapVectorStore store(filename);
+    REQUIRE(store.has_id_index());
+    for (size_t i = 0; i < ids.size(); ++i) {
+      REQUIRE(store.contains(ids[i]));
+      REQUIRE(store.get(ids[i])[0] == static_cast<float>(i * dim));
+      REQUIRE(store.get_copy(ids[i])[dim - 1] == static_cast<float>(i * dim + dim - 1));
+    }
+    for (uint64_t missing : {uint64_t{3}, uint64_t{12345}, UINT64_MAX - 1}) {
+      REQUIRE_FALSE(store.contains(missing));
+      REQUIRE(store.get(missing) == nullptr);
+      REQUIRE(store.get_copy(missing).empty());
+    }
+    quiverdb::MMapVectorStore moved(std::move(store));
+    REQUIRE(moved.contains(UINT64_MAX));
+  }
+
+  SECTION("Files without the index fall back to an id map") {
+    patch(28, uint32_t{0});  // Clear FLAG_ID_INDEX
+    quiverdb::MMapVectorStore store(filename);
+    REQUIRE_FALSE(store.has_id_index());
+    REQUIRE(store.contains(UINT64_MAX));
+    REQUIRE(store.get(ids[500])[0] == static_cast<float>(500 * dim));
+    REQUIRE_FALSE(store.contains(3));
+  }
+
+  SECTION("Empty files carry an index too") {
+    quiverdb::MMapVectorStoreBuilder(dim).save(filename);
+    quiverdb::MMapVectorStore store(filename);
+    REQUIRE(store.has_id_index());
+    REQUIRE_FALSE(store.contains(0));
+  }
+
+  SECTION("Corrupt indexes are rejected") {
+    SECTION("Slot count must be a power of two above the vector count") {
+      patch(80, uint64_t{1000});
+      REQUIRE_THROWS_AS(quiverdb::MMapVectorStore(filename), std::runtime_error);
+    }
+    SECTION("Index must lie inside the file") {
+      patch(72, uint64_t{std::filesystem::file_size(filename)});
+      REQUIRE_THROWS_AS(quiverdb::MMapVectorStore(filename), std::runtime_error);
+    }
+    SECTION("Slots pointing past the last row throw on lookup") {
+      uint64_t index_off = 0, slots = 0;
+      {
+        std::ifstream f(filename, std::ios::binary);
+        f.seekg(72);
+        f.read(reinterpret_cast<char*>(&index_off), 8);
+        f.read(reinterpret_cast<char*>(&slots), 8);
+      }
+      for (uint64_t s = 0; s < slots; ++s) patch(static_cast<std::streamoff>(index_off + s * 8), uint64_t{5000});
+      quiverdb::MMapVectorStore store(filename);
+      REQUIRE_THROWS_AS(store.contains(ids[0]), std::runtime_error);
+    }
+  }
+
+  std::filesystem::remove(filename);
+}
+
+TEST_CASE("MMapVectorStoreWriter - streaming build", "[mmap][writer]") {
+  const std::string streamed = "test_mmap_writer_streamed.bin";
+  const std::string built = "test_mmap_writer_built.bin";
+  constexpr size_t dim = 40;  // Binary codes end mid-word and rows straddle buffer flushes
+  constexpr size_t n = 7000;
+  std::mt19937 gen(41);
+  std::normal_distribution<float> dis(0.0f, 1.0f);
+  std::vector<float> vectors(n * dim);
+  for (auto& x : vectors) x = dis(gen);
+  std::vector<uint64_t> ids(n);
+  for (size_t i = 0; i < n; ++i) ids[i] = i * 7919 + 3;
+
+  SECTION("Zero dimension throws") {
+    REQUIRE_THROWS_AS(quiverdb::MMapVectorStoreWriter(streamed, 0), std::invalid_argument);
+  }
+
+  SECTION("Files match the in-memory builder") {
+    for (auto metric : {quiverdb::DistanceMetric::L2, quiverdb::DistanceMetric::COSINE}) {
+      for (auto type : {quiverdb::ElementType::F32, quiverdb::ElementType::F16}) {
+        std::filesystem::remove(streamed);
+        {
+          quiverdb::MMapVectorStoreWriter writer(streamed, dim, metric, type);
+          writer.add_batch(ids.data(), vectors.data(), n / 2);
+          for (size_t i = n / 2; i < n; ++i) writer.add(ids[i], &vectors[i * dim]);
+          writer.set_binary_index(true);
+          REQUIRE(writer.size() == n);
+          REQUIRE_FALSE(std::filesystem::exists(streamed));
+          writer.finish();
+          REQUIRE(writer.finished());
+          REQUIRE_FALSE(std::filesystem::exists(streamed + ".tmp"));
+
+          quiverdb::MMapVectorStoreBuilder builder(dim, metric, type);
+          builder.set_binary_index(true);
+          for (size_t i = 0; i < n; ++i) builder.add(ids[i], &vectors[i * dim]);
+          builder.save(built);
+        }
+        quiverdb::MMapVectorStore a(streamed), b(built);
+        REQUIRE(a.size() == n);
+        REQUIRE(a.has_id_index());
+        REQUIRE(a.has_binary_index());
+        REQUIRE(a.element_type() == type);
+        for (size_t i = 0; i < n; i += 97) {
+          REQUIRE(a.get_copy(ids[i]) == b.get_copy(ids[i]));
+        }
+        REQUIRE_FALSE(a.contains(1));
+        for (size_t q : {size_t{0}, size_t{3333}, n - 1}) {
+          auto ra = a.search(&vectors[q * dim], 10), rb = b.search(&vectors[q * dim], 10);
+          REQUIRE(ra.size() == rb.size());
+          REQUIRE(ra[0].id == ids[q]);
+          for (size_t i = 0; i < ra.size(); ++i) REQUIRE(ra[i].id == rb[i].id);
+          auto ba = a.search_binary(&vectors[q * dim], 5, 8), bb = b.search_binary(&vectors[q * dim], 5, 8);
+          for (size_t i = 0; i < ba.size(); ++i) REQUIRE(ba[i].id == bb[i].id);
+        }
+        // VectorStore::load reads the same file
+        auto loaded = quiverdb::VectorStore::load(streamed);
+        REQUIRE(loaded->size() == n);
+        REQUIRE(loaded->contains(ids[n - 1]));
+      }
+    }
+  }
+
+  SECTION("Duplicates, half input and empty files") {
+    quiverdb::MMapVectorStoreWriter writer(streamed, dim);
+    writer.reserve(10);
+    writer.add(5, &vectors[0]);
+    REQUIRE_THROWS_AS(writer.add(5, &vectors[dim]), std::invalid_argument);
+    REQUIRE_THROWS_AS(writer.add(6, static_cast<const float*>(nullptr)), std::invalid_argument);
+    std::vector<uint16_t> half(dim);
+    quiverdb::encode_row(&vectors[dim], half.data(), dim, quiverdb::ElementType::BF16);
+    writer.add(6, half.data(), quiverdb::ElementType::BF16);
+    REQUIRE(writer.size() == 2);
+    writer.finish();
+    REQUIRE_THROWS_AS(writer.finish(), std::runtime_error);
+    REQUIRE_THROWS_AS(writer.add(7, &vectors[0]), std::runtime_error);
+    quiverdb::MMapVectorStore store(streamed);
+    REQUIRE(store.size() == 2);
+    REQUIRE(store.get(6)[0] == Approx(vectors[dim]).epsilon(1e-2));
+
+    { quiverdb::MMapVectorStoreWriter empty(built, dim); empty.finish(); }
+    quiverdb::MMapVectorStore empty(built);
+    REQUIRE(empty.size() == 0);
+    REQUIRE_FALSE(empty.contains(0));
+  }
+
+  SECTION("Abandoned writers leave no file behind") {
+    {
+      quiverdb::MMapVectorStoreWriter writer(streamed, dim);
+      for (size_t i = 0; i < 100; ++i) writer.add(ids[i], &vectors[i * dim]);
+      REQUIRE(std::filesystem::exists(streamed + ".tmp"));
+    }
+    REQUIRE_FALSE(std::filesystem::exists(streamed + ".tmp"));
+    REQUIRE_FALSE(std::filesystem::exists(streamed));
+  }
+
+  std::filesystem::remove(streamed);
+  std::filesystem::remove(built);
+}
+
+TEST_CASE("MMapVectorStore - warmup and access advice", "[mmap][warmup]") {
+  const std::string filename = "test_mmap_warmup.bin";
+  constexpr size_t dim = 96;
+  constexpr size_t n = 3000;
+  std::mt19937 gen(42);
+  std::normal_distribution<float> dis(0.0f, 1.0f);
+  std::vector<float> vectors(n * dim);
+  for (auto& x : vectors) x = dis(gen);
+  {
+    quiverdb::MMapVectorStoreBuilder builder(dim, quiverdb::DistanceMetric::COSINE);
+    builder.set_binary_index(true);
+    for (size_t i = 0; i < n; ++i) builder.add(i, &vectors[i * dim]);
+    builder.save(filename);
+  }
+  quiverdb::MMapVectorStore store(filename);
+  auto expected = store.search(&vectors[17 * dim], 10);
+
+  SECTION("Fractions outside [0, 1] throw") {
+    REQUIRE_THROWS_AS(store.warmup(-0.1), std::invalid_argument);
+    REQUIRE_THROWS_AS(store.warmup(1.5), std::invalid_argument);
+    REQUIRE_THROWS_AS(store.warmup(std::nan("")), std::invalid_argument);
+  }
+
+  SECTION("Hints leave results unchanged") {
+    for (double fraction : {0.0, 0.25, 1.0}) {
+      store.warmup(fraction);
+      auto results = store.search(&vectors[17 * dim], 10);
+      REQUIRE(results.size() == expected.size());
+      for (size_t i = 0; i < results.size(); ++i) REQUIRE(results[i].id == expected[i].id);
+    }
+    store.advise_random();
+    REQUIRE(store.get_copy(2999).size() == dim);
+    REQUIRE(store.search_binary(&vectors[17 * dim], 10, 8)[0].id == 17);
+    store.advise_sequential();
+    REQUIRE(store.search(&vectors[17 * dim], 10)[0].id == expected[0].id);
+  }
+
+  SECTION("Empty files") {
+    { quiverdb::MMapVectorStoreBuilder empty(dim); empty.save(filename + ".empty"); }
+    quiverdb::MMapVectorStore empty(filename + ".empty");
+    empty.warmup();
+    empty.advise_random();
+    REQUIRE(empty.size() == 0);
+    std::filesystem::remove(filename + ".empty");
+  }
+
+  std::filesystem::remove(filename);
+}
@@ -375,6 +375,29 @@ def test_vector_store_remove():
     assert not store.contains(1)
 
 
+def test_vector_store_save_load(tmp_path):
+    """Test VectorStore save, load and mapped load."""
+    import quiverdb_py
+    store = quiverdb_py.VectorStore(dimension=4, metric=quiverdb_py.DistanceMetric.COSINE)
+    for i in range(10):
+        store.add(i, np.random.randn(4).astype(np.float32))
+
+    filepath = str(tmp_path / "vector_store.bin")
+    store.save(filepath)
+    query = np.random.randn(4).astype(np.float32)
+    expected_ids, _ = store.search(query, 3)
+
+    for mapped in (False, True):
+        loaded = quiverdb_py.VectorStore.load(filepath, map=mapped)
+        assert loaded.is_mapped() == mapped
+        assert loaded.size() == 10
+        ids, _ = loaded.search(query, 3)
+        np.testing.assert_array_equal(ids, expected_ids)
+
+    # The same file opens read-only as an MMapVectorStore
+    assert quiverdb_py.MMapVectorStore(filepath).size() == 10
+
+
 ### MMapVectorStore Tests ###
 
 def test_mmap_store_import():
@@ -442,5 +465,116 @@ def test_mmap_store_zero_copy_get(tmp_path):
     np.testing.assert_array_almost_equal(retrieved, original)
 
 
+def test_mmap_writer_streams_to_file(tmp_path):
+    """Test that MMapVectorStoreWriter builds a file MMapVectorStore opens."""
+    import quiverdb_py
+
+    filepath = str(tmp_path / "test_mmap_streamed.bin")
+    np.random.seed(41)
+    vectors = np.random.randn(500, 16).astype(np.float32)
+    ids = np.arange(500, dtype=np.uint64) * 3
+
+    writer = quiverdb_py.MMapVectorStoreWriter(filepath, dimension=16)
+    writer.add_batch(ids[:400], vectors[:400])
+    for i in range(400, 500):
+        writer.add(int(ids[i]), vectors[i])
+    with pytest.raises(Exception):
+        writer.add(0, vectors[0])
+    assert writer.size() == 500
+    assert not os.path.exists(filepath)
+    writer.finish()
+    assert writer.finished()
+
+    store = quiverdb_py.MMapVectorStore(filepath)
+    assert store.size() == 500
+    np.testing.assert_array_almost_equal(store.get(3 * 250), vectors[250])
+    found, _ = store.search(vectors[123], 1)
+    assert found[0] == 369
+
+
+def test_mmap_store_warmup(tmp_path):
+    """Test that warmup and access advice leave MMapVectorStore results unchanged."""
+    import quiverdb_py
+
+    filepath = str(tmp_path / "test_mmap_warmup.bin")
+    np.random.seed(42)
+    vectors = np.random.randn(300, 16).astype(np.float32)
+    builder = quiverdb_py.MMapVectorStoreBuilder(16)
+    for i in range(300):
+        builder.add(i, vectors[i])
+    builder.save(filepath)
+
+    store = quiverdb_py.MMapVectorStore(filepath)
+    store.warmup(0.5)
+    store.warmup()
+    with pytest.raises(Exception):
+        store.warmup(2.0)
+    store.advise_random()
+    np.testing.assert_array_almost_equal(store.get(299), vectors[299])
+    store.advise_sequential()
+    found, _ = store.search(vectors[77], 1)
+    assert found[0] == 77
+
+
+def test_segmented_store_add_search_remove(tmp_path):
+    """Test SegmentedVectorStore across sealed segments and the tail."""
+    import quiverdb_py
+
+    directory = str(tmp_path / "segmented")
+    np.random.seed(7)
+    vectors = np.random.randn(250, 8).astype(np.float32)
+
+    store = quiverdb_py.SegmentedVectorStore(directory, dimension=8, seal_rows=100,
+                                             background_compaction=False)
+    for i, vec in enumerate(vectors):
+        store.add(i, vec)
+
+    assert store.size() == 250
+    assert store.segment_count() == 2
+    assert store.tail_size() == 50
+
+    ids, _ = store.search(vectors[120], 1)
+    assert ids[0] == 120
+
+    assert store.remove(120)
+    assert not store.contains(120)
+    assert store.get(120) is None
+    ids, _ = store.search(vectors[120], 5)
+    assert 120 not in ids
+
+    assert store.update(121, vectors[0])
+    np.testing.assert_array_almost_equal(store.get(121), vectors[0])
+
+
+def test_segmented_store_reopen_and_compact(tmp_path):
+    """Test that SegmentedVectorStore recovers its log and merges segments."""
+    import quiverdb_py
+
+    directory = str(tmp_path / "segmented")
+    np.random.seed(8)
+    vectors = np.random.randn(300, 8).astype(np.float32)
+
+    store = quiverdb_py.SegmentedVectorStore(directory, dimension=8, seal_rows=64,
+                                             background_compaction=False)
+    for i, vec in enumerate(vectors):
+        store.add(i, vec)
+    store.remove(0)
+    del store
+
+    store = quiverdb_py.SegmentedVectorStore(directory, dimension=8, seal_rows=64,
+                                             background_compaction=False)
+    assert store.size() == 299
+    assert not store.contains(0)
+    np.testing.assert_array_almost_equal(store.get(299), vectors[299])
+
+    assert store.compact()
+    assert store.segment_count() == 1
+    ids, _ = store.search(vectors[150], 1)
+    assert ids[0] == 150
+
+    with pytest.raises(Exception):
+        quiverdb_py.SegmentedVectorStore(directory, dimension=16)
+
+
 if __name__ == "__main__":
     pytest.main([__file__, "-v"])
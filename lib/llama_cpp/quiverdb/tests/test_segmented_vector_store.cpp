@@ -0,0 +1,275 @@
+#include "core/segmented_vector_store.h"
+#include <catch2/catch_approx.hpp>
+#include <catch2/catch_test_macros.hpp>
+#include <algorithm>
+#include <filesystem>
+#include <fstream>
+#include <random>
+#include <vector>
+
+using Catch::Approx;
+
+namespace {
+
+std::vector<std::vector<float>> random_vectors(size_t count, size_t dim, unsigned seed) {
+  std::mt19937 gen(seed);
+  std::normal_distribution<float> dis(0.0f, 1.0f);
+  std::vector<std::vector<float>> out(count, std::vector<float>(dim));
+  for (auto& v : out) for (auto& x : v) x = dis(gen);
+  return out;
+}
+
+quiverdb::SegmentedVectorStoreOptions foreground(size_t seal_rows) {
+  quiverdb::SegmentedVectorStoreOptions options;
+  options.seal_rows = seal_rows;
+  options.background_compaction = false;
+  return options;
+}
+
+size_t count_files(const std::string& dir, const std::string& prefix) {
+  size_t n = 0;
+  for (const auto& entry : std::filesystem::directory_iterator(dir))
+    n += entry.path().filename().string().rfind(prefix, 0) == 0;
+  return n;
+}
+
+} // namespace
+
+TEST_CASE("SegmentedVectorStore - construction", "[segmented]") {
+  const std::string dir = "test_segmented_construction";
+  std::filesystem::remove_all(dir);
+
+  SECTION("Zero dimension throws") {
+    REQUIRE_THROWS_AS(quiverdb::SegmentedVectorStore(dir, 0), std::invalid_argument);
+  }
+
+  SECTION("New directory starts empty") {
+    quiverdb::SegmentedVectorStore store(dir, 8, quiverdb::DistanceMetric::COSINE);
+    REQUIRE(store.size() == 0);
+    REQUIRE(store.segment_count() == 0);
+    REQUIRE(store.dimension() == 8);
+    REQUIRE(store.metric() == quiverdb::DistanceMetric::COSINE);
+    REQUIRE(std::filesystem::exists(std::filesystem::path(dir) / "MANIFEST"));
+  }
+
+  SECTION("Reopening with other parameters throws") {
+    { quiverdb::SegmentedVectorStore store(dir, 8); }
+    REQUIRE_THROWS_AS(quiverdb::SegmentedVectorStore(dir, 16), std::invalid_argument);
+    REQUIRE_THROWS_AS(quiverdb::SegmentedVectorStore(dir, 8, quiverdb::DistanceMetric::DOT), std::invalid_argument);
+  }
+
+  std::filesystem::remove_all(dir);
+}
+
+TEST_CASE("SegmentedVectorStore - add, seal and search", "[segmented]") {
+  const std::string dir = "test_segmented_search";
+  constexpr size_t dim = 24;
+  auto vectors = random_vectors(500, dim, 40);
+
+  for (auto metric : {quiverdb::DistanceMetric::L2, quiverdb::DistanceMetric::COSINE}) {
+    std::filesystem::remove_all(dir);
+    quiverdb::SegmentedVectorStore store(dir, dim, metric, quiverdb::ElementType::F32, foreground(100));
+    quiverdb::VectorStore reference(dim, metric);
+    for (uint64_t i = 0; i < vectors.size(); ++i) {
+      store.add(i, vectors[i].data());
+      reference.add(i, vectors[i].data());
+    }
+    REQUIRE(store.segment_count() == 5);
+    REQUIRE(store.tail_size() == 0);
+    REQUIRE(store.size() == vectors.size());
+    REQUIRE_THROWS_AS(store.add(7, vectors[7].data()), std::invalid_argument);
+
+    SECTION("Search spans every segment") {
+      for (size_t q : {size_t{3}, size_t{250}, size_t{499}}) {
+        auto expected = reference.search(vectors[q].data(), 10);
+        auto results = store.search(vectors[q].data(), 10);
+        REQUIRE(results.size() == expected.size());
+        for (size_t i = 0; i < expected.size(); ++i) {
+          REQUIRE(results[i].id == expected[i].id);
+          REQUIRE(results[i].distance == Approx(expected[i].distance).margin(1e-5));
+        }
+      }
+    }
+
+    SECTION("Tombstones hide sealed rows") {
+      for (uint64_t id = 0; id < 150; ++id) REQUIRE(store.remove(id));
+      REQUIRE_FALSE(store.remove(0));
+      REQUIRE(store.size() == vectors.size() - 150);
+      REQUIRE_FALSE(store.contains(10));
+      REQUIRE(store.get_copy(10).empty());
+      auto results = store.search(vectors[10].data(), 20);
+      REQUIRE(results.size() == 20);
+      for (const auto& r : results) REQUIRE(r.id >= 150);
+
+      // Re-adding a deleted id lands in the tail
+      store.add(10, vectors[10].data());
+      REQUIRE(store.tail_size() == 1);
+      REQUIRE(store.search(vectors[10].data(), 1)[0].id == 10);
+    }
+
+    SECTION("Update moves a row to the tail") {
+      REQUIRE(store.update(42, vectors[0].data()));
+      REQUIRE_FALSE(store.update(9999, vectors[0].data()));
+      REQUIRE(store.size() == vectors.size());
+      auto copy = store.get_copy(42);
+      REQUIRE(copy[0] == Approx(vectors[0][0]));
+      auto results = store.search(vectors[0].data(), 2);
+      REQUIRE(results[0].distance == Approx(results[1].distance).margin(1e-5));
+    }
+  }
+  std::filesystem::remove_all(dir);
+}
+
+TEST_CASE("SegmentedVectorStore - recovery", "[segmented]") {
+  const std::string dir = "test_segmented_recovery";
+  constexpr size_t dim = 16;
+  auto vectors = random_vectors(300, dim, 41);
+  std::filesystem::remove_all(dir);
+
+  SECTION("Unsealed writes are replayed from the log") {
+    {
+      quiverdb::SegmentedVectorStore store(dir, dim, quiverdb::DistanceMetric::L2, quiverdb::ElementType::F32,
+                                           foreground(128));
+      for (uint64_t i = 0; i < vectors.size(); ++i) store.add(i, vectors[i].data());
+      store.remove(5);    // Tombstone in a segment, still only in the log
+      store.remove(299);  // Tail row
+      REQUIRE(store.segment_count() == 2);
+      REQUIRE(store.tail_size() == 43);
+    }
+    quiverdb::SegmentedVectorStore store(dir, dim, quiverdb::DistanceMetric::L2, quiverdb::ElementType::F32,
+                                         foreground(128));
+    REQUIRE(store.segment_count() == 2);
+    REQUIRE(store.tail_size() == 43);
+    REQUIRE(store.size() == vectors.size() - 2);
+    REQUIRE_FALSE(store.contains(5));
+    REQUIRE_FALSE(store.contains(299));
+    REQUIRE(store.get_copy(298) == vectors[298]);
+    REQUIRE(store.search(vectors[100].data(), 1)[0].id == 100);
+
+    // Sealing persists the tombstone in the manifest and empties the log
+    store.seal();
+    REQUIRE(store.tail_size() == 0);
+    REQUIRE(count_files(dir, "wal-") == 1);
+  }
+
+  SECTION("A torn last record is dropped") {
+    {
+      quiverdb::SegmentedVectorStore store(dir, dim, quiverdb::DistanceMetric::L2, quiverdb::ElementType::F32,
+                                           foreground(1000));
+      for (uint64_t i = 0; i < 10; ++i) store.add(i, vectors[i].data());
+      store.sync();
+    }
+    std::filesystem::path wal;
+    for (const auto& entry : std::filesystem::directory_iterator(dir))
+      if (entry.path().filename().string().rfind("wal-", 0) == 0) wal = entry.path();
+    std::filesystem::resize_file(wal, std::filesystem::file_size(wal) - 3);
+    {
+      quiverdb::SegmentedVectorStore store(dir, dim, quiverdb::DistanceMetric::L2, quiverdb::ElementType::F32,
+                                           foreground(1000));
+      REQUIRE(store.size() == 9);
+      REQUIRE_FALSE(store.contains(9));
+      store.add(9, vectors[9].data());  // Appends after the cut
+    }
+    quiverdb::SegmentedVectorStore store(dir, dim, quiverdb::DistanceMetric::L2, quiverdb::ElementType::F32,
+                                         foreground(1000));
+    REQUIRE(store.size() == 10);
+  }
+
+  SECTION("Files the manifest does not reference are removed") {
+    { quiverdb::SegmentedVectorStore store(dir, dim); }
+    std::ofstream(std::filesystem::path(dir) / "segment-999.qvdb") << "left over";
+    std::ofstream(std::filesystem::path(dir) / "wal-998.log") << "left over";
+    quiverdb::SegmentedVectorStore store(dir, dim);
+    REQUIRE(count_files(dir, "segment-") == 0);
+    REQUIRE(count_files(dir, "wal-") == 1);
+  }
+
+  SECTION("A corrupt manifest throws") {
+    { quiverdb::SegmentedVectorStore store(dir, dim); }
+    {
+      std::fstream f(std::filesystem::path(dir) / "MANIFEST", std::ios::in | std::ios::out | std::ios::binary);
+      f.seekp(8);
+      f.put('\x7f');
+    }
+    REQUIRE_THROWS_AS(quiverdb::SegmentedVectorStore(dir, dim), std::runtime_error);
+  }
+
+  std::filesystem::remove_all(dir);
+}
+
+TEST_CASE("SegmentedVectorStore - compaction", "[segmented]") {
+  const std::string dir = "test_segmented_compaction";
+  constexpr size_t dim = 12;
+  auto vectors = random_vectors(400, dim, 42);
+  std::filesystem::remove_all(dir);
+
+  SECTION("Small segments merge and drop tombstoned rows") {
+    {
+      auto options = foreground(50);
+      options.merge_rows = 1000;
+      quiverdb::SegmentedVectorStore store(dir, dim, quiverdb::DistanceMetric::COSINE, quiverdb::ElementType::F16,
+                                           options);
+      for (uint64_t i = 0; i < vectors.size(); ++i) store.add(i, vectors[i].data());
+      for (uint64_t i = 0; i < 400; i += 4) store.remove(i);
+      auto before = store.search(vectors[77].data(), 10);
+      REQUIRE(store.segment_count() == 8);
+
+      REQUIRE(store.compact());
+      REQUIRE(store.segment_count() == 1);
+      REQUIRE_FALSE(store.compact());
+      REQUIRE(count_files(dir, "segment-") == 1);
+      REQUIRE(store.size() == 300);
+      REQUIRE_FALSE(store.contains(0));
+      REQUIRE(store.contains(1));
+      auto after = store.search(vectors[77].data(), 10);
+      for (size_t i = 0; i < before.size(); ++i) {
+        REQUIRE(after[i].id == before[i].id);
+        REQUIRE(after[i].distance == Approx(before[i].distance));
+      }
+    }
+    quiverdb::SegmentedVectorStore store(dir, dim, quiverdb::DistanceMetric::COSINE, quiverdb::ElementType::F16,
+                                         foreground(50));
+    REQUIRE(store.segment_count() == 1);
+    REQUIRE(store.size() == 300);
+    REQUIRE(store.get_copy(3)[0] == Approx(vectors[3][0]).epsilon(1e-2));
+  }
+
+  SECTION("Large segments are rewritten once mostly deleted") {
+    auto options = foreground(200);
+    options.merge_rows = 100;
+    quiverdb::SegmentedVectorStore store(dir, dim, quiverdb::DistanceMetric::L2, quiverdb::ElementType::F32, options);
+    for (uint64_t i = 0; i < 200; ++i) store.add(i, vectors[i].data());
+    REQUIRE_FALSE(store.compact());
+    for (uint64_t i = 0; i < 150; ++i) store.remove(i);
+    REQUIRE(store.compact());
+    REQUIRE(store.segment_count() == 1);
+    REQUIRE(store.size() == 50);
+    for (uint64_t i = 0; i < 150; ++i) store.remove(i + 150);  // Deletes the rest
+    REQUIRE(store.compact());
+    REQUIRE(store.segment_count() == 0);
+    REQUIRE(store.size() == 0);
+  }
+
+  SECTION("Background compaction runs after seals") {
+    quiverdb::SegmentedVectorStoreOptions options;
+    options.seal_rows = 40;
+    options.merge_rows = 1000;
+    {
+      quiverdb::SegmentedVectorStore store(dir, dim, quiverdb::DistanceMetric::L2, quiverdb::ElementType::F32,
+                                           options);
+      for (uint64_t i = 0; i < vectors.size(); ++i) {
+        store.add(i, vectors[i].data());
+        if (i % 7 == 0) REQUIRE(store.search(vectors[i].data(), 1)[0].id == i);
+      }
+      REQUIRE(store.size() == vectors.size());
+    }
+    quiverdb::SegmentedVectorStore store(dir, dim, quiverdb::DistanceMetric::L2, quiverdb::ElementType::F32,
+                                         foreground(40));
+    REQUIRE(store.size() == vectors.size());
+    store.compact();
+    REQUIRE(store.segment_count() == 1);
+    for (uint64_t i = 0; i < vectors.size(); i += 37) REQUIRE(store.search(vectors[i].data(), 1)[0].id == i);
+  }
+
+  std::filesystem::remove_all(dir);
+}
@@ -1,6 +1,10 @@
 #include "core/vector_store.h"
 #include <catch2/catch_approx.hpp>
 #include <catch2/catch_test_macros.hpp>
+#include <cmath>
+#include <filesystem>
+#include <fstream>
+#include <numeric>
 #include <random>
 #include <thread>
 #include <vector>
@@ -234,6 +238,29 @@ TEST_CASE("VectorStore - search with cosine distance", "[vector_store][search]")
     REQUIRE((results[0].id == 1 || results[0].id == 2));
     REQUIRE(results[0].distance == Approx(0.0f).margin(1e-6));
   }
+
+  SECTION("Rows are stored unit length and restored by get_copy") {
+    const float* stored = store.get(2);
+    REQUIRE(stored[0] == Approx(1.0f));
+    REQUIRE(store.get_copy(2) == std::vector<float>{2.0f, 0.0f, 0.0f});
+
+    // Removing swaps the last row (and its norm) into the freed slot
+    REQUIRE(store.remove(1));
+    REQUIRE(store.get_copy(4) == std::vector<float>{-1.0f, 0.0f, 0.0f});
+    float query[] = {0.0f, 0.0f, 5.0f};
+    for (const auto& r : store.search(query, 3)) REQUIRE(r.distance == Approx(1.0f));
+  }
+
+  SECTION("Zero vectors are at distance 1 from everything") {
+    float zero[] = {0.0f, 0.0f, 0.0f};
+    store.add(5, zero);
+    REQUIRE(store.get_copy(5) == std::vector<float>{0.0f, 0.0f, 0.0f});
+    float query[] = {1.0f, 1.0f, 0.0f};
+    auto results = store.search(query, 5);
+    REQUIRE(results.size() == 5);
+    for (const auto& r : results) if (r.id == 5) REQUIRE(r.distance == Approx(1.0f));
+    REQUIRE(results[0].distance == Approx(1.0f - std::sqrt(0.5f)));
+  }
 }
 
 TEST_CASE("VectorStore - search with dot product", "[vector_store][search]") {
@@ -258,6 +285,39 @@ TEST_CASE("VectorStore - search with dot product", "[vector_store][search]") {
   }
 }
 
+TEST_CASE("VectorStore - search matches full sort", "[vector_store][search]") {
+  constexpr size_t dim = 8;
+  constexpr size_t num_vectors = 2000;
+  quiverdb::VectorStore store(dim, quiverdb::DistanceMetric::L2);
+  std::mt19937 gen(5);
+  std::uniform_real_distribution<float> dis(-1.0f, 1.0f);
+  std::vector<float> data(num_vectors * dim);
+  for (auto& x : data) x = dis(gen);
+  for (size_t i = 0; i < num_vectors; ++i) store.add(i, data.data() + i * dim);
+
+  std::vector<float> query(dim);
+  for (auto& x : query) x = dis(gen);
+  std::vector<std::pair<float, uint64_t>> expected;
+  for (size_t i = 0; i < num_vectors; ++i)
+    expected.emplace_back(quiverdb::l2_sq(query.data(), data.data() + i * dim, dim), i);
+  std::sort(expected.begin(), expected.end());
+
+  for (size_t k : {1, 10, 100}) {
+    auto results = store.search(query.data(), k);
+    REQUIRE(results.size() == k);
+    for (size_t i = 0; i < k; ++i) {
+      REQUIRE(results[i].id == expected[i].second);
+      REQUIRE(results[i].distance == expected[i].first);
+    }
+  }
+
+  SECTION("k larger than the store returns everything sorted") {
+    auto results = store.search(query.data(), num_vectors * 2);
+    REQUIRE(results.size() == num_vectors);
+    for (size_t i = 0; i < num_vectors; ++i) REQUIRE(results[i].id == expected[i].second);
+  }
+}
+
 TEST_CASE("VectorStore - high dimensional vectors", "[vector_store][search]") {
   constexpr size_t dim = 768;
   quiverdb::VectorStore store(dim, quiverdb::DistanceMetric::COSINE);
@@ -449,19 +509,23 @@ TEST_CASE("VectorStore - multi-dimension test", "[vector_store][multi-dim]") {
             original[j] = dis(gen);
           }
           store.add(42, original.data());
+          bool cosine = metric == quiverdb::DistanceMetric::COSINE;
+          float norm = std::sqrt(std::inner_product(original.begin(), original.end(), original.begin(), 0.0f));
 
-          // Test get()
+          // Test get(): cosine stores keep the unit-length row
           const float* retrieved = store.get(42);
           REQUIRE(retrieved != nullptr);
           for (size_t j = 0; j < dim; ++j) {
-            REQUIRE(retrieved[j] == original[j]);
+            if (cosine) REQUIRE(retrieved[j] == Approx(original[j] / norm).margin(1e-6f));
+            else REQUIRE(retrieved[j] == original[j]);
           }
 
-          // Test get_copy()
+          // Test get_copy(): the vector as added
           std::vector<float> copy = store.get_copy(42);
           REQUIRE(copy.size() == dim);
           for (size_t j = 0; j < dim; ++j) {
-            REQUIRE(copy[j] == original[j]);
+            if (cosine) REQUIRE(copy[j] == Approx(original[j]).margin(1e-5f));
+            else REQUIRE(copy[j] == original[j]);
           }
         }
 
@@ -479,10 +543,10 @@ TEST_CASE("VectorStore - multi-dimension test", "[vector_store][multi-dim]") {
           REQUIRE(store.update(1, updated.data()) == true);
 
           // Verify the update
-          const float* retrieved = store.get(1);
-          REQUIRE(retrieved != nullptr);
+          std::vector<float> retrieved = store.get_copy(1);
+          REQUIRE(retrieved.size() == dim);
           for (size_t j = 0; j < dim; ++j) {
-            REQUIRE(retrieved[j] == updated[j]);
+            REQUIRE(retrieved[j] == Approx(updated[j]).margin(1e-5f));
           }
         }
 
@@ -647,3 +711,288 @@ TEST_CASE("VectorStore - concurrent access", "[vector_store][thread]") {
     REQUIRE(store.size() == 100);
   }
 }
+
+TEST_CASE("VectorStore - parallel search", "[vector_store][thread]") {
+  constexpr size_t dim = 16;
+  constexpr size_t num_vectors = 20000;
+  quiverdb::VectorStore store(dim, quiverdb::DistanceMetric::COSINE);
+  std::mt19937 gen(9);
+  std::uniform_real_distribution<float> dis(-1.0f, 1.0f);
+  std::vector<float> vec(dim);
+  for (uint64_t i = 0; i < num_vectors; ++i) {
+    for (auto& x : vec) x = dis(gen);
+    store.add(i, vec.data());
+  }
+  std::vector<float> query(dim);
+  for (auto& x : query) x = dis(gen);
+
+  REQUIRE(store.search_threads() == 1);
+  REQUIRE_THROWS_AS(store.set_search_threads(0), std::invalid_argument);
+  auto sequential = store.search(query.data(), 10);
+
+  store.set_search_threads(3);
+  REQUIRE(store.search_threads() == 3);
+
+  SECTION("Results match the single-threaded scan") {
+    auto parallel = store.search(query.data(), 10);
+    REQUIRE(parallel.size() == sequential.size());
+    for (size_t i = 0; i < parallel.size(); ++i) {
+      REQUIRE(parallel[i].id == sequential[i].id);
+      REQUIRE(parallel[i].distance == sequential[i].distance);
+    }
+  }
+
+  SECTION("Concurrent callers share the pool") {
+    std::vector<std::thread> readers;
+    std::atomic<int> matches{0};
+    for (int t = 0; t < 4; ++t) {
+      readers.emplace_back([&]() {
+        for (int i = 0; i < 10; ++i)
+          if (store.search(query.data(), 10)[0].id == sequential[0].id) matches++;
+      });
+    }
+    for (auto& t : readers) t.join();
+    REQUIRE(matches == 40);
+  }
+}
+
+TEST_CASE("VectorStore - batch search", "[vector_store][search]") {
+  constexpr size_t dim = 20;  // Not a multiple of the SIMD width
+  constexpr size_t num_vectors = 3001;
+  constexpr size_t num_queries = 37;
+  std::mt19937 gen(21);
+  std::uniform_real_distribution<float> dis(-1.0f, 1.0f);
+  std::vector<float> queries(num_queries * dim);
+  for (auto& x : queries) x = dis(gen);
+
+  for (auto metric : {quiverdb::DistanceMetric::L2, quiverdb::DistanceMetric::COSINE,
+                      quiverdb::DistanceMetric::DOT}) {
+    quiverdb::VectorStore store(dim, metric);
+    std::vector<float> vec(dim);
+    for (uint64_t i = 0; i < num_vectors; ++i) {
+      for (auto& x : vec) x = dis(gen);
+      store.add(i * 7, vec.data());
+    }
+
+    for (size_t threads : {size_t{1}, size_t{3}}) {
+      store.set_search_threads(threads);
+      auto batch = store.search_batch(queries.data(), num_queries, 10);
+      REQUIRE(batch.size() == num_queries);
+      for (size_t q = 0; q < num_queries; ++q) {
+        auto single = store.search(queries.data() + q * dim, 10);
+        REQUIRE(batch[q].size() == single.size());
+        for (size_t i = 0; i < single.size(); ++i) {
+          REQUIRE(batch[q][i].id == single[i].id);
+          REQUIRE(batch[q][i].distance == Approx(single[i].distance).margin(1e-5));
+        }
+      }
+    }
+  }
+
+  quiverdb::VectorStore store(dim);
+  REQUIRE(store.search_batch(queries.data(), num_queries, 5)[0].empty());
+  REQUIRE(store.search_batch(queries.data(), 0, 5).empty());
+  REQUIRE_THROWS_AS(store.search_batch(nullptr, 1, 5), std::invalid_argument);
+  REQUIRE_THROWS_AS(store.search_batch(queries.data(), 1, 0), std::invalid_argument);
+}
+
+TEST_CASE("VectorStore - half precision rows", "[vector_store][half]") {
+  constexpr size_t dim = 19;
+  constexpr size_t num_vectors = 300;
+  std::mt19937 gen(36);
+  std::uniform_real_distribution<float> dis(-1.0f, 1.0f);
+  std::vector<std::vector<float>> all_vectors(num_vectors, std::vector<float>(dim));
+  for (auto& v : all_vectors) for (auto& x : v) x = dis(gen);
+
+  for (auto type : {quiverdb::ElementType::F16, quiverdb::ElementType::BF16}) {
+    const float tol = type == quiverdb::ElementType::F16 ? 1e-3f : 1e-2f;
+    for (auto metric : {quiverdb::DistanceMetric::L2, quiverdb::DistanceMetric::COSINE,
+                        quiverdb::DistanceMetric::DOT}) {
+      quiverdb::VectorStore store(dim, metric, type);
+      quiverdb::VectorStore exact(dim, metric);
+      REQUIRE(store.element_type() == type);
+      for (uint64_t i = 0; i < num_vectors; ++i) {
+        store.add(i, all_vectors[i].data());
+        exact.add(i, all_vectors[i].data());
+      }
+
+      SECTION("get_copy returns the vector within storage precision") {
+        auto v = store.get_copy(7);
+        for (size_t j = 0; j < dim; ++j) REQUIRE(v[j] == Approx(all_vectors[7][j]).margin(tol));
+        REQUIRE_THROWS_AS(store.get(7), std::runtime_error);
+      }
+
+      SECTION("Search matches the FP32 store") {
+        auto results = store.search(all_vectors[42].data(), 5);
+        auto expected = exact.search(all_vectors[42].data(), 5);
+        REQUIRE(results.size() == 5);
+        if (metric != quiverdb::DistanceMetric::DOT) REQUIRE(results[0].id == 42);
+        REQUIRE(results[0].distance == Approx(expected[0].distance).margin(tol * dim));
+        store.set_search_threads(3);
+        auto batch = store.search_batch(all_vectors[42].data(), 1, 5);
+        for (size_t i = 0; i < results.size(); ++i) REQUIRE(batch[0][i].id == results[i].id);
+      }
+
+      SECTION("Half-precision input") {
+        std::vector<uint16_t> bits(dim);
+        for (size_t j = 0; j < dim; ++j)
+          bits[j] = type == quiverdb::ElementType::F16 ? quiverdb::fp32_to_fp16(all_vectors[3][j])
+                                                       : quiverdb::fp32_to_bf16(all_vectors[3][j]);
+        store.update(3, bits.data(), type);
+        store.add(1000, bits.data(), type);
+        auto results = store.search(bits.data(), type, 2);
+        REQUIRE(results[0].distance == Approx(results[1].distance).margin(1e-6));
+        REQUIRE_THROWS_AS(store.add(1001, bits.data(), quiverdb::ElementType::F32), std::invalid_argument);
+      }
+
+      SECTION("Remove keeps remaining rows intact") {
+        store.remove(0);
+        auto v = store.get_copy(num_vectors - 1);
+        for (size_t j = 0; j < dim; ++j) REQUIRE(v[j] == Approx(all_vectors[num_vectors - 1][j]).margin(tol));
+      }
+    }
+  }
+}
+
+TEST_CASE("VectorStore - binary quantized search", "[vector_store][binary]") {
+  constexpr size_t dim = 100;  // Not a multiple of 64
+  constexpr size_t num_vectors = 2000;
+  std::mt19937 gen(37);
+  std::normal_distribution<float> dis(0.0f, 1.0f);
+  std::vector<std::vector<float>> all_vectors(num_vectors, std::vector<float>(dim));
+  for (auto& v : all_vectors) for (auto& x : v) x = dis(gen);
+
+  for (auto metric : {quiverdb::DistanceMetric::L2, quiverdb::DistanceMetric::COSINE,
+                      quiverdb::DistanceMetric::DOT}) {
+    quiverdb::VectorStore store(dim, metric);
+    for (uint64_t i = 0; i < num_vectors / 2; ++i) store.add(i, all_vectors[i].data());
+    REQUIRE_THROWS_AS(store.search_binary(all_vectors[0].data(), 5), std::runtime_error);
+    store.set_binary_index(true);  // Codes the rows added so far
+    REQUIRE(store.has_binary_index());
+    for (uint64_t i = num_vectors / 2; i < num_vectors; ++i) store.add(i, all_vectors[i].data());
+
+    SECTION("Shortlisting every row matches exact search") {
+      for (size_t threads : {size_t{1}, size_t{3}}) {
+        store.set_search_threads(threads);
+        auto exact = store.search(all_vectors[9].data(), 10);
+        auto binary = store.search_binary(all_vectors[9].data(), 10, num_vectors);
+        REQUIRE(binary.size() == exact.size());
+        for (size_t i = 0; i < exact.size(); ++i) {
+          REQUIRE(binary[i].id == exact[i].id);
+          REQUIRE(binary[i].distance == Approx(exact[i].distance).margin(1e-5));
+        }
+      }
+    }
+
+    SECTION("Near duplicates are found through the shortlist") {
+      std::normal_distribution<float> noise(0.0f, 0.1f);
+      for (uint64_t target : {uint64_t{3}, uint64_t{1500}}) {
+        std::vector<float> query = all_vectors[target];
+        for (auto& x : query) x += noise(gen);
+        auto results = store.search_binary(query.data(), 1, 4);
+        REQUIRE(results.size() == 1);
+        if (metric != quiverdb::DistanceMetric::DOT) REQUIRE(results[0].id == target);
+      }
+    }
+
+    SECTION("Codes follow update and remove") {
+      std::vector<float> flipped = all_vectors[5];
+      for (auto& x : flipped) x = -x;
+      REQUIRE(store.update(5, flipped.data()));
+      REQUIRE(store.search_binary(flipped.data(), 1, 1)[0].id == 5);
+      REQUIRE(store.remove(5));
+      REQUIRE(store.search_binary(all_vectors[num_vectors - 1].data(), 1, 1)[0].id == num_vectors - 1);
+    }
+
+    SECTION("Invalid arguments throw") {
+      REQUIRE_THROWS_AS(store.search_binary(nullptr, 5), std::invalid_argument);
+      REQUIRE_THROWS_AS(store.search_binary(all_vectors[0].data(), 0), std::invalid_argument);
+      REQUIRE_THROWS_AS(store.search_binary(all_vectors[0].data(), 5, 0), std::invalid_argument);
+      store.set_binary_index(false);
+      REQUIRE_THROWS_AS(store.search_binary(all_vectors[0].data(), 5), std::runtime_error);
+    }
+  }
+}
+
+TEST_CASE("VectorStore - save and load", "[vector_store][persistence]") {
+  constexpr size_t dim = 70;
+  constexpr size_t num_vectors = 300;
+  const std::string filename = "test_vector_store_save.qvdb";
+  std::mt19937 gen(38);
+  std::normal_distribution<float> dis(0.0f, 1.0f);
+  std::vector<std::vector<float>> all_vectors(num_vectors, std::vector<float>(dim));
+  for (auto& v : all_vectors) for (auto& x : v) x = dis(gen);
+
+  for (auto type : {quiverdb::ElementType::F32, quiverdb::ElementType::F16}) {
+    for (auto metric : {quiverdb::DistanceMetric::L2, quiverdb::DistanceMetric::COSINE}) {
+      quiverdb::VectorStore store(dim, metric, type);
+      for (uint64_t i = 0; i < num_vectors; ++i) store.add(i * 3 + 1, all_vectors[i].data());
+      store.set_binary_index(true);
+      store.save(filename);
+
+      for (bool map : {false, true}) {
+        auto loaded = quiverdb::VectorStore::load(filename, map);
+        REQUIRE(loaded->is_mapped() == map);
+        REQUIRE(loaded->size() == num_vectors);
+        REQUIRE(loaded->dimension() == dim);
+        REQUIRE(loaded->metric() == metric);
+        REQUIRE(loaded->element_type() == type);
+        REQUIRE(loaded->has_binary_index());
+        REQUIRE(loaded->get_copy(4) == store.get_copy(4));
+        auto expected = store.search(all_vectors[17].data(), 5);
+        auto results = loaded->search(all_vectors[17].data(), 5);
+        REQUIRE(results.size() == expected.size());
+        for (size_t i = 0; i < expected.size(); ++i) {
+          REQUIRE(results[i].id == expected[i].id);
+          REQUIRE(results[i].distance == expected[i].distance);
+        }
+        REQUIRE(loaded->search_binary(all_vectors[17].data(), 1, num_vectors)[0].id == 17 * 3 + 1);
+
+        // Writes copy the mapped rows first and leave the file untouched
+        REQUIRE(loaded->remove(1));
+        REQUIRE_FALSE(loaded->is_mapped());
+        loaded->add(1, all_vectors[0].data());
+        REQUIRE(loaded->size() == num_vectors);
+        REQUIRE(loaded->search(all_vectors[0].data(), 1)[0].id == 1);
+        REQUIRE(loaded->search_binary(all_vectors[200].data(), 1, num_vectors)[0].id == 200 * 3 + 1);
+      }
+      REQUIRE(quiverdb::VectorStore::load(filename, true)->get_copy(1) == store.get_copy(1));
+    }
+  }
+
+  SECTION("Empty stores round trip") {
+    quiverdb::VectorStore store(dim, quiverdb::DistanceMetric::DOT);
+    store.save(filename);
+    for (bool map : {false, true}) {
+      auto loaded = quiverdb::VectorStore::load(filename, map);
+      REQUIRE(loaded->size() == 0);
+      REQUIRE(loaded->search(all_vectors[0].data(), 3).empty());
+      loaded->add(7, all_vectors[0].data());
+      REQUIRE(loaded->search(all_vectors[0].data(), 1)[0].id == 7);
+    }
+  }
+
+  SECTION("Clear drops the mapping") {
+    quiverdb::VectorStore store(dim);
+    store.add(1, all_vectors[0].data());
+    store.save(filename);
+    auto loaded = quiverdb::VectorStore::load(filename, true);
+    loaded->clear();
+    REQUIRE_FALSE(loaded->is_mapped());
+    REQUIRE(loaded->size() == 0);
+    REQUIRE_FALSE(loaded->contains(1));
+  }
+
+  SECTION("Missing and corrupt files throw") {
+    REQUIRE_THROWS_AS(quiverdb::VectorStore::load("missing_vector_store.qvdb"), std::runtime_error);
+    REQUIRE_THROWS_AS(quiverdb::VectorStore::load("missing_vector_store.qvdb", true), std::runtime_error);
+    {
+      std::ofstream ofs(filename, std::ios::binary);
+      ofs << "not a vector store file, just some bytes";
+    }
+    REQUIRE_THROWS_AS(quiverdb::VectorStore::load(filename), std::runtime_error);
+    REQUIRE_THROWS_AS(quiverdb::VectorStore::load(filename, true), std::runtime_error);
+  }
+
+  std::filesystem::remove(filename);
+}
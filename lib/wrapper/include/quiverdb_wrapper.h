@@ -27,11 +27,20 @@ typedef enum {
     QUIVERDB_DISTANCE_DOT = 2,
 } QuiverDBDistanceMetric;
 
+// Element types vectors are stored in; half-precision input is passed as raw 16-bit patterns
+typedef enum {
+    QUIVERDB_ELEMENT_F32 = 0,
+    QUIVERDB_ELEMENT_F16 = 1,
+    QUIVERDB_ELEMENT_BF16 = 2,
+} QuiverDBElementType;
+
 // Opaque handles
 typedef void* QuiverDBVectorStore;
 typedef void* QuiverDBHNSWIndex;
 typedef void* QuiverDBMMapVectorStore;
 typedef void* QuiverDBMMapVectorStoreBuilder;
+typedef void* QuiverDBMMapVectorStoreWriter;
+typedef void* QuiverDBSegmentedVectorStore;
 
 // Search result structure
 typedef struct {
@@ -41,24 +50,48 @@ typedef struct {
 
 // VectorStore functions
 QuiverDBError quiverdb_vector_store_create(size_t dimension, QuiverDBDistanceMetric metric, QuiverDBVectorStore* store);
+QuiverDBError quiverdb_vector_store_create_typed(size_t dimension, QuiverDBDistanceMetric metric, QuiverDBElementType element_type, QuiverDBVectorStore* store);
 QuiverDBError quiverdb_vector_store_add(QuiverDBVectorStore store, uint64_t id, const float* vector);
+QuiverDBError quiverdb_vector_store_add_half(QuiverDBVectorStore store, uint64_t id, const uint16_t* vector, QuiverDBElementType format);
 QuiverDBError quiverdb_vector_store_remove(QuiverDBVectorStore store, uint64_t id, int* removed);
 QuiverDBError quiverdb_vector_store_get(QuiverDBVectorStore store, uint64_t id, float* vector, size_t vector_size);
 QuiverDBError quiverdb_vector_store_update(QuiverDBVectorStore store, uint64_t id, const float* vector);
 QuiverDBError quiverdb_vector_store_search(QuiverDBVectorStore store, const float* query, size_t k, QuiverDBSearchResult* results, size_t results_size);
+QuiverDBError quiverdb_vector_store_search_half(QuiverDBVectorStore store, const uint16_t* query, QuiverDBElementType format, size_t k, QuiverDBSearchResult* results, size_t results_size);
+// Batch search: queries holds num_queries * dimension floats and results num_queries * k
+// entries; query q's hits start at results[q * k], result_counts[q] of them valid
+QuiverDBError quiverdb_vector_store_search_batch(QuiverDBVectorStore store, const float* queries, size_t num_queries, size_t k, QuiverDBSearchResult* results, size_t* result_counts);
 QuiverDBError quiverdb_vector_store_size(QuiverDBVectorStore store, size_t* size);
 QuiverDBError quiverdb_vector_store_dimension(QuiverDBVectorStore store, size_t* dimension);
 QuiverDBError quiverdb_vector_store_metric(QuiverDBVectorStore store, QuiverDBDistanceMetric* metric);
+QuiverDBError quiverdb_vector_store_element_type(QuiverDBVectorStore store, QuiverDBElementType* element_type);
 QuiverDBError quiverdb_vector_store_contains(QuiverDBVectorStore store, uint64_t id, int* contains);
 QuiverDBError quiverdb_vector_store_reserve(QuiverDBVectorStore store, size_t capacity);
 QuiverDBError quiverdb_vector_store_clear(QuiverDBVectorStore store);
+QuiverDBError quiverdb_vector_store_set_search_threads(QuiverDBVectorStore store, size_t threads);
+// Binary quantization: search_binary shortlists k * rerank_factor vectors by sign-bit Hamming
+// distance and reranks them exactly; it needs set_binary_index(store, 1) first
+QuiverDBError quiverdb_vector_store_set_binary_index(QuiverDBVectorStore store, int enabled);
+QuiverDBError quiverdb_vector_store_search_binary(QuiverDBVectorStore store, const float* query, size_t k, size_t rerank_factor, QuiverDBSearchResult* results, size_t results_size);
+// Persistence: save writes the MMapVectorStore file format (also readable by quiverdb_mmap_vector_store_open);
+// load with map != 0 serves rows from a read-only mapping of the file until the first write
+QuiverDBError quiverdb_vector_store_save(QuiverDBVectorStore store, const char* filename);
+QuiverDBError quiverdb_vector_store_load(const char* filename, int map, QuiverDBVectorStore* store);
 void quiverdb_vector_store_destroy(QuiverDBVectorStore store);
 
 // HNSWIndex functions
 QuiverDBError quiverdb_hnsw_index_create(size_t dimension, QuiverDBDistanceMetric metric, size_t max_elements, QuiverDBHNSWIndex* index);
 QuiverDBError quiverdb_hnsw_index_create_with_params(size_t dimension, QuiverDBDistanceMetric metric, size_t max_elements, size_t M, size_t ef_construction, uint32_t seed, QuiverDBHNSWIndex* index);
+QuiverDBError quiverdb_hnsw_index_create_typed(size_t dimension, QuiverDBDistanceMetric metric, size_t max_elements, size_t M, size_t ef_construction, uint32_t seed, QuiverDBElementType element_type, QuiverDBHNSWIndex* index);
 QuiverDBError quiverdb_hnsw_index_add(QuiverDBHNSWIndex index, uint64_t id, const float* vector);
+QuiverDBError quiverdb_hnsw_index_add_half(QuiverDBHNSWIndex index, uint64_t id, const uint16_t* vector, QuiverDBElementType format);
 QuiverDBError quiverdb_hnsw_index_search(QuiverDBHNSWIndex index, const float* query, size_t k, QuiverDBSearchResult* results, size_t results_size);
+QuiverDBError quiverdb_hnsw_index_search_half(QuiverDBHNSWIndex index, const uint16_t* query, QuiverDBElementType format, size_t k, QuiverDBSearchResult* results, size_t results_size);
+// Search with a candidate list of ef_search for this call only; the index's ef_search is not changed,
+// so concurrent searches may each pass their own
+QuiverDBError quiverdb_hnsw_index_search_with_ef(QuiverDBHNSWIndex index, const float* query, size_t k, size_t ef_search, QuiverDBSearchResult* results, size_t results_size);
+QuiverDBError quiverdb_hnsw_index_search_half_with_ef(QuiverDBHNSWIndex index, const uint16_t* query, QuiverDBElementType format, size_t k, size_t ef_search, QuiverDBSearchResult* results, size_t results_size);
+QuiverDBError quiverdb_hnsw_index_element_type(QuiverDBHNSWIndex index, QuiverDBElementType* element_type);
 QuiverDBError quiverdb_hnsw_index_set_ef_search(QuiverDBHNSWIndex index, size_t ef_search);
 QuiverDBError quiverdb_hnsw_index_get_ef_search(QuiverDBHNSWIndex index, size_t* ef_search);
 QuiverDBError quiverdb_hnsw_index_size(QuiverDBHNSWIndex index, size_t* size);
@@ -68,33 +101,86 @@ QuiverDBError quiverdb_hnsw_index_contains(QuiverDBHNSWIndex index, uint64_t id,
 QuiverDBError quiverdb_hnsw_index_get_vector(QuiverDBHNSWIndex index, uint64_t id, float* vector, size_t vector_size);
 QuiverDBError quiverdb_hnsw_index_save(QuiverDBHNSWIndex index, const char* filename);
 QuiverDBError quiverdb_hnsw_index_load(const char* filename, QuiverDBHNSWIndex* index);
+QuiverDBError quiverdb_hnsw_index_merge(const QuiverDBHNSWIndex* indexes, size_t count, QuiverDBHNSWIndex* index);
+QuiverDBError quiverdb_hnsw_index_build_from_mmap(QuiverDBMMapVectorStore store, size_t M, size_t ef_construction, size_t num_threads, int reference_vectors, QuiverDBHNSWIndex* index);
 void quiverdb_hnsw_index_destroy(QuiverDBHNSWIndex index);
 
 // MMapVectorStoreBuilder functions
 QuiverDBError quiverdb_mmap_vector_store_builder_create(size_t dimension, QuiverDBDistanceMetric metric, QuiverDBMMapVectorStoreBuilder* builder);
+QuiverDBError quiverdb_mmap_vector_store_builder_create_typed(size_t dimension, QuiverDBDistanceMetric metric, QuiverDBElementType element_type, QuiverDBMMapVectorStoreBuilder* builder);
 QuiverDBError quiverdb_mmap_vector_store_builder_add(QuiverDBMMapVectorStoreBuilder builder, uint64_t id, const float* vector);
+// Adds count vectors stored back to back (count * dimension floats) in one call
+QuiverDBError quiverdb_mmap_vector_store_builder_add_batch(QuiverDBMMapVectorStoreBuilder builder, const uint64_t* ids, const float* vectors, size_t count);
+QuiverDBError quiverdb_mmap_vector_store_builder_add_half(QuiverDBMMapVectorStoreBuilder builder, uint64_t id, const uint16_t* vector, QuiverDBElementType format);
+QuiverDBError quiverdb_mmap_vector_store_builder_set_binary_index(QuiverDBMMapVectorStoreBuilder builder, int enabled);
 QuiverDBError quiverdb_mmap_vector_store_builder_reserve(QuiverDBMMapVectorStoreBuilder builder, size_t capacity);
 QuiverDBError quiverdb_mmap_vector_store_builder_save(QuiverDBMMapVectorStoreBuilder builder, const char* filename);
 QuiverDBError quiverdb_mmap_vector_store_builder_size(QuiverDBMMapVectorStoreBuilder builder, size_t* size);
 QuiverDBError quiverdb_mmap_vector_store_builder_dimension(QuiverDBMMapVectorStoreBuilder builder, size_t* dimension);
 void quiverdb_mmap_vector_store_builder_destroy(QuiverDBMMapVectorStoreBuilder builder);
 
+// MMapVectorStoreWriter functions: builds the same file as the builder, but streams the vectors
+// to filename + ".tmp" as they are added instead of keeping them in memory; finish() completes
+// the file and renames it to filename, destroy() without finish() discards it
+QuiverDBError quiverdb_mmap_vector_store_writer_create(const char* filename, size_t dimension, QuiverDBDistanceMetric metric, QuiverDBElementType element_type, QuiverDBMMapVectorStoreWriter* writer);
+QuiverDBError quiverdb_mmap_vector_store_writer_add(QuiverDBMMapVectorStoreWriter writer, uint64_t id, const float* vector);
+QuiverDBError quiverdb_mmap_vector_store_writer_add_batch(QuiverDBMMapVectorStoreWriter writer, const uint64_t* ids, const float* vectors, size_t count);
+QuiverDBError quiverdb_mmap_vector_store_writer_add_half(QuiverDBMMapVectorStoreWriter writer, uint64_t id, const uint16_t* vector, QuiverDBElementType format);
+QuiverDBError quiverdb_mmap_vector_store_writer_set_binary_index(QuiverDBMMapVectorStoreWriter writer, int enabled);
+QuiverDBError quiverdb_mmap_vector_store_writer_reserve(QuiverDBMMapVectorStoreWriter writer, size_t capacity);
+QuiverDBError quiverdb_mmap_vector_store_writer_finish(QuiverDBMMapVectorStoreWriter writer);
+QuiverDBError quiverdb_mmap_vector_store_writer_size(QuiverDBMMapVectorStoreWriter writer, size_t* size);
+QuiverDBError quiverdb_mmap_vector_store_writer_dimension(QuiverDBMMapVectorStoreWriter writer, size_t* dimension);
+void quiverdb_mmap_vector_store_writer_destroy(QuiverDBMMapVectorStoreWriter writer);
+
 // MMapVectorStore functions
 QuiverDBError quiverdb_mmap_vector_store_open(const char* filename, QuiverDBMMapVectorStore* store);
 QuiverDBError quiverdb_mmap_vector_store_get(QuiverDBMMapVectorStore store, uint64_t id, float* vector, size_t vector_size);
 QuiverDBError quiverdb_mmap_vector_store_contains(QuiverDBMMapVectorStore store, uint64_t id, int* contains);
 QuiverDBError quiverdb_mmap_vector_store_search(QuiverDBMMapVectorStore store, const float* query, size_t k, QuiverDBSearchResult* results, size_t results_size);
+QuiverDBError quiverdb_mmap_vector_store_search_binary(QuiverDBMMapVectorStore store, const float* query, size_t k, size_t rerank_factor, QuiverDBSearchResult* results, size_t results_size);
+QuiverDBError quiverdb_mmap_vector_store_search_batch(QuiverDBMMapVectorStore store, const float* queries, size_t num_queries, size_t k, QuiverDBSearchResult* results, size_t* result_counts);
 QuiverDBError quiverdb_mmap_vector_store_size(QuiverDBMMapVectorStore store, size_t* size);
 QuiverDBError quiverdb_mmap_vector_store_dimension(QuiverDBMMapVectorStore store, size_t* dimension);
 QuiverDBError quiverdb_mmap_vector_store_metric(QuiverDBMMapVectorStore store, QuiverDBDistanceMetric* metric);
+QuiverDBError quiverdb_mmap_vector_store_element_type(QuiverDBMMapVectorStore store, QuiverDBElementType* element_type);
+QuiverDBError quiverdb_mmap_vector_store_set_search_threads(QuiverDBMMapVectorStore store, size_t threads);
+// Page-cache control: warmup faults in the first fraction (0..1) of the file's rows and blocks
+// until they are resident; the advise calls pick readahead for scans (sequential, the default)
+// or point lookups (random)
+QuiverDBError quiverdb_mmap_vector_store_warmup(QuiverDBMMapVectorStore store, double fraction);
+QuiverDBError quiverdb_mmap_vector_store_advise_sequential(QuiverDBMMapVectorStore store);
+QuiverDBError quiverdb_mmap_vector_store_advise_random(QuiverDBMMapVectorStore store);
 void quiverdb_mmap_vector_store_close(QuiverDBMMapVectorStore store);
 
+// SegmentedVectorStore functions: an appendable store in a directory of mmap segments plus a
+// write-ahead logged tail. seal_rows = 0 keeps the default; with background_compaction != 0 a
+// worker merges small segments after each seal, otherwise call compact() explicitly
+QuiverDBError quiverdb_segmented_vector_store_open(const char* directory, size_t dimension, QuiverDBDistanceMetric metric, QuiverDBElementType element_type, size_t seal_rows, int background_compaction, QuiverDBSegmentedVectorStore* store);
+QuiverDBError quiverdb_segmented_vector_store_add(QuiverDBSegmentedVectorStore store, uint64_t id, const float* vector);
+QuiverDBError quiverdb_segmented_vector_store_remove(QuiverDBSegmentedVectorStore store, uint64_t id, int* removed);
+QuiverDBError quiverdb_segmented_vector_store_update(QuiverDBSegmentedVectorStore store, uint64_t id, const float* vector);
+QuiverDBError quiverdb_segmented_vector_store_get(QuiverDBSegmentedVectorStore store, uint64_t id, float* vector, size_t vector_size);
+QuiverDBError quiverdb_segmented_vector_store_contains(QuiverDBSegmentedVectorStore store, uint64_t id, int* contains);
+QuiverDBError quiverdb_segmented_vector_store_search(QuiverDBSegmentedVectorStore store, const float* query, size_t k, QuiverDBSearchResult* results, size_t results_size);
+QuiverDBError quiverdb_segmented_vector_store_seal(QuiverDBSegmentedVectorStore store);
+QuiverDBError quiverdb_segmented_vector_store_compact(QuiverDBSegmentedVectorStore store, int* compacted);
+QuiverDBError quiverdb_segmented_vector_store_sync(QuiverDBSegmentedVectorStore store);
+QuiverDBError quiverdb_segmented_vector_store_size(QuiverDBSegmentedVectorStore store, size_t* size);
+QuiverDBError quiverdb_segmented_vector_store_dimension(QuiverDBSegmentedVectorStore store, size_t* dimension);
+QuiverDBError quiverdb_segmented_vector_store_segment_count(QuiverDBSegmentedVectorStore store, size_t* count);
+void quiverdb_segmented_vector_store_close(QuiverDBSegmentedVectorStore store);
+
 // Version information
 const char* quiverdb_version();
 int quiverdb_version_major();
 int quiverdb_version_minor();
 int quiverdb_version_patch();
 
+// Name of the distance kernel family selected for this CPU ("scalar", "sse4", "avx2",
+// "avx512" or "neon")
+const char* quiverdb_active_kernel();
+
 #ifdef __cplusplus
 }
 #endif
@@ -3,11 +3,13 @@
 #include "core/vector_store.h"
 #include "core/hnsw_index.h"
 #include "core/mmap_vector_store.h"
+#include "core/segmented_vector_store.h"
 #include "core/version.h"
 
 #include <cstring>
 #include <stdexcept>
 #include <memory>
+#include <vector>
 
 using namespace quiverdb;
 
@@ -40,6 +42,25 @@ static HNSWDistanceMetric convert_hnsw_metric(QuiverDBDistanceMetric metric) {
     }
 }
 
+// Unknown values map to F32 for stores; as half input they are rejected by the core
+static ElementType convert_element_type(QuiverDBElementType type) {
+    switch (type) {
+        case QUIVERDB_ELEMENT_F32: return ElementType::F32;
+        case QUIVERDB_ELEMENT_F16: return ElementType::F16;
+        case QUIVERDB_ELEMENT_BF16: return ElementType::BF16;
+        default: return ElementType::F32;
+    }
+}
+
+static QuiverDBElementType convert_element_type_back(ElementType type) {
+    switch (type) {
+        case ElementType::F32: return QUIVERDB_ELEMENT_F32;
+        case ElementType::F16: return QUIVERDB_ELEMENT_F16;
+        case ElementType::BF16: return QUIVERDB_ELEMENT_BF16;
+        default: return QUIVERDB_ELEMENT_F32;
+    }
+}
+
 QuiverDBError quiverdb_vector_store_create(size_t dimension, QuiverDBDistanceMetric metric, QuiverDBVectorStore* store) {
     try {
         auto vector_store = new VectorStore(dimension, convert_metric(metric));
@@ -54,6 +75,37 @@ QuiverDBError quiverdb_vector_store_create(size_t dimension, QuiverDBDistanceMet
     }
 }
 
+QuiverDBError quiverdb_vector_store_create_typed(size_t dimension, QuiverDBDistanceMetric metric, QuiverDBElementType element_type, QuiverDBVectorStore* store) {
+    try {
+        auto vector_store = new VectorStore(dimension, convert_metric(metric), convert_element_type(element_type));
+        *store = vector_store;
+        return QUIVERDB_OK;
+    } catch (const std::invalid_argument&) {
+        return QUIVERDB_INVALID_ARGUMENT;
+    } catch (const std::bad_alloc&) {
+        return QUIVERDB_OUT_OF_MEMORY;
+    } catch (...) {
+        return QUIVERDB_ERROR;
+    }
+}
+
+QuiverDBError quiverdb_vector_store_add_half(QuiverDBVectorStore store, uint64_t id, const uint16_t* vector, QuiverDBElementType format) {
+    try {
+        auto vector_store = static_cast<VectorStore*>(store);
+        if (format == QUIVERDB_ELEMENT_F32) {
+            return QUIVERDB_INVALID_ARGUMENT;
+        }
+        vector_store->add(id, vector, convert_element_type(format));
+        return QUIVERDB_OK;
+    } catch (const std::invalid_argument&) {
+        return QUIVERDB_INVALID_ARGUMENT;
+    } catch (const std::bad_alloc&) {
+        return QUIVERDB_OUT_OF_MEMORY;
+    } catch (...) {
+        return QUIVERDB_ERROR;
+    }
+}
+
 QuiverDBError quiverdb_vector_store_add(QuiverDBVectorStore store, uint64_t id, const float* vector) {
     try {
         auto vector_store = static_cast<VectorStore*>(store);
@@ -87,12 +139,13 @@ QuiverDBError quiverdb_vector_store_get(QuiverDBVectorStore store, uint64_t id,
             return QUIVERDB_INVALID_ARGUMENT;
         }
         
-        const float* stored_vector = vector_store->get(id);
-        if (!stored_vector) {
+        // get_copy() rather than get(): cosine stores keep unit-length rows internally
+        std::vector<float> stored_vector = vector_store->get_copy(id);
+        if (stored_vector.empty()) {
             return QUIVERDB_ID_NOT_FOUND;
         }
         
-        std::memcpy(vector, stored_vector, dimension * sizeof(float));
+        std::memcpy(vector, stored_vector.data(), dimension * sizeof(float));
         return QUIVERDB_OK;
     } catch (...) {
         return QUIVERDB_ERROR;
@@ -139,6 +192,122 @@ QuiverDBError quiverdb_vector_store_search(QuiverDBVectorStore store, const floa
     }
 }
 
+QuiverDBError quiverdb_vector_store_search_half(QuiverDBVectorStore store, const uint16_t* query, QuiverDBElementType format, size_t k, QuiverDBSearchResult* results, size_t results_size) {
+    try {
+        auto vector_store = static_cast<VectorStore*>(store);
+        if (results_size < k || format == QUIVERDB_ELEMENT_F32) {
+            return QUIVERDB_INVALID_ARGUMENT;
+        }
+        auto search_results = vector_store->search(query, convert_element_type(format), k);
+        for (size_t i = 0; i < search_results.size(); ++i) {
+            results[i].id = search_results[i].id;
+            results[i].distance = search_results[i].distance;
+        }
+        return QUIVERDB_OK;
+    } catch (const std::invalid_argument&) {
+        return QUIVERDB_INVALID_ARGUMENT;
+    } catch (const std::bad_alloc&) {
+        return QUIVERDB_OUT_OF_MEMORY;
+    } catch (...) {
+        return QUIVERDB_ERROR;
+    }
+}
+
+QuiverDBError quiverdb_vector_store_set_binary_index(QuiverDBVectorStore store, int enabled) {
+    try {
+        auto vector_store = static_cast<VectorStore*>(store);
+        vector_store->set_binary_index(enabled != 0);
+        return QUIVERDB_OK;
+    } catch (const std::bad_alloc&) {
+        return QUIVERDB_OUT_OF_MEMORY;
+    } catch (...) {
+        return QUIVERDB_ERROR;
+    }
+}
+
+QuiverDBError quiverdb_vector_store_search_binary(QuiverDBVectorStore store, const float* query, size_t k, size_t rerank_factor, QuiverDBSearchResult* results, size_t results_size) {
+    try {
+        auto vector_store = static_cast<VectorStore*>(store);
+        
+        if (results_size < k) {
+            return QUIVERDB_INVALID_ARGUMENT;
+        }
+        
+        auto search_results = vector_store->search_binary(query, k, rerank_factor);
+        
+        for (size_t i = 0; i < search_results.size(); ++i) {
+            results[i].id = search_results[i].id;
+            results[i].distance = search_results[i].distance;
+        }
+        
+        return QUIVERDB_OK;
+    } catch (const std::invalid_argument&) {
+        return QUIVERDB_INVALID_ARGUMENT;
+    } catch (const std::bad_alloc&) {
+        return QUIVERDB_OUT_OF_MEMORY;
+    } catch (...) {
+        return QUIVERDB_ERROR;
+    }
+}
+
+QuiverDBError quiverdb_vector_store_save(QuiverDBVectorStore store, const char* filename) {
+    try {
+        auto vector_store = static_cast<VectorStore*>(store);
+        vector_store->save(filename);
+        return QUIVERDB_OK;
+    } catch (const std::ios_base::failure&) {
+        return QUIVERDB_FILE_ERROR;
+    } catch (const std::bad_alloc&) {
+        return QUIVERDB_OUT_OF_MEMORY;
+    } catch (...) {
+        return QUIVERDB_ERROR;
+    }
+}
+
+QuiverDBError quiverdb_vector_store_load(const char* filename, int map, QuiverDBVectorStore* store) {
+    try {
+        auto vector_store = VectorStore::load(filename, map != 0);
+        *store = vector_store.release();
+        return QUIVERDB_OK;
+    } catch (const std::ios_base::failure&) {
+        return QUIVERDB_FILE_ERROR;
+    } catch (const std::invalid_argument&) {
+        return QUIVERDB_INVALID_ARGUMENT;
+    } catch (const std::bad_alloc&) {
+        return QUIVERDB_OUT_OF_MEMORY;
+    } catch (...) {
+        return QUIVERDB_ERROR;
+    }
+}
+
+QuiverDBError quiverdb_vector_store_search_batch(QuiverDBVectorStore store, const float* queries, size_t num_queries, size_t k, QuiverDBSearchResult* results, size_t* result_counts) {
+    try {
+        auto vector_store = static_cast<VectorStore*>(store);
+        
+        if (num_queries > 0 && (!results || !result_counts)) {
+            return QUIVERDB_INVALID_ARGUMENT;
+        }
+        
+        auto batch = vector_store->search_batch(queries, num_queries, k);
+        
+        for (size_t q = 0; q < batch.size(); ++q) {
+            for (size_t i = 0; i < batch[q].size(); ++i) {
+                results[q * k + i].id = batch[q][i].id;
+                results[q * k + i].distance = batch[q][i].distance;
+            }
+            result_counts[q] = batch[q].size();
+        }
+        
+        return QUIVERDB_OK;
+    } catch (const std::invalid_argument&) {
+        return QUIVERDB_INVALID_ARGUMENT;
+    } catch (const std::bad_alloc&) {
+        return QUIVERDB_OUT_OF_MEMORY;
+    } catch (...) {
+        return QUIVERDB_ERROR;
+    }
+}
+
 QuiverDBError quiverdb_vector_store_size(QuiverDBVectorStore store, size_t* size) {
     try {
         auto vector_store = static_cast<VectorStore*>(store);
@@ -169,6 +338,16 @@ QuiverDBError quiverdb_vector_store_metric(QuiverDBVectorStore store, QuiverDBDi
     }
 }
 
+QuiverDBError quiverdb_vector_store_element_type(QuiverDBVectorStore store, QuiverDBElementType* element_type) {
+    try {
+        auto vector_store = static_cast<VectorStore*>(store);
+        *element_type = convert_element_type_back(vector_store->element_type());
+        return QUIVERDB_OK;
+    } catch (...) {
+        return QUIVERDB_ERROR;
+    }
+}
+
 QuiverDBError quiverdb_vector_store_contains(QuiverDBVectorStore store, uint64_t id, int* contains) {
     try {
         auto vector_store = static_cast<VectorStore*>(store);
@@ -202,6 +381,20 @@ QuiverDBError quiverdb_vector_store_clear(QuiverDBVectorStore store) {
     }
 }
 
+QuiverDBError quiverdb_vector_store_set_search_threads(QuiverDBVectorStore store, size_t threads) {
+    try {
+        auto vector_store = static_cast<VectorStore*>(store);
+        vector_store->set_search_threads(threads);
+        return QUIVERDB_OK;
+    } catch (const std::invalid_argument&) {
+        return QUIVERDB_INVALID_ARGUMENT;
+    } catch (const std::bad_alloc&) {
+        return QUIVERDB_OUT_OF_MEMORY;
+    } catch (...) {
+        return QUIVERDB_ERROR;
+    }
+}
+
 void quiverdb_vector_store_destroy(QuiverDBVectorStore store) {
     auto vector_store = static_cast<VectorStore*>(store);
     delete vector_store;
@@ -237,6 +430,96 @@ QuiverDBError quiverdb_hnsw_index_create_with_params(size_t dimension, QuiverDBD
     }
 }
 
+QuiverDBError quiverdb_hnsw_index_create_typed(size_t dimension, QuiverDBDistanceMetric metric, size_t max_elements, size_t M, size_t ef_construction, uint32_t seed, QuiverDBElementType element_type, QuiverDBHNSWIndex* index) {
+    try {
+        auto hnsw_index = new HNSWIndex(dimension, convert_hnsw_metric(metric), max_elements, M, ef_construction, seed, convert_element_type(element_type));
+        *index = hnsw_index;
+        return QUIVERDB_OK;
+    } catch (const std::invalid_argument&) {
+        return QUIVERDB_INVALID_ARGUMENT;
+    } catch (const std::bad_alloc&) {
+        return QUIVERDB_OUT_OF_MEMORY;
+    } catch (...) {
+        return QUIVERDB_ERROR;
+    }
+}
+
+QuiverDBError quiverdb_hnsw_index_add_half(QuiverDBHNSWIndex index, uint64_t id, const uint16_t* vector, QuiverDBElementType format) {
+    try {
+        auto hnsw_index = static_cast<HNSWIndex*>(index);
+        if (format == QUIVERDB_ELEMENT_F32) {
+            return QUIVERDB_INVALID_ARGUMENT;
+        }
+        hnsw_index->add(id, vector, convert_element_type(format));
+        return QUIVERDB_OK;
+    } catch (const std::invalid_argument&) {
+        return QUIVERDB_INVALID_ARGUMENT;
+    } catch (const std::runtime_error& e) {
+        if (std::strstr(e.what(), "exists")) {
+            return QUIVERDB_DUPLICATE_ID;
+        } else if (std::strstr(e.what(), "full")) {
+            return QUIVERDB_INDEX_FULL;
+        }
+        return QUIVERDB_ERROR;
+    } catch (const std::bad_alloc&) {
+        return QUIVERDB_OUT_OF_MEMORY;
+    } catch (...) {
+        return QUIVERDB_ERROR;
+    }
+}
+
+QuiverDBError quiverdb_hnsw_index_search_half(QuiverDBHNSWIndex index, const uint16_t* query, QuiverDBElementType format, size_t k, QuiverDBSearchResult* results, size_t results_size) {
+    try {
+        auto hnsw_index = static_cast<HNSWIndex*>(index);
+        if (results_size < k || format == QUIVERDB_ELEMENT_F32) {
+            return QUIVERDB_INVALID_ARGUMENT;
+        }
+        auto search_results = hnsw_index->search(query, convert_element_type(format), k);
+        for (size_t i = 0; i < search_results.size(); ++i) {
+            results[i].id = search_results[i].id;
+            results[i].distance = search_results[i].distance;
+        }
+        return QUIVERDB_OK;
+    } catch (const std::invalid_argument&) {
+        return QUIVERDB_INVALID_ARGUMENT;
+    } catch (const std::bad_alloc&) {
+        return QUIVERDB_OUT_OF_MEMORY;
+    } catch (...) {
+        return QUIVERDB_ERROR;
+    }
+}
+
+QuiverDBError quiverdb_hnsw_index_search_half_with_ef(QuiverDBHNSWIndex index, const uint16_t* query, QuiverDBElementType format, size_t k, size_t ef_search, QuiverDBSearchResult* results, size_t results_size) {
+    try {
+        auto hnsw_index = static_cast<HNSWIndex*>(index);
+        if (results_size < k || format == QUIVERDB_ELEMENT_F32) {
+            return QUIVERDB_INVALID_ARGUMENT;
+        }
+        auto search_results = hnsw_index->search(query, convert_element_type(format), k, ef_search);
+        for (size_t i = 0; i < search_results.size(); ++i) {
+            results[i].id = search_results[i].id;
+            results[i].distance = search_results[i].distance;
+        }
+        return QUIVERDB_OK;
+    } catch (const std::invalid_argument&) {
+        return QUIVERDB_INVALID_ARGUMENT;
+    } catch (const std::bad_alloc&) {
+        return QUIVERDB_OUT_OF_MEMORY;
+    } catch (...) {
+        return QUIVERDB_ERROR;
+    }
+}
+
+QuiverDBError quiverdb_hnsw_index_element_type(QuiverDBHNSWIndex index, QuiverDBElementType* element_type) {
+    try {
+        auto hnsw_index = static_cast<HNSWIndex*>(index);
+        *element_type = convert_element_type_back(hnsw_index->element_type());
+        return QUIVERDB_OK;
+    } catch (...) {
+        return QUIVERDB_ERROR;
+    }
+}
+
 QuiverDBError quiverdb_hnsw_index_add(QuiverDBHNSWIndex index, uint64_t id, const float* vector) {
     try {
         auto hnsw_index = static_cast<HNSWIndex*>(index);
@@ -283,6 +566,27 @@ QuiverDBError quiverdb_hnsw_index_search(QuiverDBHNSWIndex index, const float* q
     }
 }
 
+QuiverDBError quiverdb_hnsw_index_search_with_ef(QuiverDBHNSWIndex index, const float* query, size_t k, size_t ef_search, QuiverDBSearchResult* results, size_t results_size) {
+    try {
+        auto hnsw_index = static_cast<HNSWIndex*>(index);
+        if (results_size < k) {
+            return QUIVERDB_INVALID_ARGUMENT;
+        }
+        auto search_results = hnsw_index->search(query, k, ef_search);
+        for (size_t i = 0; i < search_results.size(); ++i) {
+            results[i].id = search_results[i].id;
+            results[i].distance = search_results[i].distance;
+        }
+        return QUIVERDB_OK;
+    } catch (const std::invalid_argument&) {
+        return QUIVERDB_INVALID_ARGUMENT;
+    } catch (const std::bad_alloc&) {
+        return QUIVERDB_OUT_OF_MEMORY;
+    } catch (...) {
+        return QUIVERDB_ERROR;
+    }
+}
+
 QuiverDBError quiverdb_hnsw_index_set_ef_search(QuiverDBHNSWIndex index, size_t ef_search) {
     try {
         auto hnsw_index = static_cast<HNSWIndex*>(index);
@@ -399,17 +703,14 @@ QuiverDBError quiverdb_hnsw_index_load(const char* filename, QuiverDBHNSWIndex*
     }
 }
 
-void quiverdb_hnsw_index_destroy(QuiverDBHNSWIndex index) {
-    auto hnsw_index = static_cast<HNSWIndex*>(index);
-    delete hnsw_index;
-}
-
-// MMapVectorStoreBuilder implementation
-
-QuiverDBError quiverdb_mmap_vector_store_builder_create(size_t dimension, QuiverDBDistanceMetric metric, QuiverDBMMapVectorStoreBuilder* builder) {
+QuiverDBError quiverdb_hnsw_index_merge(const QuiverDBHNSWIndex* indexes, size_t count, QuiverDBHNSWIndex* index) {
     try {
-        auto mmap_builder = new MMapVectorStoreBuilder(dimension, convert_metric(metric));
-        *builder = mmap_builder;
+        if (!indexes && count > 0) return QUIVERDB_INVALID_ARGUMENT;
+        std::vector<const HNSWIndex*> shards;
+        shards.reserve(count);
+        for (size_t i = 0; i < count; ++i) shards.push_back(static_cast<const HNSWIndex*>(indexes[i]));
+        auto hnsw_index = HNSWIndex::merge(shards);
+        *index = hnsw_index.release();
         return QUIVERDB_OK;
     } catch (const std::invalid_argument&) {
         return QUIVERDB_INVALID_ARGUMENT;
@@ -420,7 +721,78 @@ QuiverDBError quiverdb_mmap_vector_store_builder_create(size_t dimension, Quiver
     }
 }
 
-QuiverDBError quiverdb_mmap_vector_store_builder_add(QuiverDBMMapVectorStoreBuilder builder, uint64_t id, const float* vector) {
+QuiverDBError quiverdb_hnsw_index_build_from_mmap(QuiverDBMMapVectorStore store, size_t M, size_t ef_construction, size_t num_threads, int reference_vectors, QuiverDBHNSWIndex* index) {
+    try {
+        if (!store) return QUIVERDB_INVALID_ARGUMENT;
+        auto mmap_store = static_cast<const MMapVectorStore*>(store);
+        auto hnsw_index = HNSWIndex::build_from(*mmap_store, M, ef_construction, num_threads, reference_vectors != 0);
+        *index = hnsw_index.release();
+        return QUIVERDB_OK;
+    } catch (const std::invalid_argument&) {
+        return QUIVERDB_INVALID_ARGUMENT;
+    } catch (const std::bad_alloc&) {
+        return QUIVERDB_OUT_OF_MEMORY;
+    } catch (...) {
+        return QUIVERDB_ERROR;
+    }
+}
+
+void quiverdb_hnsw_index_destroy(QuiverDBHNSWIndex index) {
+    auto hnsw_index = static_cast<HNSWIndex*>(index);
+    delete hnsw_index;
+}
+
+// MMapVectorStoreBuilder implementation
+
+QuiverDBError quiverdb_mmap_vector_store_builder_create(size_t dimension, QuiverDBDistanceMetric metric, QuiverDBMMapVectorStoreBuilder* builder) {
+    try {
+        auto mmap_builder = new MMapVectorStoreBuilder(dimension, convert_metric(metric));
+        *builder = mmap_builder;
+        return QUIVERDB_OK;
+    } catch (const std::invalid_argument&) {
+        return QUIVERDB_INVALID_ARGUMENT;
+    } catch (const std::bad_alloc&) {
+        return QUIVERDB_OUT_OF_MEMORY;
+    } catch (...) {
+        return QUIVERDB_ERROR;
+    }
+}
+
+QuiverDBError quiverdb_mmap_vector_store_builder_create_typed(size_t dimension, QuiverDBDistanceMetric metric, QuiverDBElementType element_type, QuiverDBMMapVectorStoreBuilder* builder) {
+    try {
+        auto mmap_builder = new MMapVectorStoreBuilder(dimension, convert_metric(metric), convert_element_type(element_type));
+        *builder = mmap_builder;
+        return QUIVERDB_OK;
+    } catch (const std::invalid_argument&) {
+        return QUIVERDB_INVALID_ARGUMENT;
+    } catch (const std::bad_alloc&) {
+        return QUIVERDB_OUT_OF_MEMORY;
+    } catch (...) {
+        return QUIVERDB_ERROR;
+    }
+}
+
+QuiverDBError quiverdb_mmap_vector_store_builder_add_half(QuiverDBMMapVectorStoreBuilder builder, uint64_t id, const uint16_t* vector, QuiverDBElementType format) {
+    try {
+        auto mmap_builder = static_cast<MMapVectorStoreBuilder*>(builder);
+        if (format == QUIVERDB_ELEMENT_F32) {
+            return QUIVERDB_INVALID_ARGUMENT;
+        }
+        mmap_builder->add(id, vector, convert_element_type(format));
+        return QUIVERDB_OK;
+    } catch (const std::invalid_argument& e) {
+        if (std::strstr(e.what(), "Duplicate ID")) {
+            return QUIVERDB_DUPLICATE_ID;
+        }
+        return QUIVERDB_INVALID_ARGUMENT;
+    } catch (const std::bad_alloc&) {
+        return QUIVERDB_OUT_OF_MEMORY;
+    } catch (...) {
+        return QUIVERDB_ERROR;
+    }
+}
+
+QuiverDBError quiverdb_mmap_vector_store_builder_add(QuiverDBMMapVectorStoreBuilder builder, uint64_t id, const float* vector) {
     try {
         auto mmap_builder = static_cast<MMapVectorStoreBuilder*>(builder);
         mmap_builder->add(id, vector);
@@ -437,6 +809,33 @@ QuiverDBError quiverdb_mmap_vector_store_builder_add(QuiverDBMMapVectorStoreBuil
     }
 }
 
+QuiverDBError quiverdb_mmap_vector_store_builder_add_batch(QuiverDBMMapVectorStoreBuilder builder, const uint64_t* ids, const float* vectors, size_t count) {
+    try {
+        auto mmap_builder = static_cast<MMapVectorStoreBuilder*>(builder);
+        mmap_builder->add_batch(ids, vectors, count);
+        return QUIVERDB_OK;
+    } catch (const std::invalid_argument& e) {
+        if (std::strstr(e.what(), "Duplicate ID")) {
+            return QUIVERDB_DUPLICATE_ID;
+        }
+        return QUIVERDB_INVALID_ARGUMENT;
+    } catch (const std::bad_alloc&) {
+        return QUIVERDB_OUT_OF_MEMORY;
+    } catch (...) {
+        return QUIVERDB_ERROR;
+    }
+}
+
+QuiverDBError quiverdb_mmap_vector_store_builder_set_binary_index(QuiverDBMMapVectorStoreBuilder builder, int enabled) {
+    try {
+        auto mmap_builder = static_cast<MMapVectorStoreBuilder*>(builder);
+        mmap_builder->set_binary_index(enabled != 0);
+        return QUIVERDB_OK;
+    } catch (...) {
+        return QUIVERDB_ERROR;
+    }
+}
+
 QuiverDBError quiverdb_mmap_vector_store_builder_reserve(QuiverDBMMapVectorStoreBuilder builder, size_t capacity) {
     try {
         auto mmap_builder = static_cast<MMapVectorStoreBuilder*>(builder);
@@ -488,6 +887,160 @@ void quiverdb_mmap_vector_store_builder_destroy(QuiverDBMMapVectorStoreBuilder b
     delete mmap_builder;
 }
 
+// MMapVectorStoreWriter implementation
+
+QuiverDBError quiverdb_mmap_vector_store_writer_create(const char* filename, size_t dimension, QuiverDBDistanceMetric metric, QuiverDBElementType element_type, QuiverDBMMapVectorStoreWriter* writer) {
+    try {
+        if (!filename) {
+            return QUIVERDB_INVALID_ARGUMENT;
+        }
+        auto mmap_writer = new MMapVectorStoreWriter(filename, dimension, convert_metric(metric), convert_element_type(element_type));
+        *writer = mmap_writer;
+        return QUIVERDB_OK;
+    } catch (const std::invalid_argument&) {
+        return QUIVERDB_INVALID_ARGUMENT;
+    } catch (const std::bad_alloc&) {
+        return QUIVERDB_OUT_OF_MEMORY;
+    } catch (const std::runtime_error&) {
+        return QUIVERDB_FILE_ERROR;
+    } catch (...) {
+        return QUIVERDB_ERROR;
+    }
+}
+
+QuiverDBError quiverdb_mmap_vector_store_writer_add(QuiverDBMMapVectorStoreWriter writer, uint64_t id, const float* vector) {
+    try {
+        auto mmap_writer = static_cast<MMapVectorStoreWriter*>(writer);
+        if (mmap_writer->finished()) {
+            return QUIVERDB_ERROR;
+        }
+        mmap_writer->add(id, vector);
+        return QUIVERDB_OK;
+    } catch (const std::invalid_argument& e) {
+        if (std::strstr(e.what(), "Duplicate ID")) {
+            return QUIVERDB_DUPLICATE_ID;
+        }
+        return QUIVERDB_INVALID_ARGUMENT;
+    } catch (const std::bad_alloc&) {
+        return QUIVERDB_OUT_OF_MEMORY;
+    } catch (const std::runtime_error&) {
+        return QUIVERDB_FILE_ERROR;
+    } catch (...) {
+        return QUIVERDB_ERROR;
+    }
+}
+
+QuiverDBError quiverdb_mmap_vector_store_writer_add_batch(QuiverDBMMapVectorStoreWriter writer, const uint64_t* ids, const float* vectors, size_t count) {
+    try {
+        auto mmap_writer = static_cast<MMapVectorStoreWriter*>(writer);
+        if (mmap_writer->finished()) {
+            return QUIVERDB_ERROR;
+        }
+        mmap_writer->add_batch(ids, vectors, count);
+        return QUIVERDB_OK;
+    } catch (const std::invalid_argument& e) {
+        if (std::strstr(e.what(), "Duplicate ID")) {
+            return QUIVERDB_DUPLICATE_ID;
+        }
+        return QUIVERDB_INVALID_ARGUMENT;
+    } catch (const std::bad_alloc&) {
+        return QUIVERDB_OUT_OF_MEMORY;
+    } catch (const std::runtime_error&) {
+        return QUIVERDB_FILE_ERROR;
+    } catch (...) {
+        return QUIVERDB_ERROR;
+    }
+}
+
+QuiverDBError quiverdb_mmap_vector_store_writer_add_half(QuiverDBMMapVectorStoreWriter writer, uint64_t id, const uint16_t* vector, QuiverDBElementType format) {
+    try {
+        auto mmap_writer = static_cast<MMapVectorStoreWriter*>(writer);
+        if (format == QUIVERDB_ELEMENT_F32) {
+            return QUIVERDB_INVALID_ARGUMENT;
+        }
+        if (mmap_writer->finished()) {
+            return QUIVERDB_ERROR;
+        }
+        mmap_writer->add(id, vector, convert_element_type(format));
+        return QUIVERDB_OK;
+    } catch (const std::invalid_argument& e) {
+        if (std::strstr(e.what(), "Duplicate ID")) {
+            return QUIVERDB_DUPLICATE_ID;
+        }
+        return QUIVERDB_INVALID_ARGUMENT;
+    } catch (const std::bad_alloc&) {
+        return QUIVERDB_OUT_OF_MEMORY;
+    } catch (const std::runtime_error&) {
+        return QUIVERDB_FILE_ERROR;
+    } catch (...) {
+        return QUIVERDB_ERROR;
+    }
+}
+
+QuiverDBError quiverdb_mmap_vector_store_writer_set_binary_index(QuiverDBMMapVectorStoreWriter writer, int enabled) {
+    try {
+        auto mmap_writer = static_cast<MMapVectorStoreWriter*>(writer);
+        mmap_writer->set_binary_index(enabled != 0);
+        return QUIVERDB_OK;
+    } catch (...) {
+        return QUIVERDB_ERROR;
+    }
+}
+
+QuiverDBError quiverdb_mmap_vector_store_writer_reserve(QuiverDBMMapVectorStoreWriter writer, size_t capacity) {
+    try {
+        auto mmap_writer = static_cast<MMapVectorStoreWriter*>(writer);
+        mmap_writer->reserve(capacity);
+        return QUIVERDB_OK;
+    } catch (const std::bad_alloc&) {
+        return QUIVERDB_OUT_OF_MEMORY;
+    } catch (...) {
+        return QUIVERDB_ERROR;
+    }
+}
+
+QuiverDBError quiverdb_mmap_vector_store_writer_finish(QuiverDBMMapVectorStoreWriter writer) {
+    try {
+        auto mmap_writer = static_cast<MMapVectorStoreWriter*>(writer);
+        if (mmap_writer->finished()) {
+            return QUIVERDB_ERROR;
+        }
+        mmap_writer->finish();
+        return QUIVERDB_OK;
+    } catch (const std::bad_alloc&) {
+        return QUIVERDB_OUT_OF_MEMORY;
+    } catch (const std::runtime_error&) {
+        return QUIVERDB_FILE_ERROR;
+    } catch (...) {
+        return QUIVERDB_ERROR;
+    }
+}
+
+QuiverDBError quiverdb_mmap_vector_store_writer_size(QuiverDBMMapVectorStoreWriter writer, size_t* size) {
+    try {
+        auto mmap_writer = static_cast<MMapVectorStoreWriter*>(writer);
+        *size = mmap_writer->size();
+        return QUIVERDB_OK;
+    } catch (...) {
+        return QUIVERDB_ERROR;
+    }
+}
+
+QuiverDBError quiverdb_mmap_vector_store_writer_dimension(QuiverDBMMapVectorStoreWriter writer, size_t* dimension) {
+    try {
+        auto mmap_writer = static_cast<MMapVectorStoreWriter*>(writer);
+        *dimension = mmap_writer->dimension();
+        return QUIVERDB_OK;
+    } catch (...) {
+        return QUIVERDB_ERROR;
+    }
+}
+
+void quiverdb_mmap_vector_store_writer_destroy(QuiverDBMMapVectorStoreWriter writer) {
+    auto mmap_writer = static_cast<MMapVectorStoreWriter*>(writer);
+    delete mmap_writer;
+}
+
 // MMapVectorStore implementation
 
 QuiverDBError quiverdb_mmap_vector_store_open(const char* filename, QuiverDBMMapVectorStore* store) {
@@ -515,12 +1068,13 @@ QuiverDBError quiverdb_mmap_vector_store_get(QuiverDBMMapVectorStore store, uint
             return QUIVERDB_INVALID_ARGUMENT;
         }
         
-        const float* stored_vector = mmap_store->get(id);
-        if (!stored_vector) {
+        // get_copy() rather than get(): cosine stores keep unit-length rows internally
+        std::vector<float> stored_vector = mmap_store->get_copy(id);
+        if (stored_vector.empty()) {
             return QUIVERDB_ID_NOT_FOUND;
         }
         
-        std::memcpy(vector, stored_vector, dimension * sizeof(float));
+        std::memcpy(vector, stored_vector.data(), dimension * sizeof(float));
         return QUIVERDB_OK;
     } catch (...) {
         return QUIVERDB_ERROR;
@@ -563,6 +1117,59 @@ QuiverDBError quiverdb_mmap_vector_store_search(QuiverDBMMapVectorStore store, c
     }
 }
 
+QuiverDBError quiverdb_mmap_vector_store_search_binary(QuiverDBMMapVectorStore store, const float* query, size_t k, size_t rerank_factor, QuiverDBSearchResult* results, size_t results_size) {
+    try {
+        auto mmap_store = static_cast<MMapVectorStore*>(store);
+        
+        if (results_size < k) {
+            return QUIVERDB_INVALID_ARGUMENT;
+        }
+        
+        auto search_results = mmap_store->search_binary(query, k, rerank_factor);
+        
+        for (size_t i = 0; i < search_results.size(); ++i) {
+            results[i].id = search_results[i].id;
+            results[i].distance = search_results[i].distance;
+        }
+        
+        return QUIVERDB_OK;
+    } catch (const std::invalid_argument&) {
+        return QUIVERDB_INVALID_ARGUMENT;
+    } catch (const std::bad_alloc&) {
+        return QUIVERDB_OUT_OF_MEMORY;
+    } catch (...) {
+        return QUIVERDB_ERROR;
+    }
+}
+
+QuiverDBError quiverdb_mmap_vector_store_search_batch(QuiverDBMMapVectorStore store, const float* queries, size_t num_queries, size_t k, QuiverDBSearchResult* results, size_t* result_counts) {
+    try {
+        auto mmap_store = static_cast<MMapVectorStore*>(store);
+        
+        if (num_queries > 0 && (!results || !result_counts)) {
+            return QUIVERDB_INVALID_ARGUMENT;
+        }
+        
+        auto batch = mmap_store->search_batch(queries, num_queries, k);
+        
+        for (size_t q = 0; q < batch.size(); ++q) {
+            for (size_t i = 0; i < batch[q].size(); ++i) {
+                results[q * k + i].id = batch[q][i].id;
+                results[q * k + i].distance = batch[q][i].distance;
+            }
+            result_counts[q] = batch[q].size();
+        }
+        
+        return QUIVERDB_OK;
+    } catch (const std::invalid_argument&) {
+        return QUIVERDB_INVALID_ARGUMENT;
+    } catch (const std::bad_alloc&) {
+        return QUIVERDB_OUT_OF_MEMORY;
+    } catch (...) {
+        return QUIVERDB_ERROR;
+    }
+}
+
 QuiverDBError quiverdb_mmap_vector_store_size(QuiverDBMMapVectorStore store, size_t* size) {
     try {
         auto mmap_store = static_cast<MMapVectorStore*>(store);
@@ -593,11 +1200,258 @@ QuiverDBError quiverdb_mmap_vector_store_metric(QuiverDBMMapVectorStore store, Q
     }
 }
 
+QuiverDBError quiverdb_mmap_vector_store_element_type(QuiverDBMMapVectorStore store, QuiverDBElementType* element_type) {
+    try {
+        auto mmap_store = static_cast<MMapVectorStore*>(store);
+        *element_type = convert_element_type_back(mmap_store->element_type());
+        return QUIVERDB_OK;
+    } catch (...) {
+        return QUIVERDB_ERROR;
+    }
+}
+
+QuiverDBError quiverdb_mmap_vector_store_set_search_threads(QuiverDBMMapVectorStore store, size_t threads) {
+    try {
+        auto mmap_store = static_cast<MMapVectorStore*>(store);
+        mmap_store->set_search_threads(threads);
+        return QUIVERDB_OK;
+    } catch (const std::invalid_argument&) {
+        return QUIVERDB_INVALID_ARGUMENT;
+    } catch (const std::bad_alloc&) {
+        return QUIVERDB_OUT_OF_MEMORY;
+    } catch (...) {
+        return QUIVERDB_ERROR;
+    }
+}
+
+QuiverDBError quiverdb_mmap_vector_store_warmup(QuiverDBMMapVectorStore store, double fraction) {
+    try {
+        auto mmap_store = static_cast<MMapVectorStore*>(store);
+        mmap_store->warmup(fraction);
+        return QUIVERDB_OK;
+    } catch (const std::invalid_argument&) {
+        return QUIVERDB_INVALID_ARGUMENT;
+    } catch (...) {
+        return QUIVERDB_ERROR;
+    }
+}
+
+QuiverDBError quiverdb_mmap_vector_store_advise_sequential(QuiverDBMMapVectorStore store) {
+    try {
+        auto mmap_store = static_cast<MMapVectorStore*>(store);
+        mmap_store->advise_sequential();
+        return QUIVERDB_OK;
+    } catch (...) {
+        return QUIVERDB_ERROR;
+    }
+}
+
+QuiverDBError quiverdb_mmap_vector_store_advise_random(QuiverDBMMapVectorStore store) {
+    try {
+        auto mmap_store = static_cast<MMapVectorStore*>(store);
+        mmap_store->advise_random();
+        return QUIVERDB_OK;
+    } catch (...) {
+        return QUIVERDB_ERROR;
+    }
+}
+
 void quiverdb_mmap_vector_store_close(QuiverDBMMapVectorStore store) {
     auto mmap_store = static_cast<MMapVectorStore*>(store);
     delete mmap_store;
 }
 
+// SegmentedVectorStore implementation
+
+QuiverDBError quiverdb_segmented_vector_store_open(const char* directory, size_t dimension, QuiverDBDistanceMetric metric, QuiverDBElementType element_type, size_t seal_rows, int background_compaction, QuiverDBSegmentedVectorStore* store) {
+    try {
+        SegmentedVectorStoreOptions options;
+        if (seal_rows > 0) options.seal_rows = seal_rows;
+        options.background_compaction = background_compaction != 0;
+        auto segmented = new SegmentedVectorStore(directory, dimension, convert_metric(metric),
+                                                  convert_element_type(element_type), options);
+        *store = segmented;
+        return QUIVERDB_OK;
+    } catch (const std::invalid_argument&) {
+        return QUIVERDB_INVALID_ARGUMENT;
+    } catch (const std::bad_alloc&) {
+        return QUIVERDB_OUT_OF_MEMORY;
+    } catch (const std::exception&) {
+        return QUIVERDB_FILE_ERROR;
+    } catch (...) {
+        return QUIVERDB_ERROR;
+    }
+}
+
+QuiverDBError quiverdb_segmented_vector_store_add(QuiverDBSegmentedVectorStore store, uint64_t id, const float* vector) {
+    try {
+        auto segmented = static_cast<SegmentedVectorStore*>(store);
+        segmented->add(id, vector);
+        return QUIVERDB_OK;
+    } catch (const std::invalid_argument&) {
+        return QUIVERDB_DUPLICATE_ID;
+    } catch (const std::bad_alloc&) {
+        return QUIVERDB_OUT_OF_MEMORY;
+    } catch (const std::exception&) {
+        return QUIVERDB_FILE_ERROR;
+    } catch (...) {
+        return QUIVERDB_ERROR;
+    }
+}
+
+QuiverDBError quiverdb_segmented_vector_store_remove(QuiverDBSegmentedVectorStore store, uint64_t id, int* removed) {
+    try {
+        auto segmented = static_cast<SegmentedVectorStore*>(store);
+        *removed = segmented->remove(id) ? 1 : 0;
+        return QUIVERDB_OK;
+    } catch (const std::exception&) {
+        return QUIVERDB_FILE_ERROR;
+    } catch (...) {
+        return QUIVERDB_ERROR;
+    }
+}
+
+QuiverDBError quiverdb_segmented_vector_store_update(QuiverDBSegmentedVectorStore store, uint64_t id, const float* vector) {
+    try {
+        auto segmented = static_cast<SegmentedVectorStore*>(store);
+        return segmented->update(id, vector) ? QUIVERDB_OK : QUIVERDB_ID_NOT_FOUND;
+    } catch (const std::bad_alloc&) {
+        return QUIVERDB_OUT_OF_MEMORY;
+    } catch (const std::exception&) {
+        return QUIVERDB_FILE_ERROR;
+    } catch (...) {
+        return QUIVERDB_ERROR;
+    }
+}
+
+QuiverDBError quiverdb_segmented_vector_store_get(QuiverDBSegmentedVectorStore store, uint64_t id, float* vector, size_t vector_size) {
+    try {
+        auto segmented = static_cast<SegmentedVectorStore*>(store);
+        size_t dimension = segmented->dimension();
+        
+        if (vector_size < dimension) {
+            return QUIVERDB_INVALID_ARGUMENT;
+        }
+        
+        std::vector<float> stored_vector = segmented->get_copy(id);
+        if (stored_vector.empty()) {
+            return QUIVERDB_ID_NOT_FOUND;
+        }
+        
+        std::memcpy(vector, stored_vector.data(), dimension * sizeof(float));
+        return QUIVERDB_OK;
+    } catch (...) {
+        return QUIVERDB_ERROR;
+    }
+}
+
+QuiverDBError quiverdb_segmented_vector_store_contains(QuiverDBSegmentedVectorStore store, uint64_t id, int* contains) {
+    try {
+        auto segmented = static_cast<SegmentedVectorStore*>(store);
+        *contains = segmented->contains(id) ? 1 : 0;
+        return QUIVERDB_OK;
+    } catch (...) {
+        return QUIVERDB_ERROR;
+    }
+}
+
+QuiverDBError quiverdb_segmented_vector_store_search(QuiverDBSegmentedVectorStore store, const float* query, size_t k, QuiverDBSearchResult* results, size_t results_size) {
+    try {
+        auto segmented = static_cast<SegmentedVectorStore*>(store);
+        
+        if (results_size < k) {
+            return QUIVERDB_INVALID_ARGUMENT;
+        }
+        
+        auto search_results = segmented->search(query, k);
+        
+        for (size_t i = 0; i < search_results.size(); ++i) {
+            results[i].id = search_results[i].id;
+            results[i].distance = search_results[i].distance;
+        }
+        
+        return QUIVERDB_OK;
+    } catch (const std::invalid_argument&) {
+        return QUIVERDB_INVALID_ARGUMENT;
+    } catch (const std::bad_alloc&) {
+        return QUIVERDB_OUT_OF_MEMORY;
+    } catch (...) {
+        return QUIVERDB_ERROR;
+    }
+}
+
+QuiverDBError quiverdb_segmented_vector_store_seal(QuiverDBSegmentedVectorStore store) {
+    try {
+        auto segmented = static_cast<SegmentedVectorStore*>(store);
+        segmented->seal();
+        return QUIVERDB_OK;
+    } catch (const std::exception&) {
+        return QUIVERDB_FILE_ERROR;
+    } catch (...) {
+        return QUIVERDB_ERROR;
+    }
+}
+
+QuiverDBError quiverdb_segmented_vector_store_compact(QuiverDBSegmentedVectorStore store, int* compacted) {
+    try {
+        auto segmented = static_cast<SegmentedVectorStore*>(store);
+        bool result = segmented->compact();
+        if (compacted) *compacted = result ? 1 : 0;
+        return QUIVERDB_OK;
+    } catch (const std::exception&) {
+        return QUIVERDB_FILE_ERROR;
+    } catch (...) {
+        return QUIVERDB_ERROR;
+    }
+}
+
+QuiverDBError quiverdb_segmented_vector_store_sync(QuiverDBSegmentedVectorStore store) {
+    try {
+        auto segmented = static_cast<SegmentedVectorStore*>(store);
+        segmented->sync();
+        return QUIVERDB_OK;
+    } catch (const std::exception&) {
+        return QUIVERDB_FILE_ERROR;
+    } catch (...) {
+        return QUIVERDB_ERROR;
+    }
+}
+
+QuiverDBError quiverdb_segmented_vector_store_size(QuiverDBSegmentedVectorStore store, size_t* size) {
+    try {
+        auto segmented = static_cast<SegmentedVectorStore*>(store);
+        *size = segmented->size();
+        return QUIVERDB_OK;
+    } catch (...) {
+        return QUIVERDB_ERROR;
+    }
+}
+
+QuiverDBError quiverdb_segmented_vector_store_dimension(QuiverDBSegmentedVectorStore store, size_t* dimension) {
+    try {
+        auto segmented = static_cast<SegmentedVectorStore*>(store);
+        *dimension = segmented->dimension();
+        return QUIVERDB_OK;
+    } catch (...) {
+        return QUIVERDB_ERROR;
+    }
+}
+
+QuiverDBError quiverdb_segmented_vector_store_segment_count(QuiverDBSegmentedVectorStore store, size_t* count) {
+    try {
+        auto segmented = static_cast<SegmentedVectorStore*>(store);
+        *count = segmented->segment_count();
+        return QUIVERDB_OK;
+    } catch (...) {
+        return QUIVERDB_ERROR;
+    }
+}
+
+void quiverdb_segmented_vector_store_close(QuiverDBSegmentedVectorStore store) {
+    auto segmented = static_cast<SegmentedVectorStore*>(store);
+    delete segmented;
+}
+
 // Version information
 
 const char* quiverdb_version() {
@@ -615,3 +1469,7 @@ int quiverdb_version_minor() {
 int quiverdb_version_patch() {
     return VERSION_PATCH;
 }
+
+const char* quiverdb_active_kernel() {
+    return active_kernel_name();
+}
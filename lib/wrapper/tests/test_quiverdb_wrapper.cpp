@@ -5,6 +5,7 @@
 #include <cassert>
 #include <vector>
 #include <algorithm>
+#include <filesystem>
 #include "quiverdb_wrapper.h"
 
 // Helper function to create a random vector
@@ -122,6 +123,78 @@ void test_vector_store() {
     }
     std::cout << "✓ VectorStore search test passed" << std::endl;
     
+    // Test multi-threaded search gives the same results
+    error = quiverdb_vector_store_set_search_threads(store, 2);
+    assert(error == QUIVERDB_OK);
+    QuiverDBSearchResult threaded_results[k];
+    error = quiverdb_vector_store_search(store, query, k, threaded_results, k);
+    assert(error == QUIVERDB_OK);
+    for (size_t i = 0; i < k; ++i) {
+        assert(threaded_results[i].id == results[i].id);
+    }
+    error = quiverdb_vector_store_set_search_threads(store, 0);
+    assert(error == QUIVERDB_INVALID_ARGUMENT);
+    std::cout << "✓ VectorStore search threads test passed" << std::endl;
+    
+    // Test batch search: the query searched above comes back first, unchanged
+    float batch_queries[2 * dimension];
+    std::copy(query, query + dimension, batch_queries);
+    create_random_vector(batch_queries + dimension, dimension);
+    QuiverDBSearchResult batch_results[2 * k];
+    size_t batch_counts[2] = {0, 0};
+    error = quiverdb_vector_store_search_batch(store, batch_queries, 2, k, batch_results, batch_counts);
+    assert(error == QUIVERDB_OK);
+    assert(batch_counts[0] == k && batch_counts[1] == k);
+    for (size_t i = 0; i < k; ++i) {
+        assert(batch_results[i].id == results[i].id);
+    }
+    error = quiverdb_vector_store_search_batch(store, batch_queries, 2, 0, batch_results, batch_counts);
+    assert(error == QUIVERDB_INVALID_ARGUMENT);
+    std::cout << "✓ VectorStore batch search test passed" << std::endl;
+    
+    // Test binary search: shortlisting every vector reranks to the exact results
+    QuiverDBSearchResult binary_results[k];
+    error = quiverdb_vector_store_search_binary(store, query, k, 4, binary_results, k);
+    assert(error == QUIVERDB_ERROR);
+    error = quiverdb_vector_store_set_binary_index(store, 1);
+    assert(error == QUIVERDB_OK);
+    error = quiverdb_vector_store_search_binary(store, query, k, num_vectors, binary_results, k);
+    assert(error == QUIVERDB_OK);
+    for (size_t i = 0; i < k; ++i) {
+        assert(binary_results[i].id == results[i].id);
+    }
+    error = quiverdb_vector_store_search_binary(store, query, k, 0, binary_results, k);
+    assert(error == QUIVERDB_INVALID_ARGUMENT);
+    std::cout << "✓ VectorStore binary search test passed" << std::endl;
+    
+    // Test save / load: read and mapped copies return the same results
+    const char* store_file = "/tmp/quiverdb_test_vector_store.bin";
+    error = quiverdb_vector_store_save(store, store_file);
+    assert(error == QUIVERDB_OK);
+    for (int map = 0; map <= 1; ++map) {
+        QuiverDBVectorStore loaded = nullptr;
+        error = quiverdb_vector_store_load(store_file, map, &loaded);
+        assert(error == QUIVERDB_OK);
+        size_t loaded_size = 0;
+        error = quiverdb_vector_store_size(loaded, &loaded_size);
+        assert(error == QUIVERDB_OK);
+        assert(loaded_size == num_vectors);
+        QuiverDBSearchResult loaded_results[k];
+        error = quiverdb_vector_store_search(loaded, query, k, loaded_results, k);
+        assert(error == QUIVERDB_OK);
+        for (size_t i = 0; i < k; ++i) {
+            assert(loaded_results[i].id == results[i].id);
+        }
+        error = quiverdb_vector_store_search_binary(loaded, query, k, num_vectors, loaded_results, k);
+        assert(error == QUIVERDB_OK);
+        quiverdb_vector_store_destroy(loaded);
+    }
+    QuiverDBVectorStore missing = nullptr;
+    error = quiverdb_vector_store_load("/tmp/quiverdb_missing_vector_store.bin", 0, &missing);
+    assert(error == QUIVERDB_ERROR);
+    std::remove(store_file);
+    std::cout << "✓ VectorStore save and load test passed" << std::endl;
+    
     // Test remove
     int removed = 0;
     error = quiverdb_vector_store_remove(store, ids[0], &removed);
@@ -229,6 +302,20 @@ void test_hnsw_index() {
     }
     std::cout << "✓ HNSWIndex search test passed" << std::endl;
     
+    // Test per-search ef: same results as with ef_search set to it, and ef_search is left alone
+    QuiverDBSearchResult ef_results[k];
+    error = quiverdb_hnsw_index_search_with_ef(index, query, k, 100, ef_results, k);
+    assert(error == QUIVERDB_OK);
+    for (size_t i = 0; i < k; ++i) {
+        assert(ef_results[i].id == results[i].id);
+    }
+    error = quiverdb_hnsw_index_search_with_ef(index, query, k, 0, ef_results, k);
+    assert(error == QUIVERDB_INVALID_ARGUMENT);
+    error = quiverdb_hnsw_index_get_ef_search(index, &ef_search);
+    assert(error == QUIVERDB_OK);
+    assert(ef_search == 100);
+    std::cout << "✓ HNSWIndex per-search ef test passed" << std::endl;
+    
     // Test save and load (temporary file)
     const char* temp_file = "/tmp/quiverdb_test_index.bin";
     
@@ -326,6 +413,10 @@ void test_version() {
     std::cout << "✓ Version: " << version << std::endl;
     std::cout << "✓ Version components: " << major << "." << minor << "." << patch << std::endl;
     
+    const char* kernel = quiverdb_active_kernel();
+    assert(kernel != nullptr && kernel[0] != '\0');
+    std::cout << "✓ Active kernel: " << kernel << std::endl;
+    
     std::cout << "=== All Version tests passed! ===" << std::endl;
     std::cout << "" << std::endl;
 }
@@ -694,6 +785,36 @@ void test_hnsw_index_comprehensive() {
     }
     
     std::cout << "✓ HNSWIndex comprehensive parameter tests passed" << std::endl;
+
+    // Merge two shards built independently
+    QuiverDBHNSWIndex shards[2];
+    for (size_t s = 0; s < 2; ++s) {
+        QuiverDBError error = quiverdb_hnsw_index_create(dimension, QUIVERDB_DISTANCE_L2, num_vectors, &shards[s]);
+        assert(error == QUIVERDB_OK);
+        std::vector<float> vec(dimension);
+        for (size_t i = 0; i < num_vectors; ++i) {
+            create_random_vector(vec.data(), dimension);
+            error = quiverdb_hnsw_index_add(shards[s], s * num_vectors + i + 1, vec.data());
+            assert(error == QUIVERDB_OK);
+        }
+    }
+    QuiverDBHNSWIndex merged;
+    QuiverDBError error = quiverdb_hnsw_index_merge(shards, 2, &merged);
+    assert(error == QUIVERDB_OK);
+    size_t merged_size = 0;
+    error = quiverdb_hnsw_index_size(merged, &merged_size);
+    assert(error == QUIVERDB_OK);
+    assert(merged_size == num_vectors * 2);
+    int contains = 0;
+    error = quiverdb_hnsw_index_contains(merged, num_vectors * 2, &contains);
+    assert(error == QUIVERDB_OK);
+    assert(contains == 1);
+    error = quiverdb_hnsw_index_merge(shards, 0, &merged);
+    assert(error == QUIVERDB_INVALID_ARGUMENT);
+    quiverdb_hnsw_index_destroy(merged);
+    quiverdb_hnsw_index_destroy(shards[0]);
+    quiverdb_hnsw_index_destroy(shards[1]);
+    std::cout << "✓ HNSWIndex merge test passed" << std::endl;
     std::cout << "=== All HNSWIndex comprehensive tests passed! ===" << std::endl;
     std::cout << "" << std::endl;
 }
@@ -746,7 +867,9 @@ void test_mmap_vector_store() {
     assert(error == QUIVERDB_OK);
     std::cout << "✓ MMapVectorStoreBuilder reserve test passed" << std::endl;
     
-    // Save to file
+    // Save to file, with sign codes for binary search
+    error = quiverdb_mmap_vector_store_builder_set_binary_index(builder, 1);
+    assert(error == QUIVERDB_OK);
     error = quiverdb_mmap_vector_store_builder_save(builder, temp_file);
     assert(error == QUIVERDB_OK);
     std::cout << "✓ MMapVectorStoreBuilder save test passed" << std::endl;
@@ -822,6 +945,106 @@ void test_mmap_vector_store() {
     }
     std::cout << "✓ MMapVectorStore search test passed" << std::endl;
     
+    // Test multi-threaded search gives the same results
+    error = quiverdb_mmap_vector_store_set_search_threads(store, 2);
+    assert(error == QUIVERDB_OK);
+    QuiverDBSearchResult threaded_results[k];
+    error = quiverdb_mmap_vector_store_search(store, query, k, threaded_results, k);
+    assert(error == QUIVERDB_OK);
+    for (size_t i = 0; i < k; ++i) {
+        assert(threaded_results[i].id == results[i].id);
+    }
+    std::cout << "✓ MMapVectorStore search threads test passed" << std::endl;
+
+    // Test warmup and access advice: hints only, results are unchanged
+    error = quiverdb_mmap_vector_store_warmup(store, 1.0);
+    assert(error == QUIVERDB_OK);
+    error = quiverdb_mmap_vector_store_warmup(store, 2.0);
+    assert(error == QUIVERDB_INVALID_ARGUMENT);
+    error = quiverdb_mmap_vector_store_advise_random(store);
+    assert(error == QUIVERDB_OK);
+    error = quiverdb_mmap_vector_store_advise_sequential(store);
+    assert(error == QUIVERDB_OK);
+    error = quiverdb_mmap_vector_store_search(store, query, k, threaded_results, k);
+    assert(error == QUIVERDB_OK);
+    assert(threaded_results[0].id == results[0].id);
+    std::cout << "✓ MMapVectorStore warmup test passed" << std::endl;
+    
+    // Test batch search: the query searched above comes back first, unchanged
+    float batch_queries[2 * dimension];
+    std::copy(query, query + dimension, batch_queries);
+    create_random_vector(batch_queries + dimension, dimension);
+    QuiverDBSearchResult batch_results[2 * k];
+    size_t batch_counts[2] = {0, 0};
+    error = quiverdb_mmap_vector_store_search_batch(store, batch_queries, 2, k, batch_results, batch_counts);
+    assert(error == QUIVERDB_OK);
+    assert(batch_counts[0] == k && batch_counts[1] == k);
+    for (size_t i = 0; i < k; ++i) {
+        assert(batch_results[i].id == results[i].id);
+    }
+    error = quiverdb_mmap_vector_store_search_batch(store, batch_queries, 2, 0, batch_results, batch_counts);
+    assert(error == QUIVERDB_INVALID_ARGUMENT);
+    std::cout << "✓ MMapVectorStore batch search test passed" << std::endl;
+    
+    // Test binary search over the file's sign codes
+    QuiverDBSearchResult binary_results[k];
+    error = quiverdb_mmap_vector_store_search_binary(store, query, k, num_vectors, binary_results, k);
+    assert(error == QUIVERDB_OK);
+    for (size_t i = 0; i < k; ++i) {
+        assert(binary_results[i].id == results[i].id);
+    }
+    std::cout << "✓ MMapVectorStore binary search test passed" << std::endl;
+    
+    // Build an HNSW index over the mapped vectors without copying them
+    QuiverDBHNSWIndex built;
+    error = quiverdb_hnsw_index_build_from_mmap(store, 16, 100, 2, 1, &built);
+    assert(error == QUIVERDB_OK);
+    size_t built_size = 0;
+    error = quiverdb_hnsw_index_size(built, &built_size);
+    assert(error == QUIVERDB_OK);
+    assert(built_size == num_vectors);
+    QuiverDBSearchResult built_results[1];
+    error = quiverdb_hnsw_index_search(built, &vectors[0], 1, built_results, 1);
+    assert(error == QUIVERDB_OK);
+    assert(built_results[0].id == ids[0]);
+    quiverdb_hnsw_index_destroy(built);
+    std::cout << "✓ HNSWIndex build from MMapVectorStore test passed" << std::endl;
+    
+    // Stream the same vectors through a writer: the file searches like the builder's
+    const char* streamed_file = "/tmp/quiverdb_test_mmap_streamed.bin";
+    QuiverDBMMapVectorStoreWriter writer;
+    error = quiverdb_mmap_vector_store_writer_create(streamed_file, dimension, QUIVERDB_DISTANCE_L2, QUIVERDB_ELEMENT_F32, &writer);
+    assert(error == QUIVERDB_OK);
+    error = quiverdb_mmap_vector_store_writer_add_batch(writer, ids.data(), vectors.data(), num_vectors - 1);
+    assert(error == QUIVERDB_OK);
+    error = quiverdb_mmap_vector_store_writer_add(writer, ids[num_vectors - 1], &vectors[(num_vectors - 1) * dimension]);
+    assert(error == QUIVERDB_OK);
+    error = quiverdb_mmap_vector_store_writer_add(writer, ids[0], &vectors[0]);
+    assert(error == QUIVERDB_DUPLICATE_ID);
+    size_t written = 0;
+    error = quiverdb_mmap_vector_store_writer_size(writer, &written);
+    assert(error == QUIVERDB_OK);
+    assert(written == num_vectors);
+    error = quiverdb_mmap_vector_store_writer_finish(writer);
+    assert(error == QUIVERDB_OK);
+    error = quiverdb_mmap_vector_store_writer_finish(writer);
+    assert(error == QUIVERDB_ERROR);
+    quiverdb_mmap_vector_store_writer_destroy(writer);
+    QuiverDBMMapVectorStore streamed;
+    error = quiverdb_mmap_vector_store_open(streamed_file, &streamed);
+    assert(error == QUIVERDB_OK);
+    QuiverDBSearchResult expected_results[5], streamed_results[5];
+    error = quiverdb_mmap_vector_store_search(store, &vectors[dimension], 5, expected_results, 5);
+    assert(error == QUIVERDB_OK);
+    error = quiverdb_mmap_vector_store_search(streamed, &vectors[dimension], 5, streamed_results, 5);
+    assert(error == QUIVERDB_OK);
+    for (size_t i = 0; i < 5; ++i) {
+        assert(streamed_results[i].id == expected_results[i].id);
+    }
+    quiverdb_mmap_vector_store_close(streamed);
+    std::remove(streamed_file);
+    std::cout << "✓ MMapVectorStoreWriter streaming test passed" << std::endl;
+    
     // Close store
     quiverdb_mmap_vector_store_close(store);
     
@@ -832,6 +1055,160 @@ void test_mmap_vector_store() {
     std::cout << "" << std::endl;
 }
 
+// Test the appendable segmented store
+void test_segmented_vector_store() {
+    std::cout << "=== Testing SegmentedVectorStore ===" << std::endl;
+    
+    const char* directory = "/tmp/quiverdb_test_segmented";
+    const size_t dimension = 16;
+    const size_t num_vectors = 120;
+    const size_t k = 5;
+    std::filesystem::remove_all(directory);
+    
+    std::vector<float> vectors(num_vectors * dimension);
+    create_random_vector(vectors.data(), vectors.size());
+    
+    QuiverDBSegmentedVectorStore store = nullptr;
+    QuiverDBError error = quiverdb_segmented_vector_store_open(directory, dimension, QUIVERDB_DISTANCE_L2, QUIVERDB_ELEMENT_F32, 50, 0, &store);
+    assert(error == QUIVERDB_OK);
+    for (size_t i = 0; i < num_vectors; ++i) {
+        error = quiverdb_segmented_vector_store_add(store, i, &vectors[i * dimension]);
+        assert(error == QUIVERDB_OK);
+    }
+    error = quiverdb_segmented_vector_store_add(store, 0, &vectors[0]);
+    assert(error == QUIVERDB_DUPLICATE_ID);
+    size_t segments = 0;
+    error = quiverdb_segmented_vector_store_segment_count(store, &segments);
+    assert(error == QUIVERDB_OK);
+    assert(segments == 2);
+    std::cout << "✓ SegmentedVectorStore add and seal test passed" << std::endl;
+    
+    QuiverDBSearchResult results[k];
+    error = quiverdb_segmented_vector_store_search(store, &vectors[7 * dimension], k, results, k);
+    assert(error == QUIVERDB_OK);
+    assert(results[0].id == 7);
+    error = quiverdb_segmented_vector_store_search(store, &vectors[0], k, results, k - 1);
+    assert(error == QUIVERDB_INVALID_ARGUMENT);
+    std::cout << "✓ SegmentedVectorStore search test passed" << std::endl;
+    
+    int removed = 0;
+    error = quiverdb_segmented_vector_store_remove(store, 7, &removed);
+    assert(error == QUIVERDB_OK && removed == 1);
+    int contains = 1;
+    error = quiverdb_segmented_vector_store_contains(store, 7, &contains);
+    assert(error == QUIVERDB_OK && contains == 0);
+    error = quiverdb_segmented_vector_store_update(store, 7, &vectors[0]);
+    assert(error == QUIVERDB_ID_NOT_FOUND);
+    error = quiverdb_segmented_vector_store_update(store, 8, &vectors[0]);
+    assert(error == QUIVERDB_OK);
+    std::vector<float> copy(dimension);
+    error = quiverdb_segmented_vector_store_get(store, 8, copy.data(), dimension);
+    assert(error == QUIVERDB_OK);
+    assert(copy[0] == vectors[0]);
+    std::cout << "✓ SegmentedVectorStore remove and update test passed" << std::endl;
+    
+    int compacted = 0;
+    error = quiverdb_segmented_vector_store_seal(store);
+    assert(error == QUIVERDB_OK);
+    error = quiverdb_segmented_vector_store_compact(store, &compacted);
+    assert(error == QUIVERDB_OK && compacted == 1);
+    error = quiverdb_segmented_vector_store_sync(store);
+    assert(error == QUIVERDB_OK);
+    quiverdb_segmented_vector_store_close(store);
+    
+    // Reopen: everything was sealed and compacted into one segment
+    error = quiverdb_segmented_vector_store_open(directory, dimension + 1, QUIVERDB_DISTANCE_L2, QUIVERDB_ELEMENT_F32, 0, 0, &store);
+    assert(error == QUIVERDB_INVALID_ARGUMENT);
+    error = quiverdb_segmented_vector_store_open(directory, dimension, QUIVERDB_DISTANCE_L2, QUIVERDB_ELEMENT_F32, 0, 1, &store);
+    assert(error == QUIVERDB_OK);
+    size_t size = 0;
+    error = quiverdb_segmented_vector_store_size(store, &size);
+    assert(error == QUIVERDB_OK);
+    assert(size == num_vectors - 1);
+    error = quiverdb_segmented_vector_store_segment_count(store, &segments);
+    assert(error == QUIVERDB_OK);
+    assert(segments == 1);
+    quiverdb_segmented_vector_store_close(store);
+    std::filesystem::remove_all(directory);
+    std::cout << "✓ SegmentedVectorStore reopen test passed" << std::endl;
+    
+    std::cout << "=== All SegmentedVectorStore tests passed! ===" << std::endl;
+    std::cout << "" << std::endl;
+}
+
+// Test half-precision storage and input
+void test_half_precision() {
+    std::cout << "=== Testing Half Precision ===" << std::endl;
+    
+    const size_t dimension = 4;
+    // FP16 bit patterns: 1.0 = 0x3C00, 0.5 = 0x3800; BF16: 1.0 = 0x3F80
+    const uint16_t unit_x_f16[dimension] = {0x3C00, 0, 0, 0};
+    const uint16_t half_y_f16[dimension] = {0, 0x3800, 0, 0};
+    const uint16_t unit_y_bf16[dimension] = {0, 0x3F80, 0, 0};
+    const float unit_z[dimension] = {0.0f, 0.0f, 1.0f, 0.0f};
+    QuiverDBSearchResult results[2];
+    QuiverDBElementType type;
+    
+    QuiverDBVectorStore store;
+    QuiverDBError error = quiverdb_vector_store_create_typed(dimension, QUIVERDB_DISTANCE_L2, QUIVERDB_ELEMENT_F16, &store);
+    assert(error == QUIVERDB_OK);
+    error = quiverdb_vector_store_element_type(store, &type);
+    assert(error == QUIVERDB_OK && type == QUIVERDB_ELEMENT_F16);
+    assert(quiverdb_vector_store_add_half(store, 1, unit_x_f16, QUIVERDB_ELEMENT_F16) == QUIVERDB_OK);
+    assert(quiverdb_vector_store_add_half(store, 2, half_y_f16, QUIVERDB_ELEMENT_F16) == QUIVERDB_OK);
+    assert(quiverdb_vector_store_add(store, 3, unit_z) == QUIVERDB_OK);
+    assert(quiverdb_vector_store_add_half(store, 4, unit_x_f16, QUIVERDB_ELEMENT_F32) == QUIVERDB_INVALID_ARGUMENT);
+    float vec[dimension];
+    assert(quiverdb_vector_store_get(store, 2, vec, dimension) == QUIVERDB_OK);
+    assert(vec[1] == 0.5f);
+    error = quiverdb_vector_store_search_half(store, unit_y_bf16, QUIVERDB_ELEMENT_BF16, 2, results, 2);
+    assert(error == QUIVERDB_OK);
+    assert(results[0].id == 2 && results[0].distance == 0.25f);
+    quiverdb_vector_store_destroy(store);
+    std::cout << "✓ VectorStore half precision test passed" << std::endl;
+    
+    QuiverDBHNSWIndex index;
+    error = quiverdb_hnsw_index_create_typed(dimension, QUIVERDB_DISTANCE_L2, 10, 16, 100, 42, QUIVERDB_ELEMENT_BF16, &index);
+    assert(error == QUIVERDB_OK);
+    error = quiverdb_hnsw_index_element_type(index, &type);
+    assert(error == QUIVERDB_OK && type == QUIVERDB_ELEMENT_BF16);
+    assert(quiverdb_hnsw_index_add_half(index, 1, unit_x_f16, QUIVERDB_ELEMENT_F16) == QUIVERDB_OK);
+    assert(quiverdb_hnsw_index_add_half(index, 2, unit_y_bf16, QUIVERDB_ELEMENT_BF16) == QUIVERDB_OK);
+    assert(quiverdb_hnsw_index_add_half(index, 2, unit_y_bf16, QUIVERDB_ELEMENT_BF16) != QUIVERDB_OK);
+    error = quiverdb_hnsw_index_search_half(index, unit_x_f16, QUIVERDB_ELEMENT_F16, 1, results, 1);
+    assert(error == QUIVERDB_OK && results[0].id == 1);
+    error = quiverdb_hnsw_index_search_half_with_ef(index, unit_y_bf16, QUIVERDB_ELEMENT_BF16, 1, 10, results, 1);
+    assert(error == QUIVERDB_OK && results[0].id == 2);
+    quiverdb_hnsw_index_destroy(index);
+    std::cout << "✓ HNSWIndex half precision test passed" << std::endl;
+    
+    const char* temp_file = "test_half_mmap.qvec";
+    QuiverDBMMapVectorStoreBuilder builder;
+    error = quiverdb_mmap_vector_store_builder_create_typed(dimension, QUIVERDB_DISTANCE_COSINE, QUIVERDB_ELEMENT_F16, &builder);
+    assert(error == QUIVERDB_OK);
+    assert(quiverdb_mmap_vector_store_builder_add_half(builder, 1, unit_x_f16, QUIVERDB_ELEMENT_F16) == QUIVERDB_OK);
+    assert(quiverdb_mmap_vector_store_builder_add_half(builder, 2, half_y_f16, QUIVERDB_ELEMENT_F16) == QUIVERDB_OK);
+    assert(quiverdb_mmap_vector_store_builder_add_half(builder, 2, half_y_f16, QUIVERDB_ELEMENT_F16) == QUIVERDB_DUPLICATE_ID);
+    assert(quiverdb_mmap_vector_store_builder_save(builder, temp_file) == QUIVERDB_OK);
+    quiverdb_mmap_vector_store_builder_destroy(builder);
+    
+    QuiverDBMMapVectorStore mmap_store;
+    assert(quiverdb_mmap_vector_store_open(temp_file, &mmap_store) == QUIVERDB_OK);
+    error = quiverdb_mmap_vector_store_element_type(mmap_store, &type);
+    assert(error == QUIVERDB_OK && type == QUIVERDB_ELEMENT_F16);
+    assert(quiverdb_mmap_vector_store_get(mmap_store, 2, vec, dimension) == QUIVERDB_OK);
+    assert(vec[1] == 0.5f);
+    const float query[dimension] = {0.0f, 3.0f, 0.0f, 0.0f};
+    error = quiverdb_mmap_vector_store_search(mmap_store, query, 1, results, 1);
+    assert(error == QUIVERDB_OK && results[0].id == 2);
+    quiverdb_mmap_vector_store_close(mmap_store);
+    std::remove(temp_file);
+    std::cout << "✓ MMapVectorStore half precision test passed" << std::endl;
+    
+    std::cout << "=== All Half Precision tests passed! ===" << std::endl;
+    std::cout << "" << std::endl;
+}
+
 int main() {
     std::cout << "Running QuiverDB Wrapper API Tests..." << std::endl;
     std::cout << "" << std::endl;
@@ -845,6 +1222,8 @@ int main() {
     test_hnsw_index();
     test_hnsw_index_comprehensive();
     test_mmap_vector_store();
+    test_segmented_vector_store();
+    test_half_precision();
     test_distance_metrics();
     test_error_handling();
     test_edge_cases();
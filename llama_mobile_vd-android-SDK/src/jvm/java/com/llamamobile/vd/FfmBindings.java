@@ -0,0 +1,328 @@
+package com.llamamobile.vd;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemoryLayout;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.SymbolLookup;
+import java.lang.invoke.MethodHandle;
+
+import static java.lang.foreign.ValueLayout.ADDRESS;
+import static java.lang.foreign.ValueLayout.JAVA_FLOAT;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+import static java.lang.foreign.ValueLayout.JAVA_LONG;
+
+/**
+ * Downcalls into the C API of quiverdb_wrapper.h through java.lang.foreign, picked up by
+ * ForeignBindings on JVMs
+ *
+ * Android has no java.lang.foreign, so this file lives outside src/main: JVM builds add
+ * src/jvm/java to their sources and run on JDK 22 or later, ideally with
+ * --enable-native-access=ALL-UNNAMED to silence the restricted-method warning. The symbols are
+ * looked up in the llamamobilevd library NativeLibrary loaded, whose handles the JNI methods
+ * hand out. Each thread copies its queries into and its results out of its own off-heap
+ * buffers, grown on demand and reused across calls, so no Java array is pinned while native
+ * code runs and a search costs one downcall however many results it returns.
+ */
+final class FfmBindings extends ForeignBindings {
+    private static final int OK = 0;
+    // QuiverDBSearchResult: uint64_t id, float distance, 4 bytes of tail padding
+    private static final long RESULT_SIZE = 16;
+    private static final long DISTANCE_OFFSET = 8;
+
+    private static final Linker LINKER = linker();
+    private static final SymbolLookup LOOKUP = SymbolLookup.loaderLookup();
+
+    private static final MethodHandle VECTOR_STORE_ADD = bind("quiverdb_vector_store_add", ADDRESS, JAVA_LONG, ADDRESS);
+    private static final MethodHandle VECTOR_STORE_UPDATE = bind("quiverdb_vector_store_update", ADDRESS, JAVA_LONG, ADDRESS);
+    private static final MethodHandle VECTOR_STORE_GET = bind("quiverdb_vector_store_get", ADDRESS, JAVA_LONG, ADDRESS, JAVA_LONG);
+    private static final MethodHandle VECTOR_STORE_SEARCH =
+            bind("quiverdb_vector_store_search", ADDRESS, ADDRESS, JAVA_LONG, ADDRESS, JAVA_LONG);
+    private static final MethodHandle VECTOR_STORE_SEARCH_BINARY =
+            bind("quiverdb_vector_store_search_binary", ADDRESS, ADDRESS, JAVA_LONG, JAVA_LONG, ADDRESS, JAVA_LONG);
+    private static final MethodHandle VECTOR_STORE_SEARCH_BATCH =
+            bind("quiverdb_vector_store_search_batch", ADDRESS, ADDRESS, JAVA_LONG, JAVA_LONG, ADDRESS, ADDRESS);
+    private static final MethodHandle VECTOR_STORE_DIMENSION = bind("quiverdb_vector_store_dimension", ADDRESS, ADDRESS);
+
+    private static final MethodHandle HNSW_INDEX_ADD = bind("quiverdb_hnsw_index_add", ADDRESS, JAVA_LONG, ADDRESS);
+    private static final MethodHandle HNSW_INDEX_GET = bind("quiverdb_hnsw_index_get_vector", ADDRESS, JAVA_LONG, ADDRESS, JAVA_LONG);
+    private static final MethodHandle HNSW_INDEX_SEARCH_WITH_EF =
+            bind("quiverdb_hnsw_index_search_with_ef", ADDRESS, ADDRESS, JAVA_LONG, JAVA_LONG, ADDRESS, JAVA_LONG);
+    private static final MethodHandle HNSW_INDEX_DIMENSION = bind("quiverdb_hnsw_index_dimension", ADDRESS, ADDRESS);
+
+    private static final MethodHandle MMAP_VECTOR_STORE_GET = bind("quiverdb_mmap_vector_store_get", ADDRESS, JAVA_LONG, ADDRESS, JAVA_LONG);
+    private static final MethodHandle MMAP_VECTOR_STORE_SEARCH =
+            bind("quiverdb_mmap_vector_store_search", ADDRESS, ADDRESS, JAVA_LONG, ADDRESS, JAVA_LONG);
+    private static final MethodHandle MMAP_VECTOR_STORE_SEARCH_BINARY =
+            bind("quiverdb_mmap_vector_store_search_binary", ADDRESS, ADDRESS, JAVA_LONG, JAVA_LONG, ADDRESS, JAVA_LONG);
+    private static final MethodHandle MMAP_VECTOR_STORE_SEARCH_BATCH =
+            bind("quiverdb_mmap_vector_store_search_batch", ADDRESS, ADDRESS, JAVA_LONG, JAVA_LONG, ADDRESS, ADDRESS);
+    private static final MethodHandle MMAP_VECTOR_STORE_DIMENSION = bind("quiverdb_mmap_vector_store_dimension", ADDRESS, ADDRESS);
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    @Override
+    boolean vectorStoreAdd(long store, int id, float[] vector) {
+        return write(VECTOR_STORE_ADD, VECTOR_STORE_DIMENSION, store, id, vector);
+    }
+
+    @Override
+    boolean vectorStoreUpdate(long store, int id, float[] vector) {
+        return write(VECTOR_STORE_UPDATE, VECTOR_STORE_DIMENSION, store, id, vector);
+    }
+
+    @Override
+    boolean vectorStoreGet(long store, int id, float[] vector) {
+        return read(VECTOR_STORE_GET, store, id, vector);
+    }
+
+    @Override
+    int vectorStoreSearch(long store, float[] query, int k, int[] ids, float[] distances) {
+        return search(VECTOR_STORE_SEARCH, VECTOR_STORE_DIMENSION, store, query, k, ids, distances);
+    }
+
+    @Override
+    int vectorStoreSearchBinary(long store, float[] query, int k, int rerankFactor, int[] ids, float[] distances) {
+        return searchWithOption(VECTOR_STORE_SEARCH_BINARY, VECTOR_STORE_DIMENSION, store, query, k, rerankFactor, ids, distances);
+    }
+
+    @Override
+    boolean vectorStoreSearchBatch(long store, float[] queries, int numQueries, int k,
+                                   int[] ids, float[] distances, int[] counts) {
+        return searchBatch(VECTOR_STORE_SEARCH_BATCH, VECTOR_STORE_DIMENSION, store, queries, numQueries, k, ids, distances, counts);
+    }
+
+    @Override
+    boolean hnswIndexAdd(long index, int id, float[] vector) {
+        return write(HNSW_INDEX_ADD, HNSW_INDEX_DIMENSION, index, id, vector);
+    }
+
+    @Override
+    boolean hnswIndexGet(long index, int id, float[] vector) {
+        return read(HNSW_INDEX_GET, index, id, vector);
+    }
+
+    @Override
+    int hnswIndexSearch(long index, float[] query, int k, int efSearch, int[] ids, float[] distances) {
+        return searchWithOption(HNSW_INDEX_SEARCH_WITH_EF, HNSW_INDEX_DIMENSION, index, query, k, efSearch, ids, distances);
+    }
+
+    @Override
+    boolean mmapVectorStoreGet(long store, int id, float[] vector) {
+        return read(MMAP_VECTOR_STORE_GET, store, id, vector);
+    }
+
+    @Override
+    int mmapVectorStoreSearch(long store, float[] query, int k, int[] ids, float[] distances) {
+        return search(MMAP_VECTOR_STORE_SEARCH, MMAP_VECTOR_STORE_DIMENSION, store, query, k, ids, distances);
+    }
+
+    @Override
+    int mmapVectorStoreSearchBinary(long store, float[] query, int k, int rerankFactor, int[] ids, float[] distances) {
+        return searchWithOption(MMAP_VECTOR_STORE_SEARCH_BINARY, MMAP_VECTOR_STORE_DIMENSION, store, query, k, rerankFactor, ids, distances);
+    }
+
+    @Override
+    boolean mmapVectorStoreSearchBatch(long store, float[] queries, int numQueries, int k,
+                                       int[] ids, float[] distances, int[] counts) {
+        return searchBatch(MMAP_VECTOR_STORE_SEARCH_BATCH, MMAP_VECTOR_STORE_DIMENSION, store, queries, numQueries, k, ids, distances, counts);
+    }
+
+    @Override
+    String name() {
+        return "ffm";
+    }
+
+    // add / update: (handle, uint64_t id, const float* vector)
+    private static boolean write(MethodHandle call, MethodHandle dimensionOf, long handle, int id, float[] vector) {
+        Scratch scratch = SCRATCH.get();
+        try {
+            if (vector.length != dimension(dimensionOf, handle, scratch)) {
+                return false;
+            }
+            return (int) call.invokeExact(MemorySegment.ofAddress(handle), (long) id, scratch.floats(vector)) == OK;
+        } catch (Throwable t) {
+            throw failure(t);
+        }
+    }
+
+    // get: (handle, uint64_t id, float* vector, size_t vector_size); the native side checks the size
+    private static boolean read(MethodHandle call, long handle, int id, float[] vector) {
+        Scratch scratch = SCRATCH.get();
+        try {
+            MemorySegment out = scratch.floats(vector.length);
+            if ((int) call.invokeExact(MemorySegment.ofAddress(handle), (long) id, out, (long) vector.length) != OK) {
+                return false;
+            }
+            MemorySegment.copy(out, JAVA_FLOAT, 0, vector, 0, vector.length);
+            return true;
+        } catch (Throwable t) {
+            throw failure(t);
+        }
+    }
+
+    // search: (handle, const float* query, size_t k, QuiverDBSearchResult* results, size_t results_size)
+    private static int search(MethodHandle call, MethodHandle dimensionOf, long handle, float[] query, int k,
+                              int[] ids, float[] distances) {
+        Scratch scratch = SCRATCH.get();
+        try {
+            if (!validSearch(dimensionOf, handle, query, k, ids, distances, scratch)) {
+                return -1;
+            }
+            MemorySegment results = scratch.results(k);
+            if ((int) call.invokeExact(MemorySegment.ofAddress(handle), scratch.floats(query), (long) k, results, (long) k) != OK) {
+                return -1;
+            }
+            return copyResults(results, k, ids, distances);
+        } catch (Throwable t) {
+            throw failure(t);
+        }
+    }
+
+    // search_binary and hnsw search_with_ef: (handle, const float* query, size_t k, size_t option,
+    // QuiverDBSearchResult* results, size_t results_size), where option is the rerank factor or ef_search
+    private static int searchWithOption(MethodHandle call, MethodHandle dimensionOf, long handle, float[] query, int k,
+                                        int option, int[] ids, float[] distances) {
+        Scratch scratch = SCRATCH.get();
+        try {
+            if (option < 1 || !validSearch(dimensionOf, handle, query, k, ids, distances, scratch)) {
+                return -1;
+            }
+            MemorySegment results = scratch.results(k);
+            if ((int) call.invokeExact(MemorySegment.ofAddress(handle), scratch.floats(query), (long) k, (long) option,
+                    results, (long) k) != OK) {
+                return -1;
+            }
+            return copyResults(results, k, ids, distances);
+        } catch (Throwable t) {
+            throw failure(t);
+        }
+    }
+
+    // search_batch: (handle, const float* queries, size_t num_queries, size_t k, QuiverDBSearchResult* results, size_t* result_counts);
+    // query q's results start at q * k and result_counts[q] of them are valid
+    private static boolean searchBatch(MethodHandle call, MethodHandle dimensionOf, long handle, float[] queries, int numQueries,
+                                       int k, int[] ids, float[] distances, int[] counts) {
+        Scratch scratch = SCRATCH.get();
+        try {
+            long total = (long) numQueries * k;
+            if (numQueries < 0 || k <= 0 || queries.length != (long) numQueries * dimension(dimensionOf, handle, scratch) ||
+                    ids.length < total || distances.length < total || counts.length < numQueries) {
+                return false;
+            }
+            MemorySegment results = scratch.results((int) total);
+            MemorySegment resultCounts = scratch.sizes(numQueries);
+            if ((int) call.invokeExact(MemorySegment.ofAddress(handle), scratch.floats(queries), (long) numQueries, (long) k,
+                    results, resultCounts) != OK) {
+                return false;
+            }
+            for (int q = 0; q < numQueries; q++) {
+                int count = (int) resultCounts.getAtIndex(JAVA_LONG, q);
+                counts[q] = count;
+                for (int i = 0; i < count; i++) {
+                    long offset = ((long) q * k + i) * RESULT_SIZE;
+                    ids[q * k + i] = (int) results.get(JAVA_LONG, offset);
+                    distances[q * k + i] = results.get(JAVA_FLOAT, offset + DISTANCE_OFFSET);
+                }
+            }
+            return true;
+        } catch (Throwable t) {
+            throw failure(t);
+        }
+    }
+
+    private static boolean validSearch(MethodHandle dimensionOf, long handle, float[] query, int k,
+                                       int[] ids, float[] distances, Scratch scratch) throws Throwable {
+        return k > 0 && ids.length >= k && distances.length >= k && query.length == dimension(dimensionOf, handle, scratch);
+    }
+
+    // dimension: (handle, size_t* dimension)
+    private static long dimension(MethodHandle dimensionOf, long handle, Scratch scratch) throws Throwable {
+        if ((int) dimensionOf.invokeExact(MemorySegment.ofAddress(handle), scratch.word) != OK) {
+            return -1;
+        }
+        return scratch.word.get(JAVA_LONG, 0);
+    }
+
+    // Copy results up to the first unused slot; unused slots keep the NaN distance results() wrote
+    private static int copyResults(MemorySegment results, int k, int[] ids, float[] distances) {
+        int count = 0;
+        for (; count < k; count++) {
+            float distance = results.get(JAVA_FLOAT, count * RESULT_SIZE + DISTANCE_OFFSET);
+            if (distance != distance) {
+                break;
+            }
+            ids[count] = (int) results.get(JAVA_LONG, count * RESULT_SIZE);
+            distances[count] = distance;
+        }
+        return count;
+    }
+
+    private static RuntimeException failure(Throwable t) {
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        if (t instanceof RuntimeException) {
+            return (RuntimeException) t;
+        }
+        return new IllegalStateException("Native call failed", t);
+    }
+
+    private static Linker linker() {
+        // size_t and pointers are bound as 64-bit values
+        if (ADDRESS.byteSize() != Long.BYTES) {
+            throw new IllegalStateException("Foreign bindings need a 64-bit JVM");
+        }
+        return Linker.nativeLinker();
+    }
+
+    private static MethodHandle bind(String name, MemoryLayout... arguments) {
+        MemorySegment symbol = LOOKUP.find(name)
+                .orElseThrow(() -> new IllegalStateException("The native library does not export " + name));
+        return LINKER.downcallHandle(symbol, FunctionDescriptor.of(JAVA_INT, arguments));
+    }
+
+    /**
+     * One thread's native buffers; each grows to the largest call seen and is freed with the thread
+     */
+    private static final class Scratch {
+        final MemorySegment word = Arena.ofAuto().allocate(Long.BYTES, Long.BYTES);
+        private MemorySegment floats = MemorySegment.NULL;
+        private MemorySegment results = MemorySegment.NULL;
+        private MemorySegment sizes = MemorySegment.NULL;
+
+        MemorySegment floats(int count) {
+            floats = fit(floats, (long) count * Float.BYTES);
+            return floats;
+        }
+
+        MemorySegment floats(float[] values) {
+            MemorySegment segment = floats(values.length);
+            MemorySegment.copy(values, 0, segment, JAVA_FLOAT, 0, values.length);
+            return segment;
+        }
+
+        // count results with NaN distances, which the native side overwrites for each hit
+        MemorySegment results(int count) {
+            results = fit(results, count * RESULT_SIZE);
+            for (long i = 0; i < count; i++) {
+                results.set(JAVA_FLOAT, i * RESULT_SIZE + DISTANCE_OFFSET, Float.NaN);
+            }
+            return results;
+        }
+
+        MemorySegment sizes(int count) {
+            sizes = fit(sizes, (long) count * Long.BYTES);
+            return sizes;
+        }
+
+        private static MemorySegment fit(MemorySegment segment, long bytes) {
+            if (segment.byteSize() >= bytes) {
+                return segment;
+            }
+            // A fresh automatic arena per buffer, so outgrown buffers are freed once unreachable
+            return Arena.ofAuto().allocate(Math.max(bytes, segment.byteSize() * 2), 16);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.llamamobile.vd;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Distance kernels on the Java Vector API, picked up by DistanceKernels on JVMs
+ *
+ * Android has no jdk.incubator.vector, so this file lives outside src/main: JVM builds add
+ * src/jvm/java to their sources and compile and run with --add-modules jdk.incubator.vector
+ * (JDK 17 or later). Each kernel keeps two vector accumulators fed by fused multiply-adds at
+ * the platform's preferred width (8 lanes on AVX2, 16 on AVX-512).
+ */
+final class VectorApiKernels extends DistanceKernels {
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    @Override
+    float dot(float[] a, int aOffset, float[] b, int bOffset, int n) {
+        int lanes = SPECIES.length();
+        FloatVector s0 = FloatVector.zero(SPECIES);
+        FloatVector s1 = FloatVector.zero(SPECIES);
+        int i = 0;
+        for (; i + 2 * lanes <= n; i += 2 * lanes) {
+            s0 = FloatVector.fromArray(SPECIES, a, aOffset + i)
+                    .fma(FloatVector.fromArray(SPECIES, b, bOffset + i), s0);
+            s1 = FloatVector.fromArray(SPECIES, a, aOffset + i + lanes)
+                    .fma(FloatVector.fromArray(SPECIES, b, bOffset + i + lanes), s1);
+        }
+        for (; i + lanes <= n; i += lanes) {
+            s0 = FloatVector.fromArray(SPECIES, a, aOffset + i)
+                    .fma(FloatVector.fromArray(SPECIES, b, bOffset + i), s0);
+        }
+        float sum = s0.add(s1).reduceLanes(VectorOperators.ADD);
+        for (; i < n; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+    @Override
+    float l2Sq(float[] a, int aOffset, float[] b, int bOffset, int n) {
+        int lanes = SPECIES.length();
+        FloatVector s0 = FloatVector.zero(SPECIES);
+        FloatVector s1 = FloatVector.zero(SPECIES);
+        int i = 0;
+        for (; i + 2 * lanes <= n; i += 2 * lanes) {
+            FloatVector d0 = FloatVector.fromArray(SPECIES, a, aOffset + i)
+                    .sub(FloatVector.fromArray(SPECIES, b, bOffset + i));
+            FloatVector d1 = FloatVector.fromArray(SPECIES, a, aOffset + i + lanes)
+                    .sub(FloatVector.fromArray(SPECIES, b, bOffset + i + lanes));
+            s0 = d0.fma(d0, s0);
+            s1 = d1.fma(d1, s1);
+        }
+        for (; i + lanes <= n; i += lanes) {
+            FloatVector d = FloatVector.fromArray(SPECIES, a, aOffset + i)
+                    .sub(FloatVector.fromArray(SPECIES, b, bOffset + i));
+            s0 = d.fma(d, s0);
+        }
+        float sum = s0.add(s1).reduceLanes(VectorOperators.ADD);
+        for (; i < n; i++) {
+            float d = a[aOffset + i] - b[bOffset + i];
+            sum += d * d;
+        }
+        return sum;
+    }
+
+    @Override
+    String name() {
+        return "java-vector-" + SPECIES.length() * Float.SIZE;
+    }
+}
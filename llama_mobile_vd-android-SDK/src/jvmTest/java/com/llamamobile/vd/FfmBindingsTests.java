@@ -0,0 +1,229 @@
+package com.llamamobile.vd;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for the java.lang.foreign binding, run by the host-JVM build (jvm/build.gradle)
+ *
+ * The build's test task expects the "ffm" binding and its jniTest task, which sets
+ * llamamobilevd.binding to "jni", expects "jni". The comparisons fill each store through the
+ * public API, then read it back through FfmBindings and through the store's own JNI methods on
+ * the same handle.
+ */
+public class FfmBindingsTests {
+
+    private static final String EXPECTED_BINDING_PROPERTY = "llamamobilevd.expectedBinding";
+
+    private static final int DIMENSION = 48;
+    private static final int COUNT = 500;
+    private static final int K = 10;
+
+    private final List<AutoCloseable> resourcesToClose = new ArrayList<>();
+    private float[][] vectors;
+    private float[][] queries;
+
+    @Before
+    public void setUp() {
+        resourcesToClose.clear();
+        java.util.Random random = new java.util.Random(45);
+        vectors = new float[COUNT][DIMENSION];
+        for (float[] vector : vectors) {
+            for (int j = 0; j < DIMENSION; j++) {
+                vector[j] = random.nextFloat();
+            }
+        }
+        queries = new float[8][DIMENSION];
+        for (float[] query : queries) {
+            for (int j = 0; j < DIMENSION; j++) {
+                query[j] = random.nextFloat();
+            }
+        }
+    }
+
+    @After
+    public void tearDown() {
+        for (AutoCloseable resource : resourcesToClose) {
+            try {
+                resource.close();
+            } catch (Exception e) {
+                // Ignore exceptions during cleanup
+            }
+        }
+    }
+
+    private <T extends AutoCloseable> T track(T resource) {
+        resourcesToClose.add(resource);
+        return resource;
+    }
+
+    @Test
+    public void testExpectedBinding() {
+        String expected = System.getProperty(EXPECTED_BINDING_PROPERTY);
+        Assume.assumeNotNull(expected);
+        Assert.assertEquals(expected, LlamaMobileVD.getNativeBinding());
+    }
+
+    @Test
+    public void testVectorStoreMatchesJni() throws Exception {
+        Assume.assumeTrue(ForeignBindings.ACTIVE != null);
+        VectorStore store = track(new VectorStore(DIMENSION, DistanceMetric.L2, ElementType.FLOAT32));
+        for (int i = 0; i < COUNT; i++) {
+            store.addVector(vectors[i], i);
+        }
+        long pointer = pointerOf(store);
+
+        for (float[] query : queries) {
+            assertSameResults(jniSearch(store, "search", "getResultId", "getResultDistance", "freeSearchResults",
+                    new Class<?>[]{long.class, float[].class, int.class, int.class, int[].class},
+                    pointer, query, DIMENSION, K), store.search(query, K));
+        }
+        SearchResult[][] jniBatch = jniSearchBatch(store, "searchBatch", pointer);
+        SearchResult[][] ffmBatch = store.searchBatch(queries, K);
+        for (int q = 0; q < queries.length; q++) {
+            assertSameResults(jniBatch[q], ffmBatch[q]);
+        }
+        for (int id = 0; id < COUNT; id += 50) {
+            Assert.assertArrayEquals(jniGet(store, "get", pointer, id), store.get(id), 0.0f);
+        }
+    }
+
+    @Test
+    public void testHNSWIndexMatchesJni() throws Exception {
+        Assume.assumeTrue(ForeignBindings.ACTIVE != null);
+        HNSWIndex index = track(new HNSWIndex(DIMENSION, DistanceMetric.L2, 16, 200, ElementType.FLOAT32));
+        for (int i = 0; i < COUNT; i++) {
+            index.addVector(vectors[i], i);
+        }
+        long pointer = pointerOf(index);
+
+        for (float[] query : queries) {
+            assertSameResults(jniSearch(index, "search", "getResultId", "getResultDistance", "freeSearchResults",
+                    new Class<?>[]{long.class, float[].class, int.class, int.class, int.class, int[].class},
+                    pointer, query, DIMENSION, K, 50), index.search(query, K, 50));
+        }
+        for (int id = 0; id < COUNT; id += 50) {
+            Assert.assertArrayEquals(jniGet(index, "getVector", pointer, id), index.getVector(id), 0.0f);
+        }
+    }
+
+    @Test
+    public void testMMapVectorStoreMatchesJni() throws Exception {
+        Assume.assumeTrue(ForeignBindings.ACTIVE != null);
+        File file = File.createTempFile("ffm_mmap_test", ".store");
+        try {
+            MMapVectorStoreBuilder builder = track(new MMapVectorStoreBuilder(DIMENSION, DistanceMetric.L2, ElementType.FLOAT32));
+            for (int i = 0; i < COUNT; i++) {
+                builder.addVector(vectors[i], i);
+            }
+            Assert.assertTrue(builder.save(file.getAbsolutePath()));
+            MMapVectorStore store = track(MMapVectorStore.open(file.getAbsolutePath()));
+            long pointer = pointerOf(store);
+
+            for (float[] query : queries) {
+                assertSameResults(jniSearch(store, "nativeSearch", "nativeGetResultId", "nativeGetResultDistance",
+                        "nativeFreeSearchResults",
+                        new Class<?>[]{long.class, float[].class, int.class, int.class, int[].class},
+                        pointer, query, DIMENSION, K), store.search(query, K));
+            }
+            SearchResult[][] jniBatch = jniSearchBatch(store, "nativeSearchBatch", pointer);
+            SearchResult[][] ffmBatch = store.searchBatch(queries, K);
+            for (int q = 0; q < queries.length; q++) {
+                assertSameResults(jniBatch[q], ffmBatch[q]);
+            }
+            for (int id = 0; id < COUNT; id += 50) {
+                Assert.assertArrayEquals(jniGet(store, "nativeGet", pointer, id), store.get(id), 0.0f);
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * A search through the JNI method that returns a native result list, read back one result at a time
+     */
+    private SearchResult[] jniSearch(Object owner, String search, String resultId, String resultDistance,
+                                     String free, Class<?>[] types, Object... args) throws Exception {
+        int[] resultCount = new int[1];
+        Object[] withCount = java.util.Arrays.copyOf(args, args.length + 1);
+        withCount[args.length] = resultCount;
+        long results = (Long) invokeJni(owner, search, types, withCount);
+        Assert.assertNotEquals(0L, results);
+        try {
+            SearchResult[] out = new SearchResult[resultCount[0]];
+            for (int i = 0; i < out.length; i++) {
+                int id = (Integer) invokeJni(owner, resultId, new Class<?>[]{long.class, int.class}, results, i);
+                float distance = (Float) invokeJni(owner, resultDistance, new Class<?>[]{long.class, int.class}, results, i);
+                out[i] = new SearchResult(id, distance);
+            }
+            return out;
+        } finally {
+            invokeJni(owner, free, new Class<?>[]{long.class}, results);
+        }
+    }
+
+    private SearchResult[][] jniSearchBatch(Object owner, String name, long pointer) throws Exception {
+        float[] flat = new float[queries.length * DIMENSION];
+        for (int q = 0; q < queries.length; q++) {
+            System.arraycopy(queries[q], 0, flat, q * DIMENSION, DIMENSION);
+        }
+        int[] ids = new int[queries.length * K];
+        float[] distances = new float[queries.length * K];
+        int[] counts = new int[queries.length];
+        Assert.assertTrue((Boolean) invokeJni(owner, name,
+                new Class<?>[]{long.class, float[].class, int.class, int.class, int[].class, float[].class, int[].class},
+                pointer, flat, queries.length, K, ids, distances, counts));
+        SearchResult[][] out = new SearchResult[queries.length][];
+        for (int q = 0; q < queries.length; q++) {
+            out[q] = new SearchResult[counts[q]];
+            for (int i = 0; i < counts[q]; i++) {
+                out[q][i] = new SearchResult(ids[q * K + i], distances[q * K + i]);
+            }
+        }
+        return out;
+    }
+
+    private float[] jniGet(Object owner, String name, long pointer, int id) throws Exception {
+        float[] vector = new float[DIMENSION];
+        Assert.assertTrue((Boolean) invokeJni(owner, name, new Class<?>[]{long.class, int.class, float[].class},
+                pointer, id, vector));
+        return vector;
+    }
+
+    private static Object invokeJni(Object owner, String name, Class<?>[] types, Object... args) throws Exception {
+        Method method = owner.getClass().getDeclaredMethod(name, types);
+        method.setAccessible(true);
+        try {
+            return method.invoke(owner, args);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw (Exception) e.getCause();
+        }
+    }
+
+    private static long pointerOf(Object owner) throws Exception {
+        java.lang.reflect.Field field = owner.getClass().getDeclaredField("pointer");
+        field.setAccessible(true);
+        return field.getLong(owner);
+    }
+
+    // Both paths run the same native search, so results must match exactly
+    private static void assertSameResults(SearchResult[] expected, SearchResult[] actual) {
+        Assert.assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            Assert.assertEquals(expected[i].getId(), actual[i].getId());
+            Assert.assertEquals(expected[i].getDistance(), actual[i].getDistance(), 0.0f);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.llamamobile.vd;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Tests for the Vector API distance kernels, run by the host-JVM build (jvm/build.gradle)
+ * with --add-modules jdk.incubator.vector
+ */
+public class VectorApiKernelsTests {
+
+    private final DistanceKernels scalar = new DistanceKernels.ScalarKernels();
+
+    @Test
+    public void testVectorApiKernelsSelected() {
+        // The JVM build enables jdk.incubator.vector, so the scalar fallback means the src/jvm
+        // sources were left out or failed to load
+        String name = DistanceKernels.ACTIVE.name();
+        Assert.assertTrue("Active kernels: " + name, name.startsWith("java-vector"));
+    }
+
+    @Test
+    public void testKernelsMatchScalar() {
+        java.util.Random random = new java.util.Random(46);
+        // Lengths around the 8 / 16 lane widths exercise the unrolled loop, the single-vector
+        // loop and the scalar tail
+        int[] lengths = {1, 3, 7, 8, 9, 15, 16, 17, 31, 32, 33, 63, 64, 65, 100, 384, 768, 1024, 1031};
+        for (int n : lengths) {
+            for (int offset = 0; offset < 3; offset++) {
+                float[] a = randomVector(random, n + offset);
+                float[] b = randomVector(random, n + 2 * offset);
+                float dot = DistanceKernels.ACTIVE.dot(a, offset, b, 2 * offset, n);
+                float l2 = DistanceKernels.ACTIVE.l2Sq(a, offset, b, 2 * offset, n);
+                assertClose(scalar.dot(a, offset, b, 2 * offset, n), dot);
+                assertClose(scalar.l2Sq(a, offset, b, 2 * offset, n), l2);
+            }
+        }
+    }
+
+    @Test
+    public void testEngineMatchesScalarKernels() {
+        int dimension = 100;  // Not a multiple of the lane count, so every row has a tail
+        int k = 10;
+        java.util.Random random = new java.util.Random(47);
+        float[][] vectors = new float[3000][];
+        for (int i = 0; i < vectors.length; i++) {
+            vectors[i] = randomVector(random, dimension);
+        }
+        float[][] queries = new float[8][];
+        for (int q = 0; q < queries.length; q++) {
+            queries[q] = randomVector(random, dimension);
+        }
+
+        for (DistanceMetric metric : DistanceMetric.values()) {
+            JavaVectorStoreEngine engine = new JavaVectorStoreEngine(dimension, metric, ElementType.FLOAT32);
+            try {
+                for (int i = 0; i < vectors.length; i++) {
+                    engine.add(i, vectors[i]);
+                }
+                SearchResult[][] batch = engine.searchBatch(queries, k);
+                for (int q = 0; q < queries.length; q++) {
+                    SearchResult[] expected = scalarSearch(vectors, queries[q], metric, k);
+                    assertSameResults(expected, engine.search(queries[q], k));
+                    assertSameResults(expected, batch[q]);
+                }
+            } finally {
+                engine.close();
+            }
+        }
+    }
+
+    /**
+     * Exact search with the scalar kernels, scoring the way the engine does
+     */
+    private SearchResult[] scalarSearch(float[][] vectors, float[] query, DistanceMetric metric, int k) {
+        int dimension = query.length;
+        float[] q = metric == DistanceMetric.COSINE ? normalize(query) : query;
+        SearchResult[] all = new SearchResult[vectors.length];
+        for (int i = 0; i < vectors.length; i++) {
+            float distance;
+            switch (metric) {
+                case L2:
+                    distance = scalar.l2Sq(q, 0, vectors[i], 0, dimension);
+                    break;
+                case COSINE:
+                    float dot = scalar.dot(q, 0, normalize(vectors[i]), 0, dimension);
+                    distance = 1.0f - Math.max(-1.0f, Math.min(1.0f, dot));
+                    break;
+                default:
+                    distance = -scalar.dot(q, 0, vectors[i], 0, dimension);
+                    break;
+            }
+            all[i] = new SearchResult(i, distance);
+        }
+        Arrays.sort(all, Comparator.comparingDouble(SearchResult::getDistance));
+        return Arrays.copyOf(all, k);
+    }
+
+    private float[] normalize(float[] v) {
+        float norm = (float) Math.sqrt(scalar.dot(v, 0, v, 0, v.length));
+        float[] out = new float[v.length];
+        for (int j = 0; j < v.length; j++) {
+            out[j] = v[j] / norm;
+        }
+        return out;
+    }
+
+    private static void assertSameResults(SearchResult[] expected, SearchResult[] actual) {
+        Assert.assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            Assert.assertEquals(expected[i].getId(), actual[i].getId());
+            assertClose(expected[i].getDistance(), actual[i].getDistance());
+        }
+    }
+
+    // Both kernels sum in a different order, so allow for rounding relative to the magnitude
+    private static void assertClose(float expected, float actual) {
+        Assert.assertEquals(expected, actual, 1e-4f * Math.max(1.0f, Math.abs(expected)));
+    }
+
+    private static float[] randomVector(java.util.Random random, int length) {
+        float[] vector = new float[length];
+        for (int j = 0; j < length; j++) {
+            vector[j] = random.nextFloat() * 2.0f - 1.0f;
+        }
+        return vector;
+    }
+}
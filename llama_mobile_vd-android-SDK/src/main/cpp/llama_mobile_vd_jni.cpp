@@ -1,4 +1,5 @@
 #include <jni.h>
+#include <limits>
 #include <string>
 #include <vector>
 #include <android/log.h>
@@ -46,6 +47,52 @@ static jobjectArray createSearchResultArray(JNIEnv *env, const std::vector<Quive
     return resultArray;
 }
 
+// Run a batch search and copy the hits into flat Java arrays: query q's results start at
+// q * k in ids/distances and counts[q] of them are valid
+template <typename Handle, typename SearchBatchFn>
+static jboolean searchBatchInto(JNIEnv *env, Handle store, size_t dimension, SearchBatchFn searchBatch,
+                                jfloatArray queries, jint numQueries, jint k,
+                                jintArray ids, jfloatArray distances, jintArray counts) {
+    if (numQueries < 0 || k <= 0 ||
+        static_cast<size_t>(env->GetArrayLength(queries)) != static_cast<size_t>(numQueries) * dimension ||
+        static_cast<size_t>(env->GetArrayLength(ids)) < static_cast<size_t>(numQueries) * k ||
+        static_cast<size_t>(env->GetArrayLength(distances)) < static_cast<size_t>(numQueries) * k ||
+        env->GetArrayLength(counts) < numQueries) {
+        LOGE("Invalid batch search arguments");
+        return JNI_FALSE;
+    }
+
+    jfloat *queryData = env->GetFloatArrayElements(queries, nullptr);
+    if (!queryData) {
+        LOGE("Failed to get query data");
+        return JNI_FALSE;
+    }
+
+    std::vector<QuiverDBSearchResult> results(static_cast<size_t>(numQueries) * k);
+    std::vector<size_t> resultCounts(numQueries);
+    QuiverDBError result = searchBatch(store, queryData, numQueries, k, results.data(), resultCounts.data());
+    env->ReleaseFloatArrayElements(queries, queryData, JNI_ABORT);
+    if (result != QUIVERDB_OK) {
+        LOGE("Failed to batch search vectors: %d", result);
+        return JNI_FALSE;
+    }
+
+    std::vector<jint> idData(results.size());
+    std::vector<jfloat> distanceData(results.size());
+    std::vector<jint> countData(numQueries);
+    for (size_t q = 0; q < resultCounts.size(); ++q) {
+        countData[q] = static_cast<jint>(resultCounts[q]);
+        for (size_t i = 0; i < resultCounts[q]; ++i) {
+            idData[q * k + i] = static_cast<jint>(results[q * k + i].id);
+            distanceData[q * k + i] = results[q * k + i].distance;
+        }
+    }
+    env->SetIntArrayRegion(ids, 0, static_cast<jsize>(idData.size()), idData.data());
+    env->SetFloatArrayRegion(distances, 0, static_cast<jsize>(distanceData.size()), distanceData.data());
+    env->SetIntArrayRegion(counts, 0, numQueries, countData.data());
+    return JNI_TRUE;
+}
+
 // VectorStore native methods
 
 extern "C" JNIEXPORT jlong JNICALL
@@ -198,6 +245,28 @@ Java_com_llamamobile_vd_LlamaMobileVD_nativeVectorStoreClear(JNIEnv *env, jclass
     }
 }
 
+extern "C" JNIEXPORT jboolean JNICALL
+Java_com_llamamobile_vd_VectorStore_setSearchThreads(JNIEnv *env, jobject thiz, jlong handle, jint threads) {
+    QuiverDBVectorStore store = reinterpret_cast<QuiverDBVectorStore>(handle);
+    QuiverDBError result = quiverdb_vector_store_set_search_threads(store, threads);
+    if (result != QUIVERDB_OK) {
+        LOGE("Failed to set vector store search threads: %d", result);
+        return JNI_FALSE;
+    }
+    return JNI_TRUE;
+}
+
+extern "C" JNIEXPORT jboolean JNICALL
+Java_com_llamamobile_vd_VectorStore_searchBatch(JNIEnv *env, jobject thiz, jlong handle, jfloatArray queries, jint numQueries, jint k, jintArray ids, jfloatArray distances, jintArray counts) {
+    QuiverDBVectorStore store = reinterpret_cast<QuiverDBVectorStore>(handle);
+    size_t dimension = 0;
+    if (quiverdb_vector_store_dimension(store, &dimension) != QUIVERDB_OK) {
+        LOGE("Failed to get vector store dimension");
+        return JNI_FALSE;
+    }
+    return searchBatchInto(env, store, dimension, quiverdb_vector_store_search_batch, queries, numQueries, k, ids, distances, counts);
+}
+
 // HNSWIndex native methods
 
 extern "C" JNIEXPORT jlong JNICALL
@@ -391,12 +460,53 @@ Java_com_llamamobile_vd_LlamaMobileVD_nativeLoadHNSWIndex(JNIEnv *env, jclass cl
     return reinterpret_cast<jlong>(index);
 }
 
+extern "C" JNIEXPORT jlong JNICALL
+Java_com_llamamobile_vd_HNSWIndex_nativeMerge(JNIEnv *env, jclass clazz, jlongArray indexes) {
+    jsize count = env->GetArrayLength(indexes);
+    jlong *handles = env->GetLongArrayElements(indexes, nullptr);
+    if (!handles) {
+        LOGE("Failed to get index handles");
+        return 0;
+    }
+
+    std::vector<QuiverDBHNSWIndex> shards(count);
+    for (jsize i = 0; i < count; ++i) {
+        shards[i] = reinterpret_cast<QuiverDBHNSWIndex>(handles[i]);
+    }
+    env->ReleaseLongArrayElements(indexes, handles, JNI_ABORT);
+
+    QuiverDBHNSWIndex index;
+    QuiverDBError result = quiverdb_hnsw_index_merge(shards.data(), shards.size(), &index);
+    if (result != QUIVERDB_OK) {
+        LOGE("Failed to merge HNSW indexes: %d", result);
+        return 0;
+    }
+    return reinterpret_cast<jlong>(index);
+}
+
+extern "C" JNIEXPORT jlong JNICALL
+Java_com_llamamobile_vd_HNSWIndex_nativeBuildFrom(JNIEnv *env, jclass clazz, jlong storeHandle, jint M, jint efConstruction, jint threads, jboolean referenceVectors) {
+    QuiverDBMMapVectorStore store = reinterpret_cast<QuiverDBMMapVectorStore>(storeHandle);
+    QuiverDBHNSWIndex index;
+    QuiverDBError result = quiverdb_hnsw_index_build_from_mmap(store, M, efConstruction, threads, referenceVectors ? 1 : 0, &index);
+    if (result != QUIVERDB_OK) {
+        LOGE("Failed to build HNSW index from MMap vector store: %d", result);
+        return 0;
+    }
+    return reinterpret_cast<jlong>(index);
+}
+
 extern "C" JNIEXPORT jstring JNICALL
 Java_com_llamamobile_vd_LlamaMobileVD_nativeGetVersion(JNIEnv *env, jclass clazz) {
     const char *version = quiverdb_version();
     return env->NewStringUTF(version);
 }
 
+extern "C" JNIEXPORT jstring JNICALL
+Java_com_llamamobile_vd_LlamaMobileVD_nativeGetActiveKernel(JNIEnv *env, jclass clazz) {
+    return env->NewStringUTF(quiverdb_active_kernel());
+}
+
 // MMapVectorStoreBuilder native methods
 
 extern "C" JNIEXPORT jlong JNICALL
@@ -508,6 +618,61 @@ Java_com_llamamobile_vd_LlamaMobileVD_MMapVectorStore_open(JNIEnv *env, jclass c
     return reinterpret_cast<jlong>(store);
 }
 
+extern "C" JNIEXPORT jboolean JNICALL
+Java_com_llamamobile_vd_MMapVectorStore_nativeSetSearchThreads(JNIEnv *env, jobject thiz, jlong handle, jint threads) {
+    QuiverDBMMapVectorStore store = reinterpret_cast<QuiverDBMMapVectorStore>(handle);
+    QuiverDBError result = quiverdb_mmap_vector_store_set_search_threads(store, threads);
+    if (result != QUIVERDB_OK) {
+        LOGE("Failed to set MMap vector store search threads: %d", result);
+        return JNI_FALSE;
+    }
+    return JNI_TRUE;
+}
+
+extern "C" JNIEXPORT jboolean JNICALL
+Java_com_llamamobile_vd_MMapVectorStore_nativeWarmup(JNIEnv *env, jobject thiz, jlong handle, jdouble fraction) {
+    QuiverDBMMapVectorStore store = reinterpret_cast<QuiverDBMMapVectorStore>(handle);
+    QuiverDBError result = quiverdb_mmap_vector_store_warmup(store, fraction);
+    if (result != QUIVERDB_OK) {
+        LOGE("Failed to warm up MMap vector store: %d", result);
+        return JNI_FALSE;
+    }
+    return JNI_TRUE;
+}
+
+extern "C" JNIEXPORT jboolean JNICALL
+Java_com_llamamobile_vd_MMapVectorStore_nativeAdviseSequential(JNIEnv *env, jobject thiz, jlong handle) {
+    QuiverDBMMapVectorStore store = reinterpret_cast<QuiverDBMMapVectorStore>(handle);
+    QuiverDBError result = quiverdb_mmap_vector_store_advise_sequential(store);
+    if (result != QUIVERDB_OK) {
+        LOGE("Failed to set MMap vector store access advice: %d", result);
+        return JNI_FALSE;
+    }
+    return JNI_TRUE;
+}
+
+extern "C" JNIEXPORT jboolean JNICALL
+Java_com_llamamobile_vd_MMapVectorStore_nativeAdviseRandom(JNIEnv *env, jobject thiz, jlong handle) {
+    QuiverDBMMapVectorStore store = reinterpret_cast<QuiverDBMMapVectorStore>(handle);
+    QuiverDBError result = quiverdb_mmap_vector_store_advise_random(store);
+    if (result != QUIVERDB_OK) {
+        LOGE("Failed to set MMap vector store access advice: %d", result);
+        return JNI_FALSE;
+    }
+    return JNI_TRUE;
+}
+
+extern "C" JNIEXPORT jboolean JNICALL
+Java_com_llamamobile_vd_MMapVectorStore_nativeSearchBatch(JNIEnv *env, jobject thiz, jlong handle, jfloatArray queries, jint numQueries, jint k, jintArray ids, jfloatArray distances, jintArray counts) {
+    QuiverDBMMapVectorStore store = reinterpret_cast<QuiverDBMMapVectorStore>(handle);
+    size_t dimension = 0;
+    if (quiverdb_mmap_vector_store_dimension(store, &dimension) != QUIVERDB_OK) {
+        LOGE("Failed to get MMap vector store dimension");
+        return JNI_FALSE;
+    }
+    return searchBatchInto(env, store, dimension, quiverdb_mmap_vector_store_search_batch, queries, numQueries, k, ids, distances, counts);
+}
+
 extern "C" JNIEXPORT void JNICALL
 Java_com_llamamobile_vd_LlamaMobileVD_MMapVectorStore_close(JNIEnv *env, jclass clazz, jlong handle) {
     QuiverDBMMapVectorStore store = reinterpret_cast<QuiverDBMMapVectorStore>(handle);
@@ -639,3 +804,709 @@ Java_com_llamamobile_vd_LlamaMobileVD_MMapVectorStore_getResultDistance(JNIEnv *
     LOGE("getResultDistance should not be called directly for MMapVectorStore");
     return 0.0f;
 }
+
+// Half-precision native methods
+
+// Hand one vector of FP16/BF16 bit patterns from a Java short[] to fn
+template <typename Fn>
+static QuiverDBError withHalfArray(JNIEnv *env, jshortArray vector, size_t dimension, Fn fn) {
+    if (!vector || static_cast<size_t>(env->GetArrayLength(vector)) != dimension) {
+        return QUIVERDB_INVALID_ARGUMENT;
+    }
+    jshort *vectorData = env->GetShortArrayElements(vector, nullptr);
+    if (!vectorData) {
+        return QUIVERDB_OUT_OF_MEMORY;
+    }
+    QuiverDBError result = fn(reinterpret_cast<const uint16_t *>(vectorData));
+    env->ReleaseShortArrayElements(vector, vectorData, JNI_ABORT);
+    return result;
+}
+
+// Same for a direct, native-order ShortBuffer, read in place from position
+template <typename Fn>
+static QuiverDBError withHalfBuffer(JNIEnv *env, jobject buffer, jint position, jint remaining, size_t dimension, Fn fn) {
+    auto *base = static_cast<const uint16_t *>(env->GetDirectBufferAddress(buffer));
+    if (!base || position < 0 || remaining < 0 || static_cast<size_t>(remaining) != dimension) {
+        return QUIVERDB_INVALID_ARGUMENT;
+    }
+    return fn(base + position);
+}
+
+// Copy up to k results into flat Java arrays and return how many there are
+static jint copyResults(JNIEnv *env, const std::vector<QuiverDBSearchResult> &results, jintArray ids, jfloatArray distances) {
+    jint count = 0;
+    std::vector<jint> idData(results.size());
+    std::vector<jfloat> distanceData(results.size());
+    for (const auto &r : results) {
+        if (r.distance != r.distance) break;  // NaN marks unused slots
+        idData[count] = static_cast<jint>(r.id);
+        distanceData[count++] = r.distance;
+    }
+    env->SetIntArrayRegion(ids, 0, count, idData.data());
+    env->SetFloatArrayRegion(distances, 0, count, distanceData.data());
+    return count;
+}
+
+static size_t vectorStoreDimension(QuiverDBVectorStore store) {
+    size_t dimension = 0;
+    quiverdb_vector_store_dimension(store, &dimension);
+    return dimension;
+}
+
+static size_t hnswIndexDimension(QuiverDBHNSWIndex index) {
+    size_t dimension = 0;
+    quiverdb_hnsw_index_dimension(index, &dimension);
+    return dimension;
+}
+
+static size_t builderDimension(QuiverDBMMapVectorStoreBuilder builder) {
+    size_t dimension = 0;
+    quiverdb_mmap_vector_store_builder_dimension(builder, &dimension);
+    return dimension;
+}
+
+extern "C" JNIEXPORT jlong JNICALL
+Java_com_llamamobile_vd_VectorStore_createTypedVectorStore(JNIEnv *env, jobject thiz, jint dimension, jint metric, jint elementType) {
+    QuiverDBVectorStore store;
+    QuiverDBError result = quiverdb_vector_store_create_typed(dimension, static_cast<QuiverDBDistanceMetric>(metric),
+                                                              static_cast<QuiverDBElementType>(elementType), &store);
+    if (result != QUIVERDB_OK) {
+        LOGE("Failed to create vector store: %d", result);
+        return 0;
+    }
+    return reinterpret_cast<jlong>(store);
+}
+
+extern "C" JNIEXPORT jboolean JNICALL
+Java_com_llamamobile_vd_VectorStore_addHalfVector(JNIEnv *env, jobject thiz, jlong handle, jshortArray vector, jint format, jint id) {
+    QuiverDBVectorStore store = reinterpret_cast<QuiverDBVectorStore>(handle);
+    QuiverDBError result = withHalfArray(env, vector, vectorStoreDimension(store), [&](const uint16_t *data) {
+        return quiverdb_vector_store_add_half(store, static_cast<uint64_t>(id), data, static_cast<QuiverDBElementType>(format));
+    });
+    if (result != QUIVERDB_OK) {
+        LOGE("Failed to add half-precision vector: %d", result);
+        return JNI_FALSE;
+    }
+    return JNI_TRUE;
+}
+
+extern "C" JNIEXPORT jboolean JNICALL
+Java_com_llamamobile_vd_VectorStore_addHalfVectorBuffer(JNIEnv *env, jobject thiz, jlong handle, jobject vector, jint position, jint remaining, jint format, jint id) {
+    QuiverDBVectorStore store = reinterpret_cast<QuiverDBVectorStore>(handle);
+    QuiverDBError result = withHalfBuffer(env, vector, position, remaining, vectorStoreDimension(store), [&](const uint16_t *data) {
+        return quiverdb_vector_store_add_half(store, static_cast<uint64_t>(id), data, static_cast<QuiverDBElementType>(format));
+    });
+    if (result != QUIVERDB_OK) {
+        LOGE("Failed to add half-precision vector: %d", result);
+        return JNI_FALSE;
+    }
+    return JNI_TRUE;
+}
+
+extern "C" JNIEXPORT jint JNICALL
+Java_com_llamamobile_vd_VectorStore_searchHalf(JNIEnv *env, jobject thiz, jlong handle, jshortArray query, jint format, jint k, jintArray ids, jfloatArray distances) {
+    QuiverDBVectorStore store = reinterpret_cast<QuiverDBVectorStore>(handle);
+    if (k <= 0 || env->GetArrayLength(ids) < k || env->GetArrayLength(distances) < k) {
+        LOGE("Invalid half-precision search arguments");
+        return -1;
+    }
+    std::vector<QuiverDBSearchResult> results(k, QuiverDBSearchResult{0, std::numeric_limits<float>::quiet_NaN()});
+    QuiverDBError result = withHalfArray(env, query, vectorStoreDimension(store), [&](const uint16_t *data) {
+        return quiverdb_vector_store_search_half(store, data, static_cast<QuiverDBElementType>(format), k, results.data(), results.size());
+    });
+    if (result != QUIVERDB_OK) {
+        LOGE("Failed to search vectors: %d", result);
+        return -1;
+    }
+    return copyResults(env, results, ids, distances);
+}
+
+extern "C" JNIEXPORT jint JNICALL
+Java_com_llamamobile_vd_VectorStore_getElementType(JNIEnv *env, jobject thiz, jlong handle) {
+    QuiverDBVectorStore store = reinterpret_cast<QuiverDBVectorStore>(handle);
+    QuiverDBElementType elementType;
+    QuiverDBError result = quiverdb_vector_store_element_type(store, &elementType);
+    if (result != QUIVERDB_OK) {
+        LOGE("Failed to get vector store element type: %d", result);
+        return 0;
+    }
+    return static_cast<jint>(elementType);
+}
+
+extern "C" JNIEXPORT jlong JNICALL
+Java_com_llamamobile_vd_HNSWIndex_createTypedHNSWIndex(JNIEnv *env, jobject thiz, jint dimension, jint metric, jint m, jint efConstruction, jint elementType) {
+    QuiverDBHNSWIndex index;
+    QuiverDBError result = quiverdb_hnsw_index_create_typed(dimension, static_cast<QuiverDBDistanceMetric>(metric), 100000, m, efConstruction, 42,
+                                                            static_cast<QuiverDBElementType>(elementType), &index);
+    if (result != QUIVERDB_OK) {
+        LOGE("Failed to create HNSW index: %d", result);
+        return 0;
+    }
+    return reinterpret_cast<jlong>(index);
+}
+
+extern "C" JNIEXPORT jboolean JNICALL
+Java_com_llamamobile_vd_HNSWIndex_addHalfVector(JNIEnv *env, jobject thiz, jlong handle, jshortArray vector, jint format, jint id) {
+    QuiverDBHNSWIndex index = reinterpret_cast<QuiverDBHNSWIndex>(handle);
+    QuiverDBError result = withHalfArray(env, vector, hnswIndexDimension(index), [&](const uint16_t *data) {
+        return quiverdb_hnsw_index_add_half(index, static_cast<uint64_t>(id), data, static_cast<QuiverDBElementType>(format));
+    });
+    if (result != QUIVERDB_OK) {
+        LOGE("Failed to add half-precision vector to HNSW index: %d", result);
+        return JNI_FALSE;
+    }
+    return JNI_TRUE;
+}
+
+extern "C" JNIEXPORT jboolean JNICALL
+Java_com_llamamobile_vd_HNSWIndex_addHalfVectorBuffer(JNIEnv *env, jobject thiz, jlong handle, jobject vector, jint position, jint remaining, jint format, jint id) {
+    QuiverDBHNSWIndex index = reinterpret_cast<QuiverDBHNSWIndex>(handle);
+    QuiverDBError result = withHalfBuffer(env, vector, position, remaining, hnswIndexDimension(index), [&](const uint16_t *data) {
+        return quiverdb_hnsw_index_add_half(index, static_cast<uint64_t>(id), data, static_cast<QuiverDBElementType>(format));
+    });
+    if (result != QUIVERDB_OK) {
+        LOGE("Failed to add half-precision vector to HNSW index: %d", result);
+        return JNI_FALSE;
+    }
+    return JNI_TRUE;
+}
+
+extern "C" JNIEXPORT jint JNICALL
+Java_com_llamamobile_vd_HNSWIndex_searchHalf(JNIEnv *env, jobject thiz, jlong handle, jshortArray query, jint format, jint k, jint efSearch, jintArray ids, jfloatArray distances) {
+    QuiverDBHNSWIndex index = reinterpret_cast<QuiverDBHNSWIndex>(handle);
+    if (k <= 0 || env->GetArrayLength(ids) < k || env->GetArrayLength(distances) < k) {
+        LOGE("Invalid half-precision search arguments");
+        return -1;
+    }
+    if (efSearch <= 0) {
+        LOGE("Invalid HNSW ef_search");
+        return -1;
+    }
+    std::vector<QuiverDBSearchResult> results(k, QuiverDBSearchResult{0, std::numeric_limits<float>::quiet_NaN()});
+    QuiverDBError result = withHalfArray(env, query, hnswIndexDimension(index), [&](const uint16_t *data) {
+        return quiverdb_hnsw_index_search_half_with_ef(index, data, static_cast<QuiverDBElementType>(format), k, efSearch, results.data(), results.size());
+    });
+    if (result != QUIVERDB_OK) {
+        LOGE("Failed to search HNSW index: %d", result);
+        return -1;
+    }
+    return copyResults(env, results, ids, distances);
+}
+
+extern "C" JNIEXPORT jint JNICALL
+Java_com_llamamobile_vd_HNSWIndex_getElementType(JNIEnv *env, jobject thiz, jlong handle) {
+    QuiverDBHNSWIndex index = reinterpret_cast<QuiverDBHNSWIndex>(handle);
+    QuiverDBElementType elementType;
+    QuiverDBError result = quiverdb_hnsw_index_element_type(index, &elementType);
+    if (result != QUIVERDB_OK) {
+        LOGE("Failed to get HNSW index element type: %d", result);
+        return 0;
+    }
+    return static_cast<jint>(elementType);
+}
+
+extern "C" JNIEXPORT jlong JNICALL
+Java_com_llamamobile_vd_MMapVectorStoreBuilder_createTypedBuilder(JNIEnv *env, jobject thiz, jint dimension, jint metric, jint elementType) {
+    QuiverDBMMapVectorStoreBuilder builder;
+    QuiverDBError result = quiverdb_mmap_vector_store_builder_create_typed(dimension, static_cast<QuiverDBDistanceMetric>(metric),
+                                                                           static_cast<QuiverDBElementType>(elementType), &builder);
+    if (result != QUIVERDB_OK) {
+        LOGE("Failed to create MMap vector store builder: %d", result);
+        return 0;
+    }
+    return reinterpret_cast<jlong>(builder);
+}
+
+extern "C" JNIEXPORT jboolean JNICALL
+Java_com_llamamobile_vd_MMapVectorStoreBuilder_addHalfVector(JNIEnv *env, jobject thiz, jlong handle, jshortArray vector, jint format, jint id) {
+    QuiverDBMMapVectorStoreBuilder builder = reinterpret_cast<QuiverDBMMapVectorStoreBuilder>(handle);
+    QuiverDBError result = withHalfArray(env, vector, builderDimension(builder), [&](const uint16_t *data) {
+        return quiverdb_mmap_vector_store_builder_add_half(builder, static_cast<uint64_t>(id), data, static_cast<QuiverDBElementType>(format));
+    });
+    if (result != QUIVERDB_OK) {
+        LOGE("Failed to add half-precision vector to MMap vector store builder: %d", result);
+        return JNI_FALSE;
+    }
+    return JNI_TRUE;
+}
+
+extern "C" JNIEXPORT jboolean JNICALL
+Java_com_llamamobile_vd_MMapVectorStoreBuilder_addHalfVectorBuffer(JNIEnv *env, jobject thiz, jlong handle, jobject vector, jint position, jint remaining, jint format, jint id) {
+    QuiverDBMMapVectorStoreBuilder builder = reinterpret_cast<QuiverDBMMapVectorStoreBuilder>(handle);
+    QuiverDBError result = withHalfBuffer(env, vector, position, remaining, builderDimension(builder), [&](const uint16_t *data) {
+        return quiverdb_mmap_vector_store_builder_add_half(builder, static_cast<uint64_t>(id), data, static_cast<QuiverDBElementType>(format));
+    });
+    if (result != QUIVERDB_OK) {
+        LOGE("Failed to add half-precision vector to MMap vector store builder: %d", result);
+        return JNI_FALSE;
+    }
+    return JNI_TRUE;
+}
+
+extern "C" JNIEXPORT jint JNICALL
+Java_com_llamamobile_vd_MMapVectorStore_nativeGetElementType(JNIEnv *env, jobject thiz, jlong handle) {
+    QuiverDBMMapVectorStore store = reinterpret_cast<QuiverDBMMapVectorStore>(handle);
+    QuiverDBElementType elementType;
+    QuiverDBError result = quiverdb_mmap_vector_store_element_type(store, &elementType);
+    if (result != QUIVERDB_OK) {
+        LOGE("Failed to get MMap vector store element type: %d", result);
+        return 0;
+    }
+    return static_cast<jint>(elementType);
+}
+
+// Binary quantization native methods
+
+// Run a binary search of query and copy the hits into flat Java arrays; -1 on failure
+template <typename Handle, typename SearchBinaryFn>
+static jint searchBinaryInto(JNIEnv *env, Handle store, SearchBinaryFn searchBinary, jfloatArray query,
+                             jint k, jint rerankFactor, jintArray ids, jfloatArray distances) {
+    if (k <= 0 || rerankFactor <= 0 || env->GetArrayLength(ids) < k || env->GetArrayLength(distances) < k) {
+        LOGE("Invalid binary search arguments");
+        return -1;
+    }
+    jfloat *queryData = env->GetFloatArrayElements(query, nullptr);
+    if (!queryData) {
+        LOGE("Failed to get query data");
+        return -1;
+    }
+    std::vector<QuiverDBSearchResult> results(k, QuiverDBSearchResult{0, std::numeric_limits<float>::quiet_NaN()});
+    QuiverDBError result = searchBinary(store, queryData, k, rerankFactor, results.data(), results.size());
+    env->ReleaseFloatArrayElements(query, queryData, JNI_ABORT);
+    if (result != QUIVERDB_OK) {
+        LOGE("Failed to binary search vectors: %d", result);
+        return -1;
+    }
+    return copyResults(env, results, ids, distances);
+}
+
+extern "C" JNIEXPORT jboolean JNICALL
+Java_com_llamamobile_vd_VectorStore_setBinaryIndex(JNIEnv *env, jobject thiz, jlong handle, jboolean enabled) {
+    QuiverDBVectorStore store = reinterpret_cast<QuiverDBVectorStore>(handle);
+    QuiverDBError result = quiverdb_vector_store_set_binary_index(store, enabled ? 1 : 0);
+    if (result != QUIVERDB_OK) {
+        LOGE("Failed to set vector store binary index: %d", result);
+        return JNI_FALSE;
+    }
+    return JNI_TRUE;
+}
+
+extern "C" JNIEXPORT jint JNICALL
+Java_com_llamamobile_vd_VectorStore_searchBinary(JNIEnv *env, jobject thiz, jlong handle, jfloatArray query, jint k, jint rerankFactor, jintArray ids, jfloatArray distances) {
+    QuiverDBVectorStore store = reinterpret_cast<QuiverDBVectorStore>(handle);
+    return searchBinaryInto(env, store, quiverdb_vector_store_search_binary, query, k, rerankFactor, ids, distances);
+}
+
+extern "C" JNIEXPORT jboolean JNICALL
+Java_com_llamamobile_vd_VectorStore_save(JNIEnv *env, jobject thiz, jlong handle, jstring filename) {
+    QuiverDBVectorStore store = reinterpret_cast<QuiverDBVectorStore>(handle);
+    const char *cFilename = env->GetStringUTFChars(filename, nullptr);
+    if (!cFilename) {
+        LOGE("Failed to get filename string");
+        return JNI_FALSE;
+    }
+
+    QuiverDBError result = quiverdb_vector_store_save(store, cFilename);
+    env->ReleaseStringUTFChars(filename, cFilename);
+
+    if (result != QUIVERDB_OK) {
+        LOGE("Failed to save vector store: %d", result);
+        return JNI_FALSE;
+    }
+    return JNI_TRUE;
+}
+
+extern "C" JNIEXPORT jlong JNICALL
+Java_com_llamamobile_vd_VectorStore_nativeLoad(JNIEnv *env, jclass clazz, jstring filename, jboolean map) {
+    const char *cFilename = env->GetStringUTFChars(filename, nullptr);
+    if (!cFilename) {
+        LOGE("Failed to get filename string");
+        return 0;
+    }
+
+    QuiverDBVectorStore store;
+    QuiverDBError result = quiverdb_vector_store_load(cFilename, map ? 1 : 0, &store);
+    env->ReleaseStringUTFChars(filename, cFilename);
+
+    if (result != QUIVERDB_OK) {
+        LOGE("Failed to load vector store: %d", result);
+        return 0;
+    }
+    return reinterpret_cast<jlong>(store);
+}
+
+extern "C" JNIEXPORT jboolean JNICALL
+Java_com_llamamobile_vd_MMapVectorStoreBuilder_setBinaryIndex(JNIEnv *env, jobject thiz, jlong handle, jboolean enabled) {
+    QuiverDBMMapVectorStoreBuilder builder = reinterpret_cast<QuiverDBMMapVectorStoreBuilder>(handle);
+    QuiverDBError result = quiverdb_mmap_vector_store_builder_set_binary_index(builder, enabled ? 1 : 0);
+    if (result != QUIVERDB_OK) {
+        LOGE("Failed to set MMap vector store builder binary index: %d", result);
+        return JNI_FALSE;
+    }
+    return JNI_TRUE;
+}
+
+extern "C" JNIEXPORT jint JNICALL
+Java_com_llamamobile_vd_MMapVectorStore_nativeSearchBinary(JNIEnv *env, jobject thiz, jlong handle, jfloatArray query, jint k, jint rerankFactor, jintArray ids, jfloatArray distances) {
+    QuiverDBMMapVectorStore store = reinterpret_cast<QuiverDBMMapVectorStore>(handle);
+    return searchBinaryInto(env, store, quiverdb_mmap_vector_store_search_binary, query, k, rerankFactor, ids, distances);
+}
+
+// SegmentedVectorStore native methods
+
+static size_t segmentedDimension(QuiverDBSegmentedVectorStore store) {
+    size_t dimension = 0;
+    quiverdb_segmented_vector_store_dimension(store, &dimension);
+    return dimension;
+}
+
+extern "C" JNIEXPORT jlong JNICALL
+Java_com_llamamobile_vd_SegmentedVectorStore_nativeOpen(JNIEnv *env, jclass clazz, jstring directory, jint dimension, jint metric, jint elementType, jint sealRows, jboolean backgroundCompaction) {
+    const char *cDirectory = env->GetStringUTFChars(directory, nullptr);
+    if (!cDirectory) {
+        LOGE("Failed to get directory string");
+        return 0;
+    }
+
+    QuiverDBSegmentedVectorStore store;
+    QuiverDBError result = quiverdb_segmented_vector_store_open(cDirectory, dimension, static_cast<QuiverDBDistanceMetric>(metric),
+                                                                static_cast<QuiverDBElementType>(elementType), sealRows,
+                                                                backgroundCompaction ? 1 : 0, &store);
+    env->ReleaseStringUTFChars(directory, cDirectory);
+
+    if (result != QUIVERDB_OK) {
+        LOGE("Failed to open segmented vector store: %d", result);
+        return 0;
+    }
+    return reinterpret_cast<jlong>(store);
+}
+
+extern "C" JNIEXPORT jboolean JNICALL
+Java_com_llamamobile_vd_SegmentedVectorStore_nativeAdd(JNIEnv *env, jobject thiz, jlong handle, jint id, jfloatArray vector) {
+    QuiverDBSegmentedVectorStore store = reinterpret_cast<QuiverDBSegmentedVectorStore>(handle);
+    if (static_cast<size_t>(env->GetArrayLength(vector)) != segmentedDimension(store)) {
+        LOGE("Vector dimension mismatch");
+        return JNI_FALSE;
+    }
+    jfloat *vectorData = env->GetFloatArrayElements(vector, nullptr);
+    if (!vectorData) {
+        LOGE("Failed to get vector data");
+        return JNI_FALSE;
+    }
+    QuiverDBError result = quiverdb_segmented_vector_store_add(store, static_cast<uint64_t>(id), vectorData);
+    env->ReleaseFloatArrayElements(vector, vectorData, JNI_ABORT);
+    if (result != QUIVERDB_OK) {
+        LOGE("Failed to add vector to segmented vector store: %d", result);
+        return JNI_FALSE;
+    }
+    return JNI_TRUE;
+}
+
+extern "C" JNIEXPORT jboolean JNICALL
+Java_com_llamamobile_vd_SegmentedVectorStore_nativeRemove(JNIEnv *env, jobject thiz, jlong handle, jint id) {
+    QuiverDBSegmentedVectorStore store = reinterpret_cast<QuiverDBSegmentedVectorStore>(handle);
+    int removed = 0;
+    QuiverDBError result = quiverdb_segmented_vector_store_remove(store, static_cast<uint64_t>(id), &removed);
+    if (result != QUIVERDB_OK) {
+        LOGE("Failed to remove vector from segmented vector store: %d", result);
+        return JNI_FALSE;
+    }
+    return removed ? JNI_TRUE : JNI_FALSE;
+}
+
+extern "C" JNIEXPORT jboolean JNICALL
+Java_com_llamamobile_vd_SegmentedVectorStore_nativeUpdate(JNIEnv *env, jobject thiz, jlong handle, jint id, jfloatArray vector) {
+    QuiverDBSegmentedVectorStore store = reinterpret_cast<QuiverDBSegmentedVectorStore>(handle);
+    if (static_cast<size_t>(env->GetArrayLength(vector)) != segmentedDimension(store)) {
+        LOGE("Vector dimension mismatch");
+        return JNI_FALSE;
+    }
+    jfloat *vectorData = env->GetFloatArrayElements(vector, nullptr);
+    if (!vectorData) {
+        LOGE("Failed to get vector data");
+        return JNI_FALSE;
+    }
+    QuiverDBError result = quiverdb_segmented_vector_store_update(store, static_cast<uint64_t>(id), vectorData);
+    env->ReleaseFloatArrayElements(vector, vectorData, JNI_ABORT);
+    if (result != QUIVERDB_OK) {
+        if (result != QUIVERDB_ID_NOT_FOUND) LOGE("Failed to update vector in segmented vector store: %d", result);
+        return JNI_FALSE;
+    }
+    return JNI_TRUE;
+}
+
+extern "C" JNIEXPORT jboolean JNICALL
+Java_com_llamamobile_vd_SegmentedVectorStore_nativeGet(JNIEnv *env, jobject thiz, jlong handle, jint id, jfloatArray vector) {
+    QuiverDBSegmentedVectorStore store = reinterpret_cast<QuiverDBSegmentedVectorStore>(handle);
+    size_t dimension = segmentedDimension(store);
+    if (static_cast<size_t>(env->GetArrayLength(vector)) < dimension) {
+        LOGE("Vector array too small");
+        return JNI_FALSE;
+    }
+    std::vector<float> data(dimension);
+    QuiverDBError result = quiverdb_segmented_vector_store_get(store, static_cast<uint64_t>(id), data.data(), dimension);
+    if (result != QUIVERDB_OK) {
+        return JNI_FALSE;
+    }
+    env->SetFloatArrayRegion(vector, 0, dimension, data.data());
+    return JNI_TRUE;
+}
+
+extern "C" JNIEXPORT jboolean JNICALL
+Java_com_llamamobile_vd_SegmentedVectorStore_nativeContains(JNIEnv *env, jobject thiz, jlong handle, jint id) {
+    QuiverDBSegmentedVectorStore store = reinterpret_cast<QuiverDBSegmentedVectorStore>(handle);
+    int contains = 0;
+    QuiverDBError result = quiverdb_segmented_vector_store_contains(store, static_cast<uint64_t>(id), &contains);
+    return result == QUIVERDB_OK && contains ? JNI_TRUE : JNI_FALSE;
+}
+
+extern "C" JNIEXPORT jint JNICALL
+Java_com_llamamobile_vd_SegmentedVectorStore_nativeSearch(JNIEnv *env, jobject thiz, jlong handle, jfloatArray query, jint k, jintArray ids, jfloatArray distances) {
+    QuiverDBSegmentedVectorStore store = reinterpret_cast<QuiverDBSegmentedVectorStore>(handle);
+    if (k <= 0 || env->GetArrayLength(ids) < k || env->GetArrayLength(distances) < k ||
+        static_cast<size_t>(env->GetArrayLength(query)) != segmentedDimension(store)) {
+        LOGE("Invalid segmented search arguments");
+        return -1;
+    }
+    jfloat *queryData = env->GetFloatArrayElements(query, nullptr);
+    if (!queryData) {
+        LOGE("Failed to get query data");
+        return -1;
+    }
+    std::vector<QuiverDBSearchResult> results(k, QuiverDBSearchResult{0, std::numeric_limits<float>::quiet_NaN()});
+    QuiverDBError result = quiverdb_segmented_vector_store_search(store, queryData, k, results.data(), results.size());
+    env->ReleaseFloatArrayElements(query, queryData, JNI_ABORT);
+    if (result != QUIVERDB_OK) {
+        LOGE("Failed to search segmented vector store: %d", result);
+        return -1;
+    }
+    return copyResults(env, results, ids, distances);
+}
+
+extern "C" JNIEXPORT jboolean JNICALL
+Java_com_llamamobile_vd_SegmentedVectorStore_nativeSeal(JNIEnv *env, jobject thiz, jlong handle) {
+    QuiverDBSegmentedVectorStore store = reinterpret_cast<QuiverDBSegmentedVectorStore>(handle);
+    QuiverDBError result = quiverdb_segmented_vector_store_seal(store);
+    if (result != QUIVERDB_OK) {
+        LOGE("Failed to seal segmented vector store: %d", result);
+        return JNI_FALSE;
+    }
+    return JNI_TRUE;
+}
+
+extern "C" JNIEXPORT jint JNICALL
+Java_com_llamamobile_vd_SegmentedVectorStore_nativeCompact(JNIEnv *env, jobject thiz, jlong handle) {
+    QuiverDBSegmentedVectorStore store = reinterpret_cast<QuiverDBSegmentedVectorStore>(handle);
+    int compacted = 0;
+    QuiverDBError result = quiverdb_segmented_vector_store_compact(store, &compacted);
+    if (result != QUIVERDB_OK) {
+        LOGE("Failed to compact segmented vector store: %d", result);
+        return -1;
+    }
+    return compacted;
+}
+
+extern "C" JNIEXPORT jboolean JNICALL
+Java_com_llamamobile_vd_SegmentedVectorStore_nativeSync(JNIEnv *env, jobject thiz, jlong handle) {
+    QuiverDBSegmentedVectorStore store = reinterpret_cast<QuiverDBSegmentedVectorStore>(handle);
+    QuiverDBError result = quiverdb_segmented_vector_store_sync(store);
+    if (result != QUIVERDB_OK) {
+        LOGE("Failed to sync segmented vector store: %d", result);
+        return JNI_FALSE;
+    }
+    return JNI_TRUE;
+}
+
+extern "C" JNIEXPORT jint JNICALL
+Java_com_llamamobile_vd_SegmentedVectorStore_nativeGetCount(JNIEnv *env, jobject thiz, jlong handle) {
+    QuiverDBSegmentedVectorStore store = reinterpret_cast<QuiverDBSegmentedVectorStore>(handle);
+    size_t size = 0;
+    quiverdb_segmented_vector_store_size(store, &size);
+    return static_cast<jint>(size);
+}
+
+extern "C" JNIEXPORT jint JNICALL
+Java_com_llamamobile_vd_SegmentedVectorStore_nativeGetDimension(JNIEnv *env, jobject thiz, jlong handle) {
+    return static_cast<jint>(segmentedDimension(reinterpret_cast<QuiverDBSegmentedVectorStore>(handle)));
+}
+
+extern "C" JNIEXPORT jint JNICALL
+Java_com_llamamobile_vd_SegmentedVectorStore_nativeGetSegmentCount(JNIEnv *env, jobject thiz, jlong handle) {
+    QuiverDBSegmentedVectorStore store = reinterpret_cast<QuiverDBSegmentedVectorStore>(handle);
+    size_t count = 0;
+    quiverdb_segmented_vector_store_segment_count(store, &count);
+    return static_cast<jint>(count);
+}
+
+extern "C" JNIEXPORT void JNICALL
+Java_com_llamamobile_vd_SegmentedVectorStore_nativeClose(JNIEnv *env, jobject thiz, jlong handle) {
+    quiverdb_segmented_vector_store_close(reinterpret_cast<QuiverDBSegmentedVectorStore>(handle));
+}
+
+// Bulk add and streaming writer native methods
+
+// Pass count vectors (count * dimension floats) and their int IDs to a batch add in one call
+template <typename Fn>
+static QuiverDBError withBatch(JNIEnv *env, jfloatArray vectors, jintArray ids, jint count, size_t dimension, Fn fn) {
+    if (count < 0 || env->GetArrayLength(ids) < count ||
+        static_cast<size_t>(env->GetArrayLength(vectors)) < static_cast<size_t>(count) * dimension) {
+        return QUIVERDB_INVALID_ARGUMENT;
+    }
+    std::vector<jint> idData(count);
+    env->GetIntArrayRegion(ids, 0, count, idData.data());
+    std::vector<uint64_t> wideIds(idData.begin(), idData.end());
+    jfloat *vectorData = env->GetFloatArrayElements(vectors, nullptr);
+    if (!vectorData) {
+        return QUIVERDB_OUT_OF_MEMORY;
+    }
+    QuiverDBError result = fn(wideIds.data(), vectorData, static_cast<size_t>(count));
+    env->ReleaseFloatArrayElements(vectors, vectorData, JNI_ABORT);
+    return result;
+}
+
+static size_t writerDimension(QuiverDBMMapVectorStoreWriter writer) {
+    size_t dimension = 0;
+    quiverdb_mmap_vector_store_writer_dimension(writer, &dimension);
+    return dimension;
+}
+
+extern "C" JNIEXPORT jboolean JNICALL
+Java_com_llamamobile_vd_MMapVectorStoreBuilder_addVectors(JNIEnv *env, jobject thiz, jlong handle, jfloatArray vectors, jintArray ids, jint count) {
+    QuiverDBMMapVectorStoreBuilder builder = reinterpret_cast<QuiverDBMMapVectorStoreBuilder>(handle);
+    QuiverDBError result = withBatch(env, vectors, ids, count, builderDimension(builder), [&](const uint64_t *idData, const float *data, size_t n) {
+        return quiverdb_mmap_vector_store_builder_add_batch(builder, idData, data, n);
+    });
+    if (result != QUIVERDB_OK) {
+        LOGE("Failed to add vectors to MMap vector store builder: %d", result);
+        return JNI_FALSE;
+    }
+    return JNI_TRUE;
+}
+
+extern "C" JNIEXPORT jlong JNICALL
+Java_com_llamamobile_vd_MMapVectorStoreBuilder_createWriter(JNIEnv *env, jobject thiz, jstring filename, jint dimension, jint metric, jint elementType) {
+    const char *cFilename = env->GetStringUTFChars(filename, nullptr);
+    if (!cFilename) {
+        LOGE("Failed to get filename string");
+        return 0;
+    }
+
+    QuiverDBMMapVectorStoreWriter writer;
+    QuiverDBError result = quiverdb_mmap_vector_store_writer_create(cFilename, dimension, static_cast<QuiverDBDistanceMetric>(metric),
+                                                                    static_cast<QuiverDBElementType>(elementType), &writer);
+    env->ReleaseStringUTFChars(filename, cFilename);
+
+    if (result != QUIVERDB_OK) {
+        LOGE("Failed to create MMap vector store writer: %d", result);
+        return 0;
+    }
+    return reinterpret_cast<jlong>(writer);
+}
+
+extern "C" JNIEXPORT void JNICALL
+Java_com_llamamobile_vd_MMapVectorStoreBuilder_destroyWriter(JNIEnv *env, jobject thiz, jlong handle) {
+    quiverdb_mmap_vector_store_writer_destroy(reinterpret_cast<QuiverDBMMapVectorStoreWriter>(handle));
+}
+
+extern "C" JNIEXPORT jboolean JNICALL
+Java_com_llamamobile_vd_MMapVectorStoreBuilder_writerAddVector(JNIEnv *env, jobject thiz, jlong handle, jfloatArray vector, jint id) {
+    QuiverDBMMapVectorStoreWriter writer = reinterpret_cast<QuiverDBMMapVectorStoreWriter>(handle);
+    if (static_cast<size_t>(env->GetArrayLength(vector)) != writerDimension(writer)) {
+        LOGE("Vector dimension mismatch");
+        return JNI_FALSE;
+    }
+    jfloat *vectorData = env->GetFloatArrayElements(vector, nullptr);
+    if (!vectorData) {
+        LOGE("Failed to get vector data");
+        return JNI_FALSE;
+    }
+    QuiverDBError result = quiverdb_mmap_vector_store_writer_add(writer, static_cast<uint64_t>(id), vectorData);
+    env->ReleaseFloatArrayElements(vector, vectorData, JNI_ABORT);
+    if (result != QUIVERDB_OK) {
+        LOGE("Failed to add vector to MMap vector store writer: %d", result);
+        return JNI_FALSE;
+    }
+    return JNI_TRUE;
+}
+
+extern "C" JNIEXPORT jboolean JNICALL
+Java_com_llamamobile_vd_MMapVectorStoreBuilder_writerAddVectors(JNIEnv *env, jobject thiz, jlong handle, jfloatArray vectors, jintArray ids, jint count) {
+    QuiverDBMMapVectorStoreWriter writer = reinterpret_cast<QuiverDBMMapVectorStoreWriter>(handle);
+    QuiverDBError result = withBatch(env, vectors, ids, count, writerDimension(writer), [&](const uint64_t *idData, const float *data, size_t n) {
+        return quiverdb_mmap_vector_store_writer_add_batch(writer, idData, data, n);
+    });
+    if (result != QUIVERDB_OK) {
+        LOGE("Failed to add vectors to MMap vector store writer: %d", result);
+        return JNI_FALSE;
+    }
+    return JNI_TRUE;
+}
+
+extern "C" JNIEXPORT jboolean JNICALL
+Java_com_llamamobile_vd_MMapVectorStoreBuilder_writerAddHalfVector(JNIEnv *env, jobject thiz, jlong handle, jshortArray vector, jint format, jint id) {
+    QuiverDBMMapVectorStoreWriter writer = reinterpret_cast<QuiverDBMMapVectorStoreWriter>(handle);
+    QuiverDBError result = withHalfArray(env, vector, writerDimension(writer), [&](const uint16_t *data) {
+        return quiverdb_mmap_vector_store_writer_add_half(writer, static_cast<uint64_t>(id), data, static_cast<QuiverDBElementType>(format));
+    });
+    if (result != QUIVERDB_OK) {
+        LOGE("Failed to add half-precision vector to MMap vector store writer: %d", result);
+        return JNI_FALSE;
+    }
+    return JNI_TRUE;
+}
+
+extern "C" JNIEXPORT jboolean JNICALL
+Java_com_llamamobile_vd_MMapVectorStoreBuilder_writerAddHalfVectorBuffer(JNIEnv *env, jobject thiz, jlong handle, jobject vector, jint position, jint remaining, jint format, jint id) {
+    QuiverDBMMapVectorStoreWriter writer = reinterpret_cast<QuiverDBMMapVectorStoreWriter>(handle);
+    QuiverDBError result = withHalfBuffer(env, vector, position, remaining, writerDimension(writer), [&](const uint16_t *data) {
+        return quiverdb_mmap_vector_store_writer_add_half(writer, static_cast<uint64_t>(id), data, static_cast<QuiverDBElementType>(format));
+    });
+    if (result != QUIVERDB_OK) {
+        LOGE("Failed to add half-precision vector to MMap vector store writer: %d", result);
+        return JNI_FALSE;
+    }
+    return JNI_TRUE;
+}
+
+extern "C" JNIEXPORT void JNICALL
+Java_com_llamamobile_vd_MMapVectorStoreBuilder_writerReserve(JNIEnv *env, jobject thiz, jlong handle, jint capacity) {
+    QuiverDBMMapVectorStoreWriter writer = reinterpret_cast<QuiverDBMMapVectorStoreWriter>(handle);
+    QuiverDBError result = quiverdb_mmap_vector_store_writer_reserve(writer, capacity);
+    if (result != QUIVERDB_OK) {
+        LOGE("Failed to reserve capacity in MMap vector store writer: %d", result);
+    }
+}
+
+extern "C" JNIEXPORT jboolean JNICALL
+Java_com_llamamobile_vd_MMapVectorStoreBuilder_writerSetBinaryIndex(JNIEnv *env, jobject thiz, jlong handle, jboolean enabled) {
+    QuiverDBMMapVectorStoreWriter writer = reinterpret_cast<QuiverDBMMapVectorStoreWriter>(handle);
+    QuiverDBError result = quiverdb_mmap_vector_store_writer_set_binary_index(writer, enabled ? 1 : 0);
+    if (result != QUIVERDB_OK) {
+        LOGE("Failed to set MMap vector store writer binary index: %d", result);
+        return JNI_FALSE;
+    }
+    return JNI_TRUE;
+}
+
+extern "C" JNIEXPORT jboolean JNICALL
+Java_com_llamamobile_vd_MMapVectorStoreBuilder_writerFinish(JNIEnv *env, jobject thiz, jlong handle) {
+    QuiverDBMMapVectorStoreWriter writer = reinterpret_cast<QuiverDBMMapVectorStoreWriter>(handle);
+    QuiverDBError result = quiverdb_mmap_vector_store_writer_finish(writer);
+    if (result != QUIVERDB_OK) {
+        LOGE("Failed to finish MMap vector store writer: %d", result);
+        return JNI_FALSE;
+    }
+    return JNI_TRUE;
+}
+
+extern "C" JNIEXPORT jint JNICALL
+Java_com_llamamobile_vd_MMapVectorStoreBuilder_writerGetCount(JNIEnv *env, jobject thiz, jlong handle) {
+    size_t size = 0;
+    quiverdb_mmap_vector_store_writer_size(reinterpret_cast<QuiverDBMMapVectorStoreWriter>(handle), &size);
+    return static_cast<jint>(size);
+}
+
+extern "C" JNIEXPORT jint JNICALL
+Java_com_llamamobile_vd_MMapVectorStoreBuilder_writerGetDimension(JNIEnv *env, jobject thiz, jlong handle) {
+    return static_cast<jint>(writerDimension(reinterpret_cast<QuiverDBMMapVectorStoreWriter>(handle)));
+}
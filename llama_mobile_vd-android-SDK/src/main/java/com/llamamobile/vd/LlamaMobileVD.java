@@ -24,6 +24,404 @@ public enum DistanceMetric {
     }
 }
 
+/**
+ * Precision vectors are stored in. Half-precision vectors are passed as their raw 16-bit
+ * patterns in a short[] or ShortBuffer.
+ */
+public enum ElementType {
+    FLOAT32(0),
+    FLOAT16(1),
+    BFLOAT16(2);
+
+    private final int value;
+
+    ElementType(int value) {
+        this.value = value;
+    }
+
+    public int getValue() {
+        return value;
+    }
+
+    static ElementType fromValue(int value) {
+        switch (value) {
+            case 1:
+                return FLOAT16;
+            case 2:
+                return BFLOAT16;
+            default:
+                return FLOAT32;
+        }
+    }
+}
+
+/**
+ * Helpers for passing half-precision vectors held in a ShortBuffer to native code
+ */
+final class HalfBuffers {
+    private HalfBuffers() {
+    }
+
+    /**
+     * Whether native code can read the buffer in place
+     */
+    static boolean readableInPlace(java.nio.ShortBuffer buffer) {
+        return buffer.isDirect() && buffer.order() == java.nio.ByteOrder.nativeOrder();
+    }
+
+    /**
+     * Copy the buffer's remaining elements without moving its position
+     */
+    static short[] toArray(java.nio.ShortBuffer buffer) {
+        short[] out = new short[buffer.remaining()];
+        buffer.duplicate().get(out);
+        return out;
+    }
+
+    static void requireHalf(ElementType format) {
+        if (format == ElementType.FLOAT32) {
+            throw new IllegalArgumentException("Half-precision vectors must be FLOAT16 or BFLOAT16");
+        }
+    }
+}
+
+/**
+ * Whether the native library could be loaded; the pure-Java engines stand in when it could not
+ *
+ * Setting the system property llamamobilevd.engine to "java" skips loading it, so the
+ * pure-Java engines can be selected even where the library is present.
+ */
+final class NativeLibrary {
+    static final String ENGINE_PROPERTY = "llamamobilevd.engine";
+    static final boolean LOADED = load();
+
+    private NativeLibrary() {
+    }
+
+    private static boolean load() {
+        if ("java".equals(System.getProperty(ENGINE_PROPERTY))) {
+            return false;
+        }
+        try {
+            System.loadLibrary("llamamobilevd");
+            return true;
+        } catch (UnsatisfiedLinkError e) {
+            return false;
+        }
+    }
+}
+
+/**
+ * FLOAT16 and BFLOAT16 conversions matching the native ones: narrowing rounds to nearest
+ * even, FLOAT16 overflows to infinity and NaNs stay NaN
+ */
+final class HalfFloats {
+    private static final float[] FP16_TABLE = new float[1 << 16];
+
+    static {
+        for (int h = 0; h < FP16_TABLE.length; h++) {
+            FP16_TABLE[h] = fp16ToFloatSlow((short) h);
+        }
+    }
+
+    private HalfFloats() {
+    }
+
+    static float decode(short h, ElementType format) {
+        return format == ElementType.BFLOAT16 ? bf16ToFloat(h) : fp16ToFloat(h);
+    }
+
+    static short encode(float f, ElementType format) {
+        return format == ElementType.BFLOAT16 ? floatToBf16(f) : floatToFp16(f);
+    }
+
+    static float fp16ToFloat(short h) {
+        return FP16_TABLE[h & 0xFFFF];
+    }
+
+    static float bf16ToFloat(short h) {
+        return Float.intBitsToFloat((h & 0xFFFF) << 16);
+    }
+
+    static short floatToBf16(float f) {
+        int x = Float.floatToRawIntBits(f);
+        if ((x & 0x7FFFFFFF) > 0x7F800000) {
+            return (short) ((x >>> 16) | 0x40);
+        }
+        x += 0x7FFF + ((x >>> 16) & 1);
+        return (short) (x >>> 16);
+    }
+
+    static short floatToFp16(float f) {
+        int x = Float.floatToRawIntBits(f);
+        int sign = (x >>> 16) & 0x8000;
+        int abs = x & 0x7FFFFFFF;
+        if (abs >= 0x7F800000) {
+            return (short) (sign | 0x7C00 | (abs > 0x7F800000 ? 0x200 : 0));
+        }
+        if (abs >= 0x477FF000) {
+            return (short) (sign | 0x7C00);  // Rounds past 65504
+        }
+        if (abs < 0x38800000) {
+            // Subnormal or zero: adding 0.5 lines the 2^-24 steps up with the last mantissa bit
+            int r = Float.floatToRawIntBits(Float.intBitsToFloat(abs) + 0.5f);
+            return (short) (sign | (r - 0x3F000000));
+        }
+        abs += 0xC8000FFF + ((abs >>> 13) & 1);  // Rebias the exponent (-112) and round to nearest even
+        return (short) (sign | (abs >>> 13));
+    }
+
+    private static float fp16ToFloatSlow(short h) {
+        int sign = (h & 0x8000) << 16;
+        int exp = (h >>> 10) & 0x1F;
+        int mant = h & 0x3FF;
+        if (exp == 0x1F) {
+            return Float.intBitsToFloat(sign | 0x7F800000 | (mant << 13));
+        }
+        if (exp != 0) {
+            return Float.intBitsToFloat(sign | ((exp + 112) << 23) | (mant << 13));
+        }
+        float subnormal = mant * 5.9604644775390625e-8f;  // mant * 2^-24
+        return sign != 0 ? -subnormal : subnormal;
+    }
+}
+
+/**
+ * Streaming top-k for the pure-Java engines: a max-heap of the k closest keys seen so far
+ */
+final class TopK {
+    private final long[] keys;
+    private final float[] distances;
+    private int size;
+
+    TopK(int k) {
+        keys = new long[k];
+        distances = new float[k];
+    }
+
+    void push(long key, float distance) {
+        if (size < keys.length) {
+            keys[size] = key;
+            distances[size] = distance;
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (distances[parent] >= distances[i]) {
+                    break;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        } else if (size > 0 && distance < distances[0]) {
+            keys[0] = key;
+            distances[0] = distance;
+            siftDown(size);
+        }
+    }
+
+    void pushAll(TopK other) {
+        for (int i = 0; i < other.size; i++) {
+            push(other.keys[i], other.distances[i]);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Sort the kept entries by ascending distance; ends collection
+     */
+    TopK sort() {
+        for (int n = size; n > 1; n--) {
+            swap(0, n - 1);
+            siftDown(n - 1);
+        }
+        return this;
+    }
+
+    long key(int i) {
+        return keys[i];
+    }
+
+    float distance(int i) {
+        return distances[i];
+    }
+
+    private void siftDown(int n) {
+        int i = 0;
+        while (true) {
+            int largest = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < n && distances[left] > distances[largest]) {
+                largest = left;
+            }
+            if (right < n && distances[right] > distances[largest]) {
+                largest = right;
+            }
+            if (largest == i) {
+                return;
+            }
+            swap(i, largest);
+            i = largest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        long key = keys[a];
+        keys[a] = keys[b];
+        keys[b] = key;
+        float d = distances[a];
+        distances[a] = distances[b];
+        distances[b] = d;
+    }
+}
+
+/**
+ * Distance kernels for the pure-Java engines
+ *
+ * The Java Vector API implementation (VectorApiKernels, built from src/jvm because Android has
+ * no jdk.incubator.vector) is used when it is on the class path and the module is present;
+ * otherwise the scalar loops below. Setting the system property llamamobilevd.kernels to
+ * "scalar" forces the scalar loops.
+ */
+abstract class DistanceKernels {
+    static final String KERNELS_PROPERTY = "llamamobilevd.kernels";
+    static final DistanceKernels ACTIVE = select();
+
+    abstract float dot(float[] a, int aOffset, float[] b, int bOffset, int n);
+
+    abstract float l2Sq(float[] a, int aOffset, float[] b, int bOffset, int n);
+
+    abstract String name();
+
+    private static DistanceKernels select() {
+        if (!"scalar".equals(System.getProperty(KERNELS_PROPERTY))) {
+            try {
+                return (DistanceKernels) Class.forName("com.llamamobile.vd.VectorApiKernels")
+                        .getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // Not built in, or the jdk.incubator.vector module is not enabled
+            }
+        }
+        return new ScalarKernels();
+    }
+
+    /**
+     * Four independent accumulators, so the loop is not bound by the latency of one add chain
+     */
+    static final class ScalarKernels extends DistanceKernels {
+        @Override
+        float dot(float[] a, int aOffset, float[] b, int bOffset, int n) {
+            float s0 = 0.0f;
+            float s1 = 0.0f;
+            float s2 = 0.0f;
+            float s3 = 0.0f;
+            int i = 0;
+            for (; i + 4 <= n; i += 4) {
+                s0 += a[aOffset + i] * b[bOffset + i];
+                s1 += a[aOffset + i + 1] * b[bOffset + i + 1];
+                s2 += a[aOffset + i + 2] * b[bOffset + i + 2];
+                s3 += a[aOffset + i + 3] * b[bOffset + i + 3];
+            }
+            for (; i < n; i++) {
+                s0 += a[aOffset + i] * b[bOffset + i];
+            }
+            return (s0 + s1) + (s2 + s3);
+        }
+
+        @Override
+        float l2Sq(float[] a, int aOffset, float[] b, int bOffset, int n) {
+            float s0 = 0.0f;
+            float s1 = 0.0f;
+            float s2 = 0.0f;
+            float s3 = 0.0f;
+            int i = 0;
+            for (; i + 4 <= n; i += 4) {
+                float d0 = a[aOffset + i] - b[bOffset + i];
+                float d1 = a[aOffset + i + 1] - b[bOffset + i + 1];
+                float d2 = a[aOffset + i + 2] - b[bOffset + i + 2];
+                float d3 = a[aOffset + i + 3] - b[bOffset + i + 3];
+                s0 += d0 * d0;
+                s1 += d1 * d1;
+                s2 += d2 * d2;
+                s3 += d3 * d3;
+            }
+            for (; i < n; i++) {
+                float d = a[aOffset + i] - b[bOffset + i];
+                s0 += d * d;
+            }
+            return (s0 + s1) + (s2 + s3);
+        }
+
+        @Override
+        String name() {
+            return "java-scalar";
+        }
+    }
+}
+
+/**
+ * The per-query native calls made through java.lang.foreign instead of JNI
+ *
+ * The implementation (FfmBindings, built from src/jvm because Android has no java.lang.foreign)
+ * binds the quiverdb_* functions the loaded library exports and works on the same handles as
+ * the JNI methods, so stores are still created, loaded and closed through JNI. Queries and
+ * results are copied through per-thread off-heap buffers rather than pinned arrays, and all
+ * results come back from one call. It is used on JDK 22 or later when it is on the class path;
+ * setting the system property llamamobilevd.binding to "jni" keeps every call on JNI.
+ *
+ * Search methods return the number of results written to ids and distances, or -1 on failure.
+ */
+abstract class ForeignBindings {
+    static final String BINDING_PROPERTY = "llamamobilevd.binding";
+    static final ForeignBindings ACTIVE = select();  // null when every call goes through JNI
+
+    abstract boolean vectorStoreAdd(long store, int id, float[] vector);
+
+    abstract boolean vectorStoreUpdate(long store, int id, float[] vector);
+
+    abstract boolean vectorStoreGet(long store, int id, float[] vector);
+
+    abstract int vectorStoreSearch(long store, float[] query, int k, int[] ids, float[] distances);
+
+    abstract int vectorStoreSearchBinary(long store, float[] query, int k, int rerankFactor, int[] ids, float[] distances);
+
+    abstract boolean vectorStoreSearchBatch(long store, float[] queries, int numQueries, int k,
+                                            int[] ids, float[] distances, int[] counts);
+
+    abstract boolean hnswIndexAdd(long index, int id, float[] vector);
+
+    abstract boolean hnswIndexGet(long index, int id, float[] vector);
+
+    abstract int hnswIndexSearch(long index, float[] query, int k, int efSearch, int[] ids, float[] distances);
+
+    abstract boolean mmapVectorStoreGet(long store, int id, float[] vector);
+
+    abstract int mmapVectorStoreSearch(long store, float[] query, int k, int[] ids, float[] distances);
+
+    abstract int mmapVectorStoreSearchBinary(long store, float[] query, int k, int rerankFactor, int[] ids, float[] distances);
+
+    abstract boolean mmapVectorStoreSearchBatch(long store, float[] queries, int numQueries, int k,
+                                                int[] ids, float[] distances, int[] counts);
+
+    abstract String name();
+
+    private static ForeignBindings select() {
+        if (!NativeLibrary.LOADED || "jni".equals(System.getProperty(BINDING_PROPERTY))) {
+            return null;
+        }
+        try {
+            return (ForeignBindings) Class.forName("com.llamamobile.vd.FfmBindings")
+                    .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // Not built in, an older JDK, or the library does not export the C API
+            return null;
+        }
+    }
+}
+
 /**
  * A result from a vector search operation
  */
@@ -64,13 +462,29 @@ public class SearchResult {
     public String toString() {
         return "SearchResult{id=" + id + ", distance=" + distance + "}";
     }
+
+    /**
+     * The first count results held in flat id / distance arrays filled by native code
+     */
+    static SearchResult[] fromArrays(int count, int[] ids, float[] distances) {
+        SearchResult[] results = new SearchResult[count];
+        for (int i = 0; i < count; i++) {
+            results[i] = new SearchResult(ids[i], distances[i]);
+        }
+        return results;
+    }
 }
 
 /**
  * A vector store for efficiently storing and searching vectors
+ *
+ * Stores run on the native library when it loads, and otherwise on a pure-Java engine with
+ * the same behavior and file format. Setting the system property llamamobilevd.engine to
+ * "java" selects the pure-Java engine even where the library is present.
  */
 public class VectorStore implements AutoCloseable {
     private long pointer;
+    private JavaVectorStoreEngine engine;  // Used instead of pointer when the native library is unavailable
 
     /**
      * Create a new vector store
@@ -80,12 +494,38 @@ public class VectorStore implements AutoCloseable {
      * @throws IllegalStateException If the vector store could not be created
      */
     public VectorStore(int dimension, DistanceMetric metric) {
+        if (!NativeLibrary.LOADED) {
+            engine = new JavaVectorStoreEngine(dimension, metric, ElementType.FLOAT32);
+            return;
+        }
         pointer = createVectorStore(dimension, metric.getValue());
         if (pointer == 0L) {
             throw new IllegalStateException("Failed to create vector store");
         }
     }
 
+    /**
+     * Create a new vector store that keeps its vectors in the given precision
+     *
+     * FLOAT16 and BFLOAT16 stores take half the memory of FLOAT32 ones and read half as many
+     * bytes per search; vectors and queries may still be passed as float[].
+     *
+     * @param dimension The dimension of the vectors
+     * @param metric The distance metric to use for similarity search
+     * @param elementType The precision vectors are stored in
+     * @throws IllegalStateException If the vector store could not be created
+     */
+    public VectorStore(int dimension, DistanceMetric metric, ElementType elementType) {
+        if (!NativeLibrary.LOADED) {
+            engine = new JavaVectorStoreEngine(dimension, metric, elementType);
+            return;
+        }
+        pointer = createTypedVectorStore(dimension, metric.getValue(), elementType.getValue());
+        if (pointer == 0L) {
+            throw new IllegalStateException("Failed to create vector store");
+        }
+    }
+
     /**
      * Add a vector to the store
      *
@@ -94,11 +534,82 @@ public class VectorStore implements AutoCloseable {
      * @throws IllegalArgumentException If the vector dimension doesn't match the store dimension
      */
     public void addVector(float[] vector, int id) {
-        if (!addVector(pointer, vector, vector.length, id)) {
+        if (engine != null) {
+            engine.add(id, vector);
+            return;
+        }
+        boolean added = ForeignBindings.ACTIVE != null
+                ? ForeignBindings.ACTIVE.vectorStoreAdd(pointer, id, vector)
+                : addVector(pointer, vector, vector.length, id);
+        if (!added) {
+            throw new IllegalArgumentException("Failed to add vector");
+        }
+    }
+
+    /**
+     * Add a half-precision vector to the store
+     *
+     * @param vector The vector as FLOAT16 or BFLOAT16 bit patterns
+     * @param format The format of the vector's elements
+     * @param id The ID to associate with the vector
+     * @throws IllegalArgumentException If the format is FLOAT32 or the vector dimension doesn't match the store dimension
+     */
+    public void addVector(short[] vector, ElementType format, int id) {
+        HalfBuffers.requireHalf(format);
+        if (engine != null) {
+            engine.add(id, widen(vector, format));
+            return;
+        }
+        if (!addHalfVector(pointer, vector, format.getValue(), id)) {
+            throw new IllegalArgumentException("Failed to add vector");
+        }
+    }
+
+    /**
+     * Add a half-precision vector to the store from the buffer's remaining elements
+     *
+     * Direct buffers in native byte order are read in place; others are copied first. The
+     * buffer's position is not changed.
+     *
+     * @param vector The vector as FLOAT16 or BFLOAT16 bit patterns
+     * @param format The format of the vector's elements
+     * @param id The ID to associate with the vector
+     * @throws IllegalArgumentException If the format is FLOAT32 or the vector dimension doesn't match the store dimension
+     */
+    public void addVector(java.nio.ShortBuffer vector, ElementType format, int id) {
+        if (engine != null || !HalfBuffers.readableInPlace(vector)) {
+            addVector(HalfBuffers.toArray(vector), format, id);
+            return;
+        }
+        HalfBuffers.requireHalf(format);
+        if (!addHalfVectorBuffer(pointer, vector, vector.position(), vector.remaining(), format.getValue(), id)) {
             throw new IllegalArgumentException("Failed to add vector");
         }
     }
 
+    /**
+     * Search for the nearest neighbors of a half-precision query vector
+     *
+     * @param queryVector The query as FLOAT16 or BFLOAT16 bit patterns
+     * @param format The format of the query's elements
+     * @param k The number of nearest neighbors to return
+     * @return An array of search results sorted by distance
+     * @throws IllegalArgumentException If the format is FLOAT32 or the query dimension doesn't match the store dimension
+     */
+    public SearchResult[] search(short[] queryVector, ElementType format, int k) {
+        HalfBuffers.requireHalf(format);
+        if (engine != null) {
+            return engine.search(widen(queryVector, format), k);
+        }
+        int[] ids = new int[Math.max(k, 0)];
+        float[] distances = new float[Math.max(k, 0)];
+        int count = searchHalf(pointer, queryVector, format.getValue(), k, ids, distances);
+        if (count < 0) {
+            throw new IllegalArgumentException("Failed to search vectors");
+        }
+        return SearchResult.fromArrays(count, ids, distances);
+    }
+
     /**
      * Search for the nearest neighbors of a query vector
      *
@@ -108,6 +619,18 @@ public class VectorStore implements AutoCloseable {
      * @throws IllegalArgumentException If the query vector dimension doesn't match the store dimension
      */
     public SearchResult[] search(float[] queryVector, int k) {
+        if (engine != null) {
+            return engine.search(queryVector, k);
+        }
+        if (ForeignBindings.ACTIVE != null) {
+            int[] ids = new int[Math.max(k, 0)];
+            float[] distances = new float[Math.max(k, 0)];
+            int count = ForeignBindings.ACTIVE.vectorStoreSearch(pointer, queryVector, k, ids, distances);
+            if (count < 0) {
+                throw new IllegalArgumentException("Failed to search vectors");
+            }
+            return SearchResult.fromArrays(count, ids, distances);
+        }
         int[] resultCount = new int[1];
         long resultsPtr = search(pointer, queryVector, queryVector.length, k, resultCount);
         if (resultsPtr == 0L) {
@@ -127,12 +650,63 @@ public class VectorStore implements AutoCloseable {
         }
     }
 
+    /**
+     * Search for the nearest neighbors of several query vectors in one call
+     *
+     * The queries are scored together against each block of stored vectors, so every vector
+     * is read once per block of queries rather than once per query. Results match calling
+     * {@link #search(float[], int)} for each query.
+     *
+     * @param queryVectors The query vectors, each of the store dimension
+     * @param k The number of nearest neighbors to return per query
+     * @return One array of search results per query, each sorted by distance
+     * @throws IllegalArgumentException If k is less than 1 or a query dimension doesn't match the store dimension
+     */
+    public SearchResult[][] searchBatch(float[][] queryVectors, int k) {
+        if (k < 1) {
+            throw new IllegalArgumentException("k must be at least 1");
+        }
+        if (engine != null) {
+            return engine.searchBatch(queryVectors, k);
+        }
+        int dimension = getDimension();
+        float[] queries = new float[queryVectors.length * dimension];
+        for (int q = 0; q < queryVectors.length; q++) {
+            if (queryVectors[q].length != dimension) {
+                throw new IllegalArgumentException("Query vector dimension doesn't match the store dimension");
+            }
+            System.arraycopy(queryVectors[q], 0, queries, q * dimension, dimension);
+        }
+
+        int[] ids = new int[queryVectors.length * k];
+        float[] distances = new float[queryVectors.length * k];
+        int[] counts = new int[queryVectors.length];
+        boolean searched = ForeignBindings.ACTIVE != null
+                ? ForeignBindings.ACTIVE.vectorStoreSearchBatch(pointer, queries, queryVectors.length, k, ids, distances, counts)
+                : searchBatch(pointer, queries, queryVectors.length, k, ids, distances, counts);
+        if (!searched) {
+            throw new IllegalArgumentException("Failed to batch search vectors");
+        }
+
+        SearchResult[][] results = new SearchResult[queryVectors.length][];
+        for (int q = 0; q < queryVectors.length; q++) {
+            results[q] = new SearchResult[counts[q]];
+            for (int i = 0; i < counts[q]; i++) {
+                results[q][i] = new SearchResult(ids[q * k + i], distances[q * k + i]);
+            }
+        }
+        return results;
+    }
+
     /**
      * Get the number of vectors in the store
      *
      * @return The number of vectors in the store
      */
     public int getCount() {
+        if (engine != null) {
+            return engine.count();
+        }
         return getCount(pointer);
     }
 
@@ -140,6 +714,10 @@ public class VectorStore implements AutoCloseable {
      * Clear all vectors from the store
      */
     public void clear() {
+        if (engine != null) {
+            engine.clear();
+            return;
+        }
         clear(pointer);
     }
 
@@ -150,6 +728,9 @@ public class VectorStore implements AutoCloseable {
      * @return true if the vector was removed, false otherwise
      */
     public boolean remove(int id) {
+        if (engine != null) {
+            return engine.remove(id);
+        }
         int[] removed = new int[1];
         return remove(pointer, id, removed);
     }
@@ -161,9 +742,15 @@ public class VectorStore implements AutoCloseable {
      * @return The vector if found, null otherwise
      */
     public float[] get(int id) {
+        if (engine != null) {
+            return engine.get(id);
+        }
         int dimension = getDimension();
         float[] vector = new float[dimension];
-        return get(pointer, id, vector) ? vector : null;
+        boolean found = ForeignBindings.ACTIVE != null
+                ? ForeignBindings.ACTIVE.vectorStoreGet(pointer, id, vector)
+                : get(pointer, id, vector);
+        return found ? vector : null;
     }
 
     /**
@@ -178,6 +765,12 @@ public class VectorStore implements AutoCloseable {
         if (vector.length != getDimension()) {
             throw new IllegalArgumentException("Vector dimension must match store dimension");
         }
+        if (engine != null) {
+            return engine.update(id, vector);
+        }
+        if (ForeignBindings.ACTIVE != null) {
+            return ForeignBindings.ACTIVE.vectorStoreUpdate(pointer, id, vector);
+        }
         return update(pointer, id, vector, vector.length);
     }
 
@@ -187,6 +780,9 @@ public class VectorStore implements AutoCloseable {
      * @return The dimension of the vectors
      */
     public int getDimension() {
+        if (engine != null) {
+            return engine.dimension();
+        }
         return getDimension(pointer);
     }
 
@@ -196,6 +792,9 @@ public class VectorStore implements AutoCloseable {
      * @return The distance metric
      */
     public DistanceMetric getMetric() {
+        if (engine != null) {
+            return engine.metric();
+        }
         int metricValue = getMetric(pointer);
         switch (metricValue) {
             case 0:
@@ -209,6 +808,18 @@ public class VectorStore implements AutoCloseable {
         }
     }
 
+    /**
+     * Get the precision the store keeps its vectors in
+     *
+     * @return The element type
+     */
+    public ElementType getElementType() {
+        if (engine != null) {
+            return engine.elementType();
+        }
+        return ElementType.fromValue(getElementType(pointer));
+    }
+
     /**
      * Check if the store contains a vector with the given ID
      *
@@ -216,6 +827,9 @@ public class VectorStore implements AutoCloseable {
      * @return true if the vector exists, false otherwise
      */
     public boolean contains(int id) {
+        if (engine != null) {
+            return engine.contains(id);
+        }
         int[] contains = new int[1];
         return contains(pointer, id, contains);
     }
@@ -226,28 +840,201 @@ public class VectorStore implements AutoCloseable {
      * @param capacity The number of vectors to reserve space for
      */
     public void reserve(int capacity) {
+        if (engine != null) {
+            engine.reserve(capacity);
+            return;
+        }
         reserve(pointer, capacity);
     }
 
     /**
-     * Close the vector store and free resources
+     * Set the number of threads used by search
+     *
+     * Large stores are split into one slice per thread and the best results of each slice
+     * are merged. The default of 1 scans on the calling thread only.
+     *
+     * @param threads The number of search threads, at least 1
+     * @throws IllegalArgumentException If threads is less than 1
      */
-    @Override
-    public void close() {
-        if (pointer != 0L) {
-            destroyVectorStore(pointer);
-            pointer = 0L;
+    public void setSearchThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Search threads must be at least 1");
+        }
+        if (engine != null) {
+            engine.setSearchThreads(threads);
+            return;
+        }
+        if (!setSearchThreads(pointer, threads)) {
+            throw new IllegalStateException("Failed to set search threads");
         }
     }
 
-    @Override
-    protected void finalize() throws Throwable {
-        super.finalize();
-        close();
-    }
-
-    // JNI methods
-    private native long createVectorStore(int dimension, int metric);
+    /**
+     * Keep one sign bit per dimension for every vector, enabling {@link #searchBinary(float[], int, int)}
+     *
+     * Enabling codes the vectors already in the store; disabling frees the codes.
+     *
+     * @param enabled Whether to keep the binary index
+     */
+    public void setBinaryIndex(boolean enabled) {
+        if (engine != null) {
+            engine.setBinaryIndex(enabled);
+            return;
+        }
+        if (!setBinaryIndex(pointer, enabled)) {
+            throw new IllegalStateException("Failed to set binary index");
+        }
+    }
+
+    /**
+     * Approximate search over binary codes
+     *
+     * Vectors are shortlisted by the Hamming distance between their sign bits and the
+     * query's (dimension / 8 bytes per vector instead of dimension * 4), then the
+     * k * rerankFactor closest are reranked with the exact metric.
+     *
+     * @param queryVector The query vector
+     * @param k The number of nearest neighbors to return
+     * @param rerankFactor How many candidates per result to rerank, at least 1
+     * @return An array of search results sorted by distance
+     * @throws IllegalArgumentException If k or rerankFactor is less than 1 or the query dimension doesn't match
+     * @throws IllegalStateException If the store has no binary index
+     */
+    public SearchResult[] searchBinary(float[] queryVector, int k, int rerankFactor) {
+        if (k < 1 || rerankFactor < 1) {
+            throw new IllegalArgumentException("k and rerankFactor must be at least 1");
+        }
+        if (engine != null) {
+            return engine.searchBinary(queryVector, k, rerankFactor);
+        }
+        int[] ids = new int[k];
+        float[] distances = new float[k];
+        int count = ForeignBindings.ACTIVE != null
+                ? ForeignBindings.ACTIVE.vectorStoreSearchBinary(pointer, queryVector, k, rerankFactor, ids, distances)
+                : searchBinary(pointer, queryVector, k, rerankFactor, ids, distances);
+        if (count < 0) {
+            throw new IllegalStateException("Failed to binary search vectors");
+        }
+        return SearchResult.fromArrays(count, ids, distances);
+    }
+
+    /**
+     * Approximate search over binary codes, reranking 4 candidates per result
+     *
+     * @param queryVector The query vector
+     * @param k The number of nearest neighbors to return
+     * @return An array of search results sorted by distance
+     */
+    public SearchResult[] searchBinary(float[] queryVector, int k) {
+        return searchBinary(queryVector, k, 4);
+    }
+
+    /**
+     * Save the store to a file
+     *
+     * Vectors and IDs are written as held in memory, in one sequential pass. The file uses
+     * the MMapVectorStore format, so it can also be opened read-only with {@link MMapVectorStore#open(String)}.
+     *
+     * @param filename The path to the file where the store should be saved
+     * @return true if the store was saved successfully, false otherwise
+     */
+    public boolean save(String filename) {
+        if (engine != null) {
+            try {
+                engine.save(filename);
+                return true;
+            } catch (java.io.IOException e) {
+                return false;
+            }
+        }
+        return save(pointer, filename);
+    }
+
+    /**
+     * Load a store saved with {@link #save(String)} or by an MMapVectorStoreBuilder
+     *
+     * @param filename The path to the file containing the saved store
+     * @return The loaded vector store
+     * @throws IllegalStateException If the store could not be loaded
+     */
+    public static VectorStore load(String filename) {
+        return load(filename, false);
+    }
+
+    /**
+     * Load a saved store, optionally mapping the file instead of reading it
+     *
+     * A mapped store searches the vectors in place and only builds its ID lookup up front,
+     * so opening it costs a fraction of a full read. The first write (add, update, remove,
+     * reserve or setBinaryIndex) copies the vectors into memory; the file itself is never modified.
+     * The pure-Java engine always reads the file.
+     *
+     * @param filename The path to the file containing the saved store
+     * @param map Whether to map the file rather than read it
+     * @return The loaded vector store
+     * @throws IllegalStateException If the store could not be loaded
+     */
+    public static VectorStore load(String filename, boolean map) {
+        if (!NativeLibrary.LOADED) {
+            return new VectorStore(JavaVectorStoreEngine.load(filename));
+        }
+        long storePointer = nativeLoad(filename, map);
+        if (storePointer == 0L) {
+            throw new IllegalStateException("Failed to load vector store from file: " + filename);
+        }
+        return new VectorStore(storePointer);
+    }
+
+    /**
+     * Private constructor for loading an existing store pointer
+     */
+    private VectorStore(long pointer) {
+        this.pointer = pointer;
+    }
+
+    private VectorStore(JavaVectorStoreEngine engine) {
+        this.engine = engine;
+    }
+
+    /**
+     * Whether this store runs on the native library rather than the pure-Java engine
+     *
+     * @return true for native stores
+     */
+    public boolean isNative() {
+        return engine == null;
+    }
+
+    private float[] widen(short[] vector, ElementType format) {
+        float[] out = new float[vector.length];
+        for (int j = 0; j < vector.length; j++) {
+            out[j] = HalfFloats.decode(vector[j], format);
+        }
+        return out;
+    }
+
+    /**
+     * Close the vector store and free resources
+     */
+    @Override
+    public void close() {
+        if (engine != null) {
+            engine.close();
+        }
+        if (pointer != 0L) {
+            destroyVectorStore(pointer);
+            pointer = 0L;
+        }
+    }
+
+    @Override
+    protected void finalize() throws Throwable {
+        super.finalize();
+        close();
+    }
+
+    // JNI methods
+    private native long createVectorStore(int dimension, int metric);
     private native void destroyVectorStore(long store);
     private native boolean addVector(long store, float[] vector, int vectorSize, int id);
     private native boolean remove(long store, int id, int[] removed);
@@ -263,141 +1050,1986 @@ public class VectorStore implements AutoCloseable {
     private native float getResultDistance(long results, int index);
     private native int getCount(long store);
     private native void clear(long store);
-
-    static {
-        System.loadLibrary("llamamobilevd");
-    }
+    private native boolean setSearchThreads(long store, int threads);
+    private native boolean searchBatch(long store, float[] queries, int numQueries, int k, int[] ids, float[] distances, int[] counts);
+    private native long createTypedVectorStore(int dimension, int metric, int elementType);
+    private native boolean addHalfVector(long store, short[] vector, int format, int id);
+    private native boolean addHalfVectorBuffer(long store, java.nio.ShortBuffer vector, int position, int remaining, int format, int id);
+    private native int searchHalf(long store, short[] queryVector, int format, int k, int[] ids, float[] distances);
+    private native int getElementType(long store);
+    private native boolean setBinaryIndex(long store, boolean enabled);
+    private native int searchBinary(long store, float[] queryVector, int k, int rerankFactor, int[] ids, float[] distances);
+    private native boolean save(long store, String filename);
+    private static native long nativeLoad(String filename, boolean map);
 }
 
 /**
- * A builder for creating and saving MMapVectorStore instances
- * MMapVectorStore is optimized for large datasets that may exceed RAM capacity
+ * The pure-Java VectorStore implementation, used when the native library is unavailable
+ *
+ * Mirrors the native store: rows are kept back to back in the store's precision, cosine rows
+ * are kept unit length next to their norms, removing a vector moves the last row into its
+ * place, and files are written in the MMapVectorStore format.
  */
-public class MMapVectorStoreBuilder implements AutoCloseable {
-    private long pointer;
+final class JavaVectorStoreEngine {
+    // Rows a search thread needs before splitting a scan pays for the hand-off
+    private static final int MIN_ROWS_PER_THREAD = 16384;
+    // Rows scored against a block of queries at once in searchBatch, about 32 KB of FLOAT32 rows
+    private static final int ROW_BLOCK_BYTES = 32 * 1024;
+    private static final int QUERY_BLOCK = 16;
+
+    private final int dimension;
+    private final DistanceMetric metric;
+    private final ElementType elementType;
+    private final int words;
+    private final DistanceKernels kernels = DistanceKernels.ACTIVE;
+    private final java.util.concurrent.locks.ReentrantReadWriteLock lock =
+            new java.util.concurrent.locks.ReentrantReadWriteLock();
+    private final java.util.HashMap<Integer, Integer> rowOf = new java.util.HashMap<>();
+    private int[] ids = new int[0];
+    private float[] floats = new float[0];  // FLOAT32 rows
+    private short[] halves = new short[0];  // FLOAT16 / BFLOAT16 rows
+    private float[] norms = new float[0];   // Cosine stores only
+    private long[] bits;                    // Sign codes, words per row, while the binary index is on
+    private int count;
+    private java.util.concurrent.ExecutorService pool;
+    private int threads = 1;
+
+    JavaVectorStoreEngine(int dimension, DistanceMetric metric, ElementType elementType) {
+        if (dimension < 1) {
+            throw new IllegalArgumentException("Dimension must be at least 1");
+        }
+        this.dimension = dimension;
+        this.metric = metric;
+        this.elementType = elementType;
+        this.words = (dimension + 63) / 64;
+    }
+
+    void add(int id, float[] vector) {
+        checkDimension(vector);
+        lock.writeLock().lock();
+        try {
+            if (rowOf.containsKey(id)) {
+                throw new IllegalArgumentException("Duplicate ID " + id);
+            }
+            ensureCapacity(count + 1);
+            ids[count] = id;
+            rowOf.put(id, count);
+            storeRow(count, vector);
+            count++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    boolean update(int id, float[] vector) {
+        checkDimension(vector);
+        lock.writeLock().lock();
+        try {
+            Integer row = rowOf.get(id);
+            if (row == null) {
+                return false;
+            }
+            storeRow(row, vector);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    boolean remove(int id) {
+        lock.writeLock().lock();
+        try {
+            Integer row = rowOf.remove(id);
+            if (row == null) {
+                return false;
+            }
+            int last = count - 1;
+            if (row != last) {
+                if (elementType == ElementType.FLOAT32) {
+                    System.arraycopy(floats, last * dimension, floats, row * dimension, dimension);
+                } else {
+                    System.arraycopy(halves, last * dimension, halves, row * dimension, dimension);
+                }
+                if (metric == DistanceMetric.COSINE) {
+                    norms[row] = norms[last];
+                }
+                if (bits != null) {
+                    System.arraycopy(bits, last * words, bits, row * words, words);
+                }
+                ids[row] = ids[last];
+                rowOf.put(ids[row], row);
+            }
+            count = last;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void clear() {
+        lock.writeLock().lock();
+        try {
+            rowOf.clear();
+            count = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void reserve(int capacity) {
+        lock.writeLock().lock();
+        try {
+            ensureCapacity(capacity);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
 
     /**
-     * Create a new MMapVectorStore builder
-     *
-     * @param dimension The dimension of the vectors
-     * @param metric The distance metric to use for similarity search
-     * @throws IllegalStateException If the builder could not be created
+     * The vector as added: decoded to float and scaled back by its norm in cosine stores
      */
-    public MMapVectorStoreBuilder(int dimension, DistanceMetric metric) {
-        pointer = createBuilder(dimension, metric.getValue());
-        if (pointer == 0L) {
-            throw new IllegalStateException("Failed to create MMap vector store builder");
+    float[] get(int id) {
+        lock.readLock().lock();
+        try {
+            Integer row = rowOf.get(id);
+            if (row == null) {
+                return null;
+            }
+            float[] out = new float[dimension];
+            decodeRow(row, out);
+            if (metric == DistanceMetric.COSINE) {
+                float norm = norms[row];
+                for (int j = 0; j < dimension; j++) {
+                    out[j] *= norm;
+                }
+            }
+            return out;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    boolean contains(int id) {
+        lock.readLock().lock();
+        try {
+            return rowOf.containsKey(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    int count() {
+        lock.readLock().lock();
+        try {
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    int dimension() {
+        return dimension;
+    }
+
+    DistanceMetric metric() {
+        return metric;
+    }
+
+    ElementType elementType() {
+        return elementType;
+    }
+
+    void setSearchThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Search threads must be at least 1");
+        }
+        lock.writeLock().lock();
+        try {
+            shutdownPool();
+            this.threads = threads;
+            if (threads > 1) {
+                pool = java.util.concurrent.Executors.newFixedThreadPool(threads, runnable -> {
+                    Thread thread = new Thread(runnable, "llamamobilevd-search");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void setBinaryIndex(boolean enabled) {
+        lock.writeLock().lock();
+        try {
+            if (!enabled) {
+                bits = null;
+                return;
+            }
+            bits = new long[ids.length * words];
+            float[] row = new float[dimension];
+            for (int r = 0; r < count; r++) {
+                decodeRow(r, row);
+                binarize(row, bits, r * words);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    SearchResult[] search(float[] query, int k) {
+        requirePositive(k, "k");
+        checkDimension(query);
+        float[] q = prepare(query);
+        lock.readLock().lock();
+        try {
+            int slices = count >= 2 * MIN_ROWS_PER_THREAD && pool != null
+                    ? Math.min(threads, count / MIN_ROWS_PER_THREAD) : 1;
+            TopK top;
+            if (slices == 1) {
+                top = scan(q, k, 0, count);
+            } else {
+                java.util.List<java.util.concurrent.Callable<TopK>> tasks = new java.util.ArrayList<>();
+                for (int s = 0; s < slices; s++) {
+                    int begin = (int) ((long) count * s / slices);
+                    int end = (int) ((long) count * (s + 1) / slices);
+                    tasks.add(() -> scan(q, k, begin, end));
+                }
+                top = new TopK(k);
+                for (java.util.concurrent.Future<TopK> slice : pool.invokeAll(tasks)) {
+                    top.pushAll(slice.get());
+                }
+            }
+            return results(top.sort());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Search interrupted", e);
+        } catch (java.util.concurrent.ExecutionException e) {
+            throw new IllegalStateException("Search failed", e.getCause());
+        } finally {
+            lock.readLock().unlock();
         }
     }
 
     /**
-     * Add a vector to the builder
-     *
-     * @param vector The vector to add
-     * @param id The ID to associate with the vector
-     * @throws IllegalArgumentException If the vector dimension doesn't match the builder dimension
+     * Each block of rows is scored against a block of queries while it is cache-resident, so
+     * the rows stream once per query block instead of once per query
      */
-    public void addVector(float[] vector, int id) {
-        if (!addVector(pointer, vector, vector.length, id)) {
-            throw new IllegalArgumentException("Failed to add vector to MMap vector store builder");
+    SearchResult[][] searchBatch(float[][] queries, int k) {
+        requirePositive(k, "k");
+        float[][] prepared = new float[queries.length][];
+        for (int q = 0; q < queries.length; q++) {
+            checkDimension(queries[q]);
+            prepared[q] = prepare(queries[q]);
+        }
+        lock.readLock().lock();
+        try {
+            TopK[] tops = new TopK[queries.length];
+            int rowBlock = Math.max(4, ROW_BLOCK_BYTES / (dimension * 4));
+            for (int q0 = 0; q0 < queries.length; q0 += QUERY_BLOCK) {
+                int q1 = Math.min(queries.length, q0 + QUERY_BLOCK);
+                for (int q = q0; q < q1; q++) {
+                    tops[q] = new TopK(k);
+                }
+                for (int r0 = 0; r0 < count; r0 += rowBlock) {
+                    int r1 = Math.min(count, r0 + rowBlock);
+                    for (int q = q0; q < q1; q++) {
+                        for (int r = r0; r < r1; r++) {
+                            tops[q].push(r, distance(prepared[q], r));
+                        }
+                    }
+                }
+            }
+            SearchResult[][] out = new SearchResult[queries.length][];
+            for (int q = 0; q < queries.length; q++) {
+                out[q] = results(tops[q].sort());
+            }
+            return out;
+        } finally {
+            lock.readLock().unlock();
         }
     }
 
     /**
-     * Reserve space for the specified number of vectors
-     *
-     * @param capacity The number of vectors to reserve space for
+     * Shortlists k * rerankFactor rows by the Hamming distance of their sign codes, then
+     * reranks the shortlist with the exact metric
      */
-    public void reserve(int capacity) {
-        reserve(pointer, capacity);
+    SearchResult[] searchBinary(float[] query, int k, int rerankFactor) {
+        requirePositive(k, "k");
+        requirePositive(rerankFactor, "rerankFactor");
+        checkDimension(query);
+        float[] q = prepare(query);
+        long[] qbits = new long[words];
+        binarize(q, qbits, 0);
+        lock.readLock().lock();
+        try {
+            if (bits == null) {
+                throw new IllegalStateException("Binary index not enabled");
+            }
+            TopK shortlist = new TopK((int) Math.min(Integer.MAX_VALUE, (long) k * rerankFactor));
+            for (int r = 0; r < count; r++) {
+                int d = 0;
+                for (int w = 0; w < words; w++) {
+                    d += Long.bitCount(qbits[w] ^ bits[r * words + w]);
+                }
+                shortlist.push(r, d);
+            }
+            TopK top = new TopK(Math.min(k, shortlist.size()));
+            for (int i = 0; i < shortlist.size(); i++) {
+                int r = (int) shortlist.key(i);
+                top.push(r, distance(q, r));
+            }
+            return results(top.sort());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Write the store in the MMapVectorStore file format, with an id index, through a
+     * temporary file renamed over filename once it is complete
+     */
+    void save(String filename) throws java.io.IOException {
+        lock.readLock().lock();
+        try {
+            StoreFileWriter.write(filename, dimension, metric, elementType, count, ids, floats, halves,
+                    metric == DistanceMetric.COSINE ? norms : null, bits, words);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Read a file written by save, VectorStore.save or an MMapVectorStoreBuilder into memory
+     */
+    static JavaVectorStoreEngine load(String filename) {
+        try (JavaMMapVectorStore file = JavaMMapVectorStore.open(filename)) {
+            JavaVectorStoreEngine engine = new JavaVectorStoreEngine(file.getDimension(), file.getMetric(),
+                    file.getElementType());
+            int n = file.getCount();
+            int dim = engine.dimension;
+            engine.ensureCapacity(n);
+            boolean cosine = engine.metric == DistanceMetric.COSINE;
+            for (int r = 0; r < n; r++) {
+                int id = (int) file.idAt(r);
+                if (engine.rowOf.put(id, r) != null) {
+                    throw new IllegalStateException("Duplicate ID " + id + " in " + filename);
+                }
+                engine.ids[r] = id;
+                if (engine.elementType == ElementType.FLOAT32) {
+                    file.copyRow(r, engine.floats, r * dim);
+                } else {
+                    file.copyRow(r, engine.halves, r * dim);
+                }
+                if (cosine && file.isNormalized()) {
+                    engine.norms[r] = file.normAt(r);
+                } else if (cosine && engine.elementType == ElementType.FLOAT32) {
+                    // Older files kept cosine rows as added
+                    float norm = (float) Math.sqrt(engine.kernels.dot(engine.floats, r * dim, engine.floats, r * dim, dim));
+                    float inv = norm > 0.0f ? 1.0f / norm : 0.0f;
+                    for (int j = 0; j < dim; j++) {
+                        engine.floats[r * dim + j] *= inv;
+                    }
+                    engine.norms[r] = norm;
+                }
+            }
+            engine.count = n;
+            if (file.hasBinaryIndex()) {
+                engine.setBinaryIndex(true);
+            }
+            return engine;
+        }
+    }
+
+    void close() {
+        lock.writeLock().lock();
+        try {
+            shutdownPool();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void shutdownPool() {
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+    }
+
+    private TopK scan(float[] q, int k, int begin, int end) {
+        TopK top = new TopK(k);
+        for (int r = begin; r < end; r++) {
+            top.push(r, distance(q, r));
+        }
+        return top;
+    }
+
+    private SearchResult[] results(TopK top) {
+        SearchResult[] out = new SearchResult[top.size()];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = new SearchResult(ids[(int) top.key(i)], top.distance(i));
+        }
+        return out;
+    }
+
+    /**
+     * Store-metric distance from a prepared query to row r; DOT is negated so that smaller is closer
+     */
+    private float distance(float[] q, int r) {
+        int base = r * dimension;
+        if (elementType == ElementType.FLOAT32) {
+            switch (metric) {
+                case L2:
+                    return kernels.l2Sq(q, 0, floats, base, dimension);
+                case COSINE:
+                    return unitCosineDistance(kernels.dot(q, 0, floats, base, dimension));
+                default:
+                    return -kernels.dot(q, 0, floats, base, dimension);
+            }
+        }
+        float sum = 0.0f;
+        if (metric == DistanceMetric.L2) {
+            for (int j = 0; j < dimension; j++) {
+                float d = q[j] - HalfFloats.decode(halves[base + j], elementType);
+                sum += d * d;
+            }
+            return sum;
+        }
+        for (int j = 0; j < dimension; j++) {
+            sum += q[j] * HalfFloats.decode(halves[base + j], elementType);
+        }
+        return metric == DistanceMetric.COSINE ? unitCosineDistance(sum) : -sum;
+    }
+
+    private static float unitCosineDistance(float dot) {
+        return 1.0f - Math.max(-1.0f, Math.min(1.0f, dot));
+    }
+
+    /**
+     * The query as rows are compared against it: unit length for cosine stores
+     */
+    private float[] prepare(float[] query) {
+        if (metric != DistanceMetric.COSINE) {
+            return query;
+        }
+        float[] out = new float[dimension];
+        normalizeInto(query, out, 0);
+        return out;
+    }
+
+    // Writes v / |v| into out at offset and returns |v|; a zero vector stays zero
+    private float normalizeInto(float[] v, float[] out, int offset) {
+        float norm = (float) Math.sqrt(kernels.dot(v, 0, v, 0, dimension));
+        float inv = norm > 0.0f ? 1.0f / norm : 0.0f;
+        for (int j = 0; j < dimension; j++) {
+            out[offset + j] = v[j] * inv;
+        }
+        return norm;
+    }
+
+    private void storeRow(int r, float[] vector) {
+        if (bits != null) {
+            binarize(vector, bits, r * words);
+        }
+        int base = r * dimension;
+        if (elementType == ElementType.FLOAT32) {
+            if (metric == DistanceMetric.COSINE) {
+                norms[r] = normalizeInto(vector, floats, base);
+            } else {
+                System.arraycopy(vector, 0, floats, base, dimension);
+            }
+            return;
+        }
+        float[] unit = vector;
+        if (metric == DistanceMetric.COSINE) {
+            unit = new float[dimension];
+            norms[r] = normalizeInto(vector, unit, 0);
+        }
+        for (int j = 0; j < dimension; j++) {
+            halves[base + j] = HalfFloats.encode(unit[j], elementType);
+        }
+    }
+
+    private void decodeRow(int r, float[] out) {
+        int base = r * dimension;
+        if (elementType == ElementType.FLOAT32) {
+            System.arraycopy(floats, base, out, 0, dimension);
+            return;
+        }
+        for (int j = 0; j < dimension; j++) {
+            out[j] = HalfFloats.decode(halves[base + j], elementType);
+        }
     }
 
+    // One sign bit per dimension, set when the element is > 0, packed little-endian into longs
+    private void binarize(float[] v, long[] out, int offset) {
+        for (int w = 0; w < words; w++) {
+            long word = 0L;
+            int end = Math.min(dimension, (w + 1) * 64);
+            for (int j = w * 64; j < end; j++) {
+                if (v[j] > 0.0f) {
+                    word |= 1L << (j - w * 64);
+                }
+            }
+            out[offset + w] = word;
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= ids.length) {
+            return;
+        }
+        long grown = Math.max(capacity, ids.length + (ids.length >> 1) + 16L);
+        long limit = (Integer.MAX_VALUE - 8) / Math.max(dimension, words);
+        if (capacity > limit) {
+            throw new IllegalStateException("Store is full");
+        }
+        int newCapacity = (int) Math.min(grown, limit);
+        ids = java.util.Arrays.copyOf(ids, newCapacity);
+        if (elementType == ElementType.FLOAT32) {
+            floats = java.util.Arrays.copyOf(floats, newCapacity * dimension);
+        } else {
+            halves = java.util.Arrays.copyOf(halves, newCapacity * dimension);
+        }
+        if (metric == DistanceMetric.COSINE) {
+            norms = java.util.Arrays.copyOf(norms, newCapacity);
+        }
+        if (bits != null) {
+            bits = java.util.Arrays.copyOf(bits, newCapacity * words);
+        }
+    }
+
+    private void checkDimension(float[] vector) {
+        if (vector == null || vector.length != dimension) {
+            throw new IllegalArgumentException("Vector dimension doesn't match the store dimension");
+        }
+    }
+
+    private static void requirePositive(int value, String name) {
+        if (value < 1) {
+            throw new IllegalArgumentException(name + " must be at least 1");
+        }
+    }
+}
+
+/**
+ * Writes store files in the layout store_file.h describes: a 128-byte header, then ids, rows,
+ * norms, sign codes and the id index, each section 64-byte aligned
+ */
+final class StoreFileWriter {
+    private static final int MAGIC = 0x42445651;
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 128;
+    private static final int SECTION_ALIGN = 64;
+    private static final int FLAG_NORMALIZED = 1;
+    private static final int FLAG_BINARY = 1 << 1;
+    private static final int FLAG_ID_INDEX = 1 << 2;
+
+    private final java.nio.channels.FileChannel channel;
+    private final java.nio.ByteBuffer buffer =
+            java.nio.ByteBuffer.allocate(1 << 20).order(java.nio.ByteOrder.LITTLE_ENDIAN);
+    private long position;
+
+    private StoreFileWriter(java.nio.channels.FileChannel channel) {
+        this.channel = channel;
+    }
+
+    static void write(String filename, int dimension, DistanceMetric metric, ElementType type, int count,
+                      int[] ids, float[] floats, short[] halves, float[] norms, long[] bits, int words)
+            throws java.io.IOException {
+        long rowBytes = (long) dimension * (type == ElementType.FLOAT32 ? 4 : 2);
+        long idsOffset = HEADER_SIZE;
+        long rowsOffset = align(idsOffset + 8L * count);
+        long rowsEnd = rowsOffset + rowBytes * count;
+        long normsOffset = norms != null ? align(rowsEnd) : 0;
+        long normsEnd = norms != null ? normsOffset + 4L * count : rowsEnd;
+        long bitsOffset = bits != null ? align(normsEnd) : 0;
+        long bitsEnd = bits != null ? bitsOffset + 8L * words * count : normsEnd;
+        long indexOffset = align(bitsEnd);
+        long[] index = idIndex(ids, count);
+        int flags = FLAG_ID_INDEX | (norms != null ? FLAG_NORMALIZED : 0) | (bits != null ? FLAG_BINARY : 0);
+
+        // java.io rather than java.nio.file, which Android only has from API 26
+        java.io.File target = new java.io.File(filename);
+        java.io.File tmp = new java.io.File(filename + ".tmp");
+        try (java.io.RandomAccessFile file = new java.io.RandomAccessFile(tmp, "rw")) {
+            file.setLength(0);
+            java.nio.channels.FileChannel channel = file.getChannel();
+            StoreFileWriter out = new StoreFileWriter(channel);
+            out.putInt(MAGIC);
+            out.putInt(VERSION);
+            out.putLong(dimension);
+            out.putLong(count);
+            out.putInt(metric.getValue());
+            out.putInt(flags);
+            out.putLong(idsOffset);
+            out.putLong(rowsOffset);
+            out.putLong(normsOffset);
+            out.putInt(type.getValue());
+            out.putInt(0);
+            out.putLong(bitsOffset);
+            out.putLong(indexOffset);
+            out.putLong(index.length);
+            out.padTo(idsOffset);
+            for (int r = 0; r < count; r++) {
+                out.putLong(ids[r]);
+            }
+            out.padTo(rowsOffset);
+            for (int i = 0, n = count * dimension; i < n; i++) {
+                if (type == ElementType.FLOAT32) {
+                    out.putFloat(floats[i]);
+                } else {
+                    out.putShort(halves[i]);
+                }
+            }
+            if (norms != null) {
+                out.padTo(normsOffset);
+                for (int r = 0; r < count; r++) {
+                    out.putFloat(norms[r]);
+                }
+            }
+            if (bits != null) {
+                out.padTo(bitsOffset);
+                for (int i = 0, n = count * words; i < n; i++) {
+                    out.putLong(bits[i]);
+                }
+            }
+            out.padTo(indexOffset);
+            for (long slot : index) {
+                out.putLong(slot);
+            }
+            out.flush();
+            channel.force(true);
+        } catch (java.io.IOException | RuntimeException e) {
+            tmp.delete();
+            throw e;
+        }
+        // rename replaces the target atomically on POSIX; elsewhere it fails while the target exists
+        if (!tmp.renameTo(target) && !(target.delete() && tmp.renameTo(target))) {
+            tmp.delete();
+            throw new java.io.IOException("Failed to replace " + filename);
+        }
+    }
+
+    /**
+     * Open-addressing id index, at most two thirds full: slots hold row + 1 or 0, probed
+     * linearly from the same home slot the readers use
+     */
+    private static long[] idIndex(int[] ids, int count) {
+        long wanted = count + count / 2 + 1L;
+        long size = Long.highestOneBit(wanted);
+        long[] slots = new long[(int) (size < wanted ? size << 1 : size)];
+        long mask = slots.length - 1;
+        for (int r = 0; r < count; r++) {
+            long s = JavaMMapVectorStore.homeSlot(ids[r]) & mask;
+            while (slots[(int) s] != 0) {
+                s = (s + 1) & mask;
+            }
+            slots[(int) s] = r + 1;
+        }
+        return slots;
+    }
+
+    private static long align(long offset) {
+        return (offset + SECTION_ALIGN - 1) / SECTION_ALIGN * SECTION_ALIGN;
+    }
+
+    private void putInt(int v) throws java.io.IOException {
+        reserve(4).putInt(v);
+        position += 4;
+    }
+
+    private void putLong(long v) throws java.io.IOException {
+        reserve(8).putLong(v);
+        position += 8;
+    }
+
+    private void putFloat(float v) throws java.io.IOException {
+        reserve(4).putFloat(v);
+        position += 4;
+    }
+
+    private void putShort(short v) throws java.io.IOException {
+        reserve(2).putShort(v);
+        position += 2;
+    }
+
+    private void padTo(long offset) throws java.io.IOException {
+        while (position < offset) {
+            reserve(1).put((byte) 0);
+            position++;
+        }
+    }
+
+    private java.nio.ByteBuffer reserve(int bytes) throws java.io.IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+        return buffer;
+    }
+
+    private void flush() throws java.io.IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
+
+/**
+ * A builder for creating and saving MMapVectorStore instances
+ * MMapVectorStore is optimized for large datasets that may exceed RAM capacity
+ *
+ * Builders created with a filename stream each vector to disk as it is added, so files
+ * larger than RAM can be built; the others keep every vector in memory until save.
+ */
+public class MMapVectorStoreBuilder implements AutoCloseable {
+    private long pointer;
+    private String streamingFile;  // Target file of a streaming builder, null for in-memory ones
+
+    /**
+     * Create a new MMapVectorStore builder
+     *
+     * @param dimension The dimension of the vectors
+     * @param metric The distance metric to use for similarity search
+     * @throws IllegalStateException If the builder could not be created
+     */
+    public MMapVectorStoreBuilder(int dimension, DistanceMetric metric) {
+        pointer = createBuilder(dimension, metric.getValue());
+        if (pointer == 0L) {
+            throw new IllegalStateException("Failed to create MMap vector store builder");
+        }
+    }
+
+    /**
+     * Create a new MMapVectorStore builder whose file keeps vectors in the given precision
+     *
+     * @param dimension The dimension of the vectors
+     * @param metric The distance metric to use for similarity search
+     * @param elementType The precision vectors are written in
+     * @throws IllegalStateException If the builder could not be created
+     */
+    public MMapVectorStoreBuilder(int dimension, DistanceMetric metric, ElementType elementType) {
+        pointer = createTypedBuilder(dimension, metric.getValue(), elementType.getValue());
+        if (pointer == 0L) {
+            throw new IllegalStateException("Failed to create MMap vector store builder");
+        }
+    }
+
+    /**
+     * Create a streaming builder that writes the store to a file as vectors are added
+     *
+     * Vectors go to filename + ".tmp" as they are added, so memory holds only about 24 bytes
+     * per ID (plus 4 per vector for COSINE). {@link #finish()} completes the file and moves it to
+     * filename; closing the builder without finishing deletes the temporary file.
+     *
+     * @param filename The path of the store file to create
+     * @param dimension The dimension of the vectors
+     * @param metric The distance metric to use for similarity search
+     * @param elementType The precision vectors are written in
+     * @throws IllegalStateException If the builder could not be created or the file could not be opened
+     */
+    public MMapVectorStoreBuilder(String filename, int dimension, DistanceMetric metric, ElementType elementType) {
+        pointer = createWriter(filename, dimension, metric.getValue(), elementType.getValue());
+        if (pointer == 0L) {
+            throw new IllegalStateException("Failed to create MMap vector store writer for file: " + filename);
+        }
+        streamingFile = filename;
+    }
+
+    /**
+     * Whether this builder streams to the file it was created with
+     *
+     * @return true for streaming builders
+     */
+    public boolean isStreaming() {
+        return streamingFile != null;
+    }
+
+    /**
+     * Add a vector to the builder
+     *
+     * @param vector The vector to add
+     * @param id The ID to associate with the vector
+     * @throws IllegalArgumentException If the vector dimension doesn't match the builder dimension
+     */
+    public void addVector(float[] vector, int id) {
+        boolean added = isStreaming() ? writerAddVector(pointer, vector, id) : addVector(pointer, vector, vector.length, id);
+        if (!added) {
+            throw new IllegalArgumentException("Failed to add vector to MMap vector store builder");
+        }
+    }
+
+    /**
+     * Add a half-precision vector to the builder
+     *
+     * @param vector The vector as FLOAT16 or BFLOAT16 bit patterns
+     * @param format The format of the vector's elements
+     * @param id The ID to associate with the vector
+     * @throws IllegalArgumentException If the format is FLOAT32 or the vector dimension doesn't match the builder dimension
+     */
+    public void addVector(short[] vector, ElementType format, int id) {
+        HalfBuffers.requireHalf(format);
+        boolean added = isStreaming()
+                ? writerAddHalfVector(pointer, vector, format.getValue(), id)
+                : addHalfVector(pointer, vector, format.getValue(), id);
+        if (!added) {
+            throw new IllegalArgumentException("Failed to add vector to MMap vector store builder");
+        }
+    }
+
+    /**
+     * Add a half-precision vector to the builder from the buffer's remaining elements
+     *
+     * Direct buffers in native byte order are read in place; others are copied first. The
+     * buffer's position is not changed.
+     *
+     * @param vector The vector as FLOAT16 or BFLOAT16 bit patterns
+     * @param format The format of the vector's elements
+     * @param id The ID to associate with the vector
+     * @throws IllegalArgumentException If the format is FLOAT32 or the vector dimension doesn't match the builder dimension
+     */
+    public void addVector(java.nio.ShortBuffer vector, ElementType format, int id) {
+        if (!HalfBuffers.readableInPlace(vector)) {
+            addVector(HalfBuffers.toArray(vector), format, id);
+            return;
+        }
+        HalfBuffers.requireHalf(format);
+        boolean added = isStreaming()
+                ? writerAddHalfVectorBuffer(pointer, vector, vector.position(), vector.remaining(), format.getValue(), id)
+                : addHalfVectorBuffer(pointer, vector, vector.position(), vector.remaining(), format.getValue(), id);
+        if (!added) {
+            throw new IllegalArgumentException("Failed to add vector to MMap vector store builder");
+        }
+    }
+
+    /**
+     * Add several vectors in one native call
+     *
+     * @param vectors The vectors stored back to back, ids.length * dimension values
+     * @param ids The IDs to associate with the vectors
+     * @throws IllegalArgumentException If the array lengths don't match or an ID already exists;
+     *         the vectors before the offending one are kept
+     */
+    public void addVectors(float[] vectors, int[] ids) {
+        if ((long) ids.length * getDimension() != vectors.length) {
+            throw new IllegalArgumentException("Vectors must hold ids.length * dimension values");
+        }
+        boolean added = isStreaming()
+                ? writerAddVectors(pointer, vectors, ids, ids.length)
+                : addVectors(pointer, vectors, ids, ids.length);
+        if (!added) {
+            throw new IllegalArgumentException("Failed to add vectors to MMap vector store builder");
+        }
+    }
+
+    /**
+     * Add several vectors in one native call
+     *
+     * @param vectors The vectors to add, each of the builder dimension
+     * @param ids The IDs to associate with the vectors
+     * @throws IllegalArgumentException If a vector dimension doesn't match or an ID already exists
+     */
+    public void addVectors(float[][] vectors, int[] ids) {
+        if (vectors.length != ids.length) {
+            throw new IllegalArgumentException("Number of vectors must match the number of IDs");
+        }
+        int dimension = getDimension();
+        float[] flat = new float[vectors.length * dimension];
+        for (int i = 0; i < vectors.length; i++) {
+            if (vectors[i].length != dimension) {
+                throw new IllegalArgumentException("Vector dimension must match builder dimension");
+            }
+            System.arraycopy(vectors[i], 0, flat, i * dimension, dimension);
+        }
+        addVectors(flat, ids);
+    }
+
+    /**
+     * Reserve space for the specified number of vectors
+     *
+     * @param capacity The number of vectors to reserve space for
+     */
+    public void reserve(int capacity) {
+        if (isStreaming()) {
+            writerReserve(pointer, capacity);
+        } else {
+            reserve(pointer, capacity);
+        }
+    }
+
+    /**
+     * Also write one sign bit per dimension for every vector, so the opened store supports
+     * {@link MMapVectorStore#searchBinary(float[], int, int)}
+     *
+     * @param enabled Whether to write the binary index
+     */
+    public void setBinaryIndex(boolean enabled) {
+        boolean set = isStreaming() ? writerSetBinaryIndex(pointer, enabled) : setBinaryIndex(pointer, enabled);
+        if (!set) {
+            throw new IllegalStateException("Failed to set binary index");
+        }
+    }
+
+    /**
+     * Save the builder's contents to a file, creating an MMapVectorStore
+     *
+     * A streaming builder can only save to the file it was created with, which finishes it.
+     *
+     * @param filename The path to the file where the vector store should be saved
+     * @return true if the vector store was saved successfully
+     * @throws IllegalArgumentException If a streaming builder is saved to another file
+     */
+    public boolean save(String filename) {
+        if (isStreaming()) {
+            if (!streamingFile.equals(filename)) {
+                throw new IllegalArgumentException("A streaming builder writes to " + streamingFile);
+            }
+            return writerFinish(pointer);
+        }
+        return save(pointer, filename);
+    }
+
+    /**
+     * Complete the file of a streaming builder and move it into place
+     *
+     * No vectors can be added afterwards.
+     *
+     * @throws IllegalStateException If the builder is not streaming, was already finished or the file could not be written
+     */
+    public void finish() {
+        if (!isStreaming()) {
+            throw new IllegalStateException("Only streaming builders can be finished; use save(String)");
+        }
+        if (!writerFinish(pointer)) {
+            throw new IllegalStateException("Failed to finish MMap vector store file: " + streamingFile);
+        }
+    }
+
+    /**
+     * Get the number of vectors in the builder
+     *
+     * @return The number of vectors in the builder
+     */
+    public int getCount() {
+        return isStreaming() ? writerGetCount(pointer) : getCount(pointer);
+    }
+
+    /**
+     * Get the dimension of the vectors in the builder
+     *
+     * @return The dimension of the vectors
+     */
+    public int getDimension() {
+        return isStreaming() ? writerGetDimension(pointer) : getDimension(pointer);
+    }
+
+    /**
+     * Close the builder and free resources, discarding the file of an unfinished streaming builder
+     */
+    @Override
+    public void close() {
+        if (pointer != 0L) {
+            if (isStreaming()) {
+                destroyWriter(pointer);
+            } else {
+                destroyBuilder(pointer);
+            }
+            pointer = 0L;
+        }
+    }
+
+    @Override
+    protected void finalize() throws Throwable {
+        super.finalize();
+        close();
+    }
+
+    // JNI methods
+    private native long createBuilder(int dimension, int metric);
+    private native void destroyBuilder(long builder);
+    private native boolean addVector(long builder, float[] vector, int vectorSize, int id);
+    private native void reserve(long builder, int capacity);
+    private native boolean save(long builder, String filename);
+    private native int getCount(long builder);
+    private native int getDimension(long builder);
+    private native long createTypedBuilder(int dimension, int metric, int elementType);
+    private native boolean addHalfVector(long builder, short[] vector, int format, int id);
+    private native boolean addHalfVectorBuffer(long builder, java.nio.ShortBuffer vector, int position, int remaining, int format, int id);
+    private native boolean setBinaryIndex(long builder, boolean enabled);
+    private native boolean addVectors(long builder, float[] vectors, int[] ids, int count);
+    private native long createWriter(String filename, int dimension, int metric, int elementType);
+    private native void destroyWriter(long writer);
+    private native boolean writerAddVector(long writer, float[] vector, int id);
+    private native boolean writerAddVectors(long writer, float[] vectors, int[] ids, int count);
+    private native boolean writerAddHalfVector(long writer, short[] vector, int format, int id);
+    private native boolean writerAddHalfVectorBuffer(long writer, java.nio.ShortBuffer vector, int position, int remaining, int format, int id);
+    private native void writerReserve(long writer, int capacity);
+    private native boolean writerSetBinaryIndex(long writer, boolean enabled);
+    private native boolean writerFinish(long writer);
+    private native int writerGetCount(long writer);
+    private native int writerGetDimension(long writer);
+
+    static {
+        System.loadLibrary("llamamobilevd");
+    }
+}
+
+/**
+ * A memory-mapped vector store optimized for large datasets that may exceed RAM capacity
+ * Uses memory mapping for efficient access to large datasets without loading everything into RAM
+ */
+public class MMapVectorStore implements AutoCloseable {
+    private long pointer;
+
+    /**
+     * Create a new MMapVectorStore instance with a loaded pointer
+     */
+    private MMapVectorStore(long pointer) {
+        this.pointer = pointer;
+    }
+
+    /**
+     * Open an MMapVectorStore from a file
+     *
+     * @param filename The path to the file containing the saved vector store
+     * @return The loaded MMapVectorStore
+     * @throws IllegalStateException If the vector store could not be opened
+     */
+    public static MMapVectorStore open(String filename) {
+        long storePointer = nativeOpen(filename);
+        if (storePointer == 0L) {
+            throw new IllegalStateException("Failed to open MMap vector store from file: " + filename);
+        }
+        return new MMapVectorStore(storePointer);
+    }
+
+    /**
+     * Get a vector from the store by ID
+     *
+     * @param id The ID of the vector to get
+     * @return The vector if found, null otherwise
+     */
+    public float[] get(int id) {
+        int dimension = getDimension();
+        float[] vector = new float[dimension];
+        boolean found = ForeignBindings.ACTIVE != null
+                ? ForeignBindings.ACTIVE.mmapVectorStoreGet(pointer, id, vector)
+                : nativeGet(pointer, id, vector);
+        return found ? vector : null;
+    }
+
+    /**
+     * Search for the nearest neighbors of a query vector
+     *
+     * @param queryVector The query vector
+     * @param k The number of nearest neighbors to return
+     * @return An array of search results sorted by distance
+     * @throws IllegalArgumentException If the query vector dimension doesn't match the store dimension
+     */
+    public SearchResult[] search(float[] queryVector, int k) {
+        if (ForeignBindings.ACTIVE != null) {
+            int[] ids = new int[Math.max(k, 0)];
+            float[] distances = new float[Math.max(k, 0)];
+            int count = ForeignBindings.ACTIVE.mmapVectorStoreSearch(pointer, queryVector, k, ids, distances);
+            if (count < 0) {
+                throw new IllegalArgumentException("Failed to search vectors in MMap vector store");
+            }
+            return SearchResult.fromArrays(count, ids, distances);
+        }
+        int[] resultCount = new int[1];
+        long resultsPtr = nativeSearch(pointer, queryVector, queryVector.length, k, resultCount);
+        if (resultsPtr == 0L) {
+            throw new IllegalArgumentException("Failed to search vectors in MMap vector store");
+        }
+
+        try {
+            SearchResult[] results = new SearchResult[resultCount[0]];
+            for (int i = 0; i < resultCount[0]; i++) {
+                int id = nativeGetResultId(resultsPtr, i);
+                float distance = nativeGetResultDistance(resultsPtr, i);
+                results[i] = new SearchResult(id, distance);
+            }
+            return results;
+        } finally {
+            nativeFreeSearchResults(resultsPtr);
+        }
+    }
+
+    /**
+     * Search for the nearest neighbors of several query vectors in one call
+     *
+     * The queries are scored together against each block of stored vectors, so every vector
+     * is read once per block of queries rather than once per query. Results match calling
+     * {@link #search(float[], int)} for each query.
+     *
+     * @param queryVectors The query vectors, each of the store dimension
+     * @param k The number of nearest neighbors to return per query
+     * @return One array of search results per query, each sorted by distance
+     * @throws IllegalArgumentException If k is less than 1 or a query dimension doesn't match the store dimension
+     */
+    public SearchResult[][] searchBatch(float[][] queryVectors, int k) {
+        if (k < 1) {
+            throw new IllegalArgumentException("k must be at least 1");
+        }
+        int dimension = getDimension();
+        float[] queries = new float[queryVectors.length * dimension];
+        for (int q = 0; q < queryVectors.length; q++) {
+            if (queryVectors[q].length != dimension) {
+                throw new IllegalArgumentException("Query vector dimension doesn't match the store dimension");
+            }
+            System.arraycopy(queryVectors[q], 0, queries, q * dimension, dimension);
+        }
+
+        int[] ids = new int[queryVectors.length * k];
+        float[] distances = new float[queryVectors.length * k];
+        int[] counts = new int[queryVectors.length];
+        boolean searched = ForeignBindings.ACTIVE != null
+                ? ForeignBindings.ACTIVE.mmapVectorStoreSearchBatch(pointer, queries, queryVectors.length, k, ids, distances, counts)
+                : nativeSearchBatch(pointer, queries, queryVectors.length, k, ids, distances, counts);
+        if (!searched) {
+            throw new IllegalArgumentException("Failed to batch search vectors");
+        }
+
+        SearchResult[][] results = new SearchResult[queryVectors.length][];
+        for (int q = 0; q < queryVectors.length; q++) {
+            results[q] = new SearchResult[counts[q]];
+            for (int i = 0; i < counts[q]; i++) {
+                results[q][i] = new SearchResult(ids[q * k + i], distances[q * k + i]);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Check if the store contains a vector with the given ID
+     *
+     * @param id The ID to check
+     * @return true if the vector exists, false otherwise
+     */
+    public boolean contains(int id) {
+        int[] contains = new int[1];
+        return nativeContains(pointer, id, contains);
+    }
+
+    /**
+     * Get the number of vectors in the store
+     *
+     * @return The number of vectors in the store
+     */
+    public int getCount() {
+        return nativeGetCount(pointer);
+    }
+
+    /**
+     * Get the dimension of the vectors in the store
+     *
+     * @return The dimension of the vectors
+     */
+    public int getDimension() {
+        return nativeGetDimension(pointer);
+    }
+
+    /**
+     * Get the distance metric used by the store
+     *
+     * @return The distance metric
+     */
+    public DistanceMetric getMetric() {
+        int metricValue = nativeGetMetric(pointer);
+        switch (metricValue) {
+            case 0:
+                return DistanceMetric.L2;
+            case 1:
+                return DistanceMetric.COSINE;
+            case 2:
+                return DistanceMetric.DOT;
+            default:
+                return DistanceMetric.L2;
+        }
+    }
+
+    /**
+     * Get the precision the file keeps its vectors in
+     *
+     * @return The element type
+     */
+    public ElementType getElementType() {
+        return ElementType.fromValue(nativeGetElementType(pointer));
+    }
+
+    /**
+     * Set the number of threads used by search
+     *
+     * Large stores are split into one slice per thread and the best results of each slice
+     * are merged. The default of 1 scans on the calling thread only.
+     *
+     * @param threads The number of search threads, at least 1
+     * @throws IllegalArgumentException If threads is less than 1
+     */
+    public void setSearchThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Search threads must be at least 1");
+        }
+        if (!nativeSetSearchThreads(pointer, threads)) {
+            throw new IllegalStateException("Failed to set search threads");
+        }
+    }
+
+    /**
+     * Read part of the file into memory ahead of the first searches
+     *
+     * A freshly opened file pays a page fault for every page the first searches touch.
+     * This pays that cost now for the id sections and the first fraction of the vectors,
+     * blocking until they are resident; call it from a background thread to overlap it
+     * with other startup work.
+     *
+     * @param fraction The share of the vectors to load, from 0 to 1
+     * @throws IllegalArgumentException If fraction is outside 0 to 1
+     */
+    public void warmup(double fraction) {
+        if (!(fraction >= 0.0 && fraction <= 1.0)) {
+            throw new IllegalArgumentException("Warmup fraction must be between 0 and 1");
+        }
+        if (!nativeWarmup(pointer, fraction)) {
+            throw new IllegalStateException("Failed to warm up store");
+        }
+    }
+
+    /**
+     * Read the whole file into memory ahead of the first searches
+     */
+    public void warmup() {
+        warmup(1.0);
+    }
+
+    /**
+     * Tune readahead for full scans, the default after opening
+     *
+     * The kernel reads ahead aggressively and reclaims scanned pages first, which suits
+     * search and searchBatch.
+     */
+    public void adviseSequential() {
+        if (!nativeAdviseSequential(pointer)) {
+            throw new IllegalStateException("Failed to set access advice");
+        }
+    }
+
+    /**
+     * Tune readahead for point lookups
+     *
+     * Readahead is turned off, which suits workloads dominated by get or by building an
+     * HNSW index over the store, where neighbouring pages are rarely needed next.
+     */
+    public void adviseRandom() {
+        if (!nativeAdviseRandom(pointer)) {
+            throw new IllegalStateException("Failed to set access advice");
+        }
+    }
+
+    /**
+     * Approximate search over binary codes
+     *
+     * Vectors are shortlisted by the Hamming distance between their sign bits and the
+     * query's (dimension / 8 bytes per vector instead of dimension * 4), then the
+     * k * rerankFactor closest are reranked with the exact metric.
+     *
+     * @param queryVector The query vector
+     * @param k The number of nearest neighbors to return
+     * @param rerankFactor How many candidates per result to rerank, at least 1
+     * @return An array of search results sorted by distance
+     * @throws IllegalArgumentException If k or rerankFactor is less than 1 or the query dimension doesn't match
+     * @throws IllegalStateException If the file has no binary index
+     */
+    public SearchResult[] searchBinary(float[] queryVector, int k, int rerankFactor) {
+        if (k < 1 || rerankFactor < 1) {
+            throw new IllegalArgumentException("k and rerankFactor must be at least 1");
+        }
+        int[] ids = new int[k];
+        float[] distances = new float[k];
+        int count = ForeignBindings.ACTIVE != null
+                ? ForeignBindings.ACTIVE.mmapVectorStoreSearchBinary(pointer, queryVector, k, rerankFactor, ids, distances)
+                : nativeSearchBinary(pointer, queryVector, k, rerankFactor, ids, distances);
+        if (count < 0) {
+            throw new IllegalStateException("Failed to binary search vectors");
+        }
+        return SearchResult.fromArrays(count, ids, distances);
+    }
+
+    /**
+     * Approximate search over binary codes, reranking 4 candidates per result
+     *
+     * @param queryVector The query vector
+     * @param k The number of nearest neighbors to return
+     * @return An array of search results sorted by distance
+     */
+    public SearchResult[] searchBinary(float[] queryVector, int k) {
+        return searchBinary(queryVector, k, 4);
+    }
+
+    /**
+     * Get the native handle of the store, for building other native objects over it
+     *
+     * @return The native handle, or 0 if the store is closed
+     */
+    long nativePointer() {
+        return pointer;
+    }
+
+    /**
+     * Close the vector store and free resources
+     */
+    @Override
+    public void close() {
+        if (pointer != 0L) {
+            nativeClose(pointer);
+            pointer = 0L;
+        }
+    }
+
+    @Override
+    protected void finalize() throws Throwable {
+        super.finalize();
+        close();
+    }
+
+    // JNI methods
+    private static native long nativeOpen(String filename);
+    private native boolean nativeGet(long store, int id, float[] vector);
+    private native long nativeSearch(long store, float[] queryVector, int vectorSize, int k, int[] resultCount);
+    private native boolean nativeContains(long store, int id, int[] contains);
+    private native int nativeGetCount(long store);
+    private native int nativeGetDimension(long store);
+    private native int nativeGetMetric(long store);
+    private native void nativeClose(long store);
+    private native int nativeGetElementType(long store);
+    private native int nativeSearchBinary(long store, float[] queryVector, int k, int rerankFactor, int[] ids, float[] distances);
+    private native boolean nativeSetSearchThreads(long store, int threads);
+    private native boolean nativeSearchBatch(long store, float[] queries, int numQueries, int k, int[] ids, float[] distances, int[] counts);
+    private native boolean nativeWarmup(long store, double fraction);
+    private native boolean nativeAdviseSequential(long store);
+    private native boolean nativeAdviseRandom(long store);
+    private native void nativeFreeSearchResults(long results);
+    private native int nativeGetResultId(long results, int index);
+    private native float nativeGetResultDistance(long results, int index);
+
+    static {
+        System.loadLibrary("llamamobilevd");
+    }
+}
+
+/**
+ * A read-only region of a store file mapped as one or more buffers, each holding whole
+ * elements so that no element straddles two mappings (one mapping is limited to 2 GB)
+ */
+final class MappedSection {
+    private static final long MAX_CHUNK_BYTES = Integer.MAX_VALUE;
+
+    private final java.nio.ByteBuffer[] chunks;
+    private final long elementsPerChunk;
+    private final int elementBytes;
+
+    MappedSection(java.nio.channels.FileChannel channel, long offset, long count, int elementBytes)
+            throws java.io.IOException {
+        this.elementBytes = elementBytes;
+        this.elementsPerChunk = Math.max(1L, MAX_CHUNK_BYTES / elementBytes);
+        int chunkCount = (int) ((count + elementsPerChunk - 1) / elementsPerChunk);
+        chunks = new java.nio.ByteBuffer[chunkCount];
+        for (int c = 0; c < chunkCount; c++) {
+            long first = c * elementsPerChunk;
+            long elements = Math.min(elementsPerChunk, count - first);
+            chunks[c] = channel.map(java.nio.channels.FileChannel.MapMode.READ_ONLY,
+                    offset + first * elementBytes, elements * elementBytes)
+                    .order(java.nio.ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    int chunkCount() {
+        return chunks.length;
+    }
+
+    long elementsPerChunk() {
+        return elementsPerChunk;
+    }
+
+    /**
+     * Chunk c as little-endian floats (rows of 4-byte elements)
+     */
+    java.nio.FloatBuffer floats(int c) {
+        return chunks[c].duplicate().order(java.nio.ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+    }
+
+    /**
+     * Chunk c as little-endian shorts (rows of 2-byte elements)
+     */
+    java.nio.ShortBuffer shorts(int c) {
+        return chunks[c].duplicate().order(java.nio.ByteOrder.LITTLE_ENDIAN).asShortBuffer();
+    }
+
+    long getLong(long element) {
+        return chunks[(int) (element / elementsPerChunk)].getLong(byteOffset(element));
+    }
+
+    float getFloat(long element) {
+        return chunks[(int) (element / elementsPerChunk)].getFloat(byteOffset(element));
+    }
+
+    /**
+     * A little-endian view of one element's bytes, sharing the mapping
+     */
+    java.nio.ByteBuffer slice(long element) {
+        java.nio.ByteBuffer view = chunks[(int) (element / elementsPerChunk)].duplicate();
+        int start = byteOffset(element);
+        view.position(start);
+        view.limit(start + elementBytes);
+        return view.slice().order(java.nio.ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private int byteOffset(long element) {
+        return (int) ((element % elementsPerChunk) * elementBytes);
+    }
+}
+
+/**
+ * A pure-Java reader for the files MMapVectorStore opens
+ *
+ * The file is mapped with FileChannel.map and read in place without the native library, so
+ * JVM services can open the files the SDK writes. get returns a FloatBuffer view of the
+ * mapped row instead of a copy. Searches are exact and match MMapVectorStore.search.
+ * Instances are safe to share between threads.
+ */
+public class JavaMMapVectorStore implements AutoCloseable {
+    private static final int MAGIC = 0x42445651;
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 128;
+    private static final int HEADER_SIZE_V1 = 32;
+    private static final int FLAG_NORMALIZED = 1;
+    private static final int FLAG_BINARY = 1 << 1;
+    private static final int FLAG_ID_INDEX = 1 << 2;
+
+    private final int dimension;
+    private final long count;
+    private final DistanceMetric metric;
+    private final ElementType elementType;
+    private final boolean normalized;
+    private final boolean binary;
+    private final long indexSlots;
+    private MappedSection ids;
+    private MappedSection rows;
+    private MappedSection norms;
+    private MappedSection index;
+    private java.util.HashMap<Long, Long> idMap;  // Files without an id index only
+
+    private JavaMMapVectorStore(java.nio.channels.FileChannel channel) throws java.io.IOException {
+        long fileSize = channel.size();
+        if (fileSize < HEADER_SIZE_V1) {
+            throw new IllegalStateException("File too small");
+        }
+        java.nio.ByteBuffer header = java.nio.ByteBuffer.allocate((int) Math.min(fileSize, HEADER_SIZE))
+                .order(java.nio.ByteOrder.LITTLE_ENDIAN);
+        while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+            // Read until the header is complete
+        }
+        if (header.getInt(0) != MAGIC) {
+            throw new IllegalStateException("Invalid magic");
+        }
+        int version = header.getInt(4);
+        if (version != 1 && version != VERSION) {
+            throw new IllegalStateException("Unsupported version");
+        }
+        if (version == VERSION && fileSize < HEADER_SIZE) {
+            throw new IllegalStateException("File too small");
+        }
+        long dim = header.getLong(8);
+        count = header.getLong(16);
+        int metricValue = header.getInt(24);
+        if (metricValue < 0 || metricValue > 2) {
+            throw new IllegalStateException("Invalid metric");
+        }
+        metric = DistanceMetric.values()[metricValue];
+        int flags = 0;
+        int type = 0;
+        long idsOffset = HEADER_SIZE_V1;
+        long rowsOffset = 0;
+        long normsOffset = 0;
+        long indexOffset = 0;
+        long slots = 0;
+        if (version == VERSION) {
+            flags = header.getInt(28);
+            idsOffset = header.getLong(32);
+            rowsOffset = header.getLong(40);
+            normsOffset = header.getLong(48);
+            type = header.getInt(56);
+            indexOffset = header.getLong(72);
+            slots = header.getLong(80);
+            if ((flags & ~(FLAG_NORMALIZED | FLAG_BINARY | FLAG_ID_INDEX)) != 0) {
+                throw new IllegalStateException("Unsupported flags");
+            }
+            if (type < 0 || type > 2) {
+                throw new IllegalStateException("Invalid element type");
+            }
+        }
+        elementType = ElementType.fromValue(type);
+        normalized = (flags & FLAG_NORMALIZED) != 0;
+        binary = (flags & FLAG_BINARY) != 0;
+        int elementBytes = elementType == ElementType.FLOAT32 ? 4 : 2;
+        if (count < 0 || dim < 0 || (dim == 0 && count > 0) || dim > Integer.MAX_VALUE / elementBytes) {
+            throw new IllegalStateException("File corrupted: bad dimensions");
+        }
+        dimension = (int) dim;
+        int rowBytes = dimension * elementBytes;
+        if (version == 1) {
+            rowsOffset = HEADER_SIZE_V1 + count * 8;
+        }
+        // Each section must lie inside the file and be aligned for its element type
+        if (!sectionFits(fileSize, idsOffset, count, 8, 8)
+                || !sectionFits(fileSize, rowsOffset, count, rowBytes, elementBytes)) {
+            throw new IllegalStateException("File truncated");
+        }
+        if (normalized && !sectionFits(fileSize, normsOffset, count, 4, 4)) {
+            throw new IllegalStateException("File truncated");
+        }
+        boolean hasIndex = (flags & FLAG_ID_INDEX) != 0;
+        if (hasIndex && (Long.bitCount(slots) != 1 || slots <= count || !sectionFits(fileSize, indexOffset, slots, 8, 8))) {
+            throw new IllegalStateException("File corrupted: bad id index");
+        }
+        indexSlots = hasIndex ? slots : 0;
+
+        ids = new MappedSection(channel, idsOffset, count, 8);
+        rows = new MappedSection(channel, rowsOffset, dimension == 0 ? 0 : count, Math.max(rowBytes, 1));
+        norms = normalized ? new MappedSection(channel, normsOffset, count, 4) : null;
+        if (hasIndex) {
+            index = new MappedSection(channel, indexOffset, slots, 8);
+        } else {
+            idMap = new java.util.HashMap<>();
+            for (long i = 0; i < count; i++) {
+                idMap.put(ids.getLong(i), i);
+            }
+        }
+    }
+
+    private static boolean sectionFits(long fileSize, long offset, long elements, long elementBytes, int align) {
+        return offset >= 0 && offset <= fileSize && offset % align == 0
+                && (elementBytes == 0 || elements <= (fileSize - offset) / elementBytes);
+    }
+
+    /**
+     * Open a store file
+     *
+     * The mapping stays valid after the file is closed and is released once the store and
+     * every buffer returned by get are unreachable.
+     *
+     * @param filename The path to a file written by MMapVectorStoreBuilder or VectorStore.save
+     * @return The opened store
+     * @throws IllegalStateException If the file cannot be read or is not a valid store file
+     */
+    public static JavaMMapVectorStore open(String filename) {
+        try (java.io.RandomAccessFile file = new java.io.RandomAccessFile(filename, "r")) {
+            return new JavaMMapVectorStore(file.getChannel());
+        } catch (java.io.IOException e) {
+            throw new IllegalStateException("Failed to open MMap vector store from file: " + filename, e);
+        }
+    }
+
+    /**
+     * Get a read-only view of a stored vector without copying it
+     *
+     * Cosine files keep unit-length rows, so for them the view holds the normalized vector;
+     * use getCopy for the vector as it was added.
+     *
+     * @param id The ID of the vector to get
+     * @return A little-endian view of the vector if found, null otherwise
+     * @throws IllegalStateException If the file stores half-precision rows
+     */
+    public java.nio.FloatBuffer get(int id) {
+        checkOpen();
+        if (elementType != ElementType.FLOAT32) {
+            throw new IllegalStateException("get() needs FLOAT32 rows; use getCopy()");
+        }
+        long row = find(id);
+        return row < 0 ? null : rows.slice(row).asFloatBuffer();
+    }
+
+    /**
+     * Get a copy of a stored vector, widened to float and scaled back to its original length
+     *
+     * @param id The ID of the vector to get
+     * @return The vector if found, null otherwise
+     */
+    public float[] getCopy(int id) {
+        checkOpen();
+        long row = find(id);
+        if (row < 0) {
+            return null;
+        }
+        float[] out = new float[dimension];
+        java.nio.ByteBuffer bytes = rows.slice(row);
+        if (elementType == ElementType.FLOAT32) {
+            bytes.asFloatBuffer().get(out);
+        } else {
+            java.nio.ShortBuffer halves = bytes.asShortBuffer();
+            for (int j = 0; j < dimension; j++) {
+                out[j] = HalfFloats.decode(halves.get(j), elementType);
+            }
+        }
+        if (norms != null) {
+            float norm = norms.getFloat(row);
+            for (int j = 0; j < dimension; j++) {
+                out[j] *= norm;
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Check if a vector with the given ID exists in the store
+     *
+     * @param id The ID to check
+     * @return true if the vector exists
+     */
+    public boolean contains(int id) {
+        checkOpen();
+        return find(id) >= 0;
+    }
+
+    /**
+     * Search for the nearest neighbors of a query vector
+     *
+     * @param queryVector The query vector
+     * @param k The number of nearest neighbors to return
+     * @return An array of search results sorted by distance
+     * @throws IllegalArgumentException If k is less than 1 or the query dimension doesn't match
+     */
+    public SearchResult[] search(float[] queryVector, int k) {
+        checkOpen();
+        if (k < 1) {
+            throw new IllegalArgumentException("k must be at least 1");
+        }
+        if (queryVector == null || queryVector.length != dimension) {
+            throw new IllegalArgumentException("Query vector dimension doesn't match the store dimension");
+        }
+        float[] query = queryVector;
+        if (metric == DistanceMetric.COSINE && normalized) {
+            query = normalize(queryVector);
+        }
+
+        TopK top = new TopK((int) Math.min(k, count));
+        long row = 0;
+        for (int c = 0; c < rows.chunkCount(); c++) {
+            java.nio.FloatBuffer floats = elementType == ElementType.FLOAT32 ? rows.floats(c) : null;
+            java.nio.ShortBuffer halves = floats == null ? rows.shorts(c) : null;
+            long end = Math.min(count, row + rows.elementsPerChunk());
+            for (int base = 0; row < end; row++, base += dimension) {
+                top.push(row, floats != null ? distance(query, floats, base) : distance(query, halves, base));
+            }
+        }
+
+        top.sort();
+        SearchResult[] results = new SearchResult[top.size()];
+        for (int i = 0; i < results.length; i++) {
+            results[i] = new SearchResult((int) ids.getLong(top.key(i)), top.distance(i));
+        }
+        return results;
+    }
+
+    /**
+     * Whether the file holds sign codes for binary search
+     *
+     * @return true if the file was saved with a binary index
+     */
+    public boolean hasBinaryIndex() {
+        return binary;
+    }
+
+    /**
+     * Get the number of vectors in the store
+     *
+     * @return The number of vectors
+     */
+    public int getCount() {
+        return (int) count;
+    }
+
+    /**
+     * Get the dimension of vectors in the store
+     *
+     * @return The dimension
+     */
+    public int getDimension() {
+        return dimension;
+    }
+
+    /**
+     * Get the distance metric used by the store
+     *
+     * @return The distance metric
+     */
+    public DistanceMetric getMetric() {
+        return metric;
+    }
+
+    /**
+     * Get the precision the file keeps its vectors in
+     *
+     * @return The element type
+     */
+    public ElementType getElementType() {
+        return elementType;
+    }
+
+    /**
+     * Release the store's references to the mapping
+     *
+     * The mapping itself is unmapped by the garbage collector once buffers returned by get
+     * are unreachable too.
+     */
+    @Override
+    public void close() {
+        ids = null;
+        rows = null;
+        norms = null;
+        index = null;
+        idMap = null;
+    }
+
+    // Section access for JavaVectorStoreEngine.load
+    long idAt(long row) {
+        return ids.getLong(row);
+    }
+
+    void copyRow(long row, float[] dst, int offset) {
+        rows.slice(row).asFloatBuffer().get(dst, offset, dimension);
+    }
+
+    void copyRow(long row, short[] dst, int offset) {
+        rows.slice(row).asShortBuffer().get(dst, offset, dimension);
+    }
+
+    boolean isNormalized() {
+        return normalized;
+    }
+
+    float normAt(long row) {
+        return norms.getFloat(row);
+    }
+
+    private void checkOpen() {
+        if (rows == null) {
+            throw new IllegalStateException("Store is closed");
+        }
+    }
+
+    /**
+     * Row holding id, or -1. Probes the file's id index from the same splitmix64 home slot
+     * the native reader uses; the probe ends at the first empty slot.
+     */
+    private long find(int id) {
+        long key = id;
+        if (index == null) {
+            Long row = idMap.get(key);
+            return row == null ? -1 : row;
+        }
+        long mask = indexSlots - 1;
+        long slot = homeSlot(key) & mask;
+        for (long n = 0; n < indexSlots; n++, slot = (slot + 1) & mask) {
+            long entry = index.getLong(slot);
+            if (entry == 0) {
+                return -1;
+            }
+            if (entry < 0 || entry > count) {
+                throw new IllegalStateException("File corrupted: bad id index");
+            }
+            if (ids.getLong(entry - 1) == key) {
+                return entry - 1;
+            }
+        }
+        return -1;
+    }
+
+    static long homeSlot(long id) {
+        id ^= id >>> 30;
+        id *= 0xbf58476d1ce4e5b9L;
+        id ^= id >>> 27;
+        id *= 0x94d049bb133111ebL;
+        id ^= id >>> 31;
+        return id;
+    }
+
+    private float distance(float[] q, java.nio.FloatBuffer rows, int base) {
+        switch (metric) {
+            case L2: {
+                float sum = 0.0f;
+                for (int j = 0; j < dimension; j++) {
+                    float d = q[j] - rows.get(base + j);
+                    sum += d * d;
+                }
+                return sum;
+            }
+            case COSINE: {
+                float dot = 0.0f;
+                if (normalized) {
+                    for (int j = 0; j < dimension; j++) {
+                        dot += q[j] * rows.get(base + j);
+                    }
+                    return unitCosineDistance(dot);
+                }
+                float nq = 0.0f;
+                float nr = 0.0f;
+                for (int j = 0; j < dimension; j++) {
+                    float r = rows.get(base + j);
+                    dot += q[j] * r;
+                    nq += q[j] * q[j];
+                    nr += r * r;
+                }
+                float denom = nq * nr;
+                if (denom < 1e-12f) {
+                    return 1.0f;
+                }
+                return 1.0f - Math.max(-1.0f, Math.min(1.0f, dot / (float) Math.sqrt(denom)));
+            }
+            default: {
+                float dot = 0.0f;
+                for (int j = 0; j < dimension; j++) {
+                    dot += q[j] * rows.get(base + j);
+                }
+                return -dot;
+            }
+        }
+    }
+
+    // Half-precision cosine rows are always stored unit length
+    private float distance(float[] q, java.nio.ShortBuffer rows, int base) {
+        float sum = 0.0f;
+        if (metric == DistanceMetric.L2) {
+            for (int j = 0; j < dimension; j++) {
+                float d = q[j] - HalfFloats.decode(rows.get(base + j), elementType);
+                sum += d * d;
+            }
+            return sum;
+        }
+        for (int j = 0; j < dimension; j++) {
+            sum += q[j] * HalfFloats.decode(rows.get(base + j), elementType);
+        }
+        return metric == DistanceMetric.COSINE ? unitCosineDistance(sum) : -sum;
+    }
+
+    private static float unitCosineDistance(float dot) {
+        return 1.0f - Math.max(-1.0f, Math.min(1.0f, dot));
+    }
+
+    private static float[] normalize(float[] v) {
+        float sum = 0.0f;
+        for (float x : v) {
+            sum += x * x;
+        }
+        float norm = (float) Math.sqrt(sum);
+        float inv = norm > 0.0f ? 1.0f / norm : 0.0f;
+        float[] out = new float[v.length];
+        for (int j = 0; j < v.length; j++) {
+            out[j] = v[j] * inv;
+        }
+        return out;
+    }
+}
+
+/**
+ * An appendable vector store kept in a directory of memory-mapped segments
+ *
+ * New vectors go to an in-memory tail that is also written to a log, so they survive a
+ * crash; once the tail holds sealRows vectors it is written out as a new read-only segment.
+ * Removing a vector from a segment records a tombstone instead of rewriting the file, and
+ * small or mostly deleted segments are merged in the background. Search covers the tail and
+ * every segment in one call.
+ */
+public class SegmentedVectorStore implements AutoCloseable {
+    private long pointer;
+
     /**
-     * Save the builder's contents to a file, creating an MMapVectorStore
-     *
-     * @param filename The path to the file where the vector store should be saved
-     * @return true if the vector store was saved successfully
+     * Create a new SegmentedVectorStore instance with an opened pointer
      */
-    public boolean save(String filename) {
-        return save(pointer, filename);
+    private SegmentedVectorStore(long pointer) {
+        this.pointer = pointer;
     }
 
     /**
-     * Get the number of vectors in the builder
+     * Open the store in a directory, creating it if the directory holds none
      *
-     * @return The number of vectors in the builder
+     * @param directory The directory the segments, log and manifest live in
+     * @param dimension The dimension of the vectors
+     * @param metric The distance metric to use for similarity search
+     * @param elementType The precision segments keep their vectors in
+     * @param sealRows How many vectors the tail holds before it is sealed, or 0 for the default of 16384
+     * @param backgroundCompaction Whether to merge segments on a background thread after each seal
+     * @return The opened store
+     * @throws IllegalStateException If the store could not be opened or was created with other parameters
      */
-    public int getCount() {
-        return getCount(pointer);
+    public static SegmentedVectorStore open(String directory, int dimension, DistanceMetric metric,
+                                            ElementType elementType, int sealRows, boolean backgroundCompaction) {
+        if (sealRows < 0) {
+            throw new IllegalArgumentException("sealRows must not be negative");
+        }
+        long storePointer = nativeOpen(directory, dimension, metric.getValue(), elementType.getValue(),
+                sealRows, backgroundCompaction);
+        if (storePointer == 0L) {
+            throw new IllegalStateException("Failed to open segmented vector store in: " + directory);
+        }
+        return new SegmentedVectorStore(storePointer);
     }
 
     /**
-     * Get the dimension of the vectors in the builder
+     * Open the store in a directory with FLOAT32 segments and background compaction
      *
-     * @return The dimension of the vectors
+     * @param directory The directory the segments, log and manifest live in
+     * @param dimension The dimension of the vectors
+     * @param metric The distance metric to use for similarity search
+     * @return The opened store
+     * @throws IllegalStateException If the store could not be opened or was created with other parameters
      */
-    public int getDimension() {
-        return getDimension(pointer);
+    public static SegmentedVectorStore open(String directory, int dimension, DistanceMetric metric) {
+        return open(directory, dimension, metric, ElementType.FLOAT32, 0, true);
     }
 
     /**
-     * Close the builder and free resources
+     * Add a vector to the store
+     *
+     * @param vector The vector to add
+     * @param id The ID to associate with the vector
+     * @throws IllegalArgumentException If the vector dimension doesn't match or the ID already exists
      */
-    @Override
-    public void close() {
-        if (pointer != 0L) {
-            destroyBuilder(pointer);
-            pointer = 0L;
+    public void addVector(float[] vector, int id) {
+        if (vector.length != getDimension()) {
+            throw new IllegalArgumentException("Vector dimension must match store dimension");
+        }
+        if (!nativeAdd(pointer, id, vector)) {
+            throw new IllegalArgumentException("Failed to add vector");
         }
     }
 
-    @Override
-    protected void finalize() throws Throwable {
-        super.finalize();
-        close();
-    }
-
-    // JNI methods
-    private native long createBuilder(int dimension, int metric);
-    private native void destroyBuilder(long builder);
-    private native boolean addVector(long builder, float[] vector, int vectorSize, int id);
-    private native void reserve(long builder, int capacity);
-    private native boolean save(long builder, String filename);
-    private native int getCount(long builder);
-    private native int getDimension(long builder);
-
-    static {
-        System.loadLibrary("llamamobilevd");
-    }
-}
-
-/**
- * A memory-mapped vector store optimized for large datasets that may exceed RAM capacity
- * Uses memory mapping for efficient access to large datasets without loading everything into RAM
- */
-public class MMapVectorStore implements AutoCloseable {
-    private long pointer;
-
     /**
-     * Create a new MMapVectorStore instance with a loaded pointer
+     * Remove a vector from the store by ID
+     *
+     * @param id The ID of the vector to remove
+     * @return true if the vector was removed, false otherwise
      */
-    private MMapVectorStore(long pointer) {
-        this.pointer = pointer;
+    public boolean remove(int id) {
+        return nativeRemove(pointer, id);
     }
 
     /**
-     * Open an MMapVectorStore from a file
+     * Update a vector in the store by ID
      *
-     * @param filename The path to the file containing the saved vector store
-     * @return The loaded MMapVectorStore
-     * @throws IllegalStateException If the vector store could not be opened
+     * @param id The ID of the vector to update
+     * @param vector The new vector data
+     * @return true if the vector was updated, false otherwise
+     * @throws IllegalArgumentException If the vector dimension doesn't match the store dimension
      */
-    public static MMapVectorStore open(String filename) {
-        long storePointer = nativeOpen(filename);
-        if (storePointer == 0L) {
-            throw new IllegalStateException("Failed to open MMap vector store from file: " + filename);
+    public boolean update(int id, float[] vector) {
+        if (vector.length != getDimension()) {
+            throw new IllegalArgumentException("Vector dimension must match store dimension");
         }
-        return new MMapVectorStore(storePointer);
+        return nativeUpdate(pointer, id, vector);
     }
 
     /**
@@ -407,48 +3039,78 @@ public class MMapVectorStore implements AutoCloseable {
      * @return The vector if found, null otherwise
      */
     public float[] get(int id) {
-        int dimension = getDimension();
-        float[] vector = new float[dimension];
+        float[] vector = new float[getDimension()];
         return nativeGet(pointer, id, vector) ? vector : null;
     }
 
     /**
-     * Search for the nearest neighbors of a query vector
+     * Check if the store contains a vector with the given ID
+     *
+     * @param id The ID to check
+     * @return true if the vector exists, false otherwise
+     */
+    public boolean contains(int id) {
+        return nativeContains(pointer, id);
+    }
+
+    /**
+     * Search the tail and every segment for the nearest neighbors of a query vector
      *
      * @param queryVector The query vector
      * @param k The number of nearest neighbors to return
      * @return An array of search results sorted by distance
-     * @throws IllegalArgumentException If the query vector dimension doesn't match the store dimension
+     * @throws IllegalArgumentException If k is less than 1 or the query dimension doesn't match
      */
     public SearchResult[] search(float[] queryVector, int k) {
-        int[] resultCount = new int[1];
-        long resultsPtr = nativeSearch(pointer, queryVector, queryVector.length, k, resultCount);
-        if (resultsPtr == 0L) {
-            throw new IllegalArgumentException("Failed to search vectors in MMap vector store");
+        if (k < 1) {
+            throw new IllegalArgumentException("k must be at least 1");
+        }
+        if (queryVector.length != getDimension()) {
+            throw new IllegalArgumentException("Query vector dimension doesn't match the store dimension");
         }
+        int[] ids = new int[k];
+        float[] distances = new float[k];
+        int count = nativeSearch(pointer, queryVector, k, ids, distances);
+        if (count < 0) {
+            throw new IllegalArgumentException("Failed to search vectors in segmented vector store");
+        }
+        return SearchResult.fromArrays(count, ids, distances);
+    }
 
-        try {
-            SearchResult[] results = new SearchResult[resultCount[0]];
-            for (int i = 0; i < resultCount[0]; i++) {
-                int id = nativeGetResultId(resultsPtr, i);
-                float distance = nativeGetResultDistance(resultsPtr, i);
-                results[i] = new SearchResult(id, distance);
-            }
-            return results;
-        } finally {
-            nativeFreeSearchResults(resultsPtr);
+    /**
+     * Write the tail out as a new segment now rather than when it fills up
+     *
+     * @throws IllegalStateException If the segment could not be written
+     */
+    public void seal() {
+        if (!nativeSeal(pointer)) {
+            throw new IllegalStateException("Failed to seal segmented vector store");
         }
     }
 
     /**
-     * Check if the store contains a vector with the given ID
+     * Merge small or mostly deleted segments into one, dropping removed vectors
      *
-     * @param id The ID to check
-     * @return true if the vector exists, false otherwise
+     * @return true if any segment was rewritten, false if there was nothing to merge
+     * @throws IllegalStateException If the merged segment could not be written
      */
-    public boolean contains(int id) {
-        int[] contains = new int[1];
-        return nativeContains(pointer, id, contains);
+    public boolean compact() {
+        int compacted = nativeCompact(pointer);
+        if (compacted < 0) {
+            throw new IllegalStateException("Failed to compact segmented vector store");
+        }
+        return compacted != 0;
+    }
+
+    /**
+     * Flush the log to disk so writes so far survive a power loss, not just a process crash
+     *
+     * @throws IllegalStateException If the log could not be flushed
+     */
+    public void sync() {
+        if (!nativeSync(pointer)) {
+            throw new IllegalStateException("Failed to sync segmented vector store");
+        }
     }
 
     /**
@@ -470,26 +3132,16 @@ public class MMapVectorStore implements AutoCloseable {
     }
 
     /**
-     * Get the distance metric used by the store
+     * Get the number of sealed segments
      *
-     * @return The distance metric
+     * @return The number of segments
      */
-    public DistanceMetric getMetric() {
-        int metricValue = nativeGetMetric(pointer);
-        switch (metricValue) {
-            case 0:
-                return DistanceMetric.L2;
-            case 1:
-                return DistanceMetric.COSINE;
-            case 2:
-                return DistanceMetric.DOT;
-            default:
-                return DistanceMetric.L2;
-        }
+    public int getSegmentCount() {
+        return nativeGetSegmentCount(pointer);
     }
 
     /**
-     * Close the vector store and free resources
+     * Close the store, waiting for a running compaction to finish
      */
     @Override
     public void close() {
@@ -506,17 +3158,20 @@ public class MMapVectorStore implements AutoCloseable {
     }
 
     // JNI methods
-    private static native long nativeOpen(String filename);
+    private static native long nativeOpen(String directory, int dimension, int metric, int elementType, int sealRows, boolean backgroundCompaction);
+    private native boolean nativeAdd(long store, int id, float[] vector);
+    private native boolean nativeRemove(long store, int id);
+    private native boolean nativeUpdate(long store, int id, float[] vector);
     private native boolean nativeGet(long store, int id, float[] vector);
-    private native long nativeSearch(long store, float[] queryVector, int vectorSize, int k, int[] resultCount);
-    private native boolean nativeContains(long store, int id, int[] contains);
+    private native boolean nativeContains(long store, int id);
+    private native int nativeSearch(long store, float[] queryVector, int k, int[] ids, float[] distances);
+    private native boolean nativeSeal(long store);
+    private native int nativeCompact(long store);
+    private native boolean nativeSync(long store);
     private native int nativeGetCount(long store);
     private native int nativeGetDimension(long store);
-    private native int nativeGetMetric(long store);
+    private native int nativeGetSegmentCount(long store);
     private native void nativeClose(long store);
-    private native void nativeFreeSearchResults(long results);
-    private native int nativeGetResultId(long results, int index);
-    private native float nativeGetResultDistance(long results, int index);
 
     static {
         System.loadLibrary("llamamobilevd");
@@ -528,6 +3183,7 @@ public class MMapVectorStore implements AutoCloseable {
  */
 public class HNSWIndex implements AutoCloseable {
     private long pointer;
+    private MMapVectorStore vectorSource;
 
     /**
      * Create a new HNSW index
@@ -545,6 +3201,23 @@ public class HNSWIndex implements AutoCloseable {
         }
     }
 
+    /**
+     * Create a new HNSW index that keeps its vectors in the given precision
+     *
+     * @param dimension The dimension of the vectors
+     * @param metric The distance metric to use
+     * @param m The maximum number of connections per node
+     * @param efConstruction The size of the dynamic list for candidate selection during construction
+     * @param elementType The precision vectors are stored in
+     * @throws IllegalStateException If the index could not be created
+     */
+    public HNSWIndex(int dimension, DistanceMetric metric, int m, int efConstruction, ElementType elementType) {
+        pointer = createTypedHNSWIndex(dimension, metric.getValue(), m, efConstruction, elementType.getValue());
+        if (pointer == 0L) {
+            throw new IllegalStateException("Failed to create HNSW index");
+        }
+    }
+
     /**
      * Create a new HNSW index with default parameters
      *
@@ -563,7 +3236,10 @@ public class HNSWIndex implements AutoCloseable {
      * @throws IllegalArgumentException If the vector dimension doesn't match the index dimension
      */
     public void addVector(float[] vector, int id) {
-        if (!addVector(pointer, vector, vector.length, id)) {
+        boolean added = ForeignBindings.ACTIVE != null
+                ? ForeignBindings.ACTIVE.hnswIndexAdd(pointer, id, vector)
+                : addVector(pointer, vector, vector.length, id);
+        if (!added) {
             throw new IllegalArgumentException("Failed to add vector");
         }
     }
@@ -578,6 +3254,15 @@ public class HNSWIndex implements AutoCloseable {
      * @throws IllegalArgumentException If the query vector dimension doesn't match the index dimension
      */
     public SearchResult[] search(float[] queryVector, int k, int efSearch) {
+        if (ForeignBindings.ACTIVE != null) {
+            int[] ids = new int[Math.max(k, 0)];
+            float[] distances = new float[Math.max(k, 0)];
+            int count = ForeignBindings.ACTIVE.hnswIndexSearch(pointer, queryVector, k, efSearch, ids, distances);
+            if (count < 0) {
+                throw new IllegalArgumentException("Failed to search HNSW index");
+            }
+            return SearchResult.fromArrays(count, ids, distances);
+        }
         int[] resultCount = new int[1];
         long resultsPtr = search(pointer, queryVector, queryVector.length, k, efSearch, resultCount);
         if (resultsPtr == 0L) {
@@ -608,6 +3293,85 @@ public class HNSWIndex implements AutoCloseable {
         return search(queryVector, k, 50);
     }
 
+    /**
+     * Add a half-precision vector to the index
+     *
+     * @param vector The vector as FLOAT16 or BFLOAT16 bit patterns
+     * @param format The format of the vector's elements
+     * @param id The ID to associate with the vector
+     * @throws IllegalArgumentException If the format is FLOAT32 or the vector dimension doesn't match the index dimension
+     */
+    public void addVector(short[] vector, ElementType format, int id) {
+        HalfBuffers.requireHalf(format);
+        if (!addHalfVector(pointer, vector, format.getValue(), id)) {
+            throw new IllegalArgumentException("Failed to add vector");
+        }
+    }
+
+    /**
+     * Add a half-precision vector to the index from the buffer's remaining elements
+     *
+     * Direct buffers in native byte order are read in place; others are copied first. The
+     * buffer's position is not changed.
+     *
+     * @param vector The vector as FLOAT16 or BFLOAT16 bit patterns
+     * @param format The format of the vector's elements
+     * @param id The ID to associate with the vector
+     * @throws IllegalArgumentException If the format is FLOAT32 or the vector dimension doesn't match the index dimension
+     */
+    public void addVector(java.nio.ShortBuffer vector, ElementType format, int id) {
+        if (!HalfBuffers.readableInPlace(vector)) {
+            addVector(HalfBuffers.toArray(vector), format, id);
+            return;
+        }
+        HalfBuffers.requireHalf(format);
+        if (!addHalfVectorBuffer(pointer, vector, vector.position(), vector.remaining(), format.getValue(), id)) {
+            throw new IllegalArgumentException("Failed to add vector");
+        }
+    }
+
+    /**
+     * Search for the nearest neighbors of a half-precision query vector
+     *
+     * @param queryVector The query as FLOAT16 or BFLOAT16 bit patterns
+     * @param format The format of the query's elements
+     * @param k The number of nearest neighbors to return
+     * @param efSearch The size of the dynamic list for candidate selection during search
+     * @return An array of search results sorted by distance
+     * @throws IllegalArgumentException If the format is FLOAT32 or the query dimension doesn't match the index dimension
+     */
+    public SearchResult[] search(short[] queryVector, ElementType format, int k, int efSearch) {
+        HalfBuffers.requireHalf(format);
+        int[] ids = new int[Math.max(k, 0)];
+        float[] distances = new float[Math.max(k, 0)];
+        int count = searchHalf(pointer, queryVector, format.getValue(), k, efSearch, ids, distances);
+        if (count < 0) {
+            throw new IllegalArgumentException("Failed to search HNSW index");
+        }
+        return SearchResult.fromArrays(count, ids, distances);
+    }
+
+    /**
+     * Search for the nearest neighbors of a half-precision query vector with default efSearch
+     *
+     * @param queryVector The query as FLOAT16 or BFLOAT16 bit patterns
+     * @param format The format of the query's elements
+     * @param k The number of nearest neighbors to return
+     * @return An array of search results sorted by distance
+     */
+    public SearchResult[] search(short[] queryVector, ElementType format, int k) {
+        return search(queryVector, format, k, 50);
+    }
+
+    /**
+     * Get the precision the index keeps its vectors in
+     *
+     * @return The element type
+     */
+    public ElementType getElementType() {
+        return ElementType.fromValue(getElementType(pointer));
+    }
+
     /**
      * Get the number of vectors in the index
      *
@@ -680,7 +3444,10 @@ public class HNSWIndex implements AutoCloseable {
     public float[] getVector(int id) {
         int dimension = getDimension();
         float[] vector = new float[dimension];
-        return getVector(pointer, id, vector) ? vector : null;
+        boolean found = ForeignBindings.ACTIVE != null
+                ? ForeignBindings.ACTIVE.hnswIndexGet(pointer, id, vector)
+                : getVector(pointer, id, vector);
+        return found ? vector : null;
     }
 
     /**
@@ -717,6 +3484,81 @@ public class HNSWIndex implements AutoCloseable {
         }
     }
 
+    /**
+     * Merge several independently built indexes into a new one
+     *
+     * The source indexes are left untouched. Their graphs are reused as-is and only the
+     * links between them are computed, which is much cheaper than re-adding every vector.
+     *
+     * @param indexes The indexes to merge; they must share dimension, metric and M
+     * @return The merged HNSW index
+     * @throws IllegalArgumentException If the list is empty, an index is closed, or an ID appears in more than one index
+     */
+    public static HNSWIndex merge(java.util.List<HNSWIndex> indexes) {
+        if (indexes == null || indexes.isEmpty()) {
+            throw new IllegalArgumentException("No indexes to merge");
+        }
+        long[] pointers = new long[indexes.size()];
+        for (int i = 0; i < pointers.length; i++) {
+            HNSWIndex index = indexes.get(i);
+            if (index == null || index.pointer == 0L) {
+                throw new IllegalArgumentException("Index at position " + i + " is null or closed");
+            }
+            pointers[i] = index.pointer;
+        }
+        long indexPointer = nativeMerge(pointers);
+        if (indexPointer == 0L) {
+            throw new IllegalArgumentException("Failed to merge HNSW indexes");
+        }
+        return new HNSWIndex(indexPointer);
+    }
+
+    /**
+     * Build an HNSW index over every vector in a memory-mapped store
+     *
+     * Vectors are read straight from the mapped file on the native side; nothing is copied
+     * through Java arrays.
+     *
+     * @param store The store to index
+     * @param m The maximum number of connections per node
+     * @param efConstruction The size of the dynamic list for candidate selection during construction
+     * @param threads The number of build threads, or 0 to use all available cores
+     * @param referenceVectors If true, the index reads vectors from the store's mapping instead of
+     *                         copying them. The store must then stay open for as long as the index
+     *                         is used, and vectors cannot be added to the index.
+     * @return The built HNSW index
+     * @throws IllegalArgumentException If the store is closed, a parameter is out of range, or the store contains duplicate IDs
+     */
+    public static HNSWIndex buildFrom(MMapVectorStore store, int m, int efConstruction, int threads, boolean referenceVectors) {
+        if (store == null || store.nativePointer() == 0L) {
+            throw new IllegalArgumentException("Store is null or closed");
+        }
+        if (m < 2 || efConstruction < 1 || threads < 0) {
+            throw new IllegalArgumentException("Invalid build parameters");
+        }
+        long indexPointer = nativeBuildFrom(store.nativePointer(), m, efConstruction, threads, referenceVectors);
+        if (indexPointer == 0L) {
+            throw new IllegalArgumentException("Failed to build HNSW index from MMap vector store");
+        }
+        HNSWIndex index = new HNSWIndex(indexPointer);
+        if (referenceVectors) {
+            index.vectorSource = store;
+        }
+        return index;
+    }
+
+    /**
+     * Build an HNSW index over every vector in a memory-mapped store with default parameters,
+     * copying the vectors into the index and using all available cores
+     *
+     * @param store The store to index
+     * @return The built HNSW index
+     * @throws IllegalArgumentException If the store is closed or contains duplicate IDs
+     */
+    public static HNSWIndex buildFrom(MMapVectorStore store) {
+        return buildFrom(store, 16, 200, 0, false);
+    }
+
     /**
      * Private constructor for loading an existing index pointer
      */
@@ -732,6 +3574,7 @@ public class HNSWIndex implements AutoCloseable {
         if (pointer != 0L) {
             destroyHNSWIndex(pointer);
             pointer = 0L;
+            vectorSource = null;
         }
     }
 
@@ -754,9 +3597,16 @@ public class HNSWIndex implements AutoCloseable {
     private native boolean getVector(long index, int id, float[] vector);
     private native boolean save(long index, String filename);
     private static native long nativeLoad(String filename);
+    private static native long nativeMerge(long[] indexes);
+    private static native long nativeBuildFrom(long store, int m, int efConstruction, int threads, boolean referenceVectors);
     private native void freeSearchResults(long results);
     private native int getResultId(long results, int index);
     private native float getResultDistance(long results, int index);
+    private native long createTypedHNSWIndex(int dimension, int metric, int m, int efConstruction, int elementType);
+    private native boolean addHalfVector(long index, short[] vector, int format, int id);
+    private native boolean addHalfVectorBuffer(long index, java.nio.ShortBuffer vector, int position, int remaining, int format, int id);
+    private native int searchHalf(long index, short[] queryVector, int format, int k, int efSearch, int[] ids, float[] distances);
+    private native int getElementType(long index);
     private native int getCount(long index);
     private native void clear(long index);
 
@@ -773,15 +3623,51 @@ public class LlamaMobileVD {
      * Get the version of the LlamaMobileVD library
      *
      * @return The version string
+     * @throws IllegalStateException If the native library is not loaded
      */
     public static String getVersion() {
+        requireNative();
         return nativeGetVersion();
     }
 
+    /**
+     * Get the distance kernel family selected for this device's CPU
+     *
+     * The native library picks the widest instruction set the CPU supports when it first
+     * computes a distance, so one build runs at full speed on every device. Useful for
+     * diagnosing performance differences between devices.
+     *
+     * @return One of "scalar", "sse4", "avx2", "avx512" or "neon"
+     * @throws IllegalStateException If the native library is not loaded
+     */
+    public static String getActiveKernel() {
+        requireNative();
+        return nativeGetActiveKernel();
+    }
+
+    /**
+     * Get how per-query calls reach the native library
+     *
+     * On JDK 22 or later with the src/jvm sources built in, adds, gets and searches go through
+     * java.lang.foreign downcalls instead of JNI; stores are still created and closed through
+     * JNI. Set the system property llamamobilevd.binding to "jni" to keep every call on JNI.
+     *
+     * @return "ffm", "jni", or "java" when the pure-Java engine stands in for the library
+     */
+    public static String getNativeBinding() {
+        if (!NativeLibrary.LOADED) {
+            return "java";
+        }
+        return ForeignBindings.ACTIVE != null ? ForeignBindings.ACTIVE.name() : "jni";
+    }
+
     // JNI methods
     private static native String nativeGetVersion();
+    private static native String nativeGetActiveKernel();
 
-    static {
-        System.loadLibrary("llamamobilevd");
+    private static void requireNative() {
+        if (!NativeLibrary.LOADED) {
+            throw new IllegalStateException("The native library is not loaded");
+        }
     }
 }
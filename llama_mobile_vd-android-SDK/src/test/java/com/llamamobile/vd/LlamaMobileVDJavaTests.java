@@ -7,6 +7,7 @@ import org.junit.Test;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -123,6 +124,81 @@ public class LlamaMobileVDJavaTests {
         Assert.assertEquals(1, results[1].getId()); // Second most similar
     }
 
+    @Test
+    public void testVectorStoreSearchThreads() {
+        int dimension = 384;
+        DistanceMetric metric = DistanceMetric.L2;
+
+        VectorStore vectorStore = track(new VectorStore(dimension, metric));
+        for (int i = 1; i <= 100; i++) {
+            float[] vec = new float[dimension];
+            for (int j = 0; j < dimension; j++) {
+                vec[j] = (float) (Math.random() * 2.0f - 1.0f);
+            }
+            vectorStore.addVector(vec, i);
+        }
+
+        float[] queryVector = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            queryVector[i] = 0.1f;
+        }
+        SearchResult[] sequential = vectorStore.search(queryVector, 5);
+
+        vectorStore.setSearchThreads(4);
+        SearchResult[] parallel = vectorStore.search(queryVector, 5);
+        Assert.assertEquals(sequential.length, parallel.length);
+        for (int i = 0; i < sequential.length; i++) {
+            Assert.assertEquals(sequential[i].getId(), parallel[i].getId());
+        }
+
+        try {
+            vectorStore.setSearchThreads(0);
+            Assert.fail("Expected IllegalArgumentException for zero threads");
+        } catch (IllegalArgumentException expected) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testVectorStoreSearchBatch() {
+        int dimension = 128;
+        DistanceMetric metric = DistanceMetric.COSINE;
+
+        VectorStore vectorStore = track(new VectorStore(dimension, metric));
+        for (int i = 1; i <= 200; i++) {
+            float[] vec = new float[dimension];
+            for (int j = 0; j < dimension; j++) {
+                vec[j] = (float) (Math.random() * 2.0f - 1.0f);
+            }
+            vectorStore.addVector(vec, i);
+        }
+
+        float[][] queryVectors = new float[6][dimension];
+        for (float[] query : queryVectors) {
+            for (int j = 0; j < dimension; j++) {
+                query[j] = (float) (Math.random() * 2.0f - 1.0f);
+            }
+        }
+
+        SearchResult[][] batch = vectorStore.searchBatch(queryVectors, 5);
+        Assert.assertEquals(queryVectors.length, batch.length);
+        for (int q = 0; q < queryVectors.length; q++) {
+            SearchResult[] single = vectorStore.search(queryVectors[q], 5);
+            Assert.assertEquals(single.length, batch[q].length);
+            for (int i = 0; i < single.length; i++) {
+                Assert.assertEquals(single[i].getId(), batch[q][i].getId());
+                Assert.assertEquals(single[i].getDistance(), batch[q][i].getDistance(), 1e-5f);
+            }
+        }
+
+        try {
+            vectorStore.searchBatch(new float[][] { new float[dimension - 1] }, 5);
+            Assert.fail("Expected IllegalArgumentException for wrong query dimension");
+        } catch (IllegalArgumentException expected) {
+            // Expected
+        }
+    }
+
     @Test
     public void testHNSWIndexCreation() {
         for (int dimension : testDimensions) {
@@ -227,6 +303,100 @@ public class LlamaMobileVDJavaTests {
         Assert.assertTrue(foundId2InResults2);
     }
 
+    @Test
+    public void testHNSWIndexConcurrentEfSearch() throws Exception {
+        int dimension = 32;
+        HNSWIndex hnswIndex = track(new HNSWIndex(dimension, DistanceMetric.L2, 16, 100, ElementType.FLOAT32));
+        java.util.Random random = new java.util.Random(1);
+        for (int i = 0; i < 2000; i++) {
+            float[] vec = new float[dimension];
+            for (int j = 0; j < dimension; j++) {
+                vec[j] = random.nextFloat();
+            }
+            hnswIndex.addVector(vec, i);
+        }
+        float[][] queries = new float[32][dimension];
+        for (float[] query : queries) {
+            for (int j = 0; j < dimension; j++) {
+                query[j] = random.nextFloat();
+            }
+        }
+
+        // Each search passes its own efSearch, so searches with different values may run at once
+        int[] efSearches = {10, 400};
+        SearchResult[][][] expected = new SearchResult[efSearches.length][queries.length][];
+        for (int e = 0; e < efSearches.length; e++) {
+            for (int q = 0; q < queries.length; q++) {
+                expected[e][q] = hnswIndex.search(queries[q], 10, efSearches[e]);
+            }
+        }
+        java.util.concurrent.ExecutorService pool = java.util.concurrent.Executors.newFixedThreadPool(4);
+        try {
+            List<java.util.concurrent.Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                final int thread = t;
+                futures.add(pool.submit(() -> {
+                    for (int round = 0; round < 10; round++) {
+                        for (int q = 0; q < queries.length; q++) {
+                            int e = (thread + round + q) % efSearches.length;
+                            SearchResult[] results = hnswIndex.search(queries[q], 10, efSearches[e]);
+                            Assert.assertEquals(expected[e][q].length, results.length);
+                            for (int i = 0; i < results.length; i++) {
+                                Assert.assertEquals(expected[e][q][i].getId(), results[i].getId());
+                            }
+                        }
+                    }
+                }));
+            }
+            for (java.util.concurrent.Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testHNSWIndexMerge() {
+        int dimension = 384;
+        DistanceMetric metric = DistanceMetric.L2;
+
+        HNSWIndex shard1 = track(new HNSWIndex(dimension, metric));
+        HNSWIndex shard2 = track(new HNSWIndex(dimension, metric));
+        float[] target = null;
+        for (int i = 1; i <= 20; i++) {
+            float[] vec = new float[dimension];
+            for (int j = 0; j < dimension; j++) {
+                vec[j] = (float) (Math.random() * 2.0f - 1.0f);
+            }
+            if (i == 15) {
+                target = vec;
+            }
+            (i <= 10 ? shard1 : shard2).addVector(vec, i);
+        }
+
+        List<HNSWIndex> shards = new ArrayList<>();
+        shards.add(shard1);
+        shards.add(shard2);
+        HNSWIndex merged = track(HNSWIndex.merge(shards));
+        Assert.assertEquals(20, merged.getCount());
+        Assert.assertTrue(merged.contains(3));
+        Assert.assertTrue(merged.contains(15));
+
+        SearchResult[] results = merged.search(target, 1);
+        Assert.assertEquals(1, results.length);
+        Assert.assertEquals(15, results[0].getId());
+
+        // The same ID in two shards is rejected
+        shards.add(shard1);
+        try {
+            HNSWIndex.merge(shards);
+            Assert.fail("Expected IllegalArgumentException for duplicate IDs");
+        } catch (IllegalArgumentException expected) {
+            // Expected
+        }
+    }
+
     @Test
     public void testMMapVectorStoreBuilderCreation() {
         for (int dimension : testDimensions) {
@@ -359,6 +529,109 @@ public class LlamaMobileVDJavaTests {
         }
     }
 
+    @Test
+    public void testMMapVectorStoreBuilderStreaming() throws Exception {
+        int dimension = 32;
+        int count = 500;
+        float[] vectors = new float[count * dimension];
+        int[] ids = new int[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = i * 3 + 1;
+            for (int j = 0; j < dimension; j++) {
+                vectors[i * dimension + j] = (float) (Math.random() * 2.0f - 1.0f);
+            }
+        }
+
+        File tempFile = File.createTempFile("mmap_streaming_test", ".store");
+        String tempFilePath = tempFile.getAbsolutePath();
+        try {
+            MMapVectorStoreBuilder builder = track(new MMapVectorStoreBuilder(tempFilePath, dimension,
+                    DistanceMetric.COSINE, ElementType.FLOAT32));
+            Assert.assertTrue(builder.isStreaming());
+            builder.addVectors(Arrays.copyOf(vectors, (count - 1) * dimension), Arrays.copyOf(ids, count - 1));
+            builder.addVector(Arrays.copyOfRange(vectors, (count - 1) * dimension, count * dimension), ids[count - 1]);
+            Assert.assertEquals(count, builder.getCount());
+            try {
+                builder.addVectors(new float[][]{Arrays.copyOf(vectors, dimension)}, new int[]{ids[0]});
+                Assert.fail("Expected IllegalArgumentException for a duplicate ID");
+            } catch (IllegalArgumentException expected) {
+                // Expected
+            }
+            builder.setBinaryIndex(true);
+            builder.finish();
+
+            MMapVectorStore store = track(MMapVectorStore.open(tempFilePath));
+            Assert.assertEquals(count, store.getCount());
+            Assert.assertEquals(DistanceMetric.COSINE, store.getMetric());
+            float[] query = Arrays.copyOfRange(vectors, 42 * dimension, 43 * dimension);
+            Assert.assertEquals(ids[42], store.search(query, 1)[0].getId());
+            Assert.assertEquals(ids[42], store.searchBinary(query, 1, 50)[0].getId());
+
+            // In-memory builders take bulk adds too
+            MMapVectorStoreBuilder inMemory = track(new MMapVectorStoreBuilder(dimension, DistanceMetric.L2));
+            Assert.assertFalse(inMemory.isStreaming());
+            inMemory.addVectors(vectors, ids);
+            Assert.assertEquals(count, inMemory.getCount());
+            try {
+                inMemory.finish();
+                Assert.fail("Expected IllegalStateException for finishing an in-memory builder");
+            } catch (IllegalStateException expected) {
+                // Expected
+            }
+        } finally {
+            tempFile.delete();
+        }
+
+        // Closing an unfinished streaming builder leaves nothing behind
+        File abandoned = new File(tempFilePath + ".abandoned");
+        MMapVectorStoreBuilder unfinished = new MMapVectorStoreBuilder(abandoned.getAbsolutePath(), dimension,
+                DistanceMetric.L2, ElementType.FLOAT32);
+        unfinished.addVectors(vectors, ids);
+        unfinished.close();
+        Assert.assertFalse(abandoned.exists());
+        Assert.assertFalse(new File(abandoned.getAbsolutePath() + ".tmp").exists());
+    }
+
+    @Test
+    public void testHNSWIndexBuildFromMMapVectorStore() throws Exception {
+        int dimension = 384;
+        DistanceMetric metric = DistanceMetric.L2;
+
+        File tempFile = File.createTempFile("mmap_hnsw_test", ".store");
+        String tempFilePath = tempFile.getAbsolutePath();
+
+        try {
+            MMapVectorStoreBuilder builder = track(new MMapVectorStoreBuilder(dimension, metric));
+            float[][] vectors = new float[50][dimension];
+            for (int i = 0; i < vectors.length; i++) {
+                for (int j = 0; j < dimension; j++) {
+                    vectors[i][j] = (float) (Math.random() * 2.0f - 1.0f);
+                }
+                builder.addVector(vectors[i], i + 1);
+            }
+            Assert.assertTrue(builder.save(tempFilePath));
+
+            MMapVectorStore vectorStore = track(MMapVectorStore.open(tempFilePath));
+
+            HNSWIndex copied = track(HNSWIndex.buildFrom(vectorStore));
+            Assert.assertEquals(50, copied.getCount());
+            Assert.assertEquals(8, copied.search(vectors[7], 1)[0].getId());
+
+            HNSWIndex referenced = track(HNSWIndex.buildFrom(vectorStore, 16, 100, 2, true));
+            Assert.assertEquals(50, referenced.getCount());
+            Assert.assertEquals(21, referenced.search(vectors[20], 1)[0].getId());
+
+            try {
+                HNSWIndex.buildFrom(vectorStore, 16, 100, -1, false);
+                Assert.fail("Expected IllegalArgumentException for negative thread count");
+            } catch (IllegalArgumentException expected) {
+                // Expected
+            }
+        } finally {
+            tempFile.delete();
+        }
+    }
+
     @Test
     public void testMMapVectorStoreSearch() throws Exception {
         int dimension = 512;
@@ -427,6 +700,211 @@ public class LlamaMobileVDJavaTests {
         }
     }
 
+    @Test
+    public void testMMapVectorStoreWarmup() throws Exception {
+        int dimension = 64;
+        File tempFile = File.createTempFile("mmap_warmup_test", ".store");
+        String tempFilePath = tempFile.getAbsolutePath();
+
+        try {
+            MMapVectorStoreBuilder builder = track(new MMapVectorStoreBuilder(dimension, DistanceMetric.L2));
+            for (int id = 0; id < 100; id++) {
+                float[] vector = new float[dimension];
+                for (int i = 0; i < dimension; i++) {
+                    vector[i] = id + i * 0.01f;
+                }
+                builder.addVector(vector, id);
+            }
+            Assert.assertTrue(builder.save(tempFilePath));
+
+            MMapVectorStore vectorStore = track(MMapVectorStore.open(tempFilePath));
+            float[] query = new float[dimension];
+            for (int i = 0; i < dimension; i++) {
+                query[i] = 42 + i * 0.01f;
+            }
+
+            // Warmup and advice are hints: results stay the same
+            vectorStore.warmup(0.5);
+            vectorStore.warmup();
+            Assert.assertEquals(42, vectorStore.search(query, 1)[0].getId());
+            vectorStore.adviseRandom();
+            Assert.assertTrue(vectorStore.contains(99));
+            vectorStore.adviseSequential();
+            Assert.assertEquals(42, vectorStore.search(query, 1)[0].getId());
+
+            try {
+                vectorStore.warmup(1.5);
+                Assert.fail("Expected IllegalArgumentException");
+            } catch (IllegalArgumentException expected) {
+                // Fractions outside 0 to 1 are rejected
+            }
+        } finally {
+            tempFile.delete();
+        }
+    }
+
+    @Test
+    public void testJavaMMapVectorStoreMatchesNative() throws Exception {
+        int dimension = 48;
+        File tempFile = File.createTempFile("java_mmap_test", ".store");
+        String tempFilePath = tempFile.getAbsolutePath();
+
+        try {
+            for (ElementType type : new ElementType[] {ElementType.FLOAT32, ElementType.FLOAT16}) {
+                MMapVectorStoreBuilder builder = track(new MMapVectorStoreBuilder(dimension, DistanceMetric.COSINE, type));
+                java.util.Random random = new java.util.Random(43);
+                for (int id = 0; id < 200; id++) {
+                    float[] vector = new float[dimension];
+                    for (int i = 0; i < dimension; i++) {
+                        vector[i] = (float) random.nextGaussian();
+                    }
+                    builder.addVector(vector, id * 5);
+                }
+                Assert.assertTrue(builder.save(tempFilePath));
+
+                MMapVectorStore nativeStore = track(MMapVectorStore.open(tempFilePath));
+                JavaMMapVectorStore javaStore = track(JavaMMapVectorStore.open(tempFilePath));
+                Assert.assertEquals(200, javaStore.getCount());
+                Assert.assertEquals(dimension, javaStore.getDimension());
+                Assert.assertEquals(DistanceMetric.COSINE, javaStore.getMetric());
+                Assert.assertEquals(type, javaStore.getElementType());
+                Assert.assertTrue(javaStore.contains(995));
+                Assert.assertFalse(javaStore.contains(996));
+                Assert.assertNull(javaStore.getCopy(996));
+                Assert.assertArrayEquals(nativeStore.get(35), javaStore.getCopy(35), 1e-6f);
+
+                float[] query = nativeStore.get(120);
+                SearchResult[] expected = nativeStore.search(query, 10);
+                SearchResult[] actual = javaStore.search(query, 10);
+                Assert.assertEquals(expected.length, actual.length);
+                for (int i = 0; i < expected.length; i++) {
+                    Assert.assertEquals(expected[i].getId(), actual[i].getId());
+                    Assert.assertEquals(expected[i].getDistance(), actual[i].getDistance(), 1e-4f);
+                }
+
+                if (type == ElementType.FLOAT32) {
+                    // Views share the mapping: unit-length rows, read-only
+                    java.nio.FloatBuffer view = javaStore.get(35);
+                    Assert.assertEquals(dimension, view.remaining());
+                    Assert.assertTrue(view.isReadOnly());
+                } else {
+                    try {
+                        javaStore.get(35);
+                        Assert.fail("Expected IllegalStateException");
+                    } catch (IllegalStateException expectedException) {
+                        // Half-precision rows have no float view
+                    }
+                }
+            }
+        } finally {
+            tempFile.delete();
+        }
+    }
+
+    @Test
+    public void testJavaVectorStoreEngineMatchesNative() throws Exception {
+        int dimension = 70;  // Not a multiple of any vector width
+        File tempFile = File.createTempFile("java_engine_test", ".store");
+        String tempFilePath = tempFile.getAbsolutePath();
+
+        try {
+            for (DistanceMetric metric : DistanceMetric.values()) {
+                VectorStore nativeStore = track(new VectorStore(dimension, metric));
+                JavaVectorStoreEngine engine = new JavaVectorStoreEngine(dimension, metric, ElementType.FLOAT32);
+                java.util.Random random = new java.util.Random(44);
+                float[][] vectors = new float[500][dimension];
+                for (int id = 0; id < vectors.length; id++) {
+                    for (int i = 0; i < dimension; i++) {
+                        vectors[id][i] = (float) random.nextGaussian();
+                    }
+                    nativeStore.addVector(vectors[id], id);
+                    engine.add(id, vectors[id]);
+                }
+                Assert.assertTrue(nativeStore.remove(10));
+                Assert.assertTrue(engine.remove(10));
+                Assert.assertFalse(engine.remove(10));
+                Assert.assertTrue(engine.update(11, vectors[0]));
+                nativeStore.update(11, vectors[0]);
+                Assert.assertEquals(nativeStore.getCount(), engine.count());
+                Assert.assertArrayEquals(nativeStore.get(42), engine.get(42), 1e-5f);
+
+                SearchResult[] expected = nativeStore.search(vectors[42], 10);
+                SearchResult[] actual = engine.search(vectors[42], 10);
+                Assert.assertEquals(expected.length, actual.length);
+                for (int i = 0; i < expected.length; i++) {
+                    Assert.assertEquals(expected[i].getId(), actual[i].getId());
+                    Assert.assertEquals(expected[i].getDistance(), actual[i].getDistance(), 1e-3f);
+                }
+                engine.setSearchThreads(3);
+                Assert.assertEquals(expected[0].getId(), engine.searchBatch(new float[][] {vectors[42]}, 10)[0][0].getId());
+                engine.setBinaryIndex(true);
+                Assert.assertEquals(42, engine.searchBinary(vectors[42], 5, 8)[0].getId());
+
+                // Files cross over between the engines
+                engine.save(tempFilePath);
+                VectorStore loaded = track(VectorStore.load(tempFilePath));
+                Assert.assertEquals(engine.count(), loaded.getCount());
+                Assert.assertEquals(expected[1].getId(), loaded.search(vectors[42], 10)[1].getId());
+                Assert.assertTrue(nativeStore.save(tempFilePath));
+                JavaVectorStoreEngine reloaded = JavaVectorStoreEngine.load(tempFilePath);
+                Assert.assertFalse(reloaded.contains(10));
+                Assert.assertEquals(expected[1].getId(), reloaded.search(vectors[42], 10)[1].getId());
+                engine.close();
+                reloaded.close();
+            }
+        } finally {
+            tempFile.delete();
+        }
+    }
+
+    @Test
+    public void testNativeBindingMatchesJavaEngine() {
+        // Runs over java.lang.foreign on JDK 22+ with src/jvm built in, otherwise over JNI
+        Assert.assertTrue(Arrays.asList("ffm", "jni", "java").contains(LlamaMobileVD.getNativeBinding()));
+        int dimension = 33;
+
+        for (DistanceMetric metric : DistanceMetric.values()) {
+            VectorStore store = track(new VectorStore(dimension, metric));
+            HNSWIndex index = track(new HNSWIndex(dimension, metric, 16, 200));
+            JavaVectorStoreEngine engine = new JavaVectorStoreEngine(dimension, metric, ElementType.FLOAT32);
+            java.util.Random random = new java.util.Random(45);
+            float[][] vectors = new float[300][dimension];
+            for (int id = 0; id < vectors.length; id++) {
+                for (int i = 0; i < dimension; i++) {
+                    vectors[id][i] = (float) random.nextGaussian();
+                }
+                store.addVector(vectors[id], id);
+                index.addVector(vectors[id], id);
+                engine.add(id, vectors[id]);
+            }
+            Assert.assertTrue(store.update(7, vectors[0]));
+            Assert.assertTrue(engine.update(7, vectors[0]));
+            Assert.assertArrayEquals(engine.get(7), store.get(7), 1e-5f);
+            Assert.assertNull(store.get(1000));
+
+            SearchResult[] expected = engine.search(vectors[42], 10);
+            SearchResult[] actual = store.search(vectors[42], 10);
+            SearchResult[] batch = store.searchBatch(new float[][] {vectors[1], vectors[42]}, 10)[1];
+            SearchResult[] graph = index.search(vectors[42], 10, 300);
+            Assert.assertEquals(expected.length, actual.length);
+            for (int i = 0; i < expected.length; i++) {
+                Assert.assertEquals(expected[i].getId(), actual[i].getId());
+                Assert.assertEquals(expected[i].getDistance(), actual[i].getDistance(), 1e-3f);
+                Assert.assertEquals(expected[i].getId(), batch[i].getId());
+                Assert.assertEquals(expected[i].getId(), graph[i].getId());
+            }
+            Assert.assertEquals(vectors.length, store.search(vectors[42], 1000).length);
+
+            try {
+                store.search(new float[dimension - 1], 3);
+                Assert.fail("Expected IllegalArgumentException");
+            } catch (IllegalArgumentException e) {
+                // Expected
+            }
+            engine.close();
+        }
+    }
+
     @Test
     public void testDistanceMetrics() {
         int dimension = 128;
@@ -514,4 +992,223 @@ public class LlamaMobileVDJavaTests {
             Assert.fail("AutoCloseable test failed for MMapVectorStoreBuilder");
         }
     }
+
+    @Test
+    public void testHalfPrecisionStorage() throws Exception {
+        int dimension = 64;
+        float[][] vectors = new float[40][dimension];
+        short[][] bf16 = new short[vectors.length][dimension];
+        for (int i = 0; i < vectors.length; i++) {
+            for (int j = 0; j < dimension; j++) {
+                vectors[i][j] = (float) (Math.random() * 2.0f - 1.0f);
+                // BF16 is the top half of the FP32 bit pattern (truncated here)
+                bf16[i][j] = (short) (Float.floatToIntBits(vectors[i][j]) >>> 16);
+            }
+        }
+
+        for (ElementType type : new ElementType[]{ElementType.FLOAT16, ElementType.BFLOAT16}) {
+            VectorStore store = track(new VectorStore(dimension, DistanceMetric.L2, type));
+            Assert.assertEquals(type, store.getElementType());
+            for (int i = 0; i < vectors.length; i++) {
+                store.addVector(vectors[i], i + 1);
+            }
+            Assert.assertEquals(6, store.search(vectors[5], 1)[0].getId());
+            Assert.assertEquals(6, store.search(bf16[5], ElementType.BFLOAT16, 1)[0].getId());
+
+            HNSWIndex index = track(new HNSWIndex(dimension, DistanceMetric.COSINE, 16, 100, type));
+            Assert.assertEquals(type, index.getElementType());
+            java.nio.ShortBuffer direct = java.nio.ByteBuffer.allocateDirect(dimension * 2)
+                    .order(java.nio.ByteOrder.nativeOrder()).asShortBuffer();
+            for (int i = 0; i < vectors.length; i++) {
+                direct.clear();
+                direct.put(bf16[i]).flip();
+                index.addVector(direct, ElementType.BFLOAT16, i + 1);
+                Assert.assertEquals(0, direct.position());
+            }
+            Assert.assertEquals(vectors.length, index.getCount());
+            Assert.assertEquals(13, index.search(vectors[12], 1)[0].getId());
+        }
+
+        try {
+            new VectorStore(dimension, DistanceMetric.L2).addVector(bf16[0], ElementType.FLOAT32, 1);
+            Assert.fail("Expected IllegalArgumentException for FLOAT32 half-precision input");
+        } catch (IllegalArgumentException expected) {
+            // Expected
+        }
+
+        File tempFile = File.createTempFile("mmap_half_test", ".store");
+        String tempFilePath = tempFile.getAbsolutePath();
+        try {
+            MMapVectorStoreBuilder builder = track(new MMapVectorStoreBuilder(dimension, DistanceMetric.L2, ElementType.FLOAT16));
+            for (int i = 0; i < vectors.length; i++) {
+                builder.addVector(java.nio.ShortBuffer.wrap(bf16[i]), ElementType.BFLOAT16, i + 1);
+            }
+            Assert.assertTrue(builder.save(tempFilePath));
+
+            MMapVectorStore mmapStore = track(MMapVectorStore.open(tempFilePath));
+            Assert.assertEquals(ElementType.FLOAT16, mmapStore.getElementType());
+            Assert.assertEquals(31, mmapStore.search(vectors[30], 1)[0].getId());
+            float[] stored = mmapStore.get(31);
+            Assert.assertEquals(vectors[30][0], stored[0], 1e-2f);
+        } finally {
+            tempFile.delete();
+        }
+    }
+
+    @Test
+    public void testBinaryQuantizedSearch() throws Exception {
+        int dimension = 128;
+        float[][] vectors = new float[60][dimension];
+        for (int i = 0; i < vectors.length; i++) {
+            for (int j = 0; j < dimension; j++) {
+                vectors[i][j] = (float) (Math.random() * 2.0f - 1.0f);
+            }
+        }
+
+        VectorStore store = track(new VectorStore(dimension, DistanceMetric.COSINE));
+        try {
+            store.searchBinary(vectors[0], 1);
+            Assert.fail("Expected IllegalStateException before the binary index is enabled");
+        } catch (IllegalStateException expected) {
+            // Expected
+        }
+        store.setBinaryIndex(true);
+        for (int i = 0; i < vectors.length; i++) {
+            store.addVector(vectors[i], i + 1);
+        }
+        // A rerank factor covering every row makes the shortlist exhaustive
+        SearchResult[] exact = store.search(vectors[7], 5);
+        SearchResult[] binary = store.searchBinary(vectors[7], 5, vectors.length);
+        Assert.assertEquals(exact.length, binary.length);
+        for (int i = 0; i < exact.length; i++) {
+            Assert.assertEquals(exact[i].getId(), binary[i].getId());
+        }
+        Assert.assertEquals(8, store.searchBinary(vectors[7], 1)[0].getId());
+
+        File tempFile = File.createTempFile("mmap_binary_test", ".store");
+        String tempFilePath = tempFile.getAbsolutePath();
+        try {
+            MMapVectorStoreBuilder builder = track(new MMapVectorStoreBuilder(dimension, DistanceMetric.L2));
+            builder.setBinaryIndex(true);
+            for (int i = 0; i < vectors.length; i++) {
+                builder.addVector(vectors[i], i + 1);
+            }
+            Assert.assertTrue(builder.save(tempFilePath));
+
+            MMapVectorStore mmapStore = track(MMapVectorStore.open(tempFilePath));
+            Assert.assertEquals(21, mmapStore.searchBinary(vectors[20], 1)[0].getId());
+        } finally {
+            tempFile.delete();
+        }
+    }
+
+    @Test
+    public void testVectorStoreSaveLoad() throws Exception {
+        int dimension = 32;
+        float[][] vectors = new float[50][dimension];
+        VectorStore store = track(new VectorStore(dimension, DistanceMetric.COSINE));
+        for (int i = 0; i < vectors.length; i++) {
+            for (int j = 0; j < dimension; j++) {
+                vectors[i][j] = (float) (Math.random() * 2.0f - 1.0f);
+            }
+            store.addVector(vectors[i], i + 1);
+        }
+
+        File tempFile = File.createTempFile("vector_store_test", ".store");
+        String tempFilePath = tempFile.getAbsolutePath();
+        try {
+            Assert.assertTrue(store.save(tempFilePath));
+            SearchResult[] expected = store.search(vectors[9], 3);
+
+            for (boolean map : new boolean[]{false, true}) {
+                VectorStore loaded = track(VectorStore.load(tempFilePath, map));
+                Assert.assertEquals(vectors.length, loaded.getCount());
+                Assert.assertEquals(DistanceMetric.COSINE, loaded.getMetric());
+                SearchResult[] results = loaded.search(vectors[9], 3);
+                for (int i = 0; i < expected.length; i++) {
+                    Assert.assertEquals(expected[i].getId(), results[i].getId());
+                }
+                // Writes work on a mapped store too
+                loaded.addVector(vectors[0], 1000);
+                Assert.assertEquals(vectors.length + 1, loaded.getCount());
+            }
+
+            MMapVectorStore mmapStore = track(MMapVectorStore.open(tempFilePath));
+            Assert.assertEquals(vectors.length, mmapStore.getCount());
+        } finally {
+            tempFile.delete();
+        }
+
+        try {
+            VectorStore.load(tempFilePath + ".missing");
+            Assert.fail("Expected IllegalStateException for a missing file");
+        } catch (IllegalStateException expected) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testSegmentedVectorStore() throws Exception {
+        int dimension = 16;
+        float[][] vectors = new float[300][dimension];
+        for (int i = 0; i < vectors.length; i++) {
+            for (int j = 0; j < dimension; j++) {
+                vectors[i][j] = (float) (Math.random() * 2.0f - 1.0f);
+            }
+        }
+
+        File directory = java.nio.file.Files.createTempDirectory("segmented_test").toFile();
+        String path = directory.getAbsolutePath();
+        try {
+            SegmentedVectorStore store = SegmentedVectorStore.open(path, dimension, DistanceMetric.L2,
+                    ElementType.FLOAT32, 100, false);
+            for (int i = 0; i < vectors.length; i++) {
+                store.addVector(vectors[i], i);
+            }
+            Assert.assertEquals(vectors.length, store.getCount());
+            Assert.assertEquals(3, store.getSegmentCount());
+            Assert.assertEquals(42, store.search(vectors[42], 1)[0].getId());
+
+            // Removed vectors disappear from every segment
+            Assert.assertTrue(store.remove(42));
+            Assert.assertFalse(store.contains(42));
+            Assert.assertNull(store.get(42));
+            for (SearchResult result : store.search(vectors[42], 10)) {
+                Assert.assertNotEquals(42, result.getId());
+            }
+            Assert.assertTrue(store.update(43, vectors[0]));
+            Assert.assertArrayEquals(vectors[0], store.get(43), 0.0f);
+            Assert.assertTrue(store.compact());
+            Assert.assertEquals(1, store.getSegmentCount());
+            store.close();
+
+            SegmentedVectorStore reopened = track(SegmentedVectorStore.open(path, dimension, DistanceMetric.L2));
+            Assert.assertEquals(vectors.length - 1, reopened.getCount());
+            Assert.assertFalse(reopened.contains(42));
+            Assert.assertEquals(100, reopened.search(vectors[100], 1)[0].getId());
+            reopened.close();
+
+            try {
+                SegmentedVectorStore.open(path, dimension * 2, DistanceMetric.L2);
+                Assert.fail("Expected IllegalStateException for a dimension mismatch");
+            } catch (IllegalStateException expected) {
+                // Expected
+            }
+        } finally {
+            File[] files = directory.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            directory.delete();
+        }
+    }
+
+    @Test
+    public void testActiveKernel() {
+        String kernel = LlamaMobileVD.getActiveKernel();
+        Assert.assertNotNull(kernel);
+        Assert.assertTrue(Arrays.asList("scalar", "sse4", "avx2", "avx512", "neon").contains(kernel));
+    }
 }
@@ -178,7 +178,7 @@ public class LlamaMobileVDImpl {
         float[] queryVector = convertToFloatArray(queryVectorArray);
         SearchResult[] results = store.search(queryVector, k);
         
-        return convertSearchResultsToJSObject(results);
+        return convertSearchResultsToJSObject(results, call.getString("format", "objects"));
     }
 
     /**
@@ -519,7 +519,7 @@ public class LlamaMobileVDImpl {
         
         SearchResult[] results = index.search(queryVector, k, efSearch);
         
-        return convertSearchResultsToJSObject(results);
+        return convertSearchResultsToJSObject(results, call.getString("format", "objects"));
     }
 
     /**
@@ -832,7 +832,7 @@ public class LlamaMobileVDImpl {
         float[] queryVector = convertToFloatArray(queryVectorArray);
         SearchResult[] results = store.search(queryVector, k);
         
-        return convertSearchResultsToJSObject(results);
+        return convertSearchResultsToJSObject(results, call.getString("format", "objects"));
     }
     
     /**
@@ -1001,21 +1001,40 @@ public class LlamaMobileVDImpl {
 
     /**
      * Convert SearchResult array to JSObject
+     * "objects" returns one {id, distance} object per hit; "columnar" returns parallel ids and
+     * distances arrays, so the payload holds two arrays regardless of k.
      * 
      * @param results SearchResult array
+     * @param format Result format, "objects" or "columnar"
      * @return JSObject with search results
      */
-    private JSObject convertSearchResultsToJSObject(SearchResult[] results) {
+    private JSObject convertSearchResultsToJSObject(SearchResult[] results, String format) {
+        JSObject result = new JSObject();
+        
+        if ("columnar".equals(format)) {
+            JSArray ids = new JSArray();
+            JSArray distances = new JSArray();
+            for (SearchResult hit : results) {
+                ids.put(hit.getId());
+                distances.put(hit.getDistance());
+            }
+            result.put("ids", ids);
+            result.put("distances", distances);
+            return result;
+        }
+        if (!"objects".equals(format)) {
+            throw new IllegalArgumentException("Invalid result format: " + format);
+        }
+        
         JSArray jsResults = new JSArray();
         
-        for (SearchResult result : results) {
+        for (SearchResult hit : results) {
             JSObject jsResult = new JSObject();
-            jsResult.put("id", result.getId());
-            jsResult.put("distance", result.getDistance());
+            jsResult.put("id", hit.getId());
+            jsResult.put("distance", hit.getDistance());
             jsResults.put(jsResult);
         }
         
-        JSObject result = new JSObject();
         result.put("results", jsResults);
         return result;
     }
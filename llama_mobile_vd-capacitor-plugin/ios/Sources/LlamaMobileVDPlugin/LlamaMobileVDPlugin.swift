@@ -113,6 +113,26 @@ public class LlamaMobileVDPlugin: CAPPlugin, CAPBridgedPlugin {
         return numberArray.compactMap { $0 as? Double }.map { Float($0) }
     }
     
+    /**
+     * Format search results as requested by the "format" parameter
+     * "objects" (the default) returns one {id, distance} object per hit; "columnar" returns
+     * parallel ids and distances arrays, so the payload holds two arrays regardless of k.
+     * 
+     * @param hits Search results in order of increasing distance
+     * @param format The requested format, or nil for the default
+     * @returns The payload to resolve the call with
+     */
+    private func formatSearchResults(_ hits: [(id: Int, distance: Float)], format: String?) throws -> [String: Any] {
+        switch format ?? "objects" {
+        case "objects":
+            return ["results": hits.map { ["id": $0.id, "distance": $0.distance] as [String: Any] }]
+        case "columnar":
+            return ["ids": hits.map { $0.id }, "distances": hits.map { $0.distance }]
+        default:
+            throw CAPPluginError.error("Invalid result format: \(format ?? "")")
+        }
+    }
+    
     // MARK: VectorStore Methods
     
     /**
@@ -185,8 +205,8 @@ public class LlamaMobileVDPlugin: CAPPlugin, CAPBridgedPlugin {
             let queryVector = convertToFloatArray(queryVectorArray)
             let results = try store.search(queryVector, k: k)
             
-            let mappedResults = results.map { ["id": $0.id, "distance": $0.distance] }
-            call.resolve(["results": mappedResults])
+            let hits = results.map { (id: Int($0.id), distance: Float($0.distance)) }
+            call.resolve(try formatSearchResults(hits, format: call.getString("format")))
         } catch {
             call.reject(error.localizedDescription)
         }
@@ -507,8 +527,8 @@ public class LlamaMobileVDPlugin: CAPPlugin, CAPBridgedPlugin {
             
             let results = try index.search(queryVector, k: k, efSearch: efSearch)
             
-            let mappedResults = results.map { ["id": $0.id, "distance": $0.distance] }
-            call.resolve(["results": mappedResults])
+            let hits = results.map { (id: Int($0.id), distance: Float($0.distance)) }
+            call.resolve(try formatSearchResults(hits, format: call.getString("format")))
         } catch {
             call.reject(error.localizedDescription)
         }
@@ -286,6 +286,30 @@ describe('LlamaMobileVD Capacitor Plugin', () => {
     });
   });
 
+  describe('searchVectorStore with columnar results', () => {
+    it('should pass the format through and return parallel arrays', async () => {
+      const mockResults = {
+        ids: [1, 2],
+        distances: [0.1, 0.2],
+      };
+      
+      mockPlugin.searchVectorStore.mockResolvedValue(mockResults);
+      
+      const params = {
+        id: 'test-vector-store-id',
+        queryVector: Array(512).fill(0.5),
+        k: 2,
+        format: 'columnar' as const,
+      };
+      
+      const { ids, distances } = await LlamaMobileVD.searchVectorStore(params);
+      
+      expect(mockPlugin.searchVectorStore).toHaveBeenCalledWith(params);
+      expect(ids).toEqual([1, 2]);
+      expect(distances).toEqual([0.1, 0.2]);
+    });
+  });
+
   describe('searchHNSWIndex', () => {
     it('should call the plugin with default parameters', async () => {
       const mockId = 'test-hnsw-index-id';
@@ -35,6 +35,12 @@ export interface SearchResult {
   distance: number;
 }
 
+/**
+ * Format of search results: 'objects' resolves a SearchResultList with one object per hit,
+ * 'columnar' resolves a ColumnarSearchResultList whose size does not grow with k in objects
+ */
+export type SearchResultFormat = 'objects' | 'columnar';
+
 /**
  * Options for creating a VectorStore
  */
@@ -105,6 +111,10 @@ export interface VectorStoreSearchParams {
    * The number of nearest neighbors to return
    */
   k: number;
+  /**
+   * The result format (default 'objects')
+   */
+  format?: SearchResultFormat;
 }
 
 /**
@@ -127,6 +137,10 @@ export interface HNSWIndexSearchParams {
    * The size of the dynamic list for candidate selection during search
    */
   efSearch?: number;
+  /**
+   * The result format (default 'objects')
+   */
+  format?: SearchResultFormat;
 }
 
 /**
@@ -273,6 +287,20 @@ export interface SearchResultList {
   results: SearchResult[];
 }
 
+/**
+ * Result containing search results as parallel arrays
+ */
+export interface ColumnarSearchResultList {
+  /**
+   * The IDs of the matched vectors, sorted by distance
+   */
+  ids: number[];
+  /**
+   * The distances to the query vector, in the same order as ids
+   */
+  distances: number[];
+}
+
 /**
  * Result containing the count of vectors
  */
@@ -446,6 +474,7 @@ export interface LlamaMobileVDPlugin {
    * @param params Parameters for searching
    * @returns Promise with search results
    */
+  searchVectorStore(params: VectorStoreSearchParams & { format: 'columnar' }): Promise<ColumnarSearchResultList>;
   searchVectorStore(params: VectorStoreSearchParams): Promise<SearchResultList>;
 
   /**
@@ -495,6 +524,7 @@ export interface LlamaMobileVDPlugin {
    * @param params Parameters for searching
    * @returns Promise with search results
    */
+  searchHNSWIndex(params: HNSWIndexSearchParams & { format: 'columnar' }): Promise<ColumnarSearchResultList>;
   searchHNSWIndex(params: HNSWIndexSearchParams): Promise<SearchResultList>;
 
   /**
@@ -600,6 +630,7 @@ export interface LlamaMobileVDPlugin {
    * @param params Parameters for searching
    * @returns Promise with search results
    */
+  searchMMapVectorStore(params: VectorStoreSearchParams & { format: 'columnar' }): Promise<ColumnarSearchResultList>;
   searchMMapVectorStore(params: VectorStoreSearchParams): Promise<SearchResultList>;
 
   /**
@@ -26,11 +26,11 @@ export class LlamaMobileVDWeb extends WebPlugin implements LlamaMobileVDPlugin {
     throw new Error(this.UNSUPPORTED_ERROR);
   }
 
-  async searchVectorStore(): Promise<{ results: { id: number; distance: number }[] }> {
+  async searchVectorStore(): Promise<never> {
     throw new Error(this.UNSUPPORTED_ERROR);
   }
 
-  async searchHNSWIndex(): Promise<{ results: { id: number; distance: number }[] }> {
+  async searchHNSWIndex(): Promise<never> {
     throw new Error(this.UNSUPPORTED_ERROR);
   }
 
@@ -142,7 +142,7 @@ export class LlamaMobileVDWeb extends WebPlugin implements LlamaMobileVDPlugin {
     throw new Error(this.UNSUPPORTED_ERROR);
   }
 
-  async searchMMapVectorStore(): Promise<{ results: { id: number; distance: number }[] }> {
+  async searchMMapVectorStore(): Promise<never> {
     throw new Error(this.UNSUPPORTED_ERROR);
   }
 
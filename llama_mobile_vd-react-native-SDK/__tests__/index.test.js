@@ -3,7 +3,7 @@
  * These tests focus on the JavaScript interface and basic functionality
  */
 
-import LlamaMobileVD, { DistanceMetric } from '../lib/index';
+import LlamaMobileVD, { DistanceMetric, encodeFloat32, decodePackedResults } from '../lib/index';
 
 // Mock the native module
 jest.mock('react-native', () => {
@@ -13,6 +13,9 @@ jest.mock('react-native', () => {
       createHNSWIndex: jest.fn(),
       addVectorToStore: jest.fn(),
       addVectorToHNSW: jest.fn(),
+      addVectorsToStore: jest.fn(),
+      addVectorsToHNSW: jest.fn(),
+      searchBatch: jest.fn(),
       removeVectorFromStore: jest.fn(),
       getVectorFromStore: jest.fn(),
       updateVectorInStore: jest.fn(),
@@ -47,10 +50,15 @@ jest.mock('react-native', () => {
       getMMapVectorStoreDimension: jest.fn(),
       getMMapVectorStoreMetric: jest.fn(),
       releaseMMapVectorStore: jest.fn(),
+      configureWorkers: jest.fn(),
+      configureMemory: jest.fn(),
+      getMemoryStats: jest.fn(),
     },
   };
   
-  return { NativeModules };
+  const Platform = { OS: 'android' };
+
+  return { NativeModules, Platform };
 });
 
 describe('LlamaMobileVD', () => {
@@ -161,6 +169,185 @@ describe('LlamaMobileVD', () => {
     });
   });
 
+  describe('Float32 payloads', () => {
+    it('should encode vectors as base64 little-endian Float32', () => {
+      // 1.0f is 0x3F800000 and -2.0f is 0xC0000000
+      expect(encodeFloat32([1, -2])).toBe('AACAPwAAAMA=');
+      expect(encodeFloat32(new Float32Array([1, -2]))).toBe('AACAPwAAAMA=');
+      expect(encodeFloat32(new Float32Array([1, -2]).buffer)).toBe('AACAPwAAAMA=');
+      expect(encodeFloat32(new Float32Array([0.5]))).toBe('AAAAPw==');
+    });
+
+    it('should send Float32Array vectors as base64', async () => {
+      const { NativeModules } = require('react-native');
+      NativeModules.LlamaMobileVD.addVectorToStore.mockResolvedValue();
+      NativeModules.LlamaMobileVD.searchVectorStore.mockResolvedValue([]);
+
+      await LlamaMobileVD.addVectorToStore({ id: 'store', vector: new Float32Array([1, -2]), vectorId: 7 });
+      await LlamaMobileVD.searchVectorStore({ id: 'store', queryVector: new Float32Array([1, -2]), k: 3 });
+
+      expect(NativeModules.LlamaMobileVD.addVectorToStore).toHaveBeenCalledWith({
+        id: 'store',
+        vectorBase64: 'AACAPwAAAMA=',
+        vectorId: 7,
+      });
+      expect(NativeModules.LlamaMobileVD.searchVectorStore).toHaveBeenCalledWith({
+        id: 'store',
+        queryVectorBase64: 'AACAPwAAAMA=',
+        k: 3,
+      });
+    });
+
+    it('should send Float32Array vectors as number arrays on iOS', async () => {
+      const { NativeModules, Platform } = require('react-native');
+      NativeModules.LlamaMobileVD.addVectorToStore.mockResolvedValue();
+      Platform.OS = 'ios';
+      try {
+        await LlamaMobileVD.addVectorToStore({ id: 'store', vector: new Float32Array([1, -2]), vectorId: 7 });
+      } finally {
+        Platform.OS = 'android';
+      }
+
+      expect(NativeModules.LlamaMobileVD.addVectorToStore).toHaveBeenCalledWith({
+        id: 'store',
+        vector: [1, -2],
+        vectorId: 7,
+      });
+    });
+  });
+
+  describe('Search result formats', () => {
+    // Ids [3, -1] as little-endian Int32 followed by distances [0.5, 2] as little-endian Float32
+    const packed = { count: 2, packed: 'AwAAAP////8AAAA/AAAAQA==' };
+
+    it('should decode packed results into typed arrays', () => {
+      const { ids, distances } = decodePackedResults(packed);
+
+      expect(ids).toBeInstanceOf(Int32Array);
+      expect(distances).toBeInstanceOf(Float32Array);
+      expect(Array.from(ids)).toEqual([3, -1]);
+      expect(Array.from(distances)).toEqual([0.5, 2]);
+    });
+
+    it('should decode packed search responses', async () => {
+      const { NativeModules } = require('react-native');
+      NativeModules.LlamaMobileVD.searchHNSWIndex.mockResolvedValue(packed);
+
+      const params = { id: 'index', queryVector: [0.5, 0.5], k: 2, format: 'packed' };
+      const { ids, distances } = await LlamaMobileVD.searchHNSWIndex(params);
+
+      expect(NativeModules.LlamaMobileVD.searchHNSWIndex).toHaveBeenCalledWith(params);
+      expect(Array.from(ids)).toEqual([3, -1]);
+      expect(Array.from(distances)).toEqual([0.5, 2]);
+    });
+
+    it('should pass columnar responses through', async () => {
+      const { NativeModules } = require('react-native');
+      const mockResponse = { ids: [3, 1], distances: [0.5, 2] };
+      NativeModules.LlamaMobileVD.searchVectorStore.mockResolvedValue(mockResponse);
+
+      const params = { id: 'store', queryVector: [0.5, 0.5], k: 2, format: 'columnar' };
+      const result = await LlamaMobileVD.searchVectorStore(params);
+
+      expect(NativeModules.LlamaMobileVD.searchVectorStore).toHaveBeenCalledWith(params);
+      expect(result).toEqual(mockResponse);
+    });
+
+    it('should reject columnar and packed formats on iOS', async () => {
+      const { NativeModules, Platform } = require('react-native');
+      Platform.OS = 'ios';
+      try {
+        for (const format of ['columnar', 'packed']) {
+          const params = { id: 'index', queryVector: [0.5, 0.5], k: 2, format };
+          await expect(LlamaMobileVD.searchHNSWIndex(params)).rejects.toThrow('only supported on Android');
+        }
+      } finally {
+        Platform.OS = 'android';
+      }
+
+      expect(NativeModules.LlamaMobileVD.searchHNSWIndex).not.toHaveBeenCalled();
+    });
+  });
+
+  describe('Batch methods', () => {
+    it('should add many vectors to a VectorStore in one call', async () => {
+      const { NativeModules } = require('react-native');
+      NativeModules.LlamaMobileVD.addVectorsToStore.mockResolvedValue({ count: 2 });
+
+      const params = { id: 'store', vectors: [[1, 0], [0, 1]], vectorIds: [1, 2] };
+      const result = await LlamaMobileVD.addVectorsToStore(params);
+
+      expect(NativeModules.LlamaMobileVD.addVectorsToStore).toHaveBeenCalledTimes(1);
+      expect(NativeModules.LlamaMobileVD.addVectorsToStore).toHaveBeenCalledWith(params);
+      expect(result).toEqual({ count: 2 });
+    });
+
+    it('should pack Float32Array vectors into one base64 payload', async () => {
+      const { NativeModules } = require('react-native');
+      NativeModules.LlamaMobileVD.addVectorsToHNSW.mockResolvedValue({ count: 2 });
+
+      await LlamaMobileVD.addVectorsToHNSW({
+        id: 'index',
+        vectors: [new Float32Array([1]), new Float32Array([-2])],
+        vectorIds: [1, 2],
+      });
+
+      expect(NativeModules.LlamaMobileVD.addVectorsToHNSW).toHaveBeenCalledWith({
+        id: 'index',
+        vectorsBase64: 'AACAPwAAAMA=',
+        vectorIds: [1, 2],
+      });
+    });
+
+    it('should search with many queries in one call', async () => {
+      const { NativeModules } = require('react-native');
+      const mockResults = [[{ index: 1, distance: 0.1 }], [{ index: 2, distance: 0.2 }]];
+      NativeModules.LlamaMobileVD.searchBatch.mockResolvedValue(mockResults);
+
+      const params = { id: 'store', queryVectors: new Float32Array([1, -2]), k: 1 };
+      const results = await LlamaMobileVD.searchBatch(params);
+
+      expect(NativeModules.LlamaMobileVD.searchBatch).toHaveBeenCalledWith({
+        id: 'store',
+        queryVectorsBase64: 'AACAPwAAAMA=',
+        k: 1,
+      });
+      expect(results).toEqual(mockResults);
+    });
+
+    it('should decode packed batch results', async () => {
+      const { NativeModules } = require('react-native');
+      NativeModules.LlamaMobileVD.searchBatch.mockResolvedValue([
+        { count: 2, packed: 'AwAAAP////8AAAA/AAAAQA==' },
+        { count: 0, packed: '' },
+      ]);
+
+      const results = await LlamaMobileVD.searchBatch({ id: 'store', queryVectors: [[1], [2]], k: 2, format: 'packed' });
+
+      expect(results).toHaveLength(2);
+      expect(Array.from(results[0].ids)).toEqual([3, -1]);
+      expect(Array.from(results[0].distances)).toEqual([0.5, 2]);
+      expect(results[1].ids).toHaveLength(0);
+    });
+
+    it('should reject when the native module has no batch methods', async () => {
+      const { NativeModules } = require('react-native');
+      const native = NativeModules.LlamaMobileVD;
+      const saved = { addVectorsToStore: native.addVectorsToStore, addVectorsToHNSW: native.addVectorsToHNSW, searchBatch: native.searchBatch };
+      Object.keys(saved).forEach(name => delete native[name]);
+      try {
+        await expect(LlamaMobileVD.addVectorsToStore({ id: 'store', vectors: [[1]], vectorIds: [1] }))
+          .rejects.toThrow('addVectorsToStore is only supported on Android');
+        await expect(LlamaMobileVD.addVectorsToHNSW({ id: 'index', vectors: [[1]], vectorIds: [1] }))
+          .rejects.toThrow('addVectorsToHNSW is only supported on Android');
+        await expect(LlamaMobileVD.searchBatch({ id: 'store', queryVectors: [[1]], k: 1, format: 'packed' }))
+          .rejects.toThrow('searchBatch is only supported on Android');
+      } finally {
+        Object.assign(native, saved);
+      }
+    });
+  });
+
   describe('countVectorStore', () => {
     it('should call the native module with the correct parameters', async () => {
       const mockId = 'test-vector-store-id';
@@ -837,5 +1024,58 @@ describe('LlamaMobileVD', () => {
         expect(NativeModules.LlamaMobileVD.releaseMMapVectorStore).toHaveBeenCalledWith(params);
       });
     });
+
+    describe('configureWorkers', () => {
+      it('should call the native module with the correct parameters', async () => {
+        const mockResponse = { readThreads: 2, writeThreads: 1 };
+        
+        // Mock the native module response
+        const { NativeModules } = require('react-native');
+        NativeModules.LlamaMobileVD.configureWorkers.mockResolvedValue(mockResponse);
+        
+        const options = { readThreads: 2 };
+        
+        const result = await LlamaMobileVD.configureWorkers(options);
+        
+        expect(NativeModules.LlamaMobileVD.configureWorkers).toHaveBeenCalledWith(options);
+        expect(result).toEqual(mockResponse);
+      });
+    });
+
+    describe('configureMemory', () => {
+      it('should call the native module with the correct parameters', async () => {
+        const mockResponse = { budgetBytes: 64 * 1024 * 1024, loadedBytes: 0, handles: [] };
+        
+        // Mock the native module response
+        const { NativeModules } = require('react-native');
+        NativeModules.LlamaMobileVD.configureMemory.mockResolvedValue(mockResponse);
+        
+        const options = { budgetBytes: 64 * 1024 * 1024 };
+        
+        const result = await LlamaMobileVD.configureMemory(options);
+        
+        expect(NativeModules.LlamaMobileVD.configureMemory).toHaveBeenCalledWith(options);
+        expect(result).toEqual(mockResponse);
+      });
+    });
+
+    describe('getMemoryStats', () => {
+      it('should return the native memory statistics', async () => {
+        const mockResponse = {
+          budgetBytes: 0,
+          loadedBytes: 1024,
+          handles: [{ id: 'test-mmap-store-id', type: 'MMapVectorStore', bytes: 1024, loaded: true, evictable: true }],
+        };
+        
+        // Mock the native module response
+        const { NativeModules } = require('react-native');
+        NativeModules.LlamaMobileVD.getMemoryStats.mockResolvedValue(mockResponse);
+        
+        const result = await LlamaMobileVD.getMemoryStats();
+        
+        expect(NativeModules.LlamaMobileVD.getMemoryStats).toHaveBeenCalledTimes(1);
+        expect(result).toEqual(mockResponse);
+      });
+    });
   });
 });
@@ -0,0 +1,309 @@
+package com.llamamobile.vd;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Native handles (VectorStore, HNSWIndex, MMapVectorStore) owned by LlamaMobileVDModule, by ID
+ * Every handle is closed when it is removed or the registry is cleared, and each one's native
+ * memory is estimated from its count and dimension. Handles opened from a file and not modified
+ * since can be unloaded, least recently used first, and are reopened from the file on next use.
+ * Unloading and removing must run while no other operation is using the handles (see
+ * {@link WorkerPool#exclusive(Runnable)}); lookups and reopens may run concurrently.
+ */
+final class HandleRegistry {
+
+    /**
+     * Reopens an unloaded handle from its file
+     */
+    interface Opener {
+        AutoCloseable open() throws Exception;
+    }
+
+    /**
+     * Bytes per vector for an HNSWIndex graph: the level-0 links at the default M of 16 plus the ID map
+     */
+    private static final long HNSW_GRAPH_BYTES_PER_VECTOR = 2 * 16 * Integer.BYTES + 16;
+
+    /**
+     * Bytes per vector for the ID of a VectorStore or MMapVectorStore entry
+     */
+    private static final long ID_BYTES_PER_VECTOR = Long.BYTES;
+
+    private static final class Entry {
+        final Class<?> type;
+        volatile AutoCloseable handle;
+        Opener opener;
+
+        Entry(Class<?> type, AutoCloseable handle, Opener opener) {
+            this.type = type;
+            this.handle = handle;
+            this.opener = opener;
+        }
+    }
+
+    /**
+     * Entries in access order, least recently used first
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final WorkerPool workers;
+    private long budgetBytes;
+
+    /**
+     * Create an empty registry
+     * @param workers The pool that runs evictions once no operation is using the handles
+     */
+    HandleRegistry(WorkerPool workers) {
+        this.workers = workers;
+    }
+
+    /**
+     * Register a handle
+     * @param id The ID JavaScript uses for the handle
+     * @param handle The handle, owned by the registry from now on
+     * @param opener Reopens the handle from its file, or null if it cannot be unloaded
+     */
+    void put(String id, AutoCloseable handle, Opener opener) {
+        synchronized (this) {
+            entries.put(id, new Entry(handle.getClass(), handle, opener));
+        }
+        enforceBudget();
+    }
+
+    /**
+     * Look up a handle, reopening it if it was unloaded
+     * @param id The ID of the handle
+     * @param type The expected handle class
+     * @return The handle, or null if no handle of that class has this ID
+     * @throws Exception if the handle was unloaded and its file can no longer be opened
+     */
+    <T extends AutoCloseable> T get(String id, Class<T> type) throws Exception {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(id);
+        }
+        if (entry == null || entry.type != type) {
+            return null;
+        }
+        AutoCloseable handle = entry.handle;
+        if (handle == null) {
+            synchronized (entry) {
+                handle = entry.handle;
+                if (handle == null) {
+                    Opener opener = entry.opener;
+                    if (opener == null) {
+                        throw new IllegalStateException(type.getSimpleName() + " " + id + " was unloaded and cannot be reopened");
+                    }
+                    handle = opener.open();
+                    entry.handle = handle;
+                }
+            }
+            enforceBudget();
+        }
+        return type.cast(handle);
+    }
+
+    /**
+     * Look up a handle that is about to be modified; it can no longer be unloaded until it is saved
+     * @param id The ID of the handle
+     * @param type The expected handle class
+     * @return The handle, or null if no handle of that class has this ID
+     * @throws Exception if the handle was unloaded and its file can no longer be opened
+     */
+    <T extends AutoCloseable> T modify(String id, Class<T> type) throws Exception {
+        T handle = get(id, type);
+        if (handle != null) {
+            synchronized (this) {
+                Entry entry = entries.get(id);
+                if (entry != null) {
+                    entry.opener = null;
+                }
+            }
+        }
+        return handle;
+    }
+
+    /**
+     * Record that a handle was saved to a file it can be reopened from
+     * Call this only while no operation can modify the handle.
+     * @param id The ID of the handle
+     * @param opener Reopens the handle from the saved file
+     */
+    synchronized void saved(String id, Opener opener) {
+        Entry entry = entries.get(id);
+        if (entry != null) {
+            entry.opener = opener;
+        }
+    }
+
+    /**
+     * Remove a handle and close it
+     * @param id The ID of the handle
+     * @param type The expected handle class
+     * @return Whether a handle of that class was registered under this ID
+     * @throws Exception if closing the handle fails
+     */
+    boolean remove(String id, Class<? extends AutoCloseable> type) throws Exception {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(id);
+            if (entry == null || entry.type != type) {
+                return false;
+            }
+            entries.remove(id);
+        }
+        AutoCloseable handle = entry.handle;
+        entry.handle = null;
+        if (handle != null) {
+            handle.close();
+        }
+        return true;
+    }
+
+    /**
+     * Close every handle and forget them all
+     */
+    void clear() {
+        List<Entry> closing;
+        synchronized (this) {
+            closing = new ArrayList<>(entries.values());
+            entries.clear();
+        }
+        for (Entry entry : closing) {
+            closeQuietly(entry);
+        }
+    }
+
+    /**
+     * Set the native memory budget; above it, unloadable handles are unloaded least recently used first
+     * @param bytes The budget in bytes, or 0 for no budget
+     */
+    void setBudget(long bytes) {
+        synchronized (this) {
+            budgetBytes = bytes;
+        }
+        enforceBudget();
+    }
+
+    /**
+     * @return The native memory budget in bytes, or 0 for no budget
+     */
+    synchronized long budget() {
+        return budgetBytes;
+    }
+
+    /**
+     * Unload unloadable handles, least recently used first, until the loaded handles use at most
+     * the given number of bytes or nothing more can be unloaded
+     * @param targetBytes The number of bytes to stay within
+     * @return The number of bytes freed
+     */
+    long trimTo(long targetBytes) {
+        List<Entry> evicted = new ArrayList<>();
+        long freed = 0;
+        synchronized (this) {
+            long loaded = loadedBytes();
+            for (Iterator<Entry> it = entries.values().iterator(); it.hasNext() && loaded > targetBytes; ) {
+                Entry entry = it.next();
+                if (entry.handle != null && entry.opener != null) {
+                    long bytes = nativeBytes(entry.handle);
+                    loaded -= bytes;
+                    freed += bytes;
+                    evicted.add(entry);
+                }
+            }
+        }
+        for (Entry entry : evicted) {
+            closeQuietly(entry);
+        }
+        return freed;
+    }
+
+    /**
+     * @return The estimated native bytes used by the loaded handles
+     */
+    synchronized long loadedBytes() {
+        long total = 0;
+        for (Entry entry : entries.values()) {
+            AutoCloseable handle = entry.handle;
+            if (handle != null) {
+                total += nativeBytes(handle);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Describe every handle, least recently used first
+     * @return One map per handle with id, type, bytes, loaded and evictable
+     */
+    synchronized List<Map<String, Object>> describe() {
+        List<Map<String, Object>> handles = new ArrayList<>();
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            Entry entry = e.getValue();
+            AutoCloseable handle = entry.handle;
+            Map<String, Object> info = new LinkedHashMap<>();
+            info.put("id", e.getKey());
+            info.put("type", entry.type.getSimpleName());
+            info.put("bytes", handle != null ? nativeBytes(handle) : 0L);
+            info.put("loaded", handle != null);
+            info.put("evictable", entry.opener != null);
+            handles.add(info);
+        }
+        return handles;
+    }
+
+    /**
+     * Schedule an eviction if the loaded handles exceed the budget
+     */
+    private void enforceBudget() {
+        long budget = budget();
+        if (budget > 0 && loadedBytes() > budget) {
+            workers.exclusive(() -> trimTo(budget()));
+        }
+    }
+
+    /**
+     * Unload an entry's handle, leaving the entry to be reopened on next use
+     */
+    private static void closeQuietly(Entry entry) {
+        AutoCloseable handle = entry.handle;
+        entry.handle = null;
+        if (handle != null) {
+            try {
+                handle.close();
+            } catch (Exception e) {
+                // The handle is gone either way; nothing useful to report during cleanup
+            }
+        }
+    }
+
+    /**
+     * Estimate the native memory behind a handle from its count, dimension and element type
+     * @param handle The handle
+     * @return The estimated bytes
+     */
+    static long nativeBytes(AutoCloseable handle) {
+        if (handle instanceof VectorStore) {
+            VectorStore store = (VectorStore) handle;
+            return (long) store.getCount() * (vectorBytes(store.getDimension(), store.getElementType()) + ID_BYTES_PER_VECTOR);
+        }
+        if (handle instanceof HNSWIndex) {
+            HNSWIndex index = (HNSWIndex) handle;
+            return (long) index.getCount() * (vectorBytes(index.getDimension(), index.getElementType()) + HNSW_GRAPH_BYTES_PER_VECTOR);
+        }
+        if (handle instanceof MMapVectorStore) {
+            MMapVectorStore store = (MMapVectorStore) handle;
+            return (long) store.getCount() * (vectorBytes(store.getDimension(), store.getElementType()) + ID_BYTES_PER_VECTOR);
+        }
+        return 0;
+    }
+
+    private static long vectorBytes(int dimension, ElementType elementType) {
+        return (long) dimension * (elementType == ElementType.FLOAT32 ? Float.BYTES : Short.BYTES);
+    }
+}
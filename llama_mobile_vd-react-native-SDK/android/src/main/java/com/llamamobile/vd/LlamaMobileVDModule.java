@@ -1,6 +1,9 @@
 package com.llamamobile.vd;
 
+import android.content.ComponentCallbacks2;
 import android.content.Context;
+import android.content.res.Configuration;
+import android.util.Base64;
 
 import com.facebook.react.bridge.Promise;
 import com.facebook.react.bridge.ReactApplicationContext;
@@ -13,32 +16,56 @@ import com.facebook.react.bridge.WritableMap;
 import com.facebook.react.bridge.WritableNativeArray;
 import com.facebook.react.bridge.WritableNativeMap;
 
-import java.util.HashMap;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.Map;
 import java.util.UUID;
 
 /**
  * React Native module for LlamaMobileVD vector database
  * Implements ReactContextBaseJavaModule to bridge JavaScript calls to native Android functionality
+ * Operations run on a WorkerPool rather than the native-modules thread and resolve their
+ * promises from there, so a long search or add no longer blocks other native modules and
+ * concurrent searches from JavaScript run in parallel.
+ * Stores and indexes live in a HandleRegistry that closes them on release and on teardown, and
+ * unloads file-backed indexes under memory pressure.
  */
 public class LlamaMobileVDModule extends ReactContextBaseJavaModule {
 
     private static ReactApplicationContext reactContext;
     
     /**
-     * Map of VectorStore instances by ID
+     * Threads that run searches and lookups (read lane) and creates, adds and loads (write lane)
      */
-    private final Map<String, VectorStore> vectorStores = new HashMap<>();
-    
+    private final WorkerPool workers = new WorkerPool(WorkerPool.defaultReadThreads(), WorkerPool.DEFAULT_WRITE_THREADS);
+
     /**
-     * Map of HNSWIndex instances by ID
+     * VectorStore, HNSWIndex and MMapVectorStore instances by ID
      */
-    private final Map<String, HNSWIndex> hnswIndexes = new HashMap<>();
-    
+    private final HandleRegistry handles = new HandleRegistry(workers);
+
     /**
-     * Map of MMapVectorStore instances by ID
+     * Unloads file-backed indexes when the system reports memory pressure
      */
-    private final Map<String, MMapVectorStore> mmapVectorStores = new HashMap<>();
+    private final ComponentCallbacks2 memoryCallbacks = new ComponentCallbacks2() {
+        @Override
+        public void onTrimMemory(int level) {
+            if (level >= TRIM_MEMORY_MODERATE || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+                workers.exclusive(() -> handles.trimTo(0));
+            } else if (level >= TRIM_MEMORY_BACKGROUND || level == TRIM_MEMORY_RUNNING_LOW) {
+                workers.exclusive(() -> handles.trimTo(handles.loadedBytes() / 2));
+            }
+        }
+
+        @Override
+        public void onLowMemory() {
+            workers.exclusive(() -> handles.trimTo(0));
+        }
+
+        @Override
+        public void onConfigurationChanged(Configuration newConfig) {
+        }
+    };
 
     /**
      * Constructor for the module
@@ -47,6 +74,7 @@ public class LlamaMobileVDModule extends ReactContextBaseJavaModule {
     LlamaMobileVDModule(ReactApplicationContext context) {
         super(context);
         reactContext = context;
+        context.registerComponentCallbacks(memoryCallbacks);
     }
 
     /**
@@ -58,6 +86,97 @@ public class LlamaMobileVDModule extends ReactContextBaseJavaModule {
         return "LlamaMobileVD";
     }
 
+    /**
+     * Close every native handle and stop the worker threads when the React instance is torn down
+     * (including JavaScript reloads); operations already queued finish first
+     */
+    @Override
+    public void onCatalystInstanceDestroy() {
+        reactContext.unregisterComponentCallbacks(memoryCallbacks);
+        workers.exclusive(handles::clear);
+        workers.shutdown();
+    }
+
+    /**
+     * Set the number of worker threads on each lane
+     * Reads (searches, gets, counts) run in parallel on up to readThreads threads. Writes
+     * (creates, adds, updates, loads) default to one thread so they apply in the order they were
+     * issued; more write threads let independent stores be filled in parallel.
+     * @param options Options with readThreads and/or writeThreads; omitted counts are unchanged
+     * @param promise Completion handler with the resulting readThreads and writeThreads
+     */
+    @ReactMethod
+    public void configureWorkers(ReadableMap options, Promise promise) {
+        try {
+            int readThreads = options.hasKey("readThreads") ? options.getInt("readThreads") : workers.readThreads();
+            int writeThreads = options.hasKey("writeThreads") ? options.getInt("writeThreads") : workers.writeThreads();
+            workers.resize(readThreads, writeThreads);
+
+            WritableMap result = new WritableNativeMap();
+            result.putInt("readThreads", workers.readThreads());
+            result.putInt("writeThreads", workers.writeThreads());
+            promise.resolve(result);
+        } catch (Exception e) {
+            promise.reject("ERROR", e.getMessage());
+        }
+    }
+
+    /**
+     * Set the native memory budget for stores and indexes
+     * When the estimated native memory of the loaded handles exceeds the budget, indexes loaded
+     * from a file (loadHNSWIndex, openMMapVectorStore) and not modified since are unloaded least
+     * recently used first and reopened from their file on next use. The same happens without a
+     * budget when the system reports memory pressure.
+     * @param options Options with budgetBytes; 0 removes the budget
+     * @param promise Completion handler with the resulting memory statistics
+     */
+    @ReactMethod
+    public void configureMemory(ReadableMap options, Promise promise) {
+        workers.read(promise, () -> {
+            if (options.hasKey("budgetBytes")) {
+                long budgetBytes = (long) options.getDouble("budgetBytes");
+                if (budgetBytes < 0) {
+                    throw new IllegalArgumentException("budgetBytes must not be negative");
+                }
+                handles.setBudget(budgetBytes);
+            }
+            return memoryStats();
+        });
+    }
+
+    /**
+     * Get the estimated native memory of every store and index
+     * @param params Parameters for getting the statistics (unused)
+     * @param promise Completion handler with budgetBytes, loadedBytes and one entry per handle
+     */
+    @ReactMethod
+    public void getMemoryStats(ReadableMap params, Promise promise) {
+        workers.read(promise, this::memoryStats);
+    }
+
+    /**
+     * Describe the registry's budget, loaded bytes and handles for JavaScript
+     * @return The memory statistics
+     */
+    private WritableMap memoryStats() {
+        WritableArray handleList = new WritableNativeArray();
+        for (Map<String, Object> info : handles.describe()) {
+            WritableMap handle = new WritableNativeMap();
+            handle.putString("id", (String) info.get("id"));
+            handle.putString("type", (String) info.get("type"));
+            handle.putDouble("bytes", (Long) info.get("bytes"));
+            handle.putBoolean("loaded", (Boolean) info.get("loaded"));
+            handle.putBoolean("evictable", (Boolean) info.get("evictable"));
+            handleList.pushMap(handle);
+        }
+
+        WritableMap stats = new WritableNativeMap();
+        stats.putDouble("budgetBytes", handles.budget());
+        stats.putDouble("loadedBytes", handles.loadedBytes());
+        stats.putArray("handles", handleList);
+        return stats;
+    }
+
     /**
      * Generate a unique ID for a VectorStore or HNSWIndex
      * @return A unique string ID
@@ -98,6 +217,165 @@ public class LlamaMobileVDModule extends ReactContextBaseJavaModule {
         return floatArray;
     }
 
+    /**
+     * The candidate list size for one HNSW search: the efSearch parameter if given, else the
+     * index's own efSearch. It is passed with the search rather than set on the index, so
+     * concurrent searches do not change each other's
+     * @param params The search parameters
+     * @param index The index to search
+     * @return The efSearch value
+     */
+    private static int searchEf(ReadableMap params, HNSWIndex index) {
+        return params.hasKey("efSearch") ? params.getInt("efSearch") : index.getEfSearch();
+    }
+
+    /**
+     * Read a vector parameter, preferring its base64 form ("vectorBase64" for "vector")
+     * The base64 form holds little-endian Float32 values and is decoded in one pass, instead of
+     * crossing the bridge as an array of doubles read one element at a time.
+     * @param params The method parameters
+     * @param key The name of the array parameter
+     * @return The vector as a float array
+     * @throws Exception if neither form is present or the payload is not a whole number of floats
+     */
+    private float[] readVector(ReadableMap params, String key) throws Exception {
+        String base64Key = key + "Base64";
+        if (params.hasKey(base64Key)) {
+            return decodeFloat32(params.getString(base64Key));
+        }
+        if (!params.hasKey(key)) {
+            throw new Exception("Missing parameter: " + key + " or " + base64Key);
+        }
+        return convertToFloatArray(params.getArray(key));
+    }
+
+    /**
+     * Decode a base64 string of little-endian Float32 values
+     * @param base64 The encoded vector
+     * @return The decoded float array
+     * @throws Exception if the payload is not a whole number of floats
+     */
+    private float[] decodeFloat32(String base64) throws Exception {
+        byte[] bytes = Base64.decode(base64, Base64.DEFAULT);
+        if (bytes.length % Float.BYTES != 0) {
+            throw new Exception("Float32 payload length " + bytes.length + " is not a multiple of 4");
+        }
+        float[] floatArray = new float[bytes.length / Float.BYTES];
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(floatArray);
+        return floatArray;
+    }
+
+    /**
+     * Read a list of vectors, preferring its packed base64 form ("vectorsBase64" for "vectors")
+     * The packed form holds the vectors back to back as little-endian Float32 values.
+     * @param params The method parameters
+     * @param key The name of the list parameter
+     * @param dimension The dimension every vector must have
+     * @return The vectors
+     * @throws Exception if neither form is present or a vector has the wrong dimension
+     */
+    private float[][] readVectors(ReadableMap params, String key, int dimension) throws Exception {
+        String base64Key = key + "Base64";
+        if (params.hasKey(base64Key)) {
+            float[] packed = decodeFloat32(params.getString(base64Key));
+            if (packed.length % dimension != 0) {
+                throw new Exception("Packed vectors hold " + packed.length + " floats, not a multiple of dimension " + dimension);
+            }
+            float[][] vectors = new float[packed.length / dimension][];
+            for (int i = 0; i < vectors.length; i++) {
+                vectors[i] = new float[dimension];
+                System.arraycopy(packed, i * dimension, vectors[i], 0, dimension);
+            }
+            return vectors;
+        }
+        if (!params.hasKey(key)) {
+            throw new Exception("Missing parameter: " + key + " or " + base64Key);
+        }
+        ReadableArray array = params.getArray(key);
+        float[][] vectors = new float[array.size()][];
+        for (int i = 0; i < vectors.length; i++) {
+            vectors[i] = convertToFloatArray(array.getArray(i));
+            if (vectors[i].length != dimension) {
+                throw new Exception("Vector " + i + " has dimension " + vectors[i].length + ", expected " + dimension);
+            }
+        }
+        return vectors;
+    }
+
+    /**
+     * Read the IDs for a batch of vectors
+     * @param params The method parameters
+     * @param count The number of vectors in the batch
+     * @return The vector IDs
+     * @throws Exception if the number of IDs doesn't match the number of vectors
+     */
+    private int[] readVectorIds(ReadableMap params, int count) throws Exception {
+        ReadableArray array = params.getArray("vectorIds");
+        if (array == null || array.size() != count) {
+            throw new Exception("Expected " + count + " vectorIds, got " + (array == null ? 0 : array.size()));
+        }
+        int[] vectorIds = new int[count];
+        for (int i = 0; i < count; i++) {
+            vectorIds[i] = array.getInt(i);
+        }
+        return vectorIds;
+    }
+
+    /**
+     * Convert search results to the format requested by the "format" parameter
+     * "objects" (the default) returns one {index, distance} map per hit. "columnar" returns
+     * parallel ids and distances arrays, and "packed" returns the hit count and one base64 string
+     * holding the little-endian Int32 ids followed by the Float32 distances, so the number of
+     * bridge objects per query no longer grows with k.
+     * @param results The search results
+     * @param params The search parameters
+     * @return The results in the requested format
+     * @throws Exception if the format is not recognized
+     */
+    private Object convertSearchResults(SearchResult[] results, ReadableMap params) throws Exception {
+        String format = params.hasKey("format") ? params.getString("format") : "objects";
+        switch (format) {
+            case "objects": {
+                WritableArray jsonResults = new WritableNativeArray();
+                for (SearchResult result : results) {
+                    WritableMap resultMap = new WritableNativeMap();
+                    resultMap.putInt("index", result.getId());
+                    resultMap.putDouble("distance", result.getDistance());
+                    jsonResults.pushMap(resultMap);
+                }
+                return jsonResults;
+            }
+            case "columnar": {
+                WritableArray ids = new WritableNativeArray();
+                WritableArray distances = new WritableNativeArray();
+                for (SearchResult result : results) {
+                    ids.pushInt(result.getId());
+                    distances.pushDouble(result.getDistance());
+                }
+                WritableMap columns = new WritableNativeMap();
+                columns.putArray("ids", ids);
+                columns.putArray("distances", distances);
+                return columns;
+            }
+            case "packed": {
+                ByteBuffer packed = ByteBuffer.allocate(results.length * (Integer.BYTES + Float.BYTES))
+                        .order(ByteOrder.LITTLE_ENDIAN);
+                for (SearchResult result : results) {
+                    packed.putInt(result.getId());
+                }
+                for (SearchResult result : results) {
+                    packed.putFloat(result.getDistance());
+                }
+                WritableMap columns = new WritableNativeMap();
+                columns.putInt("count", results.length);
+                columns.putString("packed", Base64.encodeToString(packed.array(), Base64.NO_WRAP));
+                return columns;
+            }
+            default:
+                throw new Exception("Invalid result format: " + format);
+        }
+    }
+
     /**
      * Create a new VectorStore
      * @param options Options for creating the VectorStore
@@ -105,21 +383,19 @@ public class LlamaMobileVDModule extends ReactContextBaseJavaModule {
      */
     @ReactMethod
     public void createVectorStore(ReadableMap options, Promise promise) {
-        try {
+        workers.write(promise, () -> {
             int dimension = options.getInt("dimension");
             String metricStr = options.getString("metric");
             DistanceMetric metric = stringToDistanceMetric(metricStr);
 
             VectorStore store = new VectorStore(dimension, metric);
             String id = generateUniqueId();
-            vectorStores.put(id, store);
+            handles.put(id, store, null);
 
             WritableMap result = new WritableNativeMap();
             result.putString("id", id);
-            promise.resolve(result);
-        } catch (Exception e) {
-            promise.reject("ERROR", e.getMessage());
-        }
+            return result;
+        });
     }
 
     /**
@@ -129,7 +405,7 @@ public class LlamaMobileVDModule extends ReactContextBaseJavaModule {
      */
     @ReactMethod
     public void createHNSWIndex(ReadableMap options, Promise promise) {
-        try {
+        workers.write(promise, () -> {
             int dimension = options.getInt("dimension");
             String metricStr = options.getString("metric");
             DistanceMetric metric = stringToDistanceMetric(metricStr);
@@ -138,14 +414,12 @@ public class LlamaMobileVDModule extends ReactContextBaseJavaModule {
 
             HNSWIndex index = new HNSWIndex(dimension, metric, m, efConstruction);
             String id = generateUniqueId();
-            hnswIndexes.put(id, index);
+            handles.put(id, index, null);
 
             WritableMap result = new WritableNativeMap();
             result.putString("id", id);
-            promise.resolve(result);
-        } catch (Exception e) {
-            promise.reject("ERROR", e.getMessage());
-        }
+            return result;
+        });
     }
 
     /**
@@ -155,23 +429,20 @@ public class LlamaMobileVDModule extends ReactContextBaseJavaModule {
      */
     @ReactMethod
     public void addVectorToStore(ReadableMap params, Promise promise) {
-        try {
+        workers.write(promise, () -> {
             String id = params.getString("id");
-            ReadableArray vectorArray = params.getArray("vector");
             int vectorId = params.getInt("vectorId");
 
-            VectorStore store = vectorStores.get(id);
+            VectorStore store = handles.get(id, VectorStore.class);
             if (store == null) {
                 throw new Exception("VectorStore not found for id: " + id);
             }
 
-            float[] vector = convertToFloatArray(vectorArray);
+            float[] vector = readVector(params, "vector");
             store.addVector(vector, vectorId);
 
-            promise.resolve(null);
-        } catch (Exception e) {
-            promise.reject("ERROR", e.getMessage());
-        }
+            return null;
+        });
     }
 
     /**
@@ -181,23 +452,20 @@ public class LlamaMobileVDModule extends ReactContextBaseJavaModule {
      */
     @ReactMethod
     public void addVectorToHNSW(ReadableMap params, Promise promise) {
-        try {
+        workers.write(promise, () -> {
             String id = params.getString("id");
-            ReadableArray vectorArray = params.getArray("vector");
             int vectorId = params.getInt("vectorId");
 
-            HNSWIndex index = hnswIndexes.get(id);
+            HNSWIndex index = handles.modify(id, HNSWIndex.class);
             if (index == null) {
                 throw new Exception("HNSWIndex not found for id: " + id);
             }
 
-            float[] vector = convertToFloatArray(vectorArray);
+            float[] vector = readVector(params, "vector");
             index.addVector(vector, vectorId);
 
-            promise.resolve(null);
-        } catch (Exception e) {
-            promise.reject("ERROR", e.getMessage());
-        }
+            return null;
+        });
     }
 
     /**
@@ -207,32 +475,19 @@ public class LlamaMobileVDModule extends ReactContextBaseJavaModule {
      */
     @ReactMethod
     public void searchVectorStore(ReadableMap params, Promise promise) {
-        try {
+        workers.read(promise, () -> {
             String id = params.getString("id");
-            ReadableArray queryVectorArray = params.getArray("queryVector");
             int k = params.getInt("k");
 
-            VectorStore store = vectorStores.get(id);
+            VectorStore store = handles.get(id, VectorStore.class);
             if (store == null) {
                 throw new Exception("VectorStore not found for id: " + id);
             }
 
-            float[] queryVector = convertToFloatArray(queryVectorArray);
+            float[] queryVector = readVector(params, "queryVector");
             SearchResult[] results = store.search(queryVector, k);
-
-            // Convert results to JSON compatible format
-            WritableArray jsonResults = new WritableNativeArray();
-            for (SearchResult result : results) {
-                WritableMap resultMap = new WritableNativeMap();
-                resultMap.putInt("index", result.getIndex());
-                resultMap.putDouble("distance", result.getDistance());
-                jsonResults.pushMap(resultMap);
-            }
-
-            promise.resolve(jsonResults);
-        } catch (Exception e) {
-            promise.reject("ERROR", e.getMessage());
-        }
+            return convertSearchResults(results, params);
+        });
     }
 
     /**
@@ -242,32 +497,130 @@ public class LlamaMobileVDModule extends ReactContextBaseJavaModule {
      */
     @ReactMethod
     public void searchHNSWIndex(ReadableMap params, Promise promise) {
-        try {
+        workers.read(promise, () -> {
             String id = params.getString("id");
-            ReadableArray queryVectorArray = params.getArray("queryVector");
             int k = params.getInt("k");
 
-            HNSWIndex index = hnswIndexes.get(id);
+            HNSWIndex index = handles.get(id, HNSWIndex.class);
             if (index == null) {
                 throw new Exception("HNSWIndex not found for id: " + id);
             }
 
-            float[] queryVector = convertToFloatArray(queryVectorArray);
-            SearchResult[] results = index.search(queryVector, k, k);
+            float[] queryVector = readVector(params, "queryVector");
+            SearchResult[] results = index.search(queryVector, k, searchEf(params, index));
+            return convertSearchResults(results, params);
+        });
+    }
+
+    /**
+     * Add many vectors to a VectorStore in one call
+     * The whole batch is validated before anything is added; if a vector is then rejected (for
+     * example a duplicate ID), the vectors before it stay added.
+     * @param params Parameters for adding the vectors
+     * @param promise Completion handler resolving with the number of vectors added
+     */
+    @ReactMethod
+    public void addVectorsToStore(ReadableMap params, Promise promise) {
+        workers.write(promise, () -> {
+            String id = params.getString("id");
 
-            // Convert results to JSON compatible format
-            WritableArray jsonResults = new WritableNativeArray();
-            for (SearchResult result : results) {
-                WritableMap resultMap = new WritableNativeMap();
-                resultMap.putInt("index", result.getIndex());
-                resultMap.putDouble("distance", result.getDistance());
-                jsonResults.pushMap(resultMap);
+            VectorStore store = handles.get(id, VectorStore.class);
+            if (store == null) {
+                throw new Exception("VectorStore not found for id: " + id);
             }
 
-            promise.resolve(jsonResults);
-        } catch (Exception e) {
-            promise.reject("ERROR", e.getMessage());
-        }
+            float[][] vectors = readVectors(params, "vectors", store.getDimension());
+            int[] vectorIds = readVectorIds(params, vectors.length);
+            for (int i = 0; i < vectors.length; i++) {
+                try {
+                    store.addVector(vectors[i], vectorIds[i]);
+                } catch (RuntimeException e) {
+                    throw new Exception("Failed to add vector " + i + " (vectorId " + vectorIds[i] + "): " + e.getMessage());
+                }
+            }
+
+            WritableMap result = new WritableNativeMap();
+            result.putInt("count", vectors.length);
+            return result;
+        });
+    }
+
+    /**
+     * Add many vectors to an HNSWIndex in one call
+     * The whole batch is validated before anything is added; if a vector is then rejected (for
+     * example a duplicate ID), the vectors before it stay added.
+     * @param params Parameters for adding the vectors
+     * @param promise Completion handler resolving with the number of vectors added
+     */
+    @ReactMethod
+    public void addVectorsToHNSW(ReadableMap params, Promise promise) {
+        workers.write(promise, () -> {
+            String id = params.getString("id");
+
+            HNSWIndex index = handles.modify(id, HNSWIndex.class);
+            if (index == null) {
+                throw new Exception("HNSWIndex not found for id: " + id);
+            }
+
+            float[][] vectors = readVectors(params, "vectors", index.getDimension());
+            int[] vectorIds = readVectorIds(params, vectors.length);
+            for (int i = 0; i < vectors.length; i++) {
+                try {
+                    index.addVector(vectors[i], vectorIds[i]);
+                } catch (RuntimeException e) {
+                    throw new Exception("Failed to add vector " + i + " (vectorId " + vectorIds[i] + "): " + e.getMessage());
+                }
+            }
+
+            WritableMap result = new WritableNativeMap();
+            result.putInt("count", vectors.length);
+            return result;
+        });
+    }
+
+    /**
+     * Search a VectorStore, HNSWIndex or MMapVectorStore with many query vectors in one call
+     * VectorStores and MMapVectorStores score the queries together in one native batch; an
+     * HNSWIndex runs them one after another on the worker thread.
+     * @param params Parameters for searching, with the ID of any store or index
+     * @param promise Completion handler resolving with one result set per query
+     */
+    @ReactMethod
+    public void searchBatch(ReadableMap params, Promise promise) {
+        workers.read(promise, () -> {
+            String id = params.getString("id");
+            int k = params.getInt("k");
+
+            SearchResult[][] results;
+            VectorStore store = handles.get(id, VectorStore.class);
+            HNSWIndex index = handles.get(id, HNSWIndex.class);
+            MMapVectorStore mmapStore = handles.get(id, MMapVectorStore.class);
+            if (store != null) {
+                results = store.searchBatch(readVectors(params, "queryVectors", store.getDimension()), k);
+            } else if (mmapStore != null) {
+                results = mmapStore.searchBatch(readVectors(params, "queryVectors", mmapStore.getDimension()), k);
+            } else if (index != null) {
+                int efSearch = searchEf(params, index);
+                float[][] queryVectors = readVectors(params, "queryVectors", index.getDimension());
+                results = new SearchResult[queryVectors.length][];
+                for (int q = 0; q < queryVectors.length; q++) {
+                    results[q] = index.search(queryVectors[q], k, efSearch);
+                }
+            } else {
+                throw new Exception("No VectorStore, HNSWIndex or MMapVectorStore found for id: " + id);
+            }
+
+            WritableArray batch = new WritableNativeArray();
+            for (SearchResult[] queryResults : results) {
+                Object converted = convertSearchResults(queryResults, params);
+                if (converted instanceof WritableArray) {
+                    batch.pushArray((WritableArray) converted);
+                } else {
+                    batch.pushMap((WritableMap) converted);
+                }
+            }
+            return batch;
+        });
     }
 
     /**
@@ -277,21 +630,19 @@ public class LlamaMobileVDModule extends ReactContextBaseJavaModule {
      */
     @ReactMethod
     public void countVectorStore(ReadableMap params, Promise promise) {
-        try {
+        workers.read(promise, () -> {
             String id = params.getString("id");
 
-            VectorStore store = vectorStores.get(id);
+            VectorStore store = handles.get(id, VectorStore.class);
             if (store == null) {
                 throw new Exception("VectorStore not found for id: " + id);
             }
 
-            int count = store.count();
+            int count = store.getCount();
             WritableMap result = new WritableNativeMap();
             result.putInt("count", count);
-            promise.resolve(result);
-        } catch (Exception e) {
-            promise.reject("ERROR", e.getMessage());
-        }
+            return result;
+        });
     }
 
     /**
@@ -301,21 +652,19 @@ public class LlamaMobileVDModule extends ReactContextBaseJavaModule {
      */
     @ReactMethod
     public void countHNSWIndex(ReadableMap params, Promise promise) {
-        try {
+        workers.read(promise, () -> {
             String id = params.getString("id");
 
-            HNSWIndex index = hnswIndexes.get(id);
+            HNSWIndex index = handles.get(id, HNSWIndex.class);
             if (index == null) {
                 throw new Exception("HNSWIndex not found for id: " + id);
             }
 
-            int count = index.count();
+            int count = index.getCount();
             WritableMap result = new WritableNativeMap();
             result.putInt("count", count);
-            promise.resolve(result);
-        } catch (Exception e) {
-            promise.reject("ERROR", e.getMessage());
-        }
+            return result;
+        });
     }
 
     /**
@@ -325,19 +674,17 @@ public class LlamaMobileVDModule extends ReactContextBaseJavaModule {
      */
     @ReactMethod
     public void clearVectorStore(ReadableMap params, Promise promise) {
-        try {
+        workers.write(promise, () -> {
             String id = params.getString("id");
 
-            VectorStore store = vectorStores.get(id);
+            VectorStore store = handles.get(id, VectorStore.class);
             if (store == null) {
                 throw new Exception("VectorStore not found for id: " + id);
             }
 
             store.clear();
-            promise.resolve(null);
-        } catch (Exception e) {
-            promise.reject("ERROR", e.getMessage());
-        }
+            return null;
+        });
     }
 
     /**
@@ -347,19 +694,17 @@ public class LlamaMobileVDModule extends ReactContextBaseJavaModule {
      */
     @ReactMethod
     public void clearHNSWIndex(ReadableMap params, Promise promise) {
-        try {
+        workers.write(promise, () -> {
             String id = params.getString("id");
 
-            HNSWIndex index = hnswIndexes.get(id);
+            HNSWIndex index = handles.modify(id, HNSWIndex.class);
             if (index == null) {
                 throw new Exception("HNSWIndex not found for id: " + id);
             }
 
             index.clear();
-            promise.resolve(null);
-        } catch (Exception e) {
-            promise.reject("ERROR", e.getMessage());
-        }
+            return null;
+        });
     }
 
     /**
@@ -369,17 +714,15 @@ public class LlamaMobileVDModule extends ReactContextBaseJavaModule {
      */
     @ReactMethod
     public void releaseVectorStore(ReadableMap params, Promise promise) {
-        try {
+        workers.exclusive(promise, () -> {
             String id = params.getString("id");
 
-            if (vectorStores.remove(id) == null) {
+            if (!handles.remove(id, VectorStore.class)) {
                 throw new Exception("VectorStore not found for id: " + id);
             }
 
-            promise.resolve(null);
-        } catch (Exception e) {
-            promise.reject("ERROR", e.getMessage());
-        }
+            return null;
+        });
     }
 
     /**
@@ -389,20 +732,18 @@ public class LlamaMobileVDModule extends ReactContextBaseJavaModule {
      */
     @ReactMethod
     public void removeVectorFromStore(ReadableMap params, Promise promise) {
-        try {
+        workers.write(promise, () -> {
             String id = params.getString("id");
             int vectorId = params.getInt("vectorId");
 
-            VectorStore store = vectorStores.get(id);
+            VectorStore store = handles.get(id, VectorStore.class);
             if (store == null) {
                 throw new Exception("VectorStore not found for id: " + id);
             }
 
             boolean removed = store.remove(vectorId);
-            promise.resolve(removed);
-        } catch (Exception e) {
-            promise.reject("ERROR", e.getMessage());
-        }
+            return removed;
+        });
     }
 
     /**
@@ -412,11 +753,11 @@ public class LlamaMobileVDModule extends ReactContextBaseJavaModule {
      */
     @ReactMethod
     public void getVectorFromStore(ReadableMap params, Promise promise) {
-        try {
+        workers.read(promise, () -> {
             String id = params.getString("id");
             int vectorId = params.getInt("vectorId");
 
-            VectorStore store = vectorStores.get(id);
+            VectorStore store = handles.get(id, VectorStore.class);
             if (store == null) {
                 throw new Exception("VectorStore not found for id: " + id);
             }
@@ -428,13 +769,11 @@ public class LlamaMobileVDModule extends ReactContextBaseJavaModule {
                 for (float value : vector) {
                     result.pushDouble(value);
                 }
-                promise.resolve(result);
+                return result;
             } else {
-                promise.resolve(null);
+                return null;
             }
-        } catch (Exception e) {
-            promise.reject("ERROR", e.getMessage());
-        }
+        });
     }
 
     /**
@@ -444,22 +783,19 @@ public class LlamaMobileVDModule extends ReactContextBaseJavaModule {
      */
     @ReactMethod
     public void updateVectorInStore(ReadableMap params, Promise promise) {
-        try {
+        workers.write(promise, () -> {
             String id = params.getString("id");
             int vectorId = params.getInt("vectorId");
-            ReadableArray vectorArray = params.getArray("vector");
 
-            VectorStore store = vectorStores.get(id);
+            VectorStore store = handles.get(id, VectorStore.class);
             if (store == null) {
                 throw new Exception("VectorStore not found for id: " + id);
             }
 
-            float[] vector = convertToFloatArray(vectorArray);
+            float[] vector = readVector(params, "vector");
             boolean updated = store.update(vectorId, vector);
-            promise.resolve(updated);
-        } catch (Exception e) {
-            promise.reject("ERROR", e.getMessage());
-        }
+            return updated;
+        });
     }
 
     /**
@@ -469,20 +805,18 @@ public class LlamaMobileVDModule extends ReactContextBaseJavaModule {
      */
     @ReactMethod
     public void containsVectorInStore(ReadableMap params, Promise promise) {
-        try {
+        workers.read(promise, () -> {
             String id = params.getString("id");
             int vectorId = params.getInt("vectorId");
 
-            VectorStore store = vectorStores.get(id);
+            VectorStore store = handles.get(id, VectorStore.class);
             if (store == null) {
                 throw new Exception("VectorStore not found for id: " + id);
             }
 
             boolean contains = store.contains(vectorId);
-            promise.resolve(contains);
-        } catch (Exception e) {
-            promise.reject("ERROR", e.getMessage());
-        }
+            return contains;
+        });
     }
 
     /**
@@ -492,20 +826,18 @@ public class LlamaMobileVDModule extends ReactContextBaseJavaModule {
      */
     @ReactMethod
     public void reserveVectorStore(ReadableMap params, Promise promise) {
-        try {
+        workers.write(promise, () -> {
             String id = params.getString("id");
             int capacity = params.getInt("capacity");
 
-            VectorStore store = vectorStores.get(id);
+            VectorStore store = handles.get(id, VectorStore.class);
             if (store == null) {
                 throw new Exception("VectorStore not found for id: " + id);
             }
 
             store.reserve(capacity);
-            promise.resolve(null);
-        } catch (Exception e) {
-            promise.reject("ERROR", e.getMessage());
-        }
+            return null;
+        });
     }
 
     /**
@@ -515,10 +847,10 @@ public class LlamaMobileVDModule extends ReactContextBaseJavaModule {
      */
     @ReactMethod
     public void getVectorStoreDimension(ReadableMap params, Promise promise) {
-        try {
+        workers.read(promise, () -> {
             String id = params.getString("id");
 
-            VectorStore store = vectorStores.get(id);
+            VectorStore store = handles.get(id, VectorStore.class);
             if (store == null) {
                 throw new Exception("VectorStore not found for id: " + id);
             }
@@ -526,10 +858,8 @@ public class LlamaMobileVDModule extends ReactContextBaseJavaModule {
             int dimension = store.getDimension();
             WritableMap result = new WritableNativeMap();
             result.putInt("dimension", dimension);
-            promise.resolve(result);
-        } catch (Exception e) {
-            promise.reject("ERROR", e.getMessage());
-        }
+            return result;
+        });
     }
 
     /**
@@ -539,10 +869,10 @@ public class LlamaMobileVDModule extends ReactContextBaseJavaModule {
      */
     @ReactMethod
     public void getVectorStoreMetric(ReadableMap params, Promise promise) {
-        try {
+        workers.read(promise, () -> {
             String id = params.getString("id");
 
-            VectorStore store = vectorStores.get(id);
+            VectorStore store = handles.get(id, VectorStore.class);
             if (store == null) {
                 throw new Exception("VectorStore not found for id: " + id);
             }
@@ -564,10 +894,8 @@ public class LlamaMobileVDModule extends ReactContextBaseJavaModule {
             }
             WritableMap result = new WritableNativeMap();
             result.putString("metric", metricStr);
-            promise.resolve(result);
-        } catch (Exception e) {
-            promise.reject("ERROR", e.getMessage());
-        }
+            return result;
+        });
     }
 
     /**
@@ -577,20 +905,18 @@ public class LlamaMobileVDModule extends ReactContextBaseJavaModule {
      */
     @ReactMethod
     public void setHNSWEfSearch(ReadableMap params, Promise promise) {
-        try {
+        workers.write(promise, () -> {
             String id = params.getString("id");
             int efSearch = params.getInt("efSearch");
 
-            HNSWIndex index = hnswIndexes.get(id);
+            HNSWIndex index = handles.modify(id, HNSWIndex.class);
             if (index == null) {
                 throw new Exception("HNSWIndex not found for id: " + id);
             }
 
             index.setEfSearch(efSearch);
-            promise.resolve(null);
-        } catch (Exception e) {
-            promise.reject("ERROR", e.getMessage());
-        }
+            return null;
+        });
     }
 
     /**
@@ -600,10 +926,10 @@ public class LlamaMobileVDModule extends ReactContextBaseJavaModule {
      */
     @ReactMethod
     public void getHNSWEfSearch(ReadableMap params, Promise promise) {
-        try {
+        workers.read(promise, () -> {
             String id = params.getString("id");
 
-            HNSWIndex index = hnswIndexes.get(id);
+            HNSWIndex index = handles.get(id, HNSWIndex.class);
             if (index == null) {
                 throw new Exception("HNSWIndex not found for id: " + id);
             }
@@ -611,10 +937,8 @@ public class LlamaMobileVDModule extends ReactContextBaseJavaModule {
             int efSearch = index.getEfSearch();
             WritableMap result = new WritableNativeMap();
             result.putInt("efSearch", efSearch);
-            promise.resolve(result);
-        } catch (Exception e) {
-            promise.reject("ERROR", e.getMessage());
-        }
+            return result;
+        });
     }
 
     /**
@@ -624,20 +948,18 @@ public class LlamaMobileVDModule extends ReactContextBaseJavaModule {
      */
     @ReactMethod
     public void containsVectorInHNSW(ReadableMap params, Promise promise) {
-        try {
+        workers.read(promise, () -> {
             String id = params.getString("id");
             int vectorId = params.getInt("vectorId");
 
-            HNSWIndex index = hnswIndexes.get(id);
+            HNSWIndex index = handles.get(id, HNSWIndex.class);
             if (index == null) {
                 throw new Exception("HNSWIndex not found for id: " + id);
             }
 
             boolean contains = index.contains(vectorId);
-            promise.resolve(contains);
-        } catch (Exception e) {
-            promise.reject("ERROR", e.getMessage());
-        }
+            return contains;
+        });
     }
 
     /**
@@ -647,11 +969,11 @@ public class LlamaMobileVDModule extends ReactContextBaseJavaModule {
      */
     @ReactMethod
     public void getVectorFromHNSW(ReadableMap params, Promise promise) {
-        try {
+        workers.read(promise, () -> {
             String id = params.getString("id");
             int vectorId = params.getInt("vectorId");
 
-            HNSWIndex index = hnswIndexes.get(id);
+            HNSWIndex index = handles.get(id, HNSWIndex.class);
             if (index == null) {
                 throw new Exception("HNSWIndex not found for id: " + id);
             }
@@ -663,13 +985,11 @@ public class LlamaMobileVDModule extends ReactContextBaseJavaModule {
                 for (float value : vector) {
                     result.pushDouble(value);
                 }
-                promise.resolve(result);
+                return result;
             } else {
-                promise.resolve(null);
+                return null;
             }
-        } catch (Exception e) {
-            promise.reject("ERROR", e.getMessage());
-        }
+        });
     }
 
     /**
@@ -679,10 +999,10 @@ public class LlamaMobileVDModule extends ReactContextBaseJavaModule {
      */
     @ReactMethod
     public void getHNSWDimension(ReadableMap params, Promise promise) {
-        try {
+        workers.read(promise, () -> {
             String id = params.getString("id");
 
-            HNSWIndex index = hnswIndexes.get(id);
+            HNSWIndex index = handles.get(id, HNSWIndex.class);
             if (index == null) {
                 throw new Exception("HNSWIndex not found for id: " + id);
             }
@@ -690,10 +1010,8 @@ public class LlamaMobileVDModule extends ReactContextBaseJavaModule {
             int dimension = index.getDimension();
             WritableMap result = new WritableNativeMap();
             result.putInt("dimension", dimension);
-            promise.resolve(result);
-        } catch (Exception e) {
-            promise.reject("ERROR", e.getMessage());
-        }
+            return result;
+        });
     }
 
     /**
@@ -703,10 +1021,10 @@ public class LlamaMobileVDModule extends ReactContextBaseJavaModule {
      */
     @ReactMethod
     public void getHNSWCapacity(ReadableMap params, Promise promise) {
-        try {
+        workers.read(promise, () -> {
             String id = params.getString("id");
 
-            HNSWIndex index = hnswIndexes.get(id);
+            HNSWIndex index = handles.get(id, HNSWIndex.class);
             if (index == null) {
                 throw new Exception("HNSWIndex not found for id: " + id);
             }
@@ -714,10 +1032,8 @@ public class LlamaMobileVDModule extends ReactContextBaseJavaModule {
             int capacity = index.getCapacity();
             WritableMap result = new WritableNativeMap();
             result.putInt("capacity", capacity);
-            promise.resolve(result);
-        } catch (Exception e) {
-            promise.reject("ERROR", e.getMessage());
-        }
+            return result;
+        });
     }
 
     /**
@@ -727,20 +1043,22 @@ public class LlamaMobileVDModule extends ReactContextBaseJavaModule {
      */
     @ReactMethod
     public void saveHNSWIndex(ReadableMap params, Promise promise) {
-        try {
+        // Exclusive so no add lands between the save and marking the index reloadable from the file
+        workers.exclusive(promise, () -> {
             String id = params.getString("id");
             String path = params.getString("path");
 
-            HNSWIndex index = hnswIndexes.get(id);
+            HNSWIndex index = handles.get(id, HNSWIndex.class);
             if (index == null) {
                 throw new Exception("HNSWIndex not found for id: " + id);
             }
 
             boolean saved = index.save(path);
-            promise.resolve(saved);
-        } catch (Exception e) {
-            promise.reject("ERROR", e.getMessage());
-        }
+            if (saved) {
+                handles.saved(id, () -> HNSWIndex.load(path));
+            }
+            return saved;
+        });
     }
 
     /**
@@ -750,19 +1068,17 @@ public class LlamaMobileVDModule extends ReactContextBaseJavaModule {
      */
     @ReactMethod
     public void loadHNSWIndex(ReadableMap params, Promise promise) {
-        try {
+        workers.write(promise, () -> {
             String path = params.getString("path");
 
             HNSWIndex index = HNSWIndex.load(path);
             String id = generateUniqueId();
-            hnswIndexes.put(id, index);
+            handles.put(id, index, () -> HNSWIndex.load(path));
 
             WritableMap result = new WritableNativeMap();
             result.putString("id", id);
-            promise.resolve(result);
-        } catch (Exception e) {
-            promise.reject("ERROR", e.getMessage());
-        }
+            return result;
+        });
     }
 
     /**
@@ -840,17 +1156,15 @@ public class LlamaMobileVDModule extends ReactContextBaseJavaModule {
      */
     @ReactMethod
     public void releaseHNSWIndex(ReadableMap params, Promise promise) {
-        try {
+        workers.exclusive(promise, () -> {
             String id = params.getString("id");
 
-            if (hnswIndexes.remove(id) == null) {
+            if (!handles.remove(id, HNSWIndex.class)) {
                 throw new Exception("HNSWIndex not found for id: " + id);
             }
 
-            promise.resolve(null);
-        } catch (Exception e) {
-            promise.reject("ERROR", e.getMessage());
-        }
+            return null;
+        });
     }
 
     /**
@@ -860,19 +1174,17 @@ public class LlamaMobileVDModule extends ReactContextBaseJavaModule {
      */
     @ReactMethod
     public void openMMapVectorStore(ReadableMap params, Promise promise) {
-        try {
+        workers.write(promise, () -> {
             String path = params.getString("path");
 
             MMapVectorStore store = MMapVectorStore.open(path);
             String id = generateUniqueId();
-            mmapVectorStores.put(id, store);
+            handles.put(id, store, () -> MMapVectorStore.open(path));
 
             WritableMap result = new WritableNativeMap();
             result.putString("id", id);
-            promise.resolve(result);
-        } catch (Exception e) {
-            promise.reject("ERROR", e.getMessage());
-        }
+            return result;
+        });
     }
 
     /**
@@ -882,32 +1194,19 @@ public class LlamaMobileVDModule extends ReactContextBaseJavaModule {
      */
     @ReactMethod
     public void searchMMapVectorStore(ReadableMap params, Promise promise) {
-        try {
+        workers.read(promise, () -> {
             String id = params.getString("id");
-            ReadableArray queryVectorArray = params.getArray("queryVector");
             int k = params.getInt("k");
 
-            MMapVectorStore store = mmapVectorStores.get(id);
+            MMapVectorStore store = handles.get(id, MMapVectorStore.class);
             if (store == null) {
                 throw new Exception("MMapVectorStore not found for id: " + id);
             }
 
-            float[] queryVector = convertToFloatArray(queryVectorArray);
+            float[] queryVector = readVector(params, "queryVector");
             SearchResult[] results = store.search(queryVector, k);
-
-            // Convert results to JSON compatible format
-            WritableArray jsonResults = new WritableNativeArray();
-            for (SearchResult result : results) {
-                WritableMap resultMap = new WritableNativeMap();
-                resultMap.putInt("index", result.getIndex());
-                resultMap.putDouble("distance", result.getDistance());
-                jsonResults.pushMap(resultMap);
-            }
-
-            promise.resolve(jsonResults);
-        } catch (Exception e) {
-            promise.reject("ERROR", e.getMessage());
-        }
+            return convertSearchResults(results, params);
+        });
     }
 
     /**
@@ -917,10 +1216,10 @@ public class LlamaMobileVDModule extends ReactContextBaseJavaModule {
      */
     @ReactMethod
     public void countMMapVectorStore(ReadableMap params, Promise promise) {
-        try {
+        workers.read(promise, () -> {
             String id = params.getString("id");
 
-            MMapVectorStore store = mmapVectorStores.get(id);
+            MMapVectorStore store = handles.get(id, MMapVectorStore.class);
             if (store == null) {
                 throw new Exception("MMapVectorStore not found for id: " + id);
             }
@@ -928,10 +1227,8 @@ public class LlamaMobileVDModule extends ReactContextBaseJavaModule {
             int count = store.getCount();
             WritableMap result = new WritableNativeMap();
             result.putInt("count", count);
-            promise.resolve(result);
-        } catch (Exception e) {
-            promise.reject("ERROR", e.getMessage());
-        }
+            return result;
+        });
     }
 
     /**
@@ -941,10 +1238,10 @@ public class LlamaMobileVDModule extends ReactContextBaseJavaModule {
      */
     @ReactMethod
     public void getMMapVectorStoreDimension(ReadableMap params, Promise promise) {
-        try {
+        workers.read(promise, () -> {
             String id = params.getString("id");
 
-            MMapVectorStore store = mmapVectorStores.get(id);
+            MMapVectorStore store = handles.get(id, MMapVectorStore.class);
             if (store == null) {
                 throw new Exception("MMapVectorStore not found for id: " + id);
             }
@@ -952,10 +1249,8 @@ public class LlamaMobileVDModule extends ReactContextBaseJavaModule {
             int dimension = store.getDimension();
             WritableMap result = new WritableNativeMap();
             result.putInt("dimension", dimension);
-            promise.resolve(result);
-        } catch (Exception e) {
-            promise.reject("ERROR", e.getMessage());
-        }
+            return result;
+        });
     }
 
     /**
@@ -965,10 +1260,10 @@ public class LlamaMobileVDModule extends ReactContextBaseJavaModule {
      */
     @ReactMethod
     public void getMMapVectorStoreMetric(ReadableMap params, Promise promise) {
-        try {
+        workers.read(promise, () -> {
             String id = params.getString("id");
 
-            MMapVectorStore store = mmapVectorStores.get(id);
+            MMapVectorStore store = handles.get(id, MMapVectorStore.class);
             if (store == null) {
                 throw new Exception("MMapVectorStore not found for id: " + id);
             }
@@ -990,10 +1285,8 @@ public class LlamaMobileVDModule extends ReactContextBaseJavaModule {
             }
             WritableMap result = new WritableNativeMap();
             result.putString("metric", metricStr);
-            promise.resolve(result);
-        } catch (Exception e) {
-            promise.reject("ERROR", e.getMessage());
-        }
+            return result;
+        });
     }
 
     /**
@@ -1003,18 +1296,14 @@ public class LlamaMobileVDModule extends ReactContextBaseJavaModule {
      */
     @ReactMethod
     public void releaseMMapVectorStore(ReadableMap params, Promise promise) {
-        try {
+        workers.exclusive(promise, () -> {
             String id = params.getString("id");
 
-            MMapVectorStore store = mmapVectorStores.remove(id);
-            if (store == null) {
+            if (!handles.remove(id, MMapVectorStore.class)) {
                 throw new Exception("MMapVectorStore not found for id: " + id);
             }
-            store.close();
 
-            promise.resolve(null);
-        } catch (Exception e) {
-            promise.reject("ERROR", e.getMessage());
-        }
+            return null;
+        });
     }
 }
\ No newline at end of file
@@ -0,0 +1,185 @@
+package com.llamamobile.vd;
+
+import com.facebook.react.bridge.Promise;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Worker threads that run LlamaMobileVDModule operations off the native-modules thread
+ * Reads (searches, lookups) and writes (adds, updates, loads) run on separate lanes, so a long
+ * batch of adds never queues ahead of a search. The stores lock internally, and HNSW searches
+ * pass their efSearch per call instead of setting it on the index, so any number of reads and
+ * writes may run at once; only closing a handle waits for in-flight operations.
+ */
+final class WorkerPool {
+
+    /**
+     * Work run on a lane; its return value resolves the promise
+     */
+    interface Task {
+        Object run() throws Exception;
+    }
+
+    static final int DEFAULT_WRITE_THREADS = 1;
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private final ThreadPoolExecutor readLane;
+    private final ThreadPoolExecutor writeLane;
+
+    /**
+     * Held shared by every operation and exclusively while a handle is released, so a store is
+     * never closed under a running search
+     */
+    private final ReentrantReadWriteLock handles = new ReentrantReadWriteLock();
+
+    /**
+     * Create the pool; idle threads exit after 30 seconds and are restarted on demand
+     * @param readThreads The number of threads serving reads
+     * @param writeThreads The number of threads serving writes
+     */
+    WorkerPool(int readThreads, int writeThreads) {
+        readLane = newLane("LlamaMobileVD-read-", readThreads);
+        writeLane = newLane("LlamaMobileVD-write-", writeThreads);
+    }
+
+    /**
+     * The default number of read threads: one per core, leaving one for the UI, at most four
+     * @return The default read thread count
+     */
+    static int defaultReadThreads() {
+        return Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+    }
+
+    /**
+     * Change the number of threads on each lane; queued work is kept
+     * @param readThreads The number of threads serving reads, at least 1
+     * @param writeThreads The number of threads serving writes, at least 1
+     */
+    synchronized void resize(int readThreads, int writeThreads) {
+        if (readThreads < 1 || writeThreads < 1) {
+            throw new IllegalArgumentException("Worker thread counts must be at least 1");
+        }
+        resize(readLane, readThreads);
+        resize(writeLane, writeThreads);
+    }
+
+    /**
+     * @return The number of threads serving reads
+     */
+    int readThreads() {
+        return readLane.getMaximumPoolSize();
+    }
+
+    /**
+     * @return The number of threads serving writes
+     */
+    int writeThreads() {
+        return writeLane.getMaximumPoolSize();
+    }
+
+    /**
+     * Run a read (search, get, count, ...) on the read lane and settle the promise with its result
+     * @param promise The promise to resolve with the task's result or reject with its error
+     * @param task The operation to run
+     */
+    void read(Promise promise, Task task) {
+        submit(readLane, handles.readLock(), promise, task);
+    }
+
+    /**
+     * Run a write (create, add, update, load, ...) on the write lane and settle the promise with its result
+     * With one write thread, writes run in the order JavaScript issued them.
+     * @param promise The promise to resolve with the task's result or reject with its error
+     * @param task The operation to run
+     */
+    void write(Promise promise, Task task) {
+        submit(writeLane, handles.readLock(), promise, task);
+    }
+
+    /**
+     * Run an operation that closes or replaces handles (release, save, evict) on the write lane
+     * once no other operation is running
+     * @param promise The promise to resolve with the task's result or reject with its error
+     * @param task The operation to run
+     */
+    void exclusive(Promise promise, Task task) {
+        submit(writeLane, handles.writeLock(), promise, task);
+    }
+
+    /**
+     * Run maintenance that closes handles (eviction, teardown) on the write lane once no other
+     * operation is running; dropped if the pool is shutting down
+     * @param task The maintenance to run
+     */
+    void exclusive(Runnable task) {
+        Lock lock = handles.writeLock();
+        try {
+            writeLane.execute(() -> {
+                lock.lock();
+                try {
+                    task.run();
+                } finally {
+                    lock.unlock();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Shutting down; teardown closes every handle anyway
+        }
+    }
+
+    /**
+     * Stop accepting work; queued operations still run
+     */
+    void shutdown() {
+        readLane.shutdown();
+        writeLane.shutdown();
+    }
+
+    private static void submit(ThreadPoolExecutor lane, Lock lock, Promise promise, Task task) {
+        try {
+            lane.execute(() -> {
+                lock.lock();
+                try {
+                    promise.resolve(task.run());
+                } catch (Exception e) {
+                    promise.reject("ERROR", e.getMessage());
+                } finally {
+                    lock.unlock();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            promise.reject("ERROR", "LlamaMobileVD is shutting down");
+        }
+    }
+
+    private static ThreadPoolExecutor newLane(String prefix, int threads) {
+        AtomicInteger count = new AtomicInteger();
+        ThreadFactory factory = runnable -> {
+            Thread thread = new Thread(runnable, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        ThreadPoolExecutor lane = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), factory);
+        lane.allowCoreThreadTimeOut(true);
+        return lane;
+    }
+
+    private static void resize(ThreadPoolExecutor lane, int threads) {
+        // The core size may never exceed the maximum, so grow the maximum first and shrink it last
+        if (threads > lane.getMaximumPoolSize()) {
+            lane.setMaximumPoolSize(threads);
+            lane.setCorePoolSize(threads);
+        } else {
+            lane.setCorePoolSize(threads);
+            lane.setMaximumPoolSize(threads);
+        }
+    }
+}
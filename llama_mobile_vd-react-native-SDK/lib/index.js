@@ -2,7 +2,7 @@
  * A high-performance vector database for React Native applications using LlamaMobileVD
  */
 
-import { NativeModules } from 'react-native';
+import { NativeModules, Platform } from 'react-native';
 
 const { LlamaMobileVD } = NativeModules;
 
@@ -24,6 +24,147 @@ export const DistanceMetric = {
   DOT: 'DOT'
 };
 
+const BASE64_ALPHABET = 'ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/';
+
+/**
+ * Encode a vector as base64 little-endian Float32 for the native module
+ * Vectors sent this way cross the bridge as one string instead of an array of doubles.
+ * @param {Float32Array|ArrayBuffer|number[]} vector - The vector to encode
+ * @returns {string} The base64-encoded Float32 payload
+ */
+export function encodeFloat32(vector) {
+  let floats = vector;
+  if (vector instanceof ArrayBuffer) {
+    floats = new Float32Array(vector);
+  } else if (!(vector instanceof Float32Array)) {
+    floats = Float32Array.from(vector);
+  }
+  // Float32Array uses the platform byte order, which is little-endian on every React Native target
+  const bytes = new Uint8Array(floats.buffer, floats.byteOffset, floats.byteLength);
+  let out = '';
+  let i = 0;
+  for (; i + 2 < bytes.length; i += 3) {
+    const n = (bytes[i] << 16) | (bytes[i + 1] << 8) | bytes[i + 2];
+    out += BASE64_ALPHABET[n >> 18] + BASE64_ALPHABET[(n >> 12) & 63] +
+      BASE64_ALPHABET[(n >> 6) & 63] + BASE64_ALPHABET[n & 63];
+  }
+  if (i < bytes.length) {
+    const n = (bytes[i] << 16) | ((i + 1 < bytes.length ? bytes[i + 1] : 0) << 8);
+    out += BASE64_ALPHABET[n >> 18] + BASE64_ALPHABET[(n >> 12) & 63];
+    out += i + 1 < bytes.length ? BASE64_ALPHABET[(n >> 6) & 63] + '=' : '==';
+  }
+  return out;
+}
+
+/**
+ * Replace a typed-array vector parameter with its base64 form ("vector" becomes "vectorBase64")
+ * Plain number arrays are passed through unchanged. Only the Android module reads base64
+ * payloads, so on other platforms typed arrays are sent as plain number arrays.
+ * @param {Object} params - The method parameters
+ * @param {string} key - The name of the vector parameter
+ * @returns {Object} The parameters to send to the native module
+ */
+function withBinaryVector(params, key) {
+  const vector = params[key];
+  if (!(vector instanceof Float32Array || vector instanceof ArrayBuffer)) {
+    return params;
+  }
+  if (Platform.OS !== 'android') {
+    return { ...params, [key]: Array.from(vector instanceof ArrayBuffer ? new Float32Array(vector) : vector) };
+  }
+  const { [key]: _omitted, ...rest } = params;
+  return { ...rest, [`${key}Base64`]: encodeFloat32(vector) };
+}
+
+/**
+ * Replace a list-of-vectors parameter holding typed arrays with its packed base64 form
+ * ("vectors" becomes "vectorsBase64"). The list may be one flat Float32Array holding the vectors
+ * back to back, or an array of Float32Arrays. Plain nested number arrays are passed through unchanged.
+ * The list methods are Android only, so this is only called on Android.
+ * @param {Object} params - The method parameters
+ * @param {string} key - The name of the list parameter
+ * @returns {Object} The parameters to send to the native module
+ */
+function withBinaryVectors(params, key) {
+  const vectors = params[key];
+  let packed;
+  if (vectors instanceof Float32Array) {
+    packed = vectors;
+  } else if (Array.isArray(vectors) && vectors.length > 0 && vectors.every(v => v instanceof Float32Array)) {
+    packed = new Float32Array(vectors.reduce((total, v) => total + v.length, 0));
+    let offset = 0;
+    for (const vector of vectors) {
+      packed.set(vector, offset);
+      offset += vector.length;
+    }
+  } else {
+    return params;
+  }
+  const { [key]: _omitted, ...rest } = params;
+  return { ...rest, [`${key}Base64`]: encodeFloat32(packed) };
+}
+
+/**
+ * Decode a packed search response into typed id and distance columns
+ * The native module packs the little-endian Int32 ids followed by the Float32 distances into
+ * one base64 string, so a query crosses the bridge as a constant number of objects.
+ * @param {Object} result - The native response
+ * @param {number} result.count - The number of hits
+ * @param {string} result.packed - The base64-encoded ids and distances
+ * @returns {Object} The hits as { ids: Int32Array, distances: Float32Array }
+ */
+export function decodePackedResults({ count, packed }) {
+  const bytes = new Uint8Array(count * 8);
+  let length = 0;
+  let bits = 0;
+  let value = 0;
+  for (let i = 0; i < packed.length && length < bytes.length; i++) {
+    const digit = BASE64_ALPHABET.indexOf(packed[i]);
+    if (digit < 0) {
+      continue;
+    }
+    value = (value << 6) | digit;
+    bits += 6;
+    if (bits >= 8) {
+      bits -= 8;
+      bytes[length++] = (value >> bits) & 0xff;
+    }
+  }
+  return {
+    ids: new Int32Array(bytes.buffer, 0, count),
+    distances: new Float32Array(bytes.buffer, count * 4, count),
+  };
+}
+
+/**
+ * Send a search to the native module and decode its response if the packed format was requested
+ * Only the Android module implements the columnar and packed formats; other platforms reject them.
+ * @param {Function} search - The native search method
+ * @param {Object} params - The search parameters
+ * @returns {Promise<Object>} Promise with the search results in the requested format
+ */
+function searchWithFormat(search, params) {
+  if (params.format && params.format !== 'objects' && Platform.OS !== 'android') {
+    return Promise.reject(new Error(`Search result format '${params.format}' is only supported on Android`));
+  }
+  const response = search(withBinaryVector(params, 'queryVector'));
+  return params.format === 'packed' ? response.then(decodePackedResults) : response;
+}
+
+/**
+ * Call a method that only some native modules implement (currently the Android one)
+ * @param {string} name - The native method name
+ * @param {Function} call - Invoked with the native method when it exists
+ * @returns {Promise<Object>} The call's promise, or a rejected promise if the method is missing
+ */
+function callAndroidOnly(name, call) {
+  const method = LlamaMobileVD[name];
+  if (typeof method !== 'function') {
+    return Promise.reject(new Error(`${name} is only supported on Android`));
+  }
+  return call(method);
+}
+
 /**
  * LlamaMobileVD API implementation
  */
@@ -56,24 +197,24 @@ const LlamaMobileVDAPI = {
    * Add a vector to a VectorStore
    * @param {Object} params - Parameters for adding the vector
    * @param {string} params.id - The ID of the VectorStore
-   * @param {number[]} params.vector - The vector to add
+   * @param {number[]|Float32Array} params.vector - The vector to add
    * @param {number} params.vectorId - The ID to associate with the vector
    * @returns {Promise<void>} Promise that resolves when the vector is added
    */
   addVectorToStore(params) {
-    return LlamaMobileVD.addVectorToStore(params);
+    return LlamaMobileVD.addVectorToStore(withBinaryVector(params, 'vector'));
   },
 
   /**
    * Add a vector to an HNSWIndex
    * @param {Object} params - Parameters for adding the vector
    * @param {string} params.id - The ID of the HNSWIndex
-   * @param {number[]} params.vector - The vector to add
+   * @param {number[]|Float32Array} params.vector - The vector to add
    * @param {number} params.vectorId - The ID to associate with the vector
    * @returns {Promise<void>} Promise that resolves when the vector is added
    */
   addVectorToHNSW(params) {
-    return LlamaMobileVD.addVectorToHNSW(params);
+    return LlamaMobileVD.addVectorToHNSW(withBinaryVector(params, 'vector'));
   },
 
   /**
@@ -103,11 +244,11 @@ const LlamaMobileVDAPI = {
    * @param {Object} params - Parameters for updating the vector
    * @param {string} params.id - The ID of the VectorStore
    * @param {number} params.vectorId - The ID of the vector to update
-   * @param {number[]} params.vector - The new vector data
+   * @param {number[]|Float32Array} params.vector - The new vector data
    * @returns {Promise<boolean>} Promise with true if the vector was updated, false otherwise
    */
   updateVectorInStore(params) {
-    return LlamaMobileVD.updateVectorInStore(params);
+    return LlamaMobileVD.updateVectorInStore(withBinaryVector(params, 'vector'));
   },
 
   /**
@@ -156,12 +297,13 @@ const LlamaMobileVDAPI = {
    * Search for vectors in a VectorStore
    * @param {Object} params - Parameters for searching the VectorStore
    * @param {string} params.id - The ID of the VectorStore
-   * @param {number[]} params.queryVector - The query vector
+   * @param {number[]|Float32Array} params.queryVector - The query vector
    * @param {number} params.k - The number of nearest neighbors to return
+   * @param {string} [params.format] - 'objects' (default), 'columnar' or 'packed' (typed arrays)
    * @returns {Promise<Object[]>} Promise with the search results
    */
   searchVectorStore(params) {
-    return LlamaMobileVD.searchVectorStore(params);
+    return searchWithFormat(LlamaMobileVD.searchVectorStore, params);
   },
 
   /**
@@ -252,13 +394,53 @@ const LlamaMobileVDAPI = {
    * Search for vectors in an HNSWIndex
    * @param {Object} params - Parameters for searching the HNSWIndex
    * @param {string} params.id - The ID of the HNSWIndex
-   * @param {number[]} params.queryVector - The query vector
+   * @param {number[]|Float32Array} params.queryVector - The query vector
    * @param {number} params.k - The number of nearest neighbors to return
    * @param {number} [params.efSearch] - The efSearch value to use for this search
+   * @param {string} [params.format] - 'objects' (default), 'columnar' or 'packed' (typed arrays)
    * @returns {Promise<Object[]>} Promise with the search results
    */
   searchHNSWIndex(params) {
-    return LlamaMobileVD.searchHNSWIndex(params);
+    return searchWithFormat(LlamaMobileVD.searchHNSWIndex, params);
+  },
+
+  /**
+   * Add many vectors to a VectorStore in one native call (Android)
+   * @param {Object} params - Parameters for adding the vectors
+   * @param {string} params.id - The ID of the VectorStore
+   * @param {number[][]|Float32Array[]|Float32Array} params.vectors - The vectors, or one Float32Array holding them back to back
+   * @param {number[]} params.vectorIds - The IDs to associate with the vectors, in the same order
+   * @returns {Promise<Object>} Promise with the number of vectors added
+   */
+  addVectorsToStore(params) {
+    return callAndroidOnly('addVectorsToStore', add => add(withBinaryVectors(params, 'vectors')));
+  },
+
+  /**
+   * Add many vectors to an HNSWIndex in one native call (Android)
+   * @param {Object} params - Parameters for adding the vectors
+   * @param {string} params.id - The ID of the HNSWIndex
+   * @param {number[][]|Float32Array[]|Float32Array} params.vectors - The vectors, or one Float32Array holding them back to back
+   * @param {number[]} params.vectorIds - The IDs to associate with the vectors, in the same order
+   * @returns {Promise<Object>} Promise with the number of vectors added
+   */
+  addVectorsToHNSW(params) {
+    return callAndroidOnly('addVectorsToHNSW', add => add(withBinaryVectors(params, 'vectors')));
+  },
+
+  /**
+   * Search a VectorStore, HNSWIndex or MMapVectorStore with many query vectors in one native call (Android)
+   * @param {Object} params - Parameters for searching
+   * @param {string} params.id - The ID of the store or index
+   * @param {number[][]|Float32Array[]|Float32Array} params.queryVectors - The query vectors, or one Float32Array holding them back to back
+   * @param {number} params.k - The number of nearest neighbors to return per query
+   * @param {number} [params.efSearch] - The HNSW candidate list size (HNSWIndex only)
+   * @param {string} [params.format] - 'objects' (default), 'columnar' or 'packed' (typed arrays)
+   * @returns {Promise<Object[]>} Promise with one set of search results per query
+   */
+  searchBatch(params) {
+    const response = callAndroidOnly('searchBatch', search => search(withBinaryVectors(params, 'queryVectors')));
+    return params.format === 'packed' ? response.then(batch => batch.map(decodePackedResults)) : response;
   },
 
   /**
@@ -367,12 +549,13 @@ const LlamaMobileVDAPI = {
    * Search for vectors in an MMapVectorStore
    * @param {Object} params - Parameters for searching the MMapVectorStore
    * @param {string} params.id - The ID of the MMapVectorStore
-   * @param {number[]} params.queryVector - The query vector
+   * @param {number[]|Float32Array} params.queryVector - The query vector
    * @param {number} params.k - The number of nearest neighbors to return
+   * @param {string} [params.format] - 'objects' (default), 'columnar' or 'packed' (typed arrays)
    * @returns {Promise<Object[]>} Promise with the search results
    */
   searchMMapVectorStore(params) {
-    return LlamaMobileVD.searchMMapVectorStore(params);
+    return searchWithFormat(LlamaMobileVD.searchMMapVectorStore, params);
   },
 
   /**
@@ -413,6 +596,37 @@ const LlamaMobileVDAPI = {
    */
   releaseMMapVectorStore(params) {
     return LlamaMobileVD.releaseMMapVectorStore(params);
+  },
+
+  /**
+   * Configure the native worker threads that run operations off the JavaScript thread (Android)
+   * @param {Object} options - Worker options; omitted counts are left unchanged
+   * @param {number} [options.readThreads] - The number of threads serving searches and lookups
+   * @param {number} [options.writeThreads] - The number of threads serving adds, updates and loads
+   * @returns {Promise<Object>} Promise with the resulting readThreads and writeThreads
+   */
+  configureWorkers(options) {
+    return LlamaMobileVD.configureWorkers(options);
+  },
+
+  /**
+   * Set the native memory budget for stores and indexes (Android)
+   * Above the budget, indexes opened from a file and not modified since are unloaded least
+   * recently used first and reopened transparently on next use.
+   * @param {Object} options - Memory options
+   * @param {number} [options.budgetBytes] - The budget in bytes; 0 removes it
+   * @returns {Promise<Object>} Promise with the resulting memory statistics
+   */
+  configureMemory(options) {
+    return LlamaMobileVD.configureMemory(options);
+  },
+
+  /**
+   * Get the estimated native memory of every store and index (Android)
+   * @returns {Promise<Object>} Promise with budgetBytes, loadedBytes and one entry per handle
+   */
+  getMemoryStats() {
+    return LlamaMobileVD.getMemoryStats({});
   }
 };
 
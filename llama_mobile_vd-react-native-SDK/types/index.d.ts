@@ -66,9 +66,13 @@ declare module 'llama-mobile-vd' {
      */
     id: string;
     /**
-     * The vector to add
+     * The vector to add; on Android a Float32Array is sent to the native module as base64
      */
-    vector: number[];
+    vector?: number[] | Float32Array;
+    /**
+     * The vector to add as base64 little-endian Float32, in place of vector (Android)
+     */
+    vectorBase64?: string;
     /**
      * The label (optional) for the vector
      */
@@ -84,13 +88,80 @@ declare module 'llama-mobile-vd' {
      */
     id: string;
     /**
-     * The query vector
+     * The query vector; on Android a Float32Array is sent to the native module as base64
      */
-    queryVector: number[];
+    queryVector?: number[] | Float32Array;
+    /**
+     * The query vector as base64 little-endian Float32, in place of queryVector (Android)
+     */
+    queryVectorBase64?: string;
     /**
      * The number of nearest neighbors to return
      */
     k: number;
+    /**
+     * The result format: one object per hit (the default), parallel arrays, or typed arrays;
+     * the last two are Android only
+     */
+    format?: SearchResultFormat;
+  }
+
+  /**
+   * Format of search results: 'objects' returns SearchResult[], 'columnar' returns
+   * ColumnarSearchResults and 'packed' returns PackedSearchResults
+   */
+  export type SearchResultFormat = 'objects' | 'columnar' | 'packed';
+
+  /**
+   * Parameters for adding many vectors to a VectorStore or HNSWIndex
+   */
+  export interface AddVectorsParams {
+    /**
+     * The ID of the VectorStore or HNSWIndex
+     */
+    id: string;
+    /**
+     * The vectors to add, or one Float32Array holding them back to back
+     */
+    vectors?: number[][] | Float32Array[] | Float32Array;
+    /**
+     * The vectors as one base64 string of little-endian Float32 values, in place of vectors
+     */
+    vectorsBase64?: string;
+    /**
+     * The IDs to associate with the vectors, in the same order
+     */
+    vectorIds: number[];
+  }
+
+  /**
+   * Parameters for searching a VectorStore, HNSWIndex or MMapVectorStore with many queries
+   */
+  export interface SearchBatchParams {
+    /**
+     * The ID of the VectorStore, HNSWIndex or MMapVectorStore
+     */
+    id: string;
+    /**
+     * The query vectors, or one Float32Array holding them back to back
+     */
+    queryVectors?: number[][] | Float32Array[] | Float32Array;
+    /**
+     * The query vectors as one base64 string of little-endian Float32 values, in place of queryVectors
+     */
+    queryVectorsBase64?: string;
+    /**
+     * The number of nearest neighbors to return per query
+     */
+    k: number;
+    /**
+     * The size of the candidate list for HNSWIndex searches (defaults to k)
+     */
+    efSearch?: number;
+    /**
+     * The result format for each query
+     */
+    format?: SearchResultFormat;
   }
 
   /**
@@ -151,6 +222,34 @@ declare module 'llama-mobile-vd' {
     distance: number;
   }
 
+  /**
+   * Search results as parallel arrays, in order of increasing distance
+   */
+  export interface ColumnarSearchResults {
+    /**
+     * The indices of the matched vectors
+     */
+    ids: number[];
+    /**
+     * The distances to the query vector
+     */
+    distances: number[];
+  }
+
+  /**
+   * Search results decoded from a packed binary response, in order of increasing distance
+   */
+  export interface PackedSearchResults {
+    /**
+     * The indices of the matched vectors
+     */
+    ids: Int32Array;
+    /**
+     * The distances to the query vector
+     */
+    distances: Float32Array;
+  }
+
   /**
    * Result of a count operation
    */
@@ -174,6 +273,90 @@ declare module 'llama-mobile-vd' {
     path: string;
   }
 
+  /**
+   * Options for configuring the native worker threads
+   */
+  export interface WorkerOptions {
+    /**
+     * The number of threads serving searches and lookups
+     */
+    readThreads?: number;
+
+    /**
+     * The number of threads serving adds, updates and loads; 1 keeps writes in call order
+     */
+    writeThreads?: number;
+  }
+
+  /**
+   * Result of configuring the native worker threads
+   */
+  export interface WorkerConfig {
+    /**
+     * The number of threads serving searches and lookups
+     */
+    readThreads: number;
+
+    /**
+     * The number of threads serving adds, updates and loads
+     */
+    writeThreads: number;
+  }
+
+  /**
+   * Options for the native memory budget
+   */
+  export interface MemoryOptions {
+    /**
+     * The budget in bytes for loaded stores and indexes; 0 removes it
+     */
+    budgetBytes?: number;
+  }
+
+  /**
+   * Estimated native memory of one store or index
+   */
+  export interface HandleMemory {
+    /**
+     * The ID of the store or index
+     */
+    id: string;
+    /**
+     * The handle type: 'VectorStore', 'HNSWIndex' or 'MMapVectorStore'
+     */
+    type: string;
+    /**
+     * The estimated native bytes while loaded
+     */
+    bytes: number;
+    /**
+     * Whether the handle is currently loaded
+     */
+    loaded: boolean;
+    /**
+     * Whether the handle can be unloaded and reopened from its file
+     */
+    evictable: boolean;
+  }
+
+  /**
+   * Estimated native memory of all stores and indexes
+   */
+  export interface MemoryStats {
+    /**
+     * The budget in bytes, or 0 if there is none
+     */
+    budgetBytes: number;
+    /**
+     * The estimated native bytes of the loaded handles
+     */
+    loadedBytes: number;
+    /**
+     * Every handle, least recently used first
+     */
+    handles: HandleMemory[];
+  }
+
   export interface LlamaMobileVD {
     /**
      * Create a new VectorStore
@@ -208,6 +391,8 @@ declare module 'llama-mobile-vd' {
      * @param params Parameters for searching the VectorStore
      * @returns Promise with the search results
      */
+    searchVectorStore(params: SearchParams & { format: 'columnar' }): Promise<ColumnarSearchResults>;
+    searchVectorStore(params: SearchParams & { format: 'packed' }): Promise<PackedSearchResults>;
     searchVectorStore(params: SearchParams): Promise<SearchResult[]>;
 
     /**
@@ -215,8 +400,33 @@ declare module 'llama-mobile-vd' {
      * @param params Parameters for searching the HNSWIndex
      * @returns Promise with the search results
      */
+    searchHNSWIndex(params: SearchParams & { format: 'columnar' }): Promise<ColumnarSearchResults>;
+    searchHNSWIndex(params: SearchParams & { format: 'packed' }): Promise<PackedSearchResults>;
     searchHNSWIndex(params: SearchParams): Promise<SearchResult[]>;
 
+    /**
+     * Add many vectors to a VectorStore in one native call (Android)
+     * @param params Parameters for adding the vectors
+     * @returns Promise with the number of vectors added; rejects on other platforms
+     */
+    addVectorsToStore(params: AddVectorsParams): Promise<CountResult>;
+
+    /**
+     * Add many vectors to an HNSWIndex in one native call (Android)
+     * @param params Parameters for adding the vectors
+     * @returns Promise with the number of vectors added; rejects on other platforms
+     */
+    addVectorsToHNSW(params: AddVectorsParams): Promise<CountResult>;
+
+    /**
+     * Search a VectorStore, HNSWIndex or MMapVectorStore with many query vectors in one native call (Android)
+     * @param params Parameters for searching
+     * @returns Promise with one set of search results per query; rejects on other platforms
+     */
+    searchBatch(params: SearchBatchParams & { format: 'columnar' }): Promise<ColumnarSearchResults[]>;
+    searchBatch(params: SearchBatchParams & { format: 'packed' }): Promise<PackedSearchResults[]>;
+    searchBatch(params: SearchBatchParams): Promise<SearchResult[][]>;
+
     /**
      * Count the number of vectors in a VectorStore
      * @param params Parameters for counting vectors in the VectorStore
@@ -271,6 +481,8 @@ declare module 'llama-mobile-vd' {
      * @param params Parameters for searching the MMapVectorStore
      * @returns Promise with the search results
      */
+    searchMMapVectorStore(params: SearchParams & { format: 'columnar' }): Promise<ColumnarSearchResults>;
+    searchMMapVectorStore(params: SearchParams & { format: 'packed' }): Promise<PackedSearchResults>;
     searchMMapVectorStore(params: SearchParams): Promise<SearchResult[]>;
 
     /**
@@ -300,8 +512,42 @@ declare module 'llama-mobile-vd' {
      * @returns Promise that resolves when the MMapVectorStore is released
      */
     releaseMMapVectorStore(params: ReleaseParams): Promise<void>;
+
+    /**
+     * Configure the native worker threads that run operations off the JavaScript thread (Android)
+     * @param options Worker options; omitted counts are left unchanged
+     * @returns Promise with the resulting thread counts
+     */
+    configureWorkers(options: WorkerOptions): Promise<WorkerConfig>;
+
+    /**
+     * Set the native memory budget for stores and indexes (Android)
+     * @param options Memory options; an omitted budget is left unchanged
+     * @returns Promise with the resulting memory statistics
+     */
+    configureMemory(options: MemoryOptions): Promise<MemoryStats>;
+
+    /**
+     * Get the estimated native memory of every store and index (Android)
+     * @returns Promise with the memory statistics
+     */
+    getMemoryStats(): Promise<MemoryStats>;
   }
 
+  /**
+   * Encode a vector as base64 little-endian Float32 for the vectorBase64 and queryVectorBase64 parameters
+   * @param vector The vector to encode
+   * @returns The base64-encoded Float32 payload
+   */
+  export function encodeFloat32(vector: Float32Array | ArrayBuffer | number[]): string;
+
+  /**
+   * Decode a packed search response into typed id and distance columns
+   * @param result The native response holding the hit count and the base64-encoded columns
+   * @returns The decoded columns
+   */
+  export function decodePackedResults(result: { count: number; packed: string }): PackedSearchResults;
+
   const LlamaMobileVD: LlamaMobileVD;
   export default LlamaMobileVD;
 }
\ No newline at end of file